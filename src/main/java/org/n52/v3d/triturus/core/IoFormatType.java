@@ -83,6 +83,26 @@ public class IoFormatType
      */
     public static final String ARCINFO_ASCII_GRID = "ArcIGrd";
 
+    /**
+     * File-format type identifier to be used to process elevation-grids in
+     * Triturus' native binary tiled grid format. Since the tiles are 
+     * compressed separately, grid windows can be read without decoding the 
+     * whole file.
+     */
+    public static final String TILED_GRID = "TiledGrid";
+
+    /**
+     * File-format type identifier to be used to process TINs in Triturus' 
+     * native binary indexed TIN format, which holds the vertex coordinates 
+     * without loss of precision.
+     */
+    public static final String BINARY_TIN = "BinaryTIN";
+
+    /**
+     * File-format type identifier to be used for binary glTF 2.0 files.
+     */
+    public static final String GLB = "GLB";
+
     /**
      * File-format type identifier to be used for Shape file format.
      */
@@ -75,27 +75,25 @@ public class FltElevationGrid2PointSet extends T3dProcFilter
         if (pGrid == null)
             return null;
         ArrayList res = new ArrayList();
+        GmSimple2dGridGeometry geom = (GmSimple2dGridGeometry) pGrid.getGeometry();
+        double 
+            x0 = geom.getOrigin().getX(), 
+            y0 = geom.getOrigin().getY(), 
+            dx = geom.getDeltaX(), 
+            dy = geom.getDeltaY();
+        double[] z = new double[pGrid.numberOfColumns()];
         for (int i = 0; i < pGrid.numberOfRows(); i++) {
+            pGrid.getRowValues(i, z);
+            double y = y0 + i * dy;
+            if (mEnv != null && (y < mEnv.getYMin() || y > mEnv.getYMax()))
+                continue;
             for (int j = 0; j < pGrid.numberOfColumns(); j++) {
-                try {
-                    VgPoint pt = pGrid.getPoint(i, j);
-                    if (pt == null)
-                        continue;
-                    if (mEnv != null) {
-                        if (pt.getX() < mEnv.getXMin())
-                            continue;
-                        if (pt.getX() > mEnv.getXMax())
-                            continue;
-                        if (pt.getY() < mEnv.getYMin())
-                            continue;
-                        if (pt.getY() > mEnv.getYMax())
-                            continue;
-                    }
-                    res.add(pt);
-                }
-                catch (T3dException e) {
-                    //System.out.println("Ignoring unset grid cell (" + i + ", " + j + ")...");   
-                }
+                if (Double.isNaN(z[j])) 
+                    continue; // unset grid element
+                double x = x0 + j * dx;
+                if (mEnv != null && (x < mEnv.getXMin() || x > mEnv.getXMax()))
+                    continue;
+                res.add(new GmPoint(x, y, z[j]));
             }
         }
         return res;
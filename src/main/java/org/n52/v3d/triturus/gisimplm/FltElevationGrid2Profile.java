@@ -35,6 +35,7 @@ package org.n52.v3d.triturus.gisimplm;
 import org.n52.v3d.triturus.vgis.*;
 import org.n52.v3d.triturus.core.T3dProcFilter;
 import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.t3dutil.TriangleKernel;
 
 /**
  * Filter to compute cross-sections ("profiles") for equidistant elevation-grids
@@ -264,44 +265,35 @@ public class FltElevationGrid2Profile extends T3dProcFilter
         // To interpolate elevation values, the grid-cell is subdivided into
         // four triangles. The triangle corners are given by the grid-cell 
         // corners and the center of gravity of the grid-cell.
-        VgPoint // corners and center of gravity, not georeferenced here
-        	pll = new GmPoint(0., 0., this.grdElevation(il, jl)),
-        	plr = new GmPoint(0., 1., this.grdElevation(il, jr)),
-        	pul = new GmPoint(1., 0., this.grdElevation(iu, jl)),
-        	pur = new GmPoint(1., 1., this.grdElevation(iu, jr)),
-        	pm = new GmPoint(
-        			0.5, 0.5, 
-        			0.25 * (pll.getZ() + plr.getZ() + pul.getZ() + pur.getZ()));
-		//System.out.println("pll = " + pll);
-		//System.out.println("plr = " + plr);
-		//System.out.println("pul = " + pul);
-		//System.out.println("pur = " + pur);
-  
-        VgTriangle tri;
+        // corners and center of gravity, not georeferenced here
+        double 
+        	zll = this.grdElevation(il, jl),
+        	zlr = this.grdElevation(il, jr),
+        	zul = this.grdElevation(iu, jl),
+        	zur = this.grdElevation(iu, jr),
+        	zm = 0.25 * (zll + zlr + zul + zur),
+        	z;
         if (jrem > 1. - 0.5 * irem) {
             if (irem > jrem) // right triangle
-                tri = new GmTriangle(pm, plr, pur);
+                z = TriangleKernel.interpolateZ(0.5, 0.5, zm, 0., 1., zlr, 1., 1., zur, irem, jrem);
             else // upper triangle
-                tri = new GmTriangle(pm, pur, pul);
+                z = TriangleKernel.interpolateZ(0.5, 0.5, zm, 1., 1., zur, 1., 0., zul, irem, jrem);
         } 
         else {
             if (irem > jrem) // lower triangle
-                tri = new GmTriangle(pm, pll, plr);
+                z = TriangleKernel.interpolateZ(0.5, 0.5, zm, 0., 0., zll, 0., 1., zlr, irem, jrem);
             else // left triangle
-                tri = new GmTriangle(pm, pul, pll);
+                z = TriangleKernel.interpolateZ(0.5, 0.5, zm, 1., 0., zul, 0., 0., zll, irem, jrem);
         }
-        return new GmPoint(
-        	pt.getX(), 
-        	pt.getY(), 
-        	tri.interpolateZ(new GmPoint(irem, jrem, 0. /*dummy*/)));
+        return new GmPoint(pt.getX(), pt.getY(), z);
     }
     
     private boolean grdIsSet(int i, int j) {
-        return grid.isSet(i, j);
+        return grid.getStorage().isInside(i, j) && grid.getStorage().isSet(i, j);
     }
 
     private Double grdElevation(int i, int j) {
-    	return grdIsSet(i, j) ? grid.getValue(i, j) : null;
+    	return grdIsSet(i, j) ? grid.getStorage().get(i, j) : null;
     }
     
     private void registerVertex(double t, VgPoint pt) 
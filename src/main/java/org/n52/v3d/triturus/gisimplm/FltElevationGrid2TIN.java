@@ -31,18 +31,47 @@
  */
 package org.n52.v3d.triturus.gisimplm;
 
+import java.util.Arrays;
+
 import org.n52.v3d.triturus.core.T3dProcFilter;
 import org.n52.v3d.triturus.core.T3dException;
-import org.n52.v3d.triturus.core.T3dNotYetImplException;
+import org.n52.v3d.triturus.t3dutil.BowyerWatsonDelaunay;
+import org.n52.v3d.triturus.vgis.VgPoint;
 
 /** 
  * Filter to transform a <tt>GmSimpleElevationGrid</tt>-object into a <tt>GmSimpleTINFeature</tt>.
+ * <br/>
+ * The filter performs an adaptive terrain simplification by greedy insertion
+ * as described by Garland & Heckbert (1995): Fast polygonal approximation of
+ * terrains and height fields, Technical Report CMU-CS-95-181. Starting with 
+ * the grid's corner points, the lattice point with the largest vertical 
+ * error is inserted into an incremental Delaunay triangulation, until the 
+ * given maximal error (see <tt>this.setMaximumError()</tt>) is met or the 
+ * maximal number of points has been reached. For each triangle, the lattice 
+ * point with the largest error is kept inside a priority queue; after an 
+ * insertion, only the new triangles have to be re-scanned.
+ * <br/>
+ * Unset lattice points will be ignored. Triangles touching unset grid corners
+ * will not be part of the result.
+ * 
  * @author Benno Schmidt
  */
 public class FltElevationGrid2TIN extends T3dProcFilter
 {
     private String mLogString = "";
 
+    private double mMaxError = 1.;
+    private int mMaxNumberOfPoints = Integer.MAX_VALUE;
+
+    // Working data:
+    private GmGridStorage mVal;
+    private BowyerWatsonDelaunay mTri;
+    private int[] mVtxRow, mVtxCol; // lattice position of the i-th TIN vertex
+    private double[] mVtxZ;
+    private TriangleQueue mQueue;
+
+    private final static int cInitialCapacity = 1024;
+
     public FltElevationGrid2TIN() {
         mLogString = this.getClass().getName();
     }
@@ -51,11 +80,329 @@ public class FltElevationGrid2TIN extends T3dProcFilter
         return mLogString;
     }
 
+    /**
+     * sets the maximal vertical error of the resulting TIN with respect to 
+     * the input grid's lattice points. The default value is 1.
+     * 
+     * @param maxError Maximal vertical distance (&gt;= 0)
+     */
+    public void setMaximumError(double maxError) 
+    {
+        if (maxError < 0.)
+            throw new T3dException("Illegal maximal error.");
+        mMaxError = maxError;
+    }
+
+    /**
+     * sets the maximal number of TIN vertices. By default, the number of
+     * points is not limited.
+     * 
+     * @param maxNumberOfPoints Maximal number of points (&gt;= 4)
+     */
+    public void setMaximumNumberOfPoints(int maxNumberOfPoints) 
+    {
+        if (maxNumberOfPoints < 4)
+            throw new T3dException("Illegal maximal number of points.");
+        mMaxNumberOfPoints = maxNumberOfPoints;
+    }
+
     /**
      * performs the described filter operation.
      */
     public GmSimpleTINFeature transform(GmSimpleElevationGrid pGrid) throws T3dException
     {
-    	throw new T3dNotYetImplException();
+        int 
+            nRows = pGrid.numberOfRows(), 
+            nCols = pGrid.numberOfColumns();
+        if (nRows < 2 || nCols < 2)
+            throw new T3dException("Elevation grid is too small.");
+
+        mVal = pGrid.getStorage();
+        int maxPts = (int) Math.min((long) nRows * (long) nCols, (long) mMaxNumberOfPoints);
+        double 
+            dx = pGrid.getDeltaX(), 
+            dy = pGrid.getDeltaY(),
+            zFill = 0.5 * (pGrid.minimalElevation() + pGrid.maximalElevation());
+
+        // Note that the working arrays grow with the number of inserted 
+        // points, not with the grid size:
+        int n0 = Math.min(maxPts, cInitialCapacity);
+        mTri = new BowyerWatsonDelaunay(maxPts);
+        mVtxRow = new int[n0];
+        mVtxCol = new int[n0];
+        mVtxZ = new double[n0];
+        mQueue = new TriangleQueue(2 * n0 + 2);
+
+        // Start with the grid's corner points:
+        int[][] corners = {{0, 0}, {0, nCols - 1}, {nRows - 1, nCols - 1}, {nRows - 1, 0}};
+        boolean[] isFill = new boolean[4];
+        for (int k = 0; k < 4; k++) {
+            int row = corners[k][0], col = corners[k][1];
+            isFill[k] = !mVal.isSet(row, col);
+            this.insert(row, col, isFill[k] ? zFill : mVal.get(row, col), dx, dy);
+        }
+
+        // Greedy insertion:
+        while (mQueue.size() > 0 
+            && mQueue.topKey() > mMaxError 
+            && mTri.numberOfPoints() < maxPts) 
+        {
+            int node = mQueue.topCandidate();
+            int row = node / nCols, col = node % nCols;
+            this.insert(row, col, mVal.get(row, col), dx, dy);
+        }
+
+        // Assemble the result (omitting the fill points):
+        int n = mTri.numberOfPoints();
+        int[] map = new int[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            map[i] = (i < 4 && isFill[i]) ? -1 : m++;
+        }
+        VgPoint origin = ((GmSimple2dGridGeometry) pGrid.getGeometry()).getOrigin();
+        double[] xyz = new double[3 * m];
+        for (int i = 0; i < n; i++) {
+            if (map[i] >= 0) {
+                xyz[3 * map[i]] = origin.getX() + mVtxCol[i] * dx;
+                xyz[3 * map[i] + 1] = origin.getY() + mVtxRow[i] * dy;
+                xyz[3 * map[i] + 2] = mVtxZ[i];
+            }
+        }
+        int[] res = mTri.getIndices();
+        int nTri = 0;
+        for (int t = 0; t < res.length; t += 3) {
+            if (map[res[t]] >= 0 && map[res[t + 1]] >= 0 && map[res[t + 2]] >= 0) {
+                res[nTri++] = map[res[t]];
+                res[nTri++] = map[res[t + 1]];
+                res[nTri++] = map[res[t + 2]];
+            }
+        }
+        int[] tri = new int[nTri];
+        System.arraycopy(res, 0, tri, 0, nTri);
+
+        GmSimpleTINGeometry geom = new GmSimpleTINGeometry(xyz, tri);
+        geom.setSRS(origin.getSRS());
+        GmSimpleTINFeature f = new GmSimpleTINFeature();
+        f.setGeometry(geom);
+
+        mVal = null;
+        mTri = null;
+        mQueue = null;
+        return f;
+    }
+
+    private void insert(int row, int col, double z, double dx, double dy) 
+    {
+        int p = mTri.addPoint(col * dx, row * dy);
+        if (p >= mVtxRow.length) {
+            int n = 2 * mVtxRow.length;
+            mVtxRow = Arrays.copyOf(mVtxRow, n);
+            mVtxCol = Arrays.copyOf(mVtxCol, n);
+            mVtxZ = Arrays.copyOf(mVtxZ, n);
+        }
+        mVtxRow[p] = row;
+        mVtxCol[p] = col;
+        mVtxZ[p] = z;
+        for (int k = 0; k < mTri.numberOfChangedTriangles(); k++) {
+            int t = mTri.changedTriangle(k);
+            if (mTri.isGhost(t)) 
+                mQueue.remove(t);
+            else 
+                this.scanTriangle(t);
+        }
+    }
+
+    // Determines the lattice point with the largest vertical error inside 
+    // the triangle t and updates the priority queue. The computations are 
+    // performed in lattice coordinates, so the edge functions are exact.
+    private void scanTriangle(int t) 
+    {
+        int 
+            a = mTri.vertex(t, 0), 
+            b = mTri.vertex(t, 1), 
+            c = mTri.vertex(t, 2);
+        long 
+            ra = mVtxRow[a], ca = mVtxCol[a],
+            rb = mVtxRow[b], cb = mVtxCol[b],
+            rc = mVtxRow[c], cc = mVtxCol[c];
+        long det = edge(cb, rb, cc, rc, ca, ra);
+        if (det == 0) {
+            mQueue.remove(t);
+            return;
+        }
+        double 
+            za = mVtxZ[a], zb = mVtxZ[b], zc = mVtxZ[c], 
+            maxErr = -1.;
+        int cand = -1, nCols = mVal.numberOfColumns();
+
+        long 
+            rMin = Math.min(ra, Math.min(rb, rc)), 
+            rMax = Math.max(ra, Math.max(rb, rc)),
+            cMin = Math.min(ca, Math.min(cb, cc)), 
+            cMax = Math.max(ca, Math.max(cb, cc));
+        for (long r = rMin; r <= rMax; r++) {
+            // Determine the column span in this row:
+            double xl = Double.POSITIVE_INFINITY, xr = Double.NEGATIVE_INFINITY, xs;
+            if ((xs = crossing(ca, ra, cb, rb, r)) == xs) { xl = Math.min(xl, xs); xr = Math.max(xr, xs); }
+            if ((xs = crossing(cb, rb, cc, rc, r)) == xs) { xl = Math.min(xl, xs); xr = Math.max(xr, xs); }
+            if ((xs = crossing(cc, rc, ca, ra, r)) == xs) { xl = Math.min(xl, xs); xr = Math.max(xr, xs); }
+            if (xl > xr)
+                continue;
+            long 
+                jLo = Math.max(cMin, (long) Math.floor(xl)),
+                jHi = Math.min(cMax, (long) Math.ceil(xr));
+            for (long col = jLo; col <= jHi; col++) {
+                long 
+                    w0 = edge(cb, rb, cc, rc, col, r),
+                    w1 = edge(cc, rc, ca, ra, col, r),
+                    w2 = edge(ca, ra, cb, rb, col, r);
+                if (det > 0 ? (w0 < 0 || w1 < 0 || w2 < 0) : (w0 > 0 || w1 > 0 || w2 > 0))
+                    continue;
+                int ir = (int) r, ic = (int) col;
+                if (!mVal.isSet(ir, ic))
+                    continue;
+                double z = (w0 * za + w1 * zb + w2 * zc) / (double) det;
+                double err = Math.abs(mVal.get(ir, ic) - z);
+                if (err > maxErr) {
+                    maxErr = err;
+                    cand = ir * nCols + ic;
+                }
+            }
+        }
+
+        if (cand < 0)
+            mQueue.remove(t);
+        else
+            mQueue.update(t, maxErr, cand);
+    }
+
+    private static long edge(long px, long py, long qx, long qy, long x, long y) {
+        return (qx - px) * (y - py) - (qy - py) * (x - px);
+    }
+
+    // returns the x-coordinate where the line segment (p, q) crosses the 
+    // given y-coordinate or NaN, if there is no crossing.
+    private static double crossing(long px, long py, long qx, long qy, long y) 
+    {
+        if (y < Math.min(py, qy) || y > Math.max(py, qy))
+            return Double.NaN;
+        if (py == qy)
+            return y == py ? Math.min(px, qx) : Double.NaN;
+        return px + (double) ((y - py) * (qx - px)) / (double) (qy - py);
+    }
+
+    // Indexed binary max-heap holding the triangle slots with their maximal 
+    // errors and candidate lattice points.
+    private static class TriangleQueue 
+    {
+        private int[] mHeap; // heap position -> triangle slot
+        private int[] mPos; // triangle slot -> heap position (-1 if absent)
+        private double[] mKey;
+        private int[] mCand;
+        private int mSize = 0;
+
+        TriangleQueue(int nSlots) {
+            mHeap = new int[nSlots];
+            mPos = new int[nSlots];
+            mKey = new double[nSlots];
+            mCand = new int[nSlots];
+            Arrays.fill(mPos, -1);
+        }
+
+        private void grow(int nSlots) 
+        {
+            int n = mPos.length;
+            mHeap = Arrays.copyOf(mHeap, nSlots);
+            mPos = Arrays.copyOf(mPos, nSlots);
+            mKey = Arrays.copyOf(mKey, nSlots);
+            mCand = Arrays.copyOf(mCand, nSlots);
+            Arrays.fill(mPos, n, nSlots, -1);
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        double topKey() {
+            return mKey[mHeap[0]];
+        }
+
+        int topCandidate() {
+            return mCand[mHeap[0]];
+        }
+
+        void update(int t, double key, int cand) 
+        {
+            if (t >= mPos.length)
+                this.grow(Math.max(t + 1, 2 * mPos.length));
+            mCand[t] = cand;
+            int i = mPos[t];
+            if (i < 0) {
+                i = mSize++;
+                mHeap[i] = t;
+                mPos[t] = i;
+                mKey[t] = key;
+                this.up(i);
+                return;
+            }
+            double old = mKey[t];
+            mKey[t] = key;
+            if (key > old) 
+                this.up(i); 
+            else 
+                this.down(i);
+        }
+
+        void remove(int t) 
+        {
+            if (t >= mPos.length)
+                return;
+            int i = mPos[t];
+            if (i < 0)
+                return;
+            mPos[t] = -1;
+            mSize--;
+            if (i == mSize)
+                return;
+            int last = mHeap[mSize];
+            mHeap[i] = last;
+            mPos[last] = i;
+            this.up(i);
+            this.down(mPos[last]);
+        }
+
+        private void up(int i) 
+        {
+            int t = mHeap[i];
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (mKey[mHeap[parent]] >= mKey[t])
+                    break;
+                mHeap[i] = mHeap[parent];
+                mPos[mHeap[i]] = i;
+                i = parent;
+            }
+            mHeap[i] = t;
+            mPos[t] = i;
+        }
+
+        private void down(int i) 
+        {
+            int t = mHeap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= mSize)
+                    break;
+                if (child + 1 < mSize && mKey[mHeap[child + 1]] > mKey[mHeap[child]])
+                    child++;
+                if (mKey[mHeap[child]] <= mKey[t])
+                    break;
+                mHeap[i] = mHeap[child];
+                mPos[mHeap[i]] = i;
+                i = child;
+            }
+            mHeap[i] = t;
+            mPos[t] = i;
+        }
     }
 }
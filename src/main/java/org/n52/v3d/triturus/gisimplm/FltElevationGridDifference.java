@@ -75,14 +75,17 @@ public class FltElevationGridDifference extends T3dProcFilter
             ((GmSimple2dGridGeometry) grid1.getGeometry()).getDeltaX(),
             ((GmSimple2dGridGeometry) grid1.getGeometry()).getDeltaY());
       
+        int nCols = gridRes.numberOfColumns();
+        double[] 
+            row1 = new double[nCols], 
+            row2 = new double[nCols];
         for (int i = 0; i < gridRes.numberOfRows(); i++) {
-            for (int j = 0; j < gridRes.numberOfColumns(); j++) {
-                if (grid1.isSet(i, j) && grid2.isSet(i, j)) {
-                    gridRes.setValue(i, j, grid2.getValue(i, j) - grid1.getValue(i, j));
-                } else {
-                    gridRes.unset(i, j);
-                }
+            grid1.getRowValues(i, row1);
+            grid2.getRowValues(i, row2);
+            for (int j = 0; j < nCols; j++) {
+                row1[j] = row2[j] - row1[j]; // Note: unset elements remain NaN
             }
+            gridRes.setRowValues(i, row1);
         }
 
         String name = "Difference \"" + grid1.getName() + "\" - \"" + grid2.getName() + "\""; 
@@ -96,6 +96,7 @@ public class FltElevationGridFindExtremePoints extends T3dProcFilter
     private String logString = "";
 
     private GmSimpleElevationGrid g; 
+    private GmGridStorage gVal; 
     private List<VgAttrFeature> output;
     
     
@@ -136,6 +137,7 @@ public class FltElevationGridFindExtremePoints extends T3dProcFilter
         g = grid;
         if (g == null) 
             throw new T3dException("Received null pointer as input grid.");
+        gVal = g.getStorage();
         int 
             nCols = g.numberOfColumns(),
             nRows = g.numberOfRows();   
@@ -179,8 +181,8 @@ public class FltElevationGridFindExtremePoints extends T3dProcFilter
                         }
                         break;
                     case GLOBAL_EXTR:
-                        if (g.isSet(i, j)) {
-                            double z = g.getValue(i, j);
+                        if (gVal.isSet(i, j)) {
+                            double z = gVal.get(i, j);
                             if (globMin.size() == 0) {
                                 zMin = z;
                                 globMin.add(g.getPoint(i, j));
@@ -229,21 +231,18 @@ public class FltElevationGridFindExtremePoints extends T3dProcFilter
 
     private boolean isLocalExtremum(int i, int j, boolean minMode) 
     {
-        if (!g.isSet(i, j)) 
+        if (!gVal.isSet(i, j)) 
             return false;
         
-        double zExtr = g.getValue(i, j);
+        double zExtr = gVal.get(i, j);
         
         for (int ii = i - 1; ii <= i + 1; ii++) {
             for (int jj = j - 1; jj <= j + 1; jj++) {
                 if (ii == i && jj == j)
                     continue;
-                if (
-                    ii >= 0 && ii < g.numberOfRows() && 
-                    jj >= 0 && jj < g.numberOfColumns()) 
-                {
-                    if (g.isSet(ii, jj)) {
-                        double z = g.getValue(ii, jj);
+                if (gVal.isInside(ii, jj)) {
+                    if (gVal.isSet(ii, jj)) {
+                        double z = gVal.get(ii, jj);
                         if (minMode && z < zExtr) 
                             return false;
                         if ((!minMode) && z > zExtr) 
@@ -256,19 +255,16 @@ public class FltElevationGridFindExtremePoints extends T3dProcFilter
     }
 
     private int determineCategory(int i, int j, boolean minMode) {
-        double zExtr = g.getValue(i, j);
+        double zExtr = gVal.get(i, j);
         int size;
         for (size = 1; size < g.numberOfColumns() && size < g.numberOfColumns(); size++) {
             for (int ii = i - size; ii <= i + size; ii++) {
                 for (int jj = j - size; jj <= j + size; jj++) {
                     if (ii == i && jj == j)
                         continue;
-                    if (
-                        ii >= 0 && ii < g.numberOfRows() && 
-                        jj >= 0 && jj < g.numberOfColumns()) 
-                    {
-                        if (g.isSet(ii, jj)) {
-                            double z = g.getValue(ii, jj);
+                    if (gVal.isInside(ii, jj)) {
+                        if (gVal.isSet(ii, jj)) {
+                            double z = gVal.get(ii, jj);
                             if (minMode && z < zExtr) 
                                 return size - 1;
                             if ((!minMode) && z > zExtr) 
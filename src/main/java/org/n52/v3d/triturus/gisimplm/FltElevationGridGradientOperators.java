@@ -32,6 +32,13 @@
  */
 package org.n52.v3d.triturus.gisimplm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.core.T3dProcFilter;
 
@@ -45,6 +52,12 @@ import org.n52.v3d.triturus.core.T3dProcFilter;
  * By calling this class's <tt>transform()</tt>-method, an additional grid 
  * holding the specified values will be generated as output result. The 
  * resulting grid will refer to the same geometry as the input grid.<br/> 
+ <br/>
+ * To compute several parameters at once (e.g. slope, aspect and curvatures), 
+ * use <tt>transform(grid, modes)</tt>. Then, all result grids will be 
+ * generated in a single sweep over the input grid. The sweep will be 
+ * performed in parallel for horizontal bands of grid rows (see 
+ * <tt>this.setNumberOfThreads()</tt>).<br/>
  * <br/>
  * If possible, the computation will be performed using Horn's formula using
  * finite differences to estimate the gradients (Horn 1981, [1]). The formulas 
@@ -201,14 +214,8 @@ public class FltElevationGridGradientOperators extends T3dProcFilter
     
     private String logString = "";
 
-    private GmSimpleElevationGrid input; 
-    private double 
-        dX, dY,
-        dZdX, dZdY,
-        D, E, F, G, H;
-    private int dZdXDone, dZdYDone;
-    private boolean all9PointsAvailable = false;
     private boolean tryMore = false;
+    private int numberOfThreads = Runtime.getRuntime().availableProcessors();
 
     public FltElevationGridGradientOperators() {
         logString = this.getClass().getName();
@@ -234,6 +241,19 @@ public class FltElevationGridGradientOperators extends T3dProcFilter
         mode = analysisType;
     }
     
+    /**
+     * sets the number of threads used for the computation. By default, the 
+     * number of available processors will be used.
+     * 
+     * @param numberOfThreads Number of threads (&gt;= 1)
+     */
+    public void setNumberOfThreads(int numberOfThreads) 
+    {
+        if (numberOfThreads < 1)
+            throw new T3dException("Illegal number of threads.");
+        this.numberOfThreads = numberOfThreads;
+    }
+
     /** 
      * calculates specified gradient-related information for an elevation-grid.
      *
@@ -243,386 +263,399 @@ public class FltElevationGridGradientOperators extends T3dProcFilter
      */
     public GmSimpleFloatGrid transform(GmSimpleElevationGrid grid) 
         throws T3dException
+    {
+        return this.transform(grid, new AnalysisMode[] {mode})[0];
+    }
+
+    /** 
+     * calculates several gradient-related parameters for an elevation-grid
+     * in a single pass. For each given analysis mode, a result grid will be
+     * generated. 
+     *
+     * @param grid Input grid
+     * @param modes Analysis mode specifiers
+     * @return Result grids (in the order of the given analysis modes)
+     * @throws T3dException
+     */
+    public GmSimpleFloatGrid[] transform(GmSimpleElevationGrid grid, AnalysisMode... modes) 
+        throws T3dException
     {
         if (grid == null) 
             throw new T3dException("Received null pointer as input grid.");
-        input = grid;
-    
-        int 
-            nCols = input.numberOfColumns(),
-            nRows = input.numberOfRows();   
-        dX = input.getDeltaX();
-        dY = input.getDeltaY();
-    
-        GmSimpleFloatGrid output = new GmSimpleFloatGrid(
-             nCols, nRows,
-             ((GmSimple2dGridGeometry) input.getGeometry()).getOrigin(),
-             dX, dY);
-        output.setLatticeInterpretation(grid.isLatticeInterpretion());
+        if (modes == null || modes.length == 0) 
+            throw new T3dException("No analysis mode specified.");
 
-        String theme = "(unnamed data theme)";
+        final int 
+            nCols = grid.numberOfColumns(),
+            nRows = grid.numberOfRows();   
+        final double 
+            dX = grid.getDeltaX(),
+            dY = grid.getDeltaY();
+        final GmGridStorage inputVal = grid.getStorage();
+        final AnalysisMode[] m = modes.clone();
+
+        GmSimpleFloatGrid[] output = new GmSimpleFloatGrid[m.length];
+        final GmGridStorage[] outputVal = new GmGridStorage[m.length];
+        for (int k = 0; k < m.length; k++) {
+            output[k] = new GmSimpleFloatGrid(
+                nCols, nRows,
+                ((GmSimple2dGridGeometry) grid.getGeometry()).getOrigin(),
+                dX, dY);
+            output[k].setLatticeInterpretation(grid.isLatticeInterpretion());
+            String theme = this.theme(m[k]);
+            output[k].setName(theme); 
+            output[k].setTheme(theme);
+            outputVal[k] = output[k].getStorage();
+        }
+
+        ExecutorService executor = numberOfThreads <= 1 ? null : 
+            Executors.newFixedThreadPool(numberOfThreads);
+        int nBands = executor == null ? 1 : Math.min(nRows, 4 * numberOfThreads);
+        final int bandHeight = Math.max(1, (nRows + nBands - 1) / nBands);
+        nBands = (nRows + bandHeight - 1) / bandHeight;
+        try {
+            if (executor == null) 
+                this.computeBand(inputVal, 0, nRows, dX, dY, m, outputVal);
+            else {
+                List<Future<?>> tasks = new ArrayList<Future<?>>();
+                for (int b = 0; b < nBands; b++) {
+                    final int band = b;
+                    tasks.add(executor.submit(new Runnable() {
+                        public void run() {
+                            computeBand(inputVal, 
+                                band * bandHeight, Math.min(nRows, (band + 1) * bandHeight), 
+                                dX, dY, m, outputVal);
+                        }
+                    }));
+                }
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            throw new T3dException("Gradient computation has been interrupted.");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof T3dException)
+                throw (T3dException) e.getCause();
+            throw new T3dException("Gradient computation failed. " + e.getCause());
+        }
+        finally {
+            if (executor != null) 
+                executor.shutdown();
+        }
+
+        for (int k = 0; k < m.length; k++) {
+            output[k].setDataValBoundsInvalid();
+        }
+        return output;
+    }
+
+    private String theme(AnalysisMode mode) 
+    {
         switch (mode) {
             // Note: To ease VTK export, in the following usage of space 
             // characters in object names has been avoided. 
             case DZDX:
-                theme = "dZ/dX_gradients";
-                break;
+                return "dZ/dX_gradients";
             case DZDY:
-                theme = "dZ/dY_gradients"; 
-                break;                      
+                return "dZ/dY_gradients"; 
             case SLOPE: 
-                theme = "Slope"; 
-                break;
+                return "Slope"; 
             case SLOPE_PERCENT: 
-                theme = "Slope_[%]"; 
-                break;
+                return "Slope_[%]"; 
             case SLOPE_DEGR:
-                theme = "Slope_[degr]"; 
-                break;
+                return "Slope_[degr]"; 
             case ASPECT_RAD:
-                theme = "Aspect_[rad]"; 
-                break;
+                return "Aspect_[rad]"; 
             case ASPECT_GON:
-                theme = "Aspect_[gon]"; 
-                break;
+                return "Aspect_[gon]"; 
             case ASPECT_DEGR:
-                theme = "Aspect_[degr]"; 
-                break;
+                return "Aspect_[degr]"; 
             case ASPECT_CATEGORIES_4:
-                theme = "Aspect_[4+1_categories]"; 
-                break;
+                return "Aspect_[4+1_categories]"; 
             case ASPECT_CATEGORIES_8:
-                theme = "Aspect_[8+1_categories]"; 
-                break;
+                return "Aspect_[8+1_categories]"; 
             case TRY_INFO:
-                theme = "Try_info_code"; 
-                break;
+                return "Try_info_code"; 
             case PROFILE_CURVATURE: 
-                theme = "Profile_Curvature_[x100]"; 
-                break;
+                return "Profile_Curvature_[x100]"; 
             case PLAN_CURVATURE: 
-                theme = "Plan_Curvature_[x100]"; 
-                break;
+                return "Plan_Curvature_[x100]"; 
             default:
                 throw new T3dException("Received unknown mode directive.");
         }
-        output.setName(theme); 
-        output.setTheme(theme);
+    }
 
-        for (int i = 0; i < nRows; i++) {
-            for (int j = 0; j < nCols; j++) {
-                performCalculation(i, j);
+    // Computes the result values for the rows rowFrom .. rowTo - 1. A 3x3
+    // window slides over three row buffers; unset and out-of-bounds grid
+    // elements are held as NaN values. The buffers are padded by one column 
+    // on each side.
+    private void computeBand(
+        GmGridStorage inputVal, int rowFrom, int rowTo, double dX, double dY, 
+        AnalysisMode[] modes, GmGridStorage[] outputVal)
+    {
+        int 
+            nCols = inputVal.numberOfColumns(),
+            nRows = inputVal.numberOfRows();
+        double[] 
+            prev = new double[nCols + 2], 
+            curr = new double[nCols + 2], 
+            next = new double[nCols + 2],
+            buf = new double[nCols];
+        double[][] res = new double[modes.length][nCols];
+        Estimate est = new Estimate(dX, dY, tryMore);
 
-                output.unset(i, j); 
-                switch (mode) {
-                    case DZDX:
-                        if (dZdXDone > 0) 
-                            output.setValue(i, j, dZdX);
-                        break;
-                    case DZDY:
-                        if (dZdYDone > 0)  
-                            output.setValue(i, j, dZdY);
-                        break;                      
-                    case SLOPE:
-                        if (dZdXDone > 0 && dZdYDone > 0) 
-                            output.setValue(i, j, this.slope());
-                        break;
-                    case SLOPE_PERCENT:
-                        if (dZdXDone > 0 && dZdYDone > 0) 
-                            output.setValue(i, j, 100. * this.slope());
-                        break;
-                    case SLOPE_DEGR:
-                        if (dZdXDone > 0 && dZdYDone > 0) 
-                            output.setValue(i, j, Math.atan(this.slope()));
-                        break;
-                    case ASPECT_RAD:
-                        if (dZdXDone > 0 && dZdYDone > 0) 
-                            output.setValue(i, j, this.aspect() >= 0 ? this.aspect() : -1.);
-                            // -1. indicating plain areas
-                        break;
-                    case ASPECT_DEGR:
-                        if (dZdXDone > 0 && dZdYDone > 0) 
-                            output.setValue(i, j, this.aspect() >= 0 ? this.aspect() * 180./Math.PI : -1.);
-                            // -1. indicating plain areas
-                        break;
-                    case ASPECT_GON:
-                        if (dZdXDone > 0 && dZdYDone > 0) 
-                            output.setValue(i, j, this.aspect() >= 0 ? this.aspect() * 200./Math.PI : -1.);
-                        // -1. indicating plain areas
-                        break;                  
-                    case ASPECT_CATEGORIES_8:
-                        if (dZdXDone > 0 && dZdYDone > 0) { 
-                            double 
-                                val = this.aspect() * 200./Math.PI, 
-                                res = 0.;  
-                            if (val <= 0.) res = 0.; // 0. indicating plain areas
-                            if (val >= 0 && val < 25) res = 1.;
-                            if (val >= 25 && val < 75) res = 2.;
-                            if (val >= 75 && val < 125) res = 3.;
-                            if (val >= 125 && val < 175) res = 4.;
-                            if (val >= 175 && val < 225) res = 5.;
-                            if (val >= 225 && val < 275) res = 6.;
-                            if (val >= 275 && val < 325) res = 7.;
-                            if (val >= 325 && val < 375) res = 8.;
-                            if (val >= 375 && val <= 400) res = 1.;
-                            output.setValue(i, j, res);
-                        }
-                        break;          
-                    case ASPECT_CATEGORIES_4:
-                        if (dZdXDone > 0 && dZdYDone > 0) { 
-                            double 
-                                val = this.aspect() * 200./Math.PI, 
-                                res = 0.;  
-                            if (val <= 0.) res = 0.; // 0. indicating plain areas
-                            if (val >= 0 && val < 50) res = 1.;
-                            if (val >= 50 && val < 150) res = 2.;
-                            if (val >= 150 && val < 250) res = 3.;
-                            if (val >= 250 && val < 350) res = 4.;
-                            if (val >= 350 && val <= 400) res = 1.;
-                            output.setValue(i, j, res);
-                        }
-                        break;          
-                    case TRY_INFO: 
-                        output.setValue(i, j, dZdXDone * 10 + dZdYDone);
-                        break;
-                    case PROFILE_CURVATURE: 
-                        if (all9PointsAvailable && this.profileCurvature() != null) 
-                            output.setValue(i, j, 100. * this.profileCurvature());
-                        break;
-                    case PLAN_CURVATURE: 
-                        if (all9PointsAvailable && this.planCurvature() != null) 
-                            output.setValue(i, j, 100. * this.planCurvature());
-                        break;
-                    default:
-                        throw new T3dException("Received unknown mode directive.");
+        readRow(inputVal, rowFrom - 1, buf, prev);
+        readRow(inputVal, rowFrom, buf, curr);
+        for (int i = rowFrom; i < rowTo; i++) {
+            readRow(inputVal, i + 1, buf, next);
+
+            for (int j = 0; j < nCols; j++) {
+                // Window indices refer to the padded buffers:
+                est.compute(
+                    next[j], next[j + 1], next[j + 2],
+                    curr[j], curr[j + 1], curr[j + 2],
+                    prev[j], prev[j + 1], prev[j + 2]);
+                for (int k = 0; k < modes.length; k++) {
+                    res[k][j] = est.value(modes[k]);
                 }
             }
-        }
-
-        return output;
-    }
+            for (int k = 0; k < modes.length; k++) {
+                outputVal[k].setRow(i, res[k]);
+            }
 
-    private double slope() {
-        if (dZdXDone > 0 && dZdYDone > 0) 
-            return Math.sqrt(dZdX * dZdX + dZdY * dZdY);
-        else
-            throw new T3dException("Logical error");
-    }
-    
-    private double aspect() {
-        if (dZdXDone > 0 && dZdYDone > 0) {
-            if (dZdX == 0.) {
-                if (dZdY == 0.) {
-                    // Aspect is not defined, thus:
-                    return -1.;
-                } // else:
-                return dZdY > 0. ? Math.PI : 1.5 * Math.PI;
-            } 
-            // else:
-            double aspect = 1.5 * Math.PI - Math.atan2(dZdY, dZdX);
-            if (aspect > 2. * Math.PI) 
-                aspect -= 2. * Math.PI;
-            if (aspect < 0.) 
-                aspect += 2. * Math.PI;     
-            return aspect;
+            double[] h = prev; prev = curr; curr = next; next = h;
         }
-        else
-            throw new T3dException("Logical error");
-    }
-    
-    private Double profileCurvature() {
-        if (all9PointsAvailable) {
-            if (G*G + H*H != 0.)
-                return -2. * (D * G*G + E * H*H + F * G * H) / (G*G + H*H);
-            else 
-                return null; // TODO: Can we return a proper value in this case? 
-        } else
-            return null;
     }
 
-    private Double planCurvature() {
-        if (all9PointsAvailable) {
-            if (G*G + H*H != 0.) 
-                return 2. * (D * H*H + E * G*G + F * G * H) / (G*G + H*H);
-            else 
-                return null; // TODO: Can we return a proper value in this case?
-        } else
-            return null;
+    private static void readRow(GmGridStorage inputVal, int row, double[] buf, double[] padded) 
+    {
+        int nCols = buf.length;
+        padded[0] = Double.NaN;
+        padded[nCols + 1] = Double.NaN;
+        if (row < 0 || row >= inputVal.numberOfRows()) {
+            for (int j = 0; j < nCols; j++) 
+                padded[j + 1] = Double.NaN;
+            return;
+        }
+        inputVal.getRow(row, buf);
+        System.arraycopy(buf, 0, padded, 1, nCols);
     }
 
-    private void performCalculation(int i, int j) {
-        double[][] z = new double[3][3];
-        boolean[][] isSet = new boolean[3][3];
-        final int foc = 1;
-        
-        for (int ii = -1; ii <= +1; ii++) {
-            for (int jj = -1; jj <= +1; jj++) 
-            {
-                isSet[foc + ii][foc + jj] = false;
-                if (
-                    i + ii >= 0 && i + ii < input.numberOfRows() &&
-                    j + jj >= 0 && j + jj < input.numberOfColumns()
-                   )
-                {
-                    if (input.isSet(i + ii, j + jj)) {
-                        isSet[foc + ii][foc + jj] = true;
-                        
-                        z[foc + ii][foc + jj] = input.getValue(i + ii, j + jj);
-                    }
-                }
-                // else: Tried to access grid value out of bounds (grid's edge)
-            }
-        }
+    // Gradient estimation for a single focal cell. Each thread uses its own
+    // instance.
+    private static class Estimate
+    {
+        private double dX, dY, L2, L;
+        private boolean tryMore;
 
-        dZdXDone = 0;
-        dZdYDone = 0;
-        all9PointsAvailable = false;
-      
-        if (
-            isSet[foc + 1][foc - 1] && isSet[foc + 1][foc] && isSet[foc + 1][foc + 1] && 
-            isSet[foc][foc - 1] && isSet[foc][foc] && isSet[foc][foc + 1] &&
-            isSet[foc - 1][foc - 1] && isSet[foc - 1][foc] && isSet[foc - 1][foc + 1]
-           )
-        {
-            all9PointsAvailable = true;
+        private double
+            dZdX, dZdY,
+            D, E, F, G, H;
+        private int dZdXDone, dZdYDone;
+        private boolean all9PointsAvailable;
 
-            // Here, the second order derivative will be the curvature which 
-            // includes the planform and profile curvatures. The profile 
-            // curvature is parallel to the direction of the maximum slope and 
-            // the plan curvature is perpendicular to the direction of maximum 
-            // slope. A negative value indicates a convex form; a positive 
-            // value indicates a concave form. To compute these values for an
-            // elevation-grid, in the following the local 4th order polynomial 
-            // f(x, y) = A*x^2*y^2 + B*x^2*y + C*x*y^2 + D*x^2 + E*y^2 + F*x*y + G*x + H*y + I 
-            // with the 9 parameters A, B ... I will be fitted through all the 
-            // nine points of the 3x3 neighborhood of the focus point. 
-                
-            double 
-                z1 = z[foc + 1][foc - 1],
-                z2 = z[foc + 1][foc],
-                z3 = z[foc + 1][foc + 1],
-                z4 = z[foc][foc - 1],
-                z5 = z[foc][foc],
-                z6 = z[foc][foc + 1],
-                z7 = z[foc - 1][foc - 1],
-                z8 = z[foc - 1][foc],
-                z9 = z[foc - 1][foc + 1];
-           double
-                h5 = z5,
-                h2_8 = (z2 - z8) / 2.,
-                h46 = (z4 + z6) / 2.,
-                h28 = (z2 + z8) / 2.,
-                h_137_9 = (-z1 + z3 + z7 - z9) / 4.,
-                h_46 = (-z4 + z6) / 2.;
-            double
-                L = Math.sqrt(dX*dX + dY*dY) / Math.sqrt(2.),
-                L2 = L * L;
+        Estimate(double dX, double dY, boolean tryMore) {
+            this.dX = dX;
+            this.dY = dY;
+            this.tryMore = tryMore;
+            L = Math.sqrt(dX*dX + dY*dY) / Math.sqrt(2.);
+            L2 = L * L;
             // Todo warnung falls dx != dy oder stark unterschiedl.
-            
-            D = (h46 - h5) / L2;
-            E = (h28 - h5) / L2;
-            F = h_137_9 / L2;
-            G = h_46 / L;
-            H = h2_8 / L;
         }
-            
-        if (
-            isSet[foc + 1][foc + 1] && isSet[foc + 1][foc - 1] && 
-            isSet[foc][foc + 1] && isSet[foc][foc - 1] &&
-            isSet[foc - 1][foc + 1] && isSet[foc - 1][foc - 1]
-           ) 
+
+        // The nine elevations z1 ... z9 refer to the 3x3 neighborhood of the
+        // focal cell z5, where z1, z2, z3 are located in the next row (i + 1)
+        // and z7, z8, z9 in the previous row (i - 1). Unset values are NaN.
+        void compute(
+            double z1, double z2, double z3, 
+            double z4, double z5, double z6, 
+            double z7, double z8, double z9) 
         {
-            // 1st try: Formula given by Horn (1981) 
-            // to estimate "west to east" gradient:
-            dZdX = (
-                z[foc + 1][foc + 1] - z[foc + 1][foc - 1] +
-                2. * (z[foc][foc + 1] - z[foc][foc - 1]) +
-                z[foc - 1][foc + 1] - z[foc - 1][foc - 1]
-                   ) / (8. * dX);
-            dZdXDone = 1;
-        }
+            boolean 
+                s1 = z1 == z1, s2 = z2 == z2, s3 = z3 == z3, // i.e., !Double.isNaN(zi)
+                s4 = z4 == z4, s5 = z5 == z5, s6 = z6 == z6, 
+                s7 = z7 == z7, s8 = z8 == z8, s9 = z9 == z9;
+
+            dZdXDone = 0;
+            dZdYDone = 0;
+            all9PointsAvailable = s1 && s2 && s3 && s4 && s5 && s6 && s7 && s8 && s9;
 
-        if (tryMore) {
-            if (dZdXDone <= 0) {
-                // 2nd try: Use simpler finite difference
+            if (all9PointsAvailable) {
+                // Here, the second order derivative will be the curvature which 
+                // includes the planform and profile curvatures. The profile 
+                // curvature is parallel to the direction of the maximum slope and 
+                // the plan curvature is perpendicular to the direction of maximum 
+                // slope. A negative value indicates a convex form; a positive 
+                // value indicates a concave form. To compute these values for an
+                // elevation-grid, in the following the local 4th order polynomial 
+                // f(x, y) = A*x^2*y^2 + B*x^2*y + C*x*y^2 + D*x^2 + E*y^2 + F*x*y + G*x + H*y + I 
+                // with the 9 parameters A, B ... I will be fitted through all the 
+                // nine points of the 3x3 neighborhood of the focus point. 
+                double
+                    h5 = z5,
+                    h2_8 = (z2 - z8) / 2.,
+                    h46 = (z4 + z6) / 2.,
+                    h28 = (z2 + z8) / 2.,
+                    h_137_9 = (-z1 + z3 + z7 - z9) / 4.,
+                    h_46 = (-z4 + z6) / 2.;
+                D = (h46 - h5) / L2;
+                E = (h28 - h5) / L2;
+                F = h_137_9 / L2;
+                G = h_46 / L;
+                H = h2_8 / L;
+            }
+
+            if (s1 && s3 && s4 && s6 && s7 && s9) {
+                // 1st try: Formula given by Horn (1981) 
                 // to estimate "west to east" gradient:
-                if (isSet[foc][foc + 1] && isSet[foc][foc - 1]) 
-                {
-                    dZdX = (z[foc][foc + 1] - z[foc][foc - 1]) / dX;
+                dZdX = (z3 - z1 + 2. * (z6 - z4) + z9 - z7) / (8. * dX);
+                dZdXDone = 1;
+            }
+            else if (tryMore) {
+                if (s6 && s4) {
+                    // 2nd try: Use simpler finite difference
+                    // to estimate "west to east" gradient:
+                    dZdX = (z6 - z4) / (2. * dX);
                     dZdXDone = 2;   
                 }
-            }
-    
-            if (dZdXDone <= 0) {
-                // 3rd try:
-                if (isSet[foc][foc + 1] && isSet[foc][foc]) 
-                {
-                    dZdX = (z[foc][foc + 1] - z[foc][foc]) / dX;
+                else if (s6 && s5) {
+                    // 3rd try:
+                    dZdX = (z6 - z5) / dX;
                     dZdXDone = 3;   
                 }
-            }
-            
-            if (dZdXDone <= 0) {
-                // 4th try:
-                if (isSet[foc][foc] && isSet[foc][foc - 1]) 
-                {
-                    dZdX = (z[foc][foc] - z[foc][foc - 1]) / dX;
+                else if (s5 && s4) {
+                    // 4th try:
+                    dZdX = (z5 - z4) / dX;
                     dZdXDone = 4;   
                 }
             }
-        }
-        
-        if (
-            isSet[foc + 1][foc - 1] && isSet[foc - 1][foc - 1] && 
-            isSet[foc + 1][foc] && isSet[foc - 1][foc] &&
-            isSet[foc + 1][foc + 1] && isSet[foc - 1][foc + 1]
-           ) 
-        {
-            // 1st try: Formula given by Horn (1981) 
-            // to estimate "south to north" gradient:
-            dZdY = (
-                z[foc + 1][foc - 1] - z[foc - 1][foc - 1] +
-                2. * (z[foc + 1][foc] - z[foc - 1][foc]) +
-                z[foc + 1][foc + 1] - z[foc - 1][foc + 1]
-                   ) / (8. * dY);
-            dZdYDone = 1;
-        }
 
-        if (tryMore) {
-            if (dZdYDone <= 0) {
-                // 2nd try: Use simpler finite difference
+            if (s1 && s7 && s2 && s8 && s3 && s9) {
+                // 1st try: Formula given by Horn (1981) 
                 // to estimate "south to north" gradient:
-                if (
-                    isSet[foc + 1][foc] && isSet[foc - 1][foc] 
-                   ) 
-                {
-                    dZdX = (z[foc + 1][foc] - z[foc - 1][foc]) / dY;
+                dZdY = (z1 - z7 + 2. * (z2 - z8) + z3 - z9) / (8. * dY);
+                dZdYDone = 1;
+            }
+            else if (tryMore) {
+                if (s2 && s8) {
+                    // 2nd try: Use simpler finite difference
+                    // to estimate "south to north" gradient:
+                    dZdY = (z2 - z8) / (2. * dY);
                     dZdYDone = 2;   
                 }
-            }
-    
-            if (dZdYDone <= 0) {
-                // 3rd try:
-                if (
-                    isSet[foc + 1][foc] && isSet[foc][foc] 
-                   ) 
-                {
-                    dZdX = (z[foc + 1][foc] - z[foc][foc]) / dY;
+                else if (s2 && s5) {
+                    // 3rd try:
+                    dZdY = (z2 - z5) / dY;
                     dZdYDone = 3;   
                 }
-            }
-    
-            if (dZdYDone <= 0) {
-                // 4th try:
-                if (
-                    isSet[foc][foc] && isSet[foc - 1][foc] 
-                   ) 
-                {
-                    dZdX = (z[foc][foc] - z[foc - 1][foc]) / dY;
+                else if (s5 && s8) {
+                    // 4th try:
+                    dZdY = (z5 - z8) / dY;
                     dZdYDone = 4;   
                 }
             }
         }
+
+        // returns the result value for the given analysis mode or NaN, if no 
+        // value could be computed.
+        double value(AnalysisMode mode) 
+        {
+            boolean gradient = dZdXDone > 0 && dZdYDone > 0;
+            switch (mode) {
+                case DZDX:
+                    return dZdXDone > 0 ? dZdX : Double.NaN;
+                case DZDY:
+                    return dZdYDone > 0 ? dZdY : Double.NaN;
+                case SLOPE:
+                    return gradient ? this.slope() : Double.NaN;
+                case SLOPE_PERCENT:
+                    return gradient ? 100. * this.slope() : Double.NaN;
+                case SLOPE_DEGR:
+                    return gradient ? Math.atan(this.slope()) * 180./Math.PI : Double.NaN;
+                case ASPECT_RAD: 
+                case ASPECT_DEGR: 
+                case ASPECT_GON: {
+                    if (!gradient)
+                        return Double.NaN;
+                    double aspect = this.aspect();
+                    if (aspect < 0.)
+                        return -1.; // -1. indicating plain areas
+                    if (mode == AnalysisMode.ASPECT_DEGR)
+                        return aspect * 180./Math.PI;
+                    if (mode == AnalysisMode.ASPECT_GON)
+                        return aspect * 200./Math.PI;
+                    return aspect;
+                }
+                case ASPECT_CATEGORIES_8: {
+                    if (!gradient)
+                        return Double.NaN;
+                    double 
+                        val = this.aspect() * 200./Math.PI, 
+                        res = 0.;  
+                    if (val <= 0.) res = 0.; // 0. indicating plain areas
+                    if (val >= 0 && val < 25) res = 1.;
+                    if (val >= 25 && val < 75) res = 2.;
+                    if (val >= 75 && val < 125) res = 3.;
+                    if (val >= 125 && val < 175) res = 4.;
+                    if (val >= 175 && val < 225) res = 5.;
+                    if (val >= 225 && val < 275) res = 6.;
+                    if (val >= 275 && val < 325) res = 7.;
+                    if (val >= 325 && val < 375) res = 8.;
+                    if (val >= 375 && val <= 400) res = 1.;
+                    return res;
+                }
+                case ASPECT_CATEGORIES_4: {
+                    if (!gradient)
+                        return Double.NaN;
+                    double 
+                        val = this.aspect() * 200./Math.PI, 
+                        res = 0.;  
+                    if (val <= 0.) res = 0.; // 0. indicating plain areas
+                    if (val >= 0 && val < 50) res = 1.;
+                    if (val >= 50 && val < 150) res = 2.;
+                    if (val >= 150 && val < 250) res = 3.;
+                    if (val >= 250 && val < 350) res = 4.;
+                    if (val >= 350 && val <= 400) res = 1.;
+                    return res;
+                }
+                case TRY_INFO: 
+                    return dZdXDone * 10 + dZdYDone;
+                case PROFILE_CURVATURE: 
+                    if (all9PointsAvailable && G*G + H*H != 0.) 
+                        return 100. * -2. * (D * G*G + E * H*H + F * G * H) / (G*G + H*H);
+                    return Double.NaN; // TODO: Can we return a proper value for G = H = 0? 
+                case PLAN_CURVATURE: 
+                    if (all9PointsAvailable && G*G + H*H != 0.) 
+                        return 100. * 2. * (D * H*H + E * G*G + F * G * H) / (G*G + H*H);
+                    return Double.NaN; // TODO: Can we return a proper value for G = H = 0? 
+                default:
+                    throw new T3dException("Received unknown mode directive.");
+            }
+        }
+
+        private double slope() {
+            return Math.sqrt(dZdX * dZdX + dZdY * dZdY);
+        }
+    
+        private double aspect() {
+            if (dZdX == 0.) {
+                if (dZdY == 0.) {
+                    // Aspect is not defined, thus:
+                    return -1.;
+                } // else:
+                return dZdY > 0. ? Math.PI : 1.5 * Math.PI;
+            } 
+            // else:
+            double aspect = 1.5 * Math.PI - Math.atan2(dZdY, dZdX);
+            if (aspect > 2. * Math.PI) 
+                aspect -= 2. * Math.PI;
+            if (aspect < 0.) 
+                aspect += 2. * Math.PI;     
+            return aspect;
+        }
     }
 
     public void setTryMore(boolean tryMore) {
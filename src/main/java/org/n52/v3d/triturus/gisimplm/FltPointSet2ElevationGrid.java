@@ -36,7 +36,13 @@ import org.n52.v3d.triturus.core.T3dProcFilter;
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.vgis.VgPoint;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /** 
  * Filter class to construct a grid model (&quot;gridding&quot;) from a 
@@ -66,6 +72,14 @@ import java.util.List;
  *     <td>Franke/Little-Weighting</td>
  *   </tr>
  * </table>
+ * <br/>
+ * The computation will be performed in parallel. For this purpose, the 
+ * target grid will be subdivided into bands of grid rows, each of them 
+ * processed by its own worker thread. The input points will be assigned to 
+ * those bands that are touched by their search circles, keeping the input 
+ * order. Since every grid element's weighted sum will be accumulated in the 
+ * same order as for sequential processing, the results do not depend on the 
+ * number of threads used.
  * 
  * @author Benno Schmidt
  */
@@ -109,6 +123,11 @@ public class FltPointSet2ElevationGrid extends T3dProcFilter
     private double mSumZ[];
     private double mSumN[];
 
+    private int mNumberOfThreads = Runtime.getRuntime().availableProcessors();
+
+    // Maximum number of points that will be processed in one parallel step:
+    private final static int cBatchSize = 1 << 18;
+
     
     /**
      * Constructor. Target geometry and search radius have to be given as input 
@@ -159,6 +178,20 @@ public class FltPointSet2ElevationGrid extends T3dProcFilter
         mInvDistExp = exp;
     }
 
+    /**
+     * sets the number of worker threads used to perform the gridding. By 
+     * default, the number of available processors will be used. Note that 
+     * the result grid does not depend on this setting.
+     * 
+     * @param numberOfThreads Number of threads (&gt;= 1)
+     */
+    public void setNumberOfThreads(int numberOfThreads) 
+    {
+        if (numberOfThreads < 1)
+            throw new T3dException("Illegal number of threads.");
+        mNumberOfThreads = numberOfThreads;
+    }
+
     /**
      * sets the target grid's geometry.
      * 
@@ -231,6 +264,47 @@ public class FltPointSet2ElevationGrid extends T3dProcFilter
      * @throws T3dException
      */
     public GmSimpleElevationGrid transform(List<VgPoint> pointSet) throws T3dException
+    {       
+        return this.transform(pointSet.iterator());
+    }
+
+    /** 
+     * performs the grid calculation for the points delivered by an iterator. 
+     * The points will be processed batch-wise, i.e. the memory needed does 
+     * not depend on the number of points.
+     * 
+     * @param points Iterator providing <tt>VgPoint</tt>-objects
+     * @throws T3dException
+     */
+    public GmSimpleElevationGrid transform(final Iterator<VgPoint> points) throws T3dException
+    {       
+        return this.transform(new IoPointBatchSource() {
+            public int nextBatch(double[] x, double[] y, double[] z) {
+                int n = 0;
+                while (n < x.length && points.hasNext()) {
+                    VgPoint pnt = points.next();
+                    x[n] = pnt.getX();
+                    y[n] = pnt.getY();
+                    z[n] = pnt.getZ();
+                    n++;
+                }
+                return (n == 0 && !points.hasNext()) ? -1 : n;
+            }
+        });
+    }
+
+    /** 
+     * performs the grid calculation for the points delivered by a batch 
+     * source, e.g. an {@link IoPointChannelSource}. The points will be 
+     * accumulated into the target grid batch by batch; beyond the target 
+     * grid, only constant memory is needed. Thus, point sets that do not fit 
+     * into the heap can be processed. The result will be the same as for 
+     * {@link #transform(List)}, given the same points in the same order.
+     * 
+     * @param source Point source
+     * @throws T3dException
+     */
+    public GmSimpleElevationGrid transform(IoPointBatchSource source) throws T3dException
     {       
         if (mGrid == null) {
             throw new T3dException("Destination grid geometry is missing.");
@@ -258,7 +332,7 @@ public class FltPointSet2ElevationGrid extends T3dProcFilter
         }
 
         try {
-            this.processPoints(pointSet);
+            this.processPoints(source);
             this.putToElevationGrid();
         }
         catch (T3dException e) {
@@ -268,18 +342,128 @@ public class FltPointSet2ElevationGrid extends T3dProcFilter
         return mGrid;
     }
 
-    // Computation of the distance of the position (is, js) (referring to 
-    // grid coordinates) from the grid's point (i,j):
-    private double iDistance(int i, int j, double is, double js)
+    // Processing of all points delivered by the given source and assignment 
+    // of values to mSumZ[] and mSumN[]:
+    private void processPoints(IoPointBatchSource source) throws T3dException
     {
-        double k1 = Math.abs(is - (double)i) * mDX;
-        double k2 = Math.abs(js - (double)j) * mDY;
-        return Math.sqrt(k1 * k1 + k2 * k2);
+        double[] 
+            x = new double[cBatchSize], 
+            y = new double[cBatchSize], 
+            z = new double[cBatchSize];
+
+        ExecutorService executor = this.startExecutor();
+        try {
+            int ct = source.nextBatch(x, y, z);
+            while (ct >= 0) {
+                if (ct > 0)
+                    this.processBatch(x, y, z, ct, executor);
+                ct = source.nextBatch(x, y, z);
+            }
+        }
+        finally {
+            if (executor != null) 
+                executor.shutdown();
+        }
     }
 
-    // Processing of all points of the given point-list and assignment of 
-    // values to mSumZ[] and mSumN[]:
-    private void processPoints(List<VgPoint> pointSet)
+    private ExecutorService startExecutor() {
+        if (mNumberOfThreads <= 1) 
+            return null;
+        return Executors.newFixedThreadPool(mNumberOfThreads);
+    }
+
+    // Processing of a batch of points given by coordinate arrays. The grid 
+    // rows will be subdivided into bands; for each band, the indices of 
+    // those points with search circles touching the band will be collected 
+    // (keeping the input order). Then, the bands will be processed in 
+    // parallel. Note that every grid element is owned by exactly one band.
+    private void processBatch(
+        final double[] x, final double[] y, final double[] z, int n, 
+        ExecutorService executor) 
+        throws T3dException
+    {
+        final int radIdxY = (int)(Math.floor(mRadius / mDY)) + 1;
+        final double factorY = ((double) mNY - 1.) / (mYMax - mYMin);
+
+        int nBands = executor == null ? 1 : Math.min(mNY, 4 * mNumberOfThreads);
+        final int bandHeight = (mNY + nBands - 1) / nBands;
+        nBands = (mNY + bandHeight - 1) / bandHeight;
+
+        // 1st pass: Count points per band
+        int[] start = new int[nBands + 1];
+        for (int k = 0; k < n; k++) {
+            int fl = (int) Math.floor(factorY * (y[k] - mYMin));
+            int bMin = this.band(fl - radIdxY - 1, bandHeight, nBands);
+            int bMax = this.band(fl + radIdxY + 1, bandHeight, nBands);
+            for (int b = bMin; b <= bMax; b++) {
+                start[b + 1]++;
+            }
+        }
+        for (int b = 0; b < nBands; b++) {
+            start[b + 1] += start[b];
+        }
+
+        // 2nd pass: Collect point indices per band (CSR layout)
+        final int[] idx = new int[start[nBands]];
+        int[] pos = new int[nBands];
+        System.arraycopy(start, 0, pos, 0, nBands);
+        for (int k = 0; k < n; k++) {
+            int fl = (int) Math.floor(factorY * (y[k] - mYMin));
+            int bMin = this.band(fl - radIdxY - 1, bandHeight, nBands);
+            int bMax = this.band(fl + radIdxY + 1, bandHeight, nBands);
+            for (int b = bMin; b <= bMax; b++) {
+                idx[pos[b]++] = k;
+            }
+        }
+
+        if (executor == null) {
+            this.processBand(x, y, z, idx, 0, idx.length, 0, mNY - 1);
+            return;
+        }
+
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+        for (int b = 0; b < nBands; b++) {
+            final int 
+                from = start[b], to = start[b + 1], 
+                rowMin = b * bandHeight, 
+                rowMax = Math.min(mNY, (b + 1) * bandHeight) - 1;
+            if (from == to) 
+                continue;
+            tasks.add(executor.submit(new Runnable() {
+                public void run() {
+                    processBand(x, y, z, idx, from, to, rowMin, rowMax);
+                }
+            }));
+        }
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+        catch (InterruptedException e) {
+            throw new T3dException("Gridding has been interrupted.");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof T3dException)
+                throw (T3dException) e.getCause();
+            throw new T3dException("Gridding failed. " + e.getCause());
+        }
+    }
+
+    // Returns the band holding the grid row i (clipped to the grid):
+    private int band(int i, int bandHeight, int nBands) {
+        if (i < 0) return 0;
+        int b = i / bandHeight;
+        return b < nBands ? b : nBands - 1;
+    }
+
+    // Assignment of values to mSumZ[] and mSumN[] for the points 
+    // idx[from] ... idx[to - 1], considering the grid rows rowMin ... rowMax 
+    // only:
+    private void processBand(
+        double[] x, double[] y, double[] z, 
+        int[] idx, int from, int to, 
+        int rowMin, int rowMax)
     {
         // Search radius referring to matrix coordinates:
         int radIdxX = (int)(Math.floor(mRadius / mDX)) + 1;
@@ -288,106 +472,117 @@ public class FltPointSet2ElevationGrid extends T3dProcFilter
         // Helpers:
         double factorX = ((double) mNX - 1.) / (mXMax - mXMin);
         double factorY = ((double) mNY - 1.) / (mYMax - mYMin);
+        double rInvDistMin = Math.pow(cMaxWeight, -1. / (double)mInvDistExp);
+        double rFrankeLittle = Math.sqrt(cMaxWeight) * mRadius;
+        // Squared search radius enlarged by a small tolerance; elements 
+        // beyond this distance can be skipped without computing sqrt():
+        double rad2 = mRadius * mRadius * (1. + 1.e-9);
 
         int ii, jj, index;
-        double x, y, z;
-        double is, js;
+        double zk, is, js, dy2, r2;
         double r, weight = 0.;
-        VgPoint pnt;
 
-        for (int i = 0; i < pointSet.size(); i++) // for all points in the list
+        for (int k = from; k < to; k++) // for all points assigned to the band
         {
-            pnt = ((VgPoint) pointSet.get(i));
-            x = pnt.getX();
-            y = pnt.getY();
-            z = pnt.getZ();
+            int pt = idx[k];
+            zk = z[pt];
       
             // (real) grid-indices:
-            js = factorX * (x - mXMin);
-            is = factorY * (y - mYMin);
+            js = factorX * (x[pt] - mXMin);
+            is = factorY * (y[pt] - mYMin);
+
+            int 
+                iMin = Math.max(rowMin, ((int)Math.floor(is)) - radIdxY - 1), // -1 just to be sure
+                iMax = Math.min(rowMax, ((int)Math.floor(is)) + radIdxY + 1),
+                jMin = Math.max(0, ((int)Math.floor(js)) - radIdxX - 1),
+                jMax = Math.min(mNX - 1, ((int)Math.floor(js)) + radIdxX + 1);
 
-            for (jj = (((int)Math.floor(js)) - radIdxX - 1);  // -1 just to be sure
-                 jj <= ((int)Math.floor(js)) + radIdxX + 1;
-                 jj++)
+            for (ii = iMin; ii <= iMax; ii++)
             {
-                for (ii = (((int)Math.floor(is)) - radIdxY - 1); 
-                     ii <= ((int)Math.floor(is)) + radIdxY + 1; 
-                     ii++)
+                double k2 = Math.abs(is - (double)ii) * mDY;
+                dy2 = k2 * k2;
+                if (dy2 > rad2)
+                    continue;
+
+                for (jj = jMin; jj <= jMax; jj++)
                 {
-                    if (jj >= 0 && jj <= mNX - 1 && ii >= 0 && ii <= mNY - 1) 
-                    {
-                        r = iDistance(jj, ii, js, is);
+                    double k1 = Math.abs(js - (double)jj) * mDX;
+                    r2 = k1 * k1 + dy2;
+                    if (r2 > rad2)
+                        continue;
+                    r = Math.sqrt(r2);
 
-                        if (r <= mRadius)
+                    if (r <= mRadius)
+                    {
+                        index = ii * mNX + jj;
+              
+                        switch (mWeightFnc) 
                         {
-                            index = jj * mNY + ii;
-                  
-                            switch (mWeightFnc) 
-                            {
-                                case cTriangleFnc:
-                                    weight = 1. - r / mRadius;
-                                    break;
-                    
-                                case cInverseDist:
-                                    if (r > Math.pow(cMaxWeight, -1. / (double)mInvDistExp))
-                                        weight = 1. / Math.pow(r, (double)mInvDistExp);
-                                    else
-                                        weight = cMaxWeight;
-                                    break;
-
-                                case cFrankeLittle:
-                                    if (mRadius - r <= Math.sqrt(cMaxWeight) * mRadius * r) {
-                                        weight = (mRadius - r) / (mRadius * r);
-                                        weight = weight * weight;
-                                    } else
-                                        weight = cMaxWeight;                        
-                                    break;
-                     
-                                case cNearestNeighbor:        
-                                    if (mSumN[index] < 0. || (mSumN[index] >= 0. && r < mSumN[index])) {
-                                        mSumZ[index] = z;
-                                        mSumN[index] = r;
-                                    }
-                                    break;
-   
-                                default: throw new T3dException("Unexpected error.");
-                            }
+                            case cTriangleFnc:
+                                weight = 1. - r / mRadius;
+                                break;
+                
+                            case cInverseDist:
+                                if (r > rInvDistMin)
+                                    weight = 1. / Math.pow(r, (double)mInvDistExp);
+                                else
+                                    weight = cMaxWeight;
+                                break;
+
+                            case cFrankeLittle:
+                                if (mRadius - r <= rFrankeLittle * r) {
+                                    weight = (mRadius - r) / (mRadius * r);
+                                    weight = weight * weight;
+                                } else
+                                    weight = cMaxWeight;                        
+                                break;
+                 
+                            case cNearestNeighbor:        
+                                if (mSumN[index] < 0. || (mSumN[index] >= 0. && r < mSumN[index])) {
+                                    mSumZ[index] = zk;
+                                    mSumN[index] = r;
+                                }
+                                break;
+
+                            default: throw new T3dException("Unexpected error.");
+                        }
 
-                            if (mWeightFnc != cNearestNeighbor) {
-                                mSumZ[index] += weight * z;
-                                mSumN[index] += weight;
-                            }
+                        if (mWeightFnc != cNearestNeighbor) {
+                            mSumZ[index] += weight * zk;
+                            mSumN[index] += weight;
                         }
                     }
-                } // for ii (rows)
-            } // for jj (columns)
-        } // for i (all points)
-    } // processPoints()
+                } // for jj (columns)
+            } // for ii (rows)
+        } // for k (all points)
+    } // processBand()
 
     // Assignment of values to the target grid:
     private void putToElevationGrid() 
     {
         int index;
+        double[] row = new double[mNX];
 
-        for (int j = 0; j < mNX; j++) {
-            for (int i = 0; i < mNY; i++) {
-                index = j * mNY + i;
+        for (int i = 0; i < mNY; i++) {
+            for (int j = 0; j < mNX; j++) {
+                index = i * mNX + j;
                 
                 if (mWeightFnc != cNearestNeighbor) {
                     if (mSumN[index] == 0.) {
-                        ; // point will remain without value
+                        row[j] = Double.NaN; // point will remain without value
                     } else {
-                        mGrid.setValue(i, j, mSumZ[index] / mSumN[index]);
+                        row[j] = mSumZ[index] / mSumN[index];
                     }
                 }
                 else {
                     if (mSumN[index] < 0.) {
-                        ; // point will remain without value
+                        row[j] = Double.NaN; // point will remain without value
                     } else {
-                        mGrid.setValue(i, j, mSumZ[index]);
+                        row[j] = mSumZ[index];
                     }
                 }
             }
+            mGrid.setRowValues(i, row);
         }
     } // putToElevationGrid()
 
@@ -35,11 +35,13 @@ package org.n52.v3d.triturus.gisimplm;
 import org.n52.v3d.triturus.core.T3dProcFilter;
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.core.T3dNotYetImplException;
+import org.n52.v3d.triturus.t3dutil.BowyerWatsonDelaunay;
+import org.n52.v3d.triturus.t3dutil.ParallelDelaunay;
 import org.n52.v3d.triturus.t3dutil.SimpleDelaunay;
 import org.n52.v3d.triturus.vgis.VgPoint;
-import org.n52.v3d.triturus.vgis.VgTIN;
-import org.n52.v3d.triturus.xtin.XTIN;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /** 
@@ -57,8 +59,25 @@ public class FltPointSet2TIN extends T3dProcFilter
      */
     public final static short cSimpleDelaunay = 1;
 
+    /**
+     * Identifier for the incremental Bowyer-Watson Delaunay method. This 
+     * implementation uses a randomized, spatially sorted insertion order and 
+     * walking point location, resulting in O(n log n) expected runtime.
+     */
+    public final static short cBowyerWatsonDelaunay = 2;
+
+    /**
+     * Identifier for the parallel strip-based Delaunay method. The point set
+     * will be split into strips that will be triangulated concurrently and 
+     * merged afterwards. For points in general position, the resulting 
+     * topology is identical to the <tt>cBowyerWatsonDelaunay</tt> result.
+     */
+    public final static short cParallelDelaunay = 3;
+
     private short mAlgorithm = 1; // simple Delaunay as default
 
+    private int mNumberOfThreads = Runtime.getRuntime().availableProcessors();
+
     /**
      * Constructor.
      */
@@ -67,6 +86,19 @@ public class FltPointSet2TIN extends T3dProcFilter
         mAlgorithm = pAlgorithm;        
     }
 
+    /**
+     * sets the number of threads used by the <tt>cParallelDelaunay</tt> 
+     * method. By default, the number of available processors will be used.
+     * 
+     * @param numberOfThreads Number of threads (&gt;= 1)
+     */
+    public void setNumberOfThreads(int numberOfThreads) 
+    {
+        if (numberOfThreads < 1)
+            throw new T3dException("Illegal number of threads.");
+        mNumberOfThreads = numberOfThreads;
+    }
+
     public String log() {
         return mLogString;
     }
@@ -78,29 +110,95 @@ public class FltPointSet2TIN extends T3dProcFilter
      */
     public GmSimpleTINFeature transform(List<VgPoint> points) throws T3dException
     {
-    	VgTIN tin = null;
-    	
+    	int[] res;
     	switch (mAlgorithm) {
     		case cSimpleDelaunay:
-    	        int[] res = SimpleDelaunay.triangulate(points);
-    	        tin = new XTIN();
-    	        for (int i = 0; i < points.size(); i++) {
-    	        	((XTIN) tin).addLocation(i, points.get(i));
-    	        }
-    	        for (int i = 0; i < res.length / 3; i++) {
-    	        	((XTIN) tin).addTriangle(res[3*i], res[3*i+1], res[3*i+2]);
-    	        }
+    	        res = SimpleDelaunay.triangulate(points);
+    			break;
+    		case cBowyerWatsonDelaunay:
+    	        res = BowyerWatsonDelaunay.triangulate(points);
+    			break;
+    		case cParallelDelaunay:
+    			ParallelDelaunay pd = new ParallelDelaunay();
+    			pd.setNumberOfThreads(mNumberOfThreads);
+    	        res = pd.triangulate(points);
     			break;
     		default:
     	    	throw new T3dNotYetImplException();
     	}
     	
-    	if (tin instanceof XTIN)
-    		return ((XTIN) tin).asSimpleTINFeature();
-    	else {
-    		GmSimpleTINFeature f = new GmSimpleTINFeature();
-    		f.setGeometry(tin);
-    		return f;
+    	int n = points.size();
+    	double[] xyz = new double[3 * n];
+    	for (int i = 0, k = 0; i < n; i++) {
+    		VgPoint p = points.get(i);
+    		xyz[k++] = p.getX();
+    		xyz[k++] = p.getY();
+    		xyz[k++] = p.getZ();
     	}
+    	GmSimpleTINGeometry geom = new GmSimpleTINGeometry(xyz, res);
+    	if (n > 0)
+    		geom.setSRS(points.get(0).getSRS());
+
+    	GmSimpleTINFeature f = new GmSimpleTINFeature();
+    	f.setGeometry(geom);
+    	return f;
    }
+
+    /** 
+     * triangulates the points delivered by a batch source, e.g. an 
+     * {@link IoLasPointSource}. The points will be collected in primitive 
+     * coordinate arrays, i.e. no {@link VgPoint}-objects will be created 
+     * (except for the <tt>cSimpleDelaunay</tt> method).
+     * 
+     * @param source Point source
+     */
+    public GmSimpleTINFeature transform(IoPointBatchSource source) throws T3dException
+    {
+    	double[] 
+    		bx = new double[4096], by = new double[4096], bz = new double[4096],
+    		x = new double[1 << 16], y = new double[1 << 16], z = new double[1 << 16];
+    	int n = 0, k;
+    	while ((k = source.nextBatch(bx, by, bz)) >= 0) {
+    		if (n + k > x.length) {
+    			int len = Math.max(2 * x.length, n + k);
+    			x = Arrays.copyOf(x, len);
+    			y = Arrays.copyOf(y, len);
+    			z = Arrays.copyOf(z, len);
+    		}
+    		System.arraycopy(bx, 0, x, n, k);
+    		System.arraycopy(by, 0, y, n, k);
+    		System.arraycopy(bz, 0, z, n, k);
+    		n += k;
+    	}
+
+    	int[] res;
+    	switch (mAlgorithm) {
+    		case cSimpleDelaunay:
+    			List<VgPoint> points = new ArrayList<VgPoint>(n);
+    			for (int i = 0; i < n; i++)
+    				points.add(new GmPoint(x[i], y[i], z[i]));
+    	        res = SimpleDelaunay.triangulate(points);
+    			break;
+    		case cBowyerWatsonDelaunay:
+    	        res = BowyerWatsonDelaunay.triangulate(x, y, n);
+    			break;
+    		case cParallelDelaunay:
+    			ParallelDelaunay pd = new ParallelDelaunay();
+    			pd.setNumberOfThreads(mNumberOfThreads);
+    	        res = pd.triangulate(x, y, n);
+    			break;
+    		default:
+    	    	throw new T3dNotYetImplException();
+    	}
+
+    	double[] xyz = new double[3 * n];
+    	for (int i = 0, l = 0; i < n; i++) {
+    		xyz[l++] = x[i];
+    		xyz[l++] = y[i];
+    		xyz[l++] = z[i];
+    	}
+    	GmSimpleTINFeature f = new GmSimpleTINFeature();
+    	f.setGeometry(new GmSimpleTINGeometry(xyz, res));
+    	return f;
+    }
 }
@@ -33,24 +33,39 @@
 package org.n52.v3d.triturus.gisimplm;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.n52.v3d.triturus.core.T3dNotYetImplException;
 import org.n52.v3d.triturus.core.T3dProcFilter;
 import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.t3dutil.TriangleKernel;
 import org.n52.v3d.triturus.vgis.VgElevationGrid;
 import org.n52.v3d.triturus.vgis.VgEnvelope;
 import org.n52.v3d.triturus.vgis.VgEquidistGrid;
 import org.n52.v3d.triturus.vgis.VgIndexedTIN;
 import org.n52.v3d.triturus.vgis.VgLineSegment;
 import org.n52.v3d.triturus.vgis.VgPoint;
-import org.n52.v3d.triturus.vgis.VgTriangle;
 
 /** 
  * Filter to transform a <tt>GmSimpleTINFeature</tt>-object to a 
  * <tt>GmSimpleElevationGrid</tt>. Basically, this implementation provides a 
  * "rasterizer" to transform a given TIN (e.g. a terrain surface) to a lattice 
  * of elevation values.
+ * <br/>
+ * For each triangle, the grid rows inside the triangle's y-range will be 
+ * scanned; only the lattice points inside the span covered by the triangle 
+ * will be tested using edge functions (see 
+ * {@link TriangleKernel#orient2d}). The edge functions also provide the 
+ * barycentric weights used for elevation interpolation. Lattice points on 
+ * common triangle edges will not be missed. The grid rows will be processed 
+ * in parallel (see <tt>this.setNumberOfThreads()</tt>); the result does not 
+ * depend on the number of threads.
  * 
  * @author Benno Schmidt
  */
@@ -73,18 +88,22 @@ public class FltTIN2ElevationGrid extends T3dProcFilter
     public static final int CONFLICT_TAKE_MIN_Z = 2;
     /**
      * Identifier for z-conflict handler which take the median z-value if the 
-     * source TIN gives more than one z-value. (Note that this method has not 
-     * been implemented yet.)
+     * source TIN gives more than one z-value. For an even number of 
+     * candidate values, the mean of the two middle values will be taken.
      */
     public static final int CONFLICT_TAKE_MEDIAN_Z = 3;
     /**
      * Identifier for z-conflict handler which take the average z-value if the 
-     * source TIN gives more than one z-value. (Note that this method has not 
-     * been implemented yet.)
+     * source TIN gives more than one z-value.
      */
     public static final int CONFLICT_TAKE_AVG_Z = 4;
     
     private int zConflictHandler = CONFLICT_TAKE_MAX_Z;
+
+    private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+
+    // Relative tolerance used to detect coinciding z-values:
+    private static final double cEps = 1.e-9;
     
     /**
      * Constructor.
@@ -107,13 +126,27 @@ public class FltTIN2ElevationGrid extends T3dProcFilter
     }
 
     /**
+     * sets the z-conflict handler, e.g. <tt>CONFLICT_TAKE_MAX_Z</tt>.
      * 
-     * @param method
+     * @param method Conflict handler identifier
      */
     public void setZConflictHandler(int method) {
         this.zConflictHandler = method;
     }
 
+    /**
+     * sets the number of threads used for rasterization. By default, the 
+     * number of available processors will be used.
+     * 
+     * @param numberOfThreads Number of threads (&gt;= 1)
+     */
+    public void setNumberOfThreads(int numberOfThreads) 
+    {
+        if (numberOfThreads < 1)
+            throw new T3dException("Illegal number of threads.");
+        this.numberOfThreads = numberOfThreads;
+    }
+
     /**
      * performs the described filter operation.
      * 
@@ -122,58 +155,124 @@ public class FltTIN2ElevationGrid extends T3dProcFilter
      */
     public VgElevationGrid transform(GmSimpleTINFeature tin) throws T3dException
     {
-    	GmSimpleElevationGrid target = prepareTargetGrid();
+    	final GmSimpleElevationGrid target = prepareTargetGrid();
     	
     	VgEnvelope envGeom = grdGeom.envelope(); 
         VgIndexedTIN geom = (VgIndexedTIN) tin.getGeometry();
 
+        final double[] xyz;
+        final int[] tri;
+        if (geom instanceof GmSimpleTINGeometry) {
+        	xyz = ((GmSimpleTINGeometry) geom).getCoordinates();
+        	tri = ((GmSimpleTINGeometry) geom).getTriangleIndices();
+        } else {
+        	xyz = new double[3 * geom.numberOfPoints()];
+        	for (int i = 0; i < geom.numberOfPoints(); i++) {
+        		VgPoint p = geom.getPoint(i);
+        		xyz[3 * i] = p.getX(); 
+        		xyz[3 * i + 1] = p.getY(); 
+        		xyz[3 * i + 2] = p.getZ();
+        	}
+        	tri = new int[3 * geom.numberOfTriangles()];
+        	for (int i = 0; i < geom.numberOfTriangles(); i++) {
+        		int[] idx = geom.getTriangleVertexIndices(i);
+        		tri[3 * i] = idx[0]; 
+        		tri[3 * i + 1] = idx[1]; 
+        		tri[3 * i + 2] = idx[2];
+        	}
+        }
+        final int nTri = geom.numberOfTriangles();
+
         double 
     		xMin = envGeom.getXMin(),
 	   		xMax = envGeom.getXMax(),
     		yMin = envGeom.getYMin(),
        		yMax = envGeom.getYMax();
-    	long 
+    	final int 
     		nx = grdGeom.numberOfColumns(),
     		ny = grdGeom.numberOfRows();    			
-    	double
-    		fx = (((double) nx) - 1.) / (xMax - xMin),
-    		fy = (((double) ny) - 1.) / (yMax - yMin);
-    	int iFrom, iTo, jFrom, jTo, ii, jj;
-    	double z;
-    	VgPoint p = new GmPoint();
-    	conflicts = new ArrayList<VgLineSegment>();
+    	final Raster r = new Raster();
+    	r.xMin = xMin;
+    	r.yMin = yMin;
+    	r.fx = (((double) nx) - 1.) / (xMax - xMin);
+    	r.fy = (((double) ny) - 1.) / (yMax - yMin);
+    	r.gx = new double[nx];
+    	for (int jj = 0; jj < nx; jj++) 
+    		r.gx[jj] = xMin + (xMax - xMin) * (((double) jj) / (double)(nx - 1));
+    	r.gy = new double[ny];
+    	for (int ii = 0; ii < ny; ii++) 
+    		r.gy[ii] = yMin + (yMax - yMin) * (((double) ii) / (double)(ny - 1));
+    	r.xyz = xyz;
+    	r.tri = tri;
+    	r.storage = target.getStorage();
 
-        for (int i = 0; i < geom.numberOfTriangles(); i++) {
-        	VgTriangle tri = geom.getTriangle(i);
-        	VgEnvelope envTri = tri.envelope();
-   
-        	jFrom = (int)(fx * (envTri.getXMin() - xMin));
-        	jTo = (int)(fx * (envTri.getXMax() - xMin)) + 1;
-        	iFrom = (int)(fy * (envTri.getYMin() - yMin));
-        	iTo = (int)(fy * (envTri.getYMax() - yMin)) + 1;
-        	
-        	for (jj = jFrom; jj <= jTo; jj++) {
-            	for (ii = iFrom; ii <= iTo; ii++) {
-            		if (ii >= 0 && ii < ny && jj >= 0 && jj < nx) {
-            			p.setX(xMin + (xMax - xMin) * (((double) jj) / (double)(nx - 1)));
-            			p.setY(yMin + (yMax - yMin) * (((double) ii) / (double)(ny - 1)));
-            			
-            			try {
-	            			if (tri.isInsideXY(p, true)) {
-	            				z = tri.interpolateZ(p);
-	            				if (target.isSet(ii, jj)) {
-	            					// non "2.5-D" case detected
-	            					z = handleConflict(target, ii, jj, z, p);
-	            				}
-	            				target.setValue(ii, jj, z);
-	            			}
-            			} catch (Exception e) {
-            				e.printStackTrace();
-            			}
-            		}
-            	}
-        	}
-        }
+    	// Assign the triangles to row bands (keeping the triangles' order):
+    	ExecutorService executor = numberOfThreads <= 1 ? null : 
+    		Executors.newFixedThreadPool(numberOfThreads);
+    	int nBands = executor == null ? 1 : Math.min(ny, 4 * numberOfThreads);
+    	final int bandHeight = (ny + nBands - 1) / nBands;
+    	nBands = (ny + bandHeight - 1) / bandHeight;
+    	int[] rowLo = new int[nTri], rowHi = new int[nTri], range = new int[2];
+    	final int[] start = new int[nBands + 1];
+    	for (int t = 0; t < nTri; t++) {
+    		r.rowRange(t, 0, ny, range);
+    		rowLo[t] = range[0];
+    		rowHi[t] = range[1];
+    		if (rowLo[t] < rowHi[t]) {
+    			for (int b = rowLo[t] / bandHeight; b <= (rowHi[t] - 1) / bandHeight; b++) start[b + 1]++;
+    		}
+    	}
+    	for (int b = 0; b < nBands; b++) start[b + 1] += start[b];
+    	final int[] idx = new int[start[nBands]];
+    	int[] fill = new int[nBands];
+    	for (int t = 0; t < nTri; t++) {
+    		if (rowLo[t] < rowHi[t]) {
+    			for (int b = rowLo[t] / bandHeight; b <= (rowHi[t] - 1) / bandHeight; b++) 
+    				idx[start[b] + fill[b]++] = t;
+    		}
+    	}
+    	rowLo = null;
+    	rowHi = null;
+
+    	// Rasterize:
+    	final List<List<VgLineSegment>> bandConflicts = new ArrayList<List<VgLineSegment>>();
+    	for (int b = 0; b < nBands; b++) bandConflicts.add(new ArrayList<VgLineSegment>());
+    	try {
+    		if (executor == null) 
+    			this.rasterizeBand(r, idx, start[0], start[1], 0, ny, bandConflicts.get(0));
+    		else {
+    			List<Future<?>> tasks = new ArrayList<Future<?>>();
+    			for (int b = 0; b < nBands; b++) {
+    				final int band = b;
+    				tasks.add(executor.submit(new Runnable() {
+    					public void run() {
+    						rasterizeBand(r, idx, start[band], start[band + 1], 
+    							band * bandHeight, Math.min(ny, (band + 1) * bandHeight), 
+    							bandConflicts.get(band));
+    					}
+    				}));
+    			}
+    			for (Future<?> task : tasks) {
+    				task.get();
+    			}
+    		}
+    	}
+    	catch (InterruptedException e) {
+    		throw new T3dException("Rasterization has been interrupted.");
+    	}
+    	catch (ExecutionException e) {
+    		if (e.getCause() instanceof T3dException)
+    			throw (T3dException) e.getCause();
+    		throw new T3dException("Rasterization failed. " + e.getCause());
+    	}
+    	finally {
+    		if (executor != null) 
+    			executor.shutdown();
+    	}
+
+    	conflicts = new ArrayList<VgLineSegment>();
+    	for (List<VgLineSegment> c : bandConflicts) conflicts.addAll(c);
+    	target.setZBoundsInvalid();
     	return target;
     }
 
@@ -184,57 +283,187 @@ public class FltTIN2ElevationGrid extends T3dProcFilter
     	if (!(grdGeom instanceof GmSimple2dGridGeometry)) 
     		throw new T3dException("Unexpected grid geometry class type!");  
     	    	
+    	// Note that the GmSimpleElevationGrid constructor initializes all grid
+    	// cells as unset.
     	GmSimpleElevationGrid target = 
     		new GmSimpleElevationGrid((GmSimple2dGridGeometry) grdGeom);
     	target.setLatticeInterpretation();
-    	
-    	for (int ii = 0; ii < target.numberOfRows(); ii++) {
-        	for (int jj = 0; jj < target.numberOfColumns(); jj++) {
-        		target.unset(ii, jj);
-        		// This is redundant, since the GmSimpleElevationGrid 
-        		// constructor should initialize all grid cells as unset.
-        	}
-    	}
-        	
 		return target;
 	}
 
-	private double handleConflict(
-		GmSimpleElevationGrid target, int ii, int jj, double z, VgPoint p) 
+	// Rasterizes the given triangles inside the rows rowFrom .. rowTo - 1. 
+	// Conflicting values will be collected per lattice point and resolved 
+	// after all triangles have been processed.
+	private void rasterizeBand(
+		Raster r, int[] idx, int from, int to, int rowFrom, int rowTo, 
+		List<VgLineSegment> bandConflicts)
+	{
+		GmGridStorage val = r.storage;
+		double[] xyz = r.xyz, gx = r.gx, gy = r.gy;
+		int nx = gx.length;
+		Map<Integer, double[]> candidates = new HashMap<Integer, double[]>();
+		int[] range = new int[2];
+
+		for (int k = from; k < to; k++) {
+			int t = idx[k];
+			int 
+				a = 3 * r.tri[3 * t], 
+				b = 3 * r.tri[3 * t + 1], 
+				c = 3 * r.tri[3 * t + 2];
+			double 
+				ax = xyz[a], ay = xyz[a + 1], az = xyz[a + 2],
+				bx = xyz[b], by = xyz[b + 1], bz = xyz[b + 2],
+				cx = xyz[c], cy = xyz[c + 1], cz = xyz[c + 2];
+			double det = edge(bx, by, cx, cy, ax, ay);
+			if (det == 0.)
+				continue; // degenerated triangle
+			double sgn = det > 0. ? 1. : -1.;
+
+			r.rowRange(t, rowFrom, rowTo, range);
+			for (int ii = range[0]; ii < range[1]; ii++) {
+				double y = gy[ii];
+				// Determine the triangle's x-span in this row:
+				double xl = Double.POSITIVE_INFINITY, xr = Double.NEGATIVE_INFINITY, xs;
+				if ((xs = crossing(ax, ay, bx, by, y)) == xs) { xl = Math.min(xl, xs); xr = Math.max(xr, xs); }
+				if ((xs = crossing(bx, by, cx, cy, y)) == xs) { xl = Math.min(xl, xs); xr = Math.max(xr, xs); }
+				if ((xs = crossing(cx, cy, ax, ay, y)) == xs) { xl = Math.min(xl, xs); xr = Math.max(xr, xs); }
+				if (ay == y) { xl = Math.min(xl, ax); xr = Math.max(xr, ax); }
+				if (by == y) { xl = Math.min(xl, bx); xr = Math.max(xr, bx); }
+				if (cy == y) { xl = Math.min(xl, cx); xr = Math.max(xr, cx); }
+				if (xl > xr)
+					continue;
+				int 
+					jLo = Math.max(0, (int) Math.floor(r.fx * (xl - r.xMin)) - 1),
+					jHi = Math.min(nx - 1, (int) Math.floor(r.fx * (xr - r.xMin)) + 1);
+
+				for (int jj = jLo; jj <= jHi; jj++) {
+					double x = gx[jj];
+					double 
+						w0 = edge(bx, by, cx, cy, x, y),
+						w1 = edge(cx, cy, ax, ay, x, y),
+						w2 = edge(ax, ay, bx, by, x, y);
+					if (sgn * w0 < 0. || sgn * w1 < 0. || sgn * w2 < 0.)
+						continue;
+					double z = (w0 * az + w1 * bz + w2 * cz) / (w0 + w1 + w2);
+
+					if (!val.isSet(ii, jj)) {
+						val.set(ii, jj, z);
+						continue;
+					}
+					double zOld = val.get(ii, jj);
+					if (coincides(z, zOld))
+						continue; // same surface, e.g. lattice point on common edge
+
+					// non "2.5-D" case detected
+					switch (zConflictHandler) {
+						case CONFLICT_TAKE_MIN_Z:
+							if (z < zOld) val.set(ii, jj, z);
+							break;
+						case CONFLICT_TAKE_MEDIAN_Z:
+						case CONFLICT_TAKE_AVG_Z:
+							Integer key = ii * nx + jj;
+							double[] cand = candidates.get(key);
+							if (cand == null) 
+								cand = new double[] {1., zOld, 0., 0.};
+							else {
+								boolean known = false;
+								for (int i = 2; i <= (int) cand[0] && !known; i++) 
+									known = coincides(z, cand[i]);
+								if (known)
+									continue;
+								if (cand[0] + 1. >= cand.length) {
+									double[] h = new double[2 * cand.length];
+									System.arraycopy(cand, 0, h, 0, cand.length);
+									cand = h;
+								}
+							}
+							cand[(int) ++cand[0]] = z;
+							candidates.put(key, cand);
+							break;
+						default: // CONFLICT_TAKE_MAX_Z
+							if (z > zOld) val.set(ii, jj, z);
+					}
+
+					VgPoint 
+						p1 = new GmPoint(x, y, zOld),
+						p2 = new GmPoint(x, y, z);
+					VgLineSegment line = new GmLineSegment(p1, p2);
+					line.setSRS(p1.getSRS());
+					bandConflicts.add(line);
+				}
+			}
+		}
+
+		// Resolve median and average conflicts:
+		for (Map.Entry<Integer, double[]> e : candidates.entrySet()) {
+			int key = e.getKey();
+			double[] cand = e.getValue();
+			int n = (int) cand[0];
+			double res;
+			if (zConflictHandler == CONFLICT_TAKE_AVG_Z) {
+				res = 0.;
+				for (int i = 1; i <= n; i++) res += cand[i];
+				res /= (double) n;
+			} else {
+				Arrays.sort(cand, 1, n + 1);
+				res = (n % 2 == 1) ? 
+					cand[1 + n / 2] : 
+					0.5 * (cand[n / 2] + cand[1 + n / 2]);
+			}
+			val.set(key / nx, key % nx, res);
+		}
+	}
+
+	private static boolean coincides(double z1, double z2) {
+		return Math.abs(z1 - z2) <= cEps * (1. + Math.abs(z1) + Math.abs(z2));
+	}
+
+	// Edge function; the robust orientation predicate gives exact signs, so 
+	// that lattice points on common edges will not be missed.
+	private static double edge(double px, double py, double qx, double qy, double x, double y) {
+		return TriangleKernel.orient2d(px, py, qx, qy, x, y);
+	}
+
+	// returns the x-coordinate where the line segment (p, q) crosses the 
+	// given y-coordinate or NaN, if there is no crossing.
+	private static double crossing(double px, double py, double qx, double qy, double y) 
+	{
+		if (py == qy || y < Math.min(py, qy) || y > Math.max(py, qy))
+			return Double.NaN;
+		return px + (y - py) * (qx - px) / (qy - py);
+	}
+
+	// Rasterization parameters shared by all row bands.
+	private static class Raster 
 	{
-		VgPoint 
-			p1 = target.getPoint(ii, jj),
-			p2 = new GmPoint(p.getX(), p.getY(), z);
-		p2.setSRS(p1.getSRS());
-				
-		VgLineSegment line = new GmLineSegment(p1, p2);
-		line.setSRS(p1.getSRS());
-		conflicts.add(line);
-		
-		double z1 = p1.getZ(), z2 = z, res = z2;
-		switch (zConflictHandler) {
-			case CONFLICT_TAKE_MIN_Z:
-				res = Math.min(z1, z2);
-				break;
-			case CONFLICT_TAKE_MAX_Z:
-				res = Math.max(z1, z2);
-				break;
-			case CONFLICT_TAKE_MEDIAN_Z:
-				// Note for implementers: The implementation would require to 
-				// store the minimum and maximum candidate elevations...
-				throw new T3dNotYetImplException();
-			case CONFLICT_TAKE_AVG_Z:
-				// Note for implementers: The implementation would require to 
-				// store the number of candidate elevations, which might be 
-				// > 2!
-				throw new T3dNotYetImplException();
+		double xMin, yMin, fx, fy;
+		double[] gx, gy; // lattice point coordinates
+		double[] xyz;
+		int[] tri;
+		GmGridStorage storage;
+
+		// determines the rows res[0] .. res[1] - 1 (inside rowFrom .. 
+		// rowTo - 1) possibly intersecting the triangle t.
+		void rowRange(int t, int rowFrom, int rowTo, int[] res) 
+		{
+			double 
+				y0 = xyz[3 * tri[3 * t] + 1],
+				y1 = xyz[3 * tri[3 * t + 1] + 1],
+				y2 = xyz[3 * tri[3 * t + 2] + 1],
+				yLo = Math.min(y0, Math.min(y1, y2)),
+				yHi = Math.max(y0, Math.max(y1, y2));
+			double 
+				iLo = Math.floor(fy * (yLo - yMin)) - 1.,
+				iHi = Math.floor(fy * (yHi - yMin)) + 2.;
+			res[0] = (int) Math.max((double) rowFrom, iLo);
+			res[1] = (int) Math.min((double) rowTo, iHi);
 		}
-		return res;
 	}
 
     /**
      * returns the 2-D locations of detected conflicts. The z-values give the 
-     * conflicting z-values at these locations.
+     * conflicting z-values at these locations. Note that coinciding z-values
+     * of adjacent triangles will not be regarded as conflict.
      * 
      * @return List of vertically oriented line segments
      */
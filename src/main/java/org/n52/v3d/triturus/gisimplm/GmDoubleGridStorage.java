@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Grid value storage holding all values inside a single flat 
+ * <tt>double</tt>-array (row-major order). The &quot;no data&quot;-flags 
+ * are kept inside a bit-set, so that about 8.125 bytes per grid element 
+ * are needed. Note that each grid row starts at a new 64-bit mask word; 
+ * thus, different grid rows may be modified by concurrent threads.
+ * 
+ * @author Benno Schmidt
+ */
+public class GmDoubleGridStorage extends GmGridStorage
+{
+    private double[] mVal;
+    private long[] mMask;
+    private int mMaskStride; // number of mask words per row
+
+    /**
+     * Constructor. This will generate a storage with all elements unset.
+     * 
+     * @param cols Number of grid columns
+     * @param rows Number of grid rows
+     * @throws T3dException if the grid is too large to be held in one array
+     */
+    public GmDoubleGridStorage(int cols, int rows) throws T3dException
+    {
+        super(cols, rows);
+        if ((long) cols * (long) rows > Integer.MAX_VALUE) 
+            throw new T3dException("Grid too large for in-memory storage.");
+        mVal = new double[cols * rows];
+        mMaskStride = (cols + 63) >>> 6;
+        mMask = new long[mMaskStride * rows];
+    }
+
+    public double get(int row, int col) {
+        return mVal[row * mCols + col];
+    }
+
+    /**
+     * sets the value of a grid element. Note that the value 
+     * <tt>Double.NaN</tt> will unset the element.
+     */
+    public void set(int row, int col, double val) 
+    {
+        if (val != val) { // i.e., Double.isNaN(val)
+            this.unset(row, col);
+            return;
+        }
+        mVal[row * mCols + col] = val;
+        mMask[row * mMaskStride + (col >>> 6)] |= 1L << col;
+    }
+
+    public boolean isSet(int row, int col) {
+        return (mMask[row * mMaskStride + (col >>> 6)] & (1L << col)) != 0L;
+    }
+
+    public void unset(int row, int col) {
+        mMask[row * mMaskStride + (col >>> 6)] &= ~(1L << col);
+    }
+
+    public long memoryConsumption() {
+        return 8L * mVal.length + 8L * mMask.length;
+    }
+
+    public void getRow(int row, double[] vals) 
+    {
+        int off = row * mCols, m = row * mMaskStride;
+        for (int j = 0; j < mCols; j++) {
+            vals[j] = (mMask[m + (j >>> 6)] & (1L << j)) != 0L ? mVal[off + j] : Double.NaN;
+        }
+    }
+
+    public void setRow(int row, double[] vals) 
+    {
+        int off = row * mCols, m = row * mMaskStride;
+        for (int w = 0; w < mMaskStride; w++) {
+            mMask[m + w] = 0L;
+        }
+        for (int j = 0; j < mCols; j++) {
+            double val = vals[j];
+            if (val == val) { // i.e., !Double.isNaN(val)
+                mVal[off + j] = val;
+                mMask[m + (j >>> 6)] |= 1L << j;
+            }
+        }
+    }
+
+    public boolean isSet() 
+    {
+        for (int i = 0; i < mRows; i++) {
+            int m = i * mMaskStride;
+            for (int w = 0; w < mMaskStride; w++) {
+                long expected = (w < mMaskStride - 1 || (mCols & 63) == 0) ? 
+                    -1L : (1L << (mCols & 63)) - 1L;
+                if (mMask[m + w] != expected)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    public double[] computeBounds() 
+    {
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        boolean found = false;
+        for (int i = 0; i < mRows; i++) {
+            int off = i * mCols, m = i * mMaskStride;
+            for (int j = 0; j < mCols; j++) {
+                if ((mMask[m + (j >>> 6)] & (1L << j)) != 0L) {
+                    double val = mVal[off + j];
+                    if (val < min) min = val;
+                    if (val > max) max = val;
+                    found = true;
+                }
+            }
+        }
+        if (!found)
+            return null;
+        return new double[] {min, max};
+    }
+
+    /**
+     * provides direct access to the flat value array (row-major order, i.e. 
+     * the element <tt>(row, col)</tt> can be found at the index 
+     * <tt>row * this.numberOfColumns() + col</tt>). Note that the values of 
+     * unset elements are undefined.
+     * 
+     * @return Value array
+     */
+    public double[] getValueArray() {
+        return mVal;
+    }
+}
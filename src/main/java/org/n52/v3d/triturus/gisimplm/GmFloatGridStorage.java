@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+import java.util.Arrays;
+
+/**
+ * Grid value storage holding all values inside a single flat 
+ * <tt>float</tt>-array (row-major order). Unset elements are marked as 
+ * <tt>Float.NaN</tt>, so that only 4 bytes per grid element are needed. 
+ * Note that the values will be stored with single precision.
+ * 
+ * @author Benno Schmidt
+ */
+public class GmFloatGridStorage extends GmGridStorage
+{
+    private float[] mVal;
+
+    /**
+     * Constructor. This will generate a storage with all elements unset.
+     * 
+     * @param cols Number of grid columns
+     * @param rows Number of grid rows
+     * @throws T3dException if the grid is too large to be held in one array
+     */
+    public GmFloatGridStorage(int cols, int rows) throws T3dException
+    {
+        super(cols, rows);
+        if ((long) cols * (long) rows > Integer.MAX_VALUE) 
+            throw new T3dException("Grid too large for in-memory storage.");
+        mVal = new float[cols * rows];
+        Arrays.fill(mVal, Float.NaN);
+    }
+
+    public double get(int row, int col) {
+        return mVal[row * mCols + col];
+    }
+
+    /**
+     * sets the value of a grid element. Note that the value 
+     * <tt>Double.NaN</tt> will unset the element.
+     */
+    public void set(int row, int col, double val) {
+        mVal[row * mCols + col] = (float) val;
+    }
+
+    public boolean isSet(int row, int col) {
+        float val = mVal[row * mCols + col];
+        return val == val; // i.e., !Float.isNaN(val)
+    }
+
+    public void unset(int row, int col) {
+        mVal[row * mCols + col] = Float.NaN;
+    }
+
+    public long memoryConsumption() {
+        return 4L * mVal.length;
+    }
+
+    public void getRow(int row, double[] vals) 
+    {
+        int off = row * mCols;
+        for (int j = 0; j < mCols; j++) {
+            vals[j] = mVal[off + j]; // NaN will remain NaN
+        }
+    }
+
+    public void setRow(int row, double[] vals) 
+    {
+        int off = row * mCols;
+        for (int j = 0; j < mCols; j++) {
+            mVal[off + j] = (float) vals[j];
+        }
+    }
+
+    public boolean isSet() 
+    {
+        for (int k = 0; k < mVal.length; k++) {
+            if (mVal[k] != mVal[k]) 
+                return false;
+        }
+        return true;
+    }
+
+    public double[] computeBounds() 
+    {
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        boolean found = false;
+        for (int k = 0; k < mVal.length; k++) {
+            float val = mVal[k];
+            if (val == val) {
+                if (val < min) min = val;
+                if (val > max) max = val;
+                found = true;
+            }
+        }
+        if (!found)
+            return null;
+        return new double[] {min, max};
+    }
+
+    /**
+     * provides direct access to the flat value array (row-major order, i.e. 
+     * the element <tt>(row, col)</tt> can be found at the index 
+     * <tt>row * this.numberOfColumns() + col</tt>). Unset elements are 
+     * given as <tt>Float.NaN</tt>.
+     * 
+     * @return Value array
+     */
+    public float[] getValueArray() {
+        return mVal;
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Abstract base class for the storage of grid element values. Realizations 
+ * hold the values of a <i>rows</i>&nbsp;x&nbsp;<i>columns</i> grid together 
+ * with a &quot;no data&quot;-mask, so that the grid classes 
+ * {@link GmSimpleElevationGrid} and {@link GmSimpleFloatGrid} do not have 
+ * to care about the concrete memory layout. Available realizations are 
+ * {@link GmDoubleGridStorage} (flat <tt>double</tt>-array with bit-set mask) 
+ * and {@link GmFloatGridStorage} (flat <tt>float</tt>-array, unset elements 
+ * are marked as <tt>NaN</tt>).<br/>
+ * <br/>
+ * Note: For performance reasons, the access methods of this class do not 
+ * perform any range checks. Index checks have to be performed by the 
+ * calling grid classes.<br/>
+ * <br/>
+ * For bulk operations, whole grid rows can be read and written. Inside the 
+ * row buffers, unset elements are marked as <tt>Double.NaN</tt>.
+ * 
+ * @author Benno Schmidt
+ */
+abstract public class GmGridStorage
+{
+    protected int mCols, mRows;
+
+    /**
+     * Constructor.
+     * 
+     * @param cols Number of grid columns
+     * @param rows Number of grid rows
+     * @throws T3dException if an illegal grid size is given
+     */
+    protected GmGridStorage(int cols, int rows) throws T3dException
+    {
+        if (cols < 0 || rows < 0) 
+            throw new T3dException("Illegal grid size.");
+        mCols = cols;
+        mRows = rows;
+    }
+
+    /**
+     * returns the number of grid columns.
+     * 
+     * @return Number of columns
+     */
+    public int numberOfColumns() {
+        return mCols;
+    }
+
+    /**
+     * returns the number of grid rows.
+     * 
+     * @return Number of rows
+     */
+    public int numberOfRows() {
+        return mRows;
+    }
+
+    /**
+     * checks whether a given element index pair refers to an element inside 
+     * the grid.
+     * 
+     * @param row Row index
+     * @param col Column index
+     * @return <i>true</i>, if the element is part of the grid
+     */
+    public boolean isInside(int row, int col) {
+        return row >= 0 && row < mRows && col >= 0 && col < mCols;
+    }
+
+    /**
+     * returns the value of a grid element. For unset elements, the result 
+     * is undefined.
+     * 
+     * @param row Row index
+     * @param col Column index
+     * @return Element value
+     */
+    abstract public double get(int row, int col);
+
+    /**
+     * sets the value of a grid element. Post-condition: 
+     * <tt>this.isSet(row, col) == !Double.isNaN(val)</tt>, i.e. for all 
+     * storage implementations, the value <tt>Double.NaN</tt> will unset the
+     * element.
+     * 
+     * @param row Row index
+     * @param col Column index
+     * @param val Element value
+     */
+    abstract public void set(int row, int col, double val);
+
+    /**
+     * returns <i>true</i>, if a value is assigned to the given grid element.
+     * 
+     * @param row Row index
+     * @param col Column index
+     * @return <i>false</i> for &quot;no data&quot;
+     */
+    abstract public boolean isSet(int row, int col);
+
+    /**
+     * marks a grid element as unset (&quot;no data&quot;).
+     * 
+     * @param row Row index
+     * @param col Column index
+     */
+    abstract public void unset(int row, int col);
+
+    /**
+     * returns the approximate amount of heap memory occupied by the grid 
+     * values and the no-data mask.
+     * 
+     * @return Memory consumption in bytes
+     */
+    abstract public long memoryConsumption();
+
+    /**
+     * reads a complete grid row into the given buffer. Unset elements will 
+     * be marked as <tt>Double.NaN</tt>.
+     * 
+     * @param row Row index
+     * @param vals Target buffer, holding at least <tt>this.numberOfColumns()</tt> elements
+     */
+    public void getRow(int row, double[] vals) 
+    {
+        for (int j = 0; j < mCols; j++) {
+            vals[j] = this.isSet(row, j) ? this.get(row, j) : Double.NaN;
+        }
+    }
+
+    /**
+     * writes a complete grid row. Elements that are given as 
+     * <tt>Double.NaN</tt> will be unset.
+     * 
+     * @param row Row index
+     * @param vals Row values, at least <tt>this.numberOfColumns()</tt> elements
+     */
+    public void setRow(int row, double[] vals) 
+    {
+        for (int j = 0; j < mCols; j++) {
+            if (Double.isNaN(vals[j]))
+                this.unset(row, j);
+            else
+                this.set(row, j, vals[j]);
+        }
+    }
+
+    /**
+     * returns <i>true</i>, if values are assigned to all grid elements.
+     */
+    public boolean isSet() 
+    {
+        for (int i = 0; i < mRows; i++) {
+            for (int j = 0; j < mCols; j++) {
+                if (!this.isSet(i, j)) 
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * computes the minimum and the maximum of all set grid values.
+     * 
+     * @return Array holding minimum and maximum, or <i>null</i> if no grid element is set
+     */
+    public double[] computeBounds() 
+    {
+        double[] buf = new double[mCols];
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        boolean found = false;
+        for (int i = 0; i < mRows; i++) {
+            this.getRow(i, buf);
+            for (int j = 0; j < mCols; j++) {
+                double val = buf[j];
+                if (val == val) { // i.e., !Double.isNaN(val)
+                    if (val < min) min = val;
+                    if (val > max) max = val;
+                    found = true;
+                }
+            }
+        }
+        if (!found)
+            return null;
+        return new double[] {min, max};
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Elevation grid that holds its elevation values inside a tiled binary file 
+ * instead of the Java heap (&quot;out-of-core&quot; grid). The file's tiles 
+ * will be mapped into memory on demand; see {@link GmMappedGridStorage} for 
+ * details. Since this class is a {@link GmSimpleElevationGrid}, it can be 
+ * used by all filters and writers that process simple elevation grids, e.g. 
+ * {@link FltElevationGrid2Profile}, {@link FltElevationGridGradientOperators} 
+ * or {@link IoElevationGridWriter}.<br/>
+ * <br/>
+ * Note: Elevation values are stored with single precision. The grid's SRS 
+ * will not be stored inside the file. Modifications will be written to the 
+ * file when calling {@link #flush()} or {@link #close()}.
+ * 
+ * @author Benno Schmidt
+ */
+public class GmMappedElevationGrid extends GmSimpleElevationGrid
+{
+    /**
+     * Default tile size (number of grid rows and columns per tile).
+     */
+    public final static int cDefaultTileSize = 256;
+
+    private GmMappedGridStorage mStorage;
+    
+    /**
+     * Constructor. Creates a new grid file with all elements unset. If the 
+     * given file already exists, it will be overwritten.
+     * 
+     * @param filename File path
+     * @param geom Grid geometry
+     * @throws T3dException if the file can not be created
+     */
+    public GmMappedElevationGrid(String filename, GmSimple2dGridGeometry geom) 
+        throws T3dException
+    {
+        this(filename, geom, cDefaultTileSize);
+    }
+
+    /**
+     * Constructor. Creates a new grid file with all elements unset. If the 
+     * given file already exists, it will be overwritten.
+     * 
+     * @param filename File path
+     * @param geom Grid geometry
+     * @param tileSize Number of grid rows and columns per tile
+     * @throws T3dException if the file can not be created
+     */
+    public GmMappedElevationGrid(String filename, GmSimple2dGridGeometry geom, int tileSize) 
+        throws T3dException
+    {
+        this(new GmMappedGridStorage(filename, geom, tileSize), geom);
+    }
+
+    /**
+     * Constructor. Opens an existing grid file.
+     * 
+     * @param filename File path
+     * @param readOnly <i>true</i>, if the grid shall not be modified
+     * @throws T3dException if the file can not be opened
+     */
+    public GmMappedElevationGrid(String filename, boolean readOnly) 
+        throws T3dException
+    {
+        this(new GmMappedGridStorage(filename, readOnly));
+    }
+    
+    private GmMappedElevationGrid(GmMappedGridStorage storage) {
+        this(storage, storage.getGeometry());
+        super.setLatticeInterpretation(storage.isLatticeInterpretation());
+    }
+
+    private GmMappedElevationGrid(GmMappedGridStorage storage, GmSimple2dGridGeometry geom) {
+        super(geom, storage);
+        mStorage = storage;
+        this.setName("unnamed mapped elevation grid");
+    }
+
+    /**
+     * sets the maximum number of tiles that will be mapped into memory at 
+     * the same time.
+     * 
+     * @param maxTiles Maximum number of mapped tiles
+     */
+    public void setMaxMappedTiles(int maxTiles) {
+        mStorage.setMaxMappedTiles(maxTiles);
+    }
+
+    public void setLatticeInterpretation() {
+        this.setLatticeInterpretation(true);
+    }
+
+    public void setGridInterpretation() {
+        this.setLatticeInterpretation(false);
+    }
+
+    public void setLatticeInterpretation(boolean latticeMode) {
+        super.setLatticeInterpretation(latticeMode);
+        mStorage.setLatticeInterpretation(latticeMode);
+    }
+
+    /**
+     * writes all modifications to the grid file.
+     * 
+     * @throws T3dException if an I/O error occurs
+     */
+    public void flush() throws T3dException {
+        mStorage.flush();
+    }
+
+    /**
+     * writes all modifications to the grid file and closes it. Afterwards, 
+     * the grid must not be accessed anymore.
+     * 
+     * @throws T3dException if an I/O error occurs
+     */
+    public void close() throws T3dException {
+        mStorage.close();
+    }
+}
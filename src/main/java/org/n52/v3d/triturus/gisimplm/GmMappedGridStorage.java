@@ -0,0 +1,499 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Grid value storage that holds the grid values inside a tiled binary file 
+ * instead of the Java heap. The file is subdivided into quadratic tiles; 
+ * these tiles will be mapped into memory on demand using 
+ * <tt>FileChannel.map()</tt>. The number of simultaneously mapped tiles is 
+ * limited, the least recently used tiles will be released first. Thus, 
+ * grids much larger than the available heap space can be processed.<br/>
+ * <br/>
+ * Grid values are stored as single-precision floating-point numbers, unset 
+ * elements are marked as <tt>Float.NaN</tt>. Tiles that have never been 
+ * written to do not occupy any disk space (on file systems supporting 
+ * sparse files).<br/>
+ * <br/>
+ * File layout: A 64 byte header (big-endian) holding the grid size, tile 
+ * size, byte-order of the tile data and the grid geometry, followed by one 
+ * status byte per tile and the tile data (row-major tile order, each tile 
+ * row-major, padded to full tile size) starting at a 4096 byte boundary.
+ * <br/>
+ * Note: Tile access is synchronized, so different threads may read and 
+ * write the storage concurrently.
+ * 
+ * @see GmMappedElevationGrid
+ * @author Benno Schmidt
+ */
+public class GmMappedGridStorage extends GmGridStorage
+{
+    /** 
+     * Magic number identifying mapped grid files (&quot;T3MG&quot;). 
+     */
+    public final static int cMagic = 0x54334D47;
+
+    private final static int cHeaderSize = 64;
+    private final static int cAlignment = 4096;
+    
+    private final static byte cTileEmpty = 0;
+    private final static byte cTileInitialized = 1;
+    
+    private String mFilename;
+    private RandomAccessFile mFile;
+    private FileChannel mChannel;
+    private boolean mReadOnly;
+    private ByteOrder mByteOrder;
+
+    private int mTileSize;
+    private int mTileCols, mTileRows;
+    private long mDataOffset;
+    private byte[] mTileStatus;
+    private boolean mTileStatusModified = false;
+
+    private double mOriginX, mOriginY, mDeltaX, mDeltaY;
+    private boolean mLatticeMode = false;
+
+    private int mMaxMappedTiles = 256;
+    private LinkedHashMap<Integer, MappedByteBuffer> mTiles;
+    private int mLastTileIdx = -1;
+    private MappedByteBuffer mLastTile = null;
+
+    /**
+     * Constructor. Creates a new mapped grid file. If the given file already 
+     * exists, it will be overwritten. Initially, all grid elements are unset.
+     * 
+     * @param filename File path
+     * @param geom Grid geometry
+     * @param tileSize Tile size (number of grid rows and columns per tile), e.g. 256
+     * @throws T3dException if the file can not be created
+     */
+    public GmMappedGridStorage(String filename, GmSimple2dGridGeometry geom, int tileSize) 
+        throws T3dException
+    {
+        super(geom.numberOfColumns(), geom.numberOfRows());
+        if (tileSize <= 0)
+            throw new T3dException("Illegal tile size: " + tileSize);
+
+        mFilename = filename;
+        mReadOnly = false;
+        mByteOrder = ByteOrder.nativeOrder();
+        mTileSize = tileSize;
+        mOriginX = geom.getOrigin().getX();
+        mOriginY = geom.getOrigin().getY();
+        mDeltaX = geom.getDeltaX();
+        mDeltaY = geom.getDeltaY();
+        this.setUpTiling();
+        
+        try {
+            File f = new File(filename);
+            if (f.exists() && !f.delete())
+                throw new T3dException("Could not overwrite file \"" + filename + "\".");
+            mFile = new RandomAccessFile(f, "rw");
+            mFile.setLength(mDataOffset + (long) mTileCols * mTileRows * this.tileBytes());
+            mChannel = mFile.getChannel();
+            this.writeHeader();
+        }
+        catch (IOException e) {
+            throw new T3dException("Could not create file \"" + filename + "\". " + e.getMessage());
+        }
+    }
+
+    /**
+     * Constructor. Opens an existing mapped grid file.
+     * 
+     * @param filename File path
+     * @param readOnly <i>true</i>, if the grid shall not be modified
+     * @throws T3dException if the file can not be opened or has an unknown format 
+     */
+    public GmMappedGridStorage(String filename, boolean readOnly) throws T3dException
+    {
+        super(0, 0);
+        mFilename = filename;
+        mReadOnly = readOnly;
+        try {
+            mFile = new RandomAccessFile(filename, readOnly ? "r" : "rw");
+            mChannel = mFile.getChannel();
+            this.readHeader();
+        }
+        catch (IOException e) {
+            throw new T3dException("Could not open file \"" + filename + "\". " + e.getMessage());
+        }
+    }
+
+    private void setUpTiling() 
+    {
+        mTileCols = (mCols + mTileSize - 1) / mTileSize;
+        mTileRows = (mRows + mTileSize - 1) / mTileSize;
+        mTileStatus = new byte[mTileCols * mTileRows];
+        mDataOffset = ((cHeaderSize + mTileStatus.length + cAlignment - 1) / cAlignment) * cAlignment;
+        mTiles = new LinkedHashMap<Integer, MappedByteBuffer>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            protected boolean removeEldestEntry(Map.Entry<Integer, MappedByteBuffer> eldest) {
+                return this.size() > mMaxMappedTiles; 
+            }
+        };
+    }
+
+    private long tileBytes() {
+        return 4L * mTileSize * mTileSize;
+    }
+
+    private void writeHeader() throws IOException
+    {
+        ByteBuffer hdr = ByteBuffer.allocate(cHeaderSize); // big-endian
+        hdr.putInt(cMagic);
+        hdr.put((byte) (mByteOrder == ByteOrder.LITTLE_ENDIAN ? 1 : 0));
+        hdr.put((byte) (mLatticeMode ? 1 : 0));
+        hdr.putShort((short) 0); // reserved
+        hdr.putInt(mCols);
+        hdr.putInt(mRows);
+        hdr.putInt(mTileSize);
+        hdr.putInt(0); // reserved
+        hdr.putDouble(mOriginX);
+        hdr.putDouble(mOriginY);
+        hdr.putDouble(mDeltaX);
+        hdr.putDouble(mDeltaY);
+        hdr.flip();
+        mChannel.write(hdr, 0);
+        mChannel.write(ByteBuffer.wrap(mTileStatus), cHeaderSize);
+        mTileStatusModified = false;
+    }
+
+    private void readHeader() throws IOException, T3dException
+    {
+        ByteBuffer hdr = ByteBuffer.allocate(cHeaderSize);
+        while (hdr.hasRemaining()) {
+            if (mChannel.read(hdr, hdr.position()) < 0)
+                throw new T3dException("Unexpected end of file.");
+        }
+        hdr.flip();
+        if (hdr.getInt() != cMagic)
+            throw new T3dException("\"" + mFilename + "\" is not a mapped grid file.");
+        mByteOrder = hdr.get() == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        mLatticeMode = hdr.get() == 1;
+        hdr.getShort();
+        mCols = hdr.getInt();
+        mRows = hdr.getInt();
+        mTileSize = hdr.getInt();
+        hdr.getInt();
+        mOriginX = hdr.getDouble();
+        mOriginY = hdr.getDouble();
+        mDeltaX = hdr.getDouble();
+        mDeltaY = hdr.getDouble();
+        if (mCols < 0 || mRows < 0 || mTileSize <= 0)
+            throw new T3dException("Corrupt mapped grid file header.");
+        this.setUpTiling();
+        ByteBuffer status = ByteBuffer.wrap(mTileStatus);
+        while (status.hasRemaining()) {
+            if (mChannel.read(status, cHeaderSize + status.position()) < 0)
+                throw new T3dException("Unexpected end of file.");
+        }
+    }
+
+    /**
+     * returns the grid geometry stored inside the file header.
+     * 
+     * @return Grid geometry
+     */
+    public GmSimple2dGridGeometry getGeometry() {
+        return new GmSimple2dGridGeometry(
+            mCols, mRows, new GmPoint(mOriginX, mOriginY, 0.), mDeltaX, mDeltaY);
+    }
+
+    /**
+     * returns the file path.
+     * 
+     * @return File path
+     */
+    public String getFilename() {
+        return mFilename;
+    }
+
+    /**
+     * returns the tile size.
+     * 
+     * @return Number of grid rows and columns per tile
+     */
+    public int getTileSize() {
+        return mTileSize;
+    }
+
+    /**
+     * sets the maximum number of tiles that will be mapped into memory at 
+     * the same time. The default value is 256.
+     * 
+     * @param maxTiles Maximum number of mapped tiles
+     */
+    public synchronized void setMaxMappedTiles(int maxTiles) 
+    {
+        if (maxTiles < 1)
+            throw new T3dException("Illegal number of mapped tiles.");
+        mMaxMappedTiles = maxTiles;
+    }
+
+    /**
+     * returns the lattice-mode flag stored inside the file header.
+     * 
+     * @return <i>true</i> for vertex-based, <i>false</i> for cell-based interpretation 
+     */
+    public boolean isLatticeInterpretation() {
+        return mLatticeMode;
+    }
+
+    /**
+     * sets the lattice-mode flag that will be stored inside the file header.
+     * 
+     * @param latticeMode <i>true</i> for vertex-based, <i>false</i> for cell-based interpretation 
+     */
+    public void setLatticeInterpretation(boolean latticeMode) {
+        mLatticeMode = latticeMode;
+    }
+
+    private void assertWritable() throws T3dException {
+        if (mReadOnly)
+            throw new T3dException("Tried to modify read-only grid file.");
+    }
+
+    // Returns the mapped tile with the given index. If the tile has never 
+    // been written to, null will be returned, unless forWrite is set:
+    private synchronized MappedByteBuffer tile(int tileIdx, boolean forWrite) throws T3dException
+    {
+        if (tileIdx == mLastTileIdx)
+            return mLastTile;
+
+        MappedByteBuffer tile = mTiles.get(tileIdx);
+        if (tile == null) {
+            if (mTileStatus[tileIdx] == cTileEmpty) {
+                if (!forWrite) 
+                    return null;
+                if (mReadOnly) 
+                    throw new T3dException("Tried to modify read-only grid file.");
+            }
+            try {
+                tile = mChannel.map(
+                    mReadOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 
+                    mDataOffset + (long) tileIdx * this.tileBytes(), 
+                    this.tileBytes());
+                tile.order(mByteOrder);
+            }
+            catch (IOException e) {
+                throw new T3dException("Could not map grid tile " + tileIdx + ". " + e.getMessage());
+            }
+            if (mTileStatus[tileIdx] == cTileEmpty) {
+                int n = mTileSize * mTileSize;
+                for (int k = 0; k < n; k++) {
+                    tile.putFloat(k << 2, Float.NaN);
+                }
+                mTileStatus[tileIdx] = cTileInitialized;
+                mTileStatusModified = true;
+            }
+            mTiles.put(tileIdx, tile);
+        }
+        mLastTileIdx = tileIdx;
+        mLastTile = tile;
+        return tile;
+    }
+
+    private int tileIndex(int row, int col) {
+        return (row / mTileSize) * mTileCols + col / mTileSize;
+    }
+
+    private int offsetInTile(int row, int col) {
+        return (row % mTileSize) * mTileSize + col % mTileSize;
+    }
+
+    public double get(int row, int col) 
+    {
+        MappedByteBuffer tile = this.tile(this.tileIndex(row, col), false);
+        if (tile == null) 
+            return Double.NaN;
+        return tile.getFloat(this.offsetInTile(row, col) << 2);
+    }
+
+    /**
+     * sets the value of a grid element. Note that the value 
+     * <tt>Double.NaN</tt> will unset the element.
+     */
+    public void set(int row, int col, double val) 
+    {
+        this.assertWritable();
+        this.tile(this.tileIndex(row, col), true).putFloat(this.offsetInTile(row, col) << 2, (float) val);
+    }
+
+    public boolean isSet(int row, int col) {
+        double val = this.get(row, col);
+        return val == val; // i.e., !Double.isNaN(val)
+    }
+
+    public void unset(int row, int col) 
+    {
+        this.assertWritable();
+        MappedByteBuffer tile = this.tile(this.tileIndex(row, col), false);
+        if (tile != null) 
+            tile.putFloat(this.offsetInTile(row, col) << 2, Float.NaN);
+    }
+
+    /**
+     * returns the amount of heap memory needed to manage the tiles. Note that 
+     * the mapped tiles themselves are not part of the Java heap.
+     */
+    public long memoryConsumption() {
+        return mTileStatus.length + 64L * mTiles.size();
+    }
+
+    public void getRow(int row, double[] vals) 
+    {
+        int tRow = row / mTileSize, rowOff = (row % mTileSize) * mTileSize;
+        for (int tc = 0; tc < mTileCols; tc++) {
+            MappedByteBuffer tile = this.tile(tRow * mTileCols + tc, false);
+            int j0 = tc * mTileSize, j1 = Math.min(j0 + mTileSize, mCols);
+            for (int j = j0; j < j1; j++) {
+                vals[j] = tile == null ? Double.NaN : tile.getFloat((rowOff + j - j0) << 2);
+            }
+        }
+    }
+
+    public void setRow(int row, double[] vals) 
+    {
+        this.assertWritable();
+        int tRow = row / mTileSize, rowOff = (row % mTileSize) * mTileSize;
+        for (int tc = 0; tc < mTileCols; tc++) {
+            int j0 = tc * mTileSize, j1 = Math.min(j0 + mTileSize, mCols);
+            boolean allUnset = true;
+            for (int j = j0; j < j1 && allUnset; j++) {
+                allUnset = Double.isNaN(vals[j]);
+            }
+            MappedByteBuffer tile = this.tile(tRow * mTileCols + tc, !allUnset);
+            if (tile == null)
+                continue; // tile has never been written to, so nothing to unset
+            for (int j = j0; j < j1; j++) {
+                tile.putFloat((rowOff + j - j0) << 2, (float) vals[j]);
+            }
+        }
+    }
+
+    public boolean isSet() 
+    {
+        for (int t = 0; t < mTileStatus.length; t++) {
+            if (mTileStatus[t] == cTileEmpty)
+                return false;
+        }
+        return super.isSet();
+    }
+
+    public double[] computeBounds() 
+    {
+        // Tile-wise traversal to avoid re-mapping tiles:
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        boolean found = false;
+        for (int t = 0; t < mTileStatus.length; t++) {
+            if (mTileStatus[t] == cTileEmpty)
+                continue;
+            MappedByteBuffer tile = this.tile(t, false);
+            int 
+                i0 = (t / mTileCols) * mTileSize, 
+                j0 = (t % mTileCols) * mTileSize;
+            int 
+                ni = Math.min(mTileSize, mRows - i0), 
+                nj = Math.min(mTileSize, mCols - j0);
+            for (int ii = 0; ii < ni; ii++) {
+                for (int jj = 0; jj < nj; jj++) {
+                    float val = tile.getFloat((ii * mTileSize + jj) << 2);
+                    if (val == val) {
+                        if (val < min) min = val;
+                        if (val > max) max = val;
+                        found = true;
+                    }
+                }
+            }
+        }
+        if (!found)
+            return null;
+        return new double[] {min, max};
+    }
+
+    /**
+     * writes all modifications to the file.
+     * 
+     * @throws T3dException if an I/O error occurs
+     */
+    public synchronized void flush() throws T3dException
+    {
+        if (mReadOnly)
+            return;
+        try {
+            for (MappedByteBuffer tile : mTiles.values()) {
+                tile.force();
+            }
+            this.writeHeader();
+            mChannel.force(false);
+        }
+        catch (IOException e) {
+            throw new T3dException("Could not write file \"" + mFilename + "\". " + e.getMessage());
+        }
+    }
+
+    /**
+     * flushes all modifications and closes the file. Afterwards, the storage 
+     * must not be used anymore.
+     * 
+     * @throws T3dException if an I/O error occurs
+     */
+    public synchronized void close() throws T3dException
+    {
+        this.flush();
+        mTiles.clear();
+        mLastTileIdx = -1;
+        mLastTile = null;
+        try {
+            mChannel.close();
+            mFile.close();
+        }
+        catch (IOException e) {
+            throw new T3dException("Could not close file \"" + mFilename + "\". " + e.getMessage());
+        }
+    }
+}
@@ -57,8 +57,7 @@ import java.util.ArrayList;
 public class GmSimpleElevationGrid extends VgElevationGrid
 {
     private GmSimple2dGridGeometry mGeom;
-    private double[][] mVal;
-    private boolean[][] mIsSetFl;
+    private GmGridStorage mVal;
     private boolean mLatticeMode = false;
     private String mTheme = "Elevation";
 
@@ -77,21 +76,8 @@ public class GmSimpleElevationGrid extends VgElevationGrid
         VgPoint origin, 
         double deltaX, double deltaY)
     {
-        // TODO: Im Folgenden besser die static-Methoden aus GmSimpleFloatGrid 
-        // nutzen, um Redundanzen zu vermeiden. (-> nchstes Refactoring)
-    
-        mGeom = new GmSimple2dGridGeometry(
-            nCols, nRows, 
-            origin, 
-            deltaX, deltaY);
-
-        mVal = new double[nRows][nCols]; 
-        mIsSetFl = new boolean[nRows][nCols]; 
-        for (int i = 0; i < nRows; i++) {
-            for (int j = 0; j < nCols; j++) {
-                mIsSetFl[i][j] = false;
-            }
-        }
+        mGeom = GmSimpleFloatGrid.setUpGeometry(nCols, nRows, origin, deltaX, deltaY);
+        mVal = GmSimpleFloatGrid.setUpStorage(nCols, nRows); 
 
         this.setName("unnamed elevation grid");
     }
@@ -104,21 +90,48 @@ public class GmSimpleElevationGrid extends VgElevationGrid
     public GmSimpleElevationGrid(GmSimple2dGridGeometry geom) 
     {
         mGeom = geom;
-      
-        int nRows = mGeom.numberOfRows();
-        int nCols = mGeom.numberOfColumns();
- 
-        mVal = new double[nRows][nCols]; 
-        mIsSetFl = new boolean[nRows][nCols]; 
-        for (int i = 0; i < nRows; i++) {
-            for (int j = 0; j < nCols; j++) {
-                mIsSetFl[i][j] = false;
-            }
-        }
+        mVal = GmSimpleFloatGrid.setUpStorage(
+            geom.numberOfColumns(), geom.numberOfRows()); 
         
         this.setName("unnamed elevation grid");
     }
 
+    /**
+     * Constructor. The grid values will be held by the given storage object, 
+     * e.g. a {@link GmFloatGridStorage} to save memory for large grids. 
+     * The storage's dimensions must match the given grid geometry.
+     * 
+     * @param geom Existing grid geometry
+     * @param storage Grid value storage
+     * @throws T3dException if the storage size does not fit to the geometry
+     */
+    public GmSimpleElevationGrid(GmSimple2dGridGeometry geom, GmGridStorage storage) 
+        throws T3dException
+    {
+        if (
+            storage.numberOfColumns() != geom.numberOfColumns() || 
+            storage.numberOfRows() != geom.numberOfRows()) 
+        {
+            throw new T3dException("Grid storage does not match grid geometry.");
+        }
+        mGeom = geom;
+        mVal = storage;
+
+        this.setName("unnamed elevation grid");
+    }
+
+    /**
+     * provides access to the storage object that holds the grid values. 
+     * Note that modifications applied directly to the storage object will 
+     * not be recognized by the grid's lazy <i>z</i>-bounds evaluation; use 
+     * {@link #setZBoundsInvalid()} after such operations.
+     * 
+     * @return Grid value storage
+     */
+    public GmGridStorage getStorage() {
+        return mVal;
+    }
+
     /** 
      * provides thematic meta-information.
      * 
@@ -247,16 +260,13 @@ public class GmSimpleElevationGrid extends VgElevationGrid
      */
     public void setValue(int row, int col, double z) throws T3dException 
     {
-        try {
-            double zOld = mVal[row][col];
-            mVal[row][col] = z;
-            mIsSetFl[row][col] = true;
-            this.updateZBounds(zOld, z);
-        }
-        catch (Exception e) {
+        if (!mVal.isInside(row, col)) {
             throw new T3dException(
             	"Could not set grid value (" + row + ", " + col + ").");
         }
+        double zOld = mVal.get(row, col);
+        mVal.set(row, col, z);
+        this.updateZBounds(zOld, z);
     }
 
     /** 
@@ -272,25 +282,16 @@ public class GmSimpleElevationGrid extends VgElevationGrid
      */
     public boolean isSet(int row, int col) throws T3dException
     {
-        try {
-            return mIsSetFl[row][col];
-        }
-        catch (Exception e) {
-            throw new T3dException(e.getMessage());
-        }
+        if (!mVal.isInside(row, col)) 
+            throw new T3dException("Index out of bounds: (" + row + ", " + col + ")");
+        return mVal.isSet(row, col);
     }
 
     /** 
      * returns <i>true</i>, if all <i>z</i>-values are assigned to all grid elements.
      */
-    public boolean isSet()
-    {
-        for (int i = 0; i < this.numberOfRows(); i++) {
-            for (int j = 0; j < this.numberOfColumns(); j++) {
-                if (!mIsSetFl[i][j]) return false; 
-            }
-        }
-        return true;
+    public boolean isSet() {
+        return mVal.isSet();
     }
 
     /**
@@ -307,12 +308,9 @@ public class GmSimpleElevationGrid extends VgElevationGrid
      */
     public void unset(int row, int col) throws T3dException
     {
-        try {
-            mIsSetFl[row][col] = false;
-        }
-        catch (Exception e) {
-            throw new T3dException(e.getMessage());
-        }
+        if (!mVal.isInside(row, col)) 
+            throw new T3dException("Index out of bounds: (" + row + ", " + col + ")");
+        mVal.unset(row, col);
     }
 
     /** 
@@ -331,24 +329,56 @@ public class GmSimpleElevationGrid extends VgElevationGrid
      */
     public double getValue(int row, int col) throws T3dException
     {
-        try {
-            if (mIsSetFl[row][col]) {
-                return mVal[row][col];
-            } else {
-                throw new T3dException("Tried to access unset grid element.");
-            }
+        if (!mVal.isInside(row, col)) {
+            throw new T3dException(
+            	"Illegal grid element access. Index out of bounds: (" + row + ", " + col + ")");
         }
-        catch (Exception e) {
+        if (!mVal.isSet(row, col)) {
             throw new T3dException(
-            	"Illegal grid element access. " + e.getMessage());
+                "Illegal grid element access. Tried to access unset grid element.");
         }
+        return mVal.get(row, col);
+    }
+
+    /**
+     * reads the elevation values of a complete grid row into the given 
+     * buffer. Unset elements will be given as <tt>Double.NaN</tt>. This 
+     * method is intended for fast sequential grid access.
+     * 
+     * @param row Row index
+     * @param vals Target buffer, holding at least <tt>this.numberOfColumns()</tt> elements
+     * @throws T3dException if the row index is out of bounds
+     */
+    public void getRowValues(int row, double[] vals) throws T3dException
+    {
+        if (row < 0 || row >= this.numberOfRows()) 
+            throw new T3dException("Illegal grid row access: " + row);
+        mVal.getRow(row, vals);
+    }
+
+    /**
+     * sets the elevation values of a complete grid row. Elements given as 
+     * <tt>Double.NaN</tt> will be unset. This method is intended for fast 
+     * sequential grid access.
+     * 
+     * @param row Row index
+     * @param vals Elevation values, at least <tt>this.numberOfColumns()</tt> elements
+     * @throws T3dException if the row index is out of bounds
+     */
+    public void setRowValues(int row, double[] vals) throws T3dException
+    {
+        if (row < 0 || row >= this.numberOfRows()) 
+            throw new T3dException("Illegal grid row access: " + row);
+        mVal.setRow(row, vals);
+        mCalculated = false;
     }
 
     /** 
      * gets the elevation-value for the georeferenced position <tt>pPos</tt>.
      * Note that the method performs a <i>bilinear</i> interpolation. If the 
      * given position is outside the elevation grid's extent, the method will 
-     * return <i>null</i>. If the position-points coordinate reference system 
+     * return <i>null</i>. Positions on the grid's last row or column will be
+     * interpolated inside the adjacent grid cell. If the position-points coordinate reference system 
      * is not compatible to the elevation-grids reference system, a 
      * {@link T3dSRSException} will be thrown.
      * 
@@ -374,19 +404,27 @@ public class GmSimpleElevationGrid extends VgElevationGrid
     
         float is = idx[0], js = idx[1];
         int row = (int) idx[0], col = (int) idx[1];
+        // Positions on the grid's upper border refer to the last grid cell;
+        // beyond the last row or column, no interpolation is possible:
+        if (is > this.numberOfRows() - 1 || js > this.numberOfColumns() - 1)
+            return null;
+        if (row > 0 && row >= this.numberOfRows() - 1) row = this.numberOfRows() - 2;
+        if (col > 0 && col >= this.numberOfColumns() - 1) col = this.numberOfColumns() - 2;
+        if (!mVal.isInside(row + 1, col + 1)) 
+            return null;
     
         if (
-            mIsSetFl[row][col] && 
-            mIsSetFl[row + 1][col] &&
-            mIsSetFl[row][col + 1] &&
-            mIsSetFl[row + 1][col + 1])
+            mVal.isSet(row, col) && 
+            mVal.isSet(row + 1, col) &&
+            mVal.isSet(row, col + 1) &&
+            mVal.isSet(row + 1, col + 1))
         {
             double lambda = js - ((float) col), my = is - ((float) row);
             return 
-                mVal[row][col] * (1.f - my) * (1.f - lambda) +
-                mVal[row + 1][col] * my * (1.f - lambda) +
-                mVal[row][col + 1] * (1.f - my) * lambda + 
-                mVal[row + 1][col + 1] * my * lambda;    			
+                mVal.get(row, col) * (1.f - my) * (1.f - lambda) +
+                mVal.get(row + 1, col) * my * (1.f - lambda) +
+                mVal.get(row, col + 1) * (1.f - my) * lambda + 
+                mVal.get(row + 1, col + 1) * my * lambda;    			
         }
     
         // else:
@@ -471,23 +509,11 @@ public class GmSimpleElevationGrid extends VgElevationGrid
     private void calculateZBounds() throws T3dException
     { 
         if (!mCalculated) {
-            try {
-                mZMin = this.getFirstSetZValue(); 
-            }
-            catch (T3dException e) {
-                throw e;
-            }
-            mZMax = mZMin;
-            double z;
-            for (int i = 0; i < this.numberOfRows(); i++) {
-                for (int j = 0; j < this.numberOfColumns(); j++) {
-                   if (this.isSet(i, j)) {
-                       z = this.getValue(i, j);
-                       if (z < mZMin) mZMin = z; else {
-                           if (z > mZMax) mZMax = z; }
-                   }
-                }
-            }
+            double[] bounds = mVal.computeBounds();
+            if (bounds == null)
+                throw new T3dException("Tried to access empty elevation grid.");
+            mZMin = bounds[0];
+            mZMax = bounds[1];
             mCalculated = true;
         }
     }
@@ -507,19 +533,6 @@ public class GmSimpleElevationGrid extends VgElevationGrid
             ; // skip
     }
 
-    // Get z-value of some set grid element:
-    private double getFirstSetZValue() throws T3dException 
-    {
-        for (int i = 0; i < this.numberOfRows(); i++) {
-            for (int j = 0; j < this.numberOfColumns(); j++) {
-                if (this.isSet(i, j))
-                    return this.getValue(i, j);
-            }
-        }
-        // else:
-        throw new T3dException("Tried to access empty elevation grid.");
-    }
-
     /**
      * returns the coordinates of a point that is part of the elevation-grid.
      * If there is no <i>z</i>-value assigned to the grid point, the return-value 
@@ -541,6 +554,145 @@ public class GmSimpleElevationGrid extends VgElevationGrid
         return new GmPoint(x, y, z);
     }
 
+    /**
+     * Aggregation methods to compute overview grids.
+     * 
+     * @see GmSimpleElevationGrid#aggregate(int, Aggregation)
+     */
+    public enum Aggregation {
+        MEAN, MIN, MAX
+    };
+
+    /**
+     * computes a coarser overview grid. Each element of the overview grid 
+     * aggregates the set elevation values of a block of <tt>factor</tt> x 
+     * <tt>factor</tt> elements of this grid; elements referring to blocks 
+     * without any set value will remain unset. The overview's grid points 
+     * refer to the blocks' centers, i.e. its cell-sizes are <tt>factor</tt> 
+     * times this grid's cell-sizes.
+     * 
+     * @param factor Block size (&gt;= 1)
+     * @param mode Aggregation method
+     * @return Overview grid
+     * @throws T3dException if <tt>factor</tt> is not positive
+     */
+    public GmSimpleElevationGrid aggregate(int factor, Aggregation mode) throws T3dException
+    {
+        return this.aggregate(0, 0, this.numberOfRows(), this.numberOfColumns(), factor, mode);
+    }
+
+    /**
+     * returns the part of the elevation grid that lies inside a given 
+     * bounding-box, aggregated to a given target cell-size. The largest 
+     * integer block size whose resulting cell-size does not exceed 
+     * <tt>cellSize</tt> will be used, i.e. the returned grid will never be 
+     * coarser than requested. In lattice mode, the grid points inside the 
+     * bounding-box will be considered; in grid mode, all cells intersecting 
+     * the bounding-box.
+     * 
+     * @param env Bounding-box
+     * @param cellSize Target cell-size
+     * @param mode Aggregation method
+     * @return Elevation grid holding the window
+     * @see GmSimpleElevationGrid#aggregate(int, Aggregation)
+     */
+    public GmSimpleElevationGrid getWindow(VgEnvelope env, double cellSize, Aggregation mode) 
+    {
+        VgPoint origin = mGeom.getOrigin();
+        int[] rows = windowIndices(
+            origin.getY(), this.getDeltaY(), this.numberOfRows(), 
+            env.getYMin(), env.getYMax(), mLatticeMode);
+        int[] cols = windowIndices(
+            origin.getX(), this.getDeltaX(), this.numberOfColumns(), 
+            env.getXMin(), env.getXMax(), mLatticeMode);
+        int factor = (int) Math.floor(
+            cellSize / Math.max(this.getDeltaX(), this.getDeltaY()) * (1. + 1.e-9));
+        return this.aggregate(rows[0], cols[0], rows[1], cols[1], Math.max(factor, 1), mode);
+    }
+
+    /**
+     * determines the grid elements along an axis that lie inside the interval 
+     * [<tt>min</tt>, <tt>max</tt>]. In cell-based mode, all cells 
+     * intersecting the interval will be considered.
+     * 
+     * @return Array holding the first index and the number of elements
+     */
+    static int[] windowIndices(
+        double origin, double delta, int n, double min, double max, boolean latticeMode)
+    {
+        double half = latticeMode ? 0. : 0.5 - 1.e-9;
+        int 
+            from = (int) Math.ceil((min - origin) / delta - half - 1.e-9),
+            to = (int) Math.floor((max - origin) / delta + half + 1.e-9);
+        from = Math.max(from, 0);
+        to = Math.min(to, n - 1);
+        return new int[] {from, Math.max(to - from + 1, 0)};
+    }
+
+    GmSimpleElevationGrid aggregate(
+        int rowFrom, int colFrom, int nRows, int nCols, int factor, Aggregation mode) 
+        throws T3dException
+    {
+        if (factor < 1)
+            throw new T3dException("Illegal aggregation factor.");
+
+        int 
+            nRowsRes = (nRows + factor - 1) / factor, 
+            nColsRes = (nCols + factor - 1) / factor;
+        double off = 0.5 * (factor - 1);
+        VgPoint origin = mGeom.getOrigin();
+        GmSimpleElevationGrid res = new GmSimpleElevationGrid(
+            nColsRes, nRowsRes, 
+            new GmPoint(
+                origin.getX() + (colFrom + off) * this.getDeltaX(), 
+                origin.getY() + (rowFrom + off) * this.getDeltaY(), 0.), 
+            factor * this.getDeltaX(), factor * this.getDeltaY());
+        res.mGeom.setSRS(mGeom.getSRS());
+        res.setLatticeInterpretation(mLatticeMode);
+        res.setTheme(mTheme);
+
+        double[] row = new double[this.numberOfColumns()];
+        double[] acc = new double[nColsRes];
+        int[] cnt = new int[nColsRes];
+        for (int bi = 0; bi < nRowsRes; bi++) {
+            double init = 
+                mode == Aggregation.MIN ? Double.POSITIVE_INFINITY : 
+                mode == Aggregation.MAX ? Double.NEGATIVE_INFINITY : 0.;
+            for (int bj = 0; bj < nColsRes; bj++) {
+                acc[bj] = init;
+                cnt[bj] = 0;
+            }
+            int i1 = Math.min((bi + 1) * factor, nRows);
+            for (int i = bi * factor; i < i1; i++) {
+                mVal.getRow(rowFrom + i, row);
+                for (int j = 0; j < nCols; j++) {
+                    double z = row[colFrom + j];
+                    if (z != z) // i.e., Double.isNaN(z)
+                        continue;
+                    int bj = j / factor;
+                    if (mode == Aggregation.MEAN) 
+                        acc[bj] += z;
+                    else if (mode == Aggregation.MIN) {
+                        if (z < acc[bj]) acc[bj] = z;
+                    }
+                    else {
+                        if (z > acc[bj]) acc[bj] = z;
+                    }
+                    cnt[bj]++;
+                }
+            }
+            for (int bj = 0; bj < nColsRes; bj++) {
+                if (cnt[bj] == 0)
+                    acc[bj] = Double.NaN;
+                else if (mode == Aggregation.MEAN)
+                    acc[bj] /= cnt[bj];
+            }
+            res.mVal.setRow(bi, acc);
+        }
+        res.setZBoundsInvalid();
+        return res;
+    }
+
     /** 
      * returns the corresponding footprint geometry.
      * 
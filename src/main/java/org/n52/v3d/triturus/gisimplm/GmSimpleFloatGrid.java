@@ -51,8 +51,7 @@ import java.util.ArrayList;
 public class GmSimpleFloatGrid extends VgFeature
 {
     private GmSimple2dGridGeometry mGeom;
-    private double[][] mVal;
-    private boolean[][] mIsSetFl;
+    private GmGridStorage mVal;
     private boolean mLatticeMode = false;
     private String mTheme = "(unnamed)";
 
@@ -72,8 +71,7 @@ public class GmSimpleFloatGrid extends VgFeature
         double deltaX, double deltaY)
     {
         mGeom = GmSimpleFloatGrid.setUpGeometry(cols, rows, origin, deltaX, deltaY);
-        mVal = GmSimpleFloatGrid.setUpValArray(cols, rows); 
-        mIsSetFl = GmSimpleFloatGrid.setUpIsSetArray(cols, rows); 
+        mVal = GmSimpleFloatGrid.setUpStorage(cols, rows); 
 
         this.setName("unnamed data grid");
     }
@@ -89,12 +87,36 @@ public class GmSimpleFloatGrid extends VgFeature
             deltaX, deltaY);
     }
     
+    /**
+     * sets up the default storage for grid values, i.e. a flat 
+     * <tt>double</tt>-array with a bit-set mask for unset elements.
+     * 
+     * @param cols Number of grid columns
+     * @param rows Number of grid rows
+     * @return Grid value storage with all elements unset
+     */
+    static protected GmGridStorage setUpStorage(
+        int cols, int rows)
+    {
+        return new GmDoubleGridStorage(cols, rows);
+    }
+
+    /**
+     * @deprecated Grid values are held by {@link GmGridStorage} objects now.
+     * @see #setUpStorage(int, int)
+     */
+    @Deprecated
     static protected double[][] setUpValArray(
         int cols, int rows)
     {
         return new double[rows][cols]; 
     }
 
+    /**
+     * @deprecated Grid values are held by {@link GmGridStorage} objects now.
+     * @see #setUpStorage(int, int)
+     */
+    @Deprecated
     static protected boolean[][] setUpIsSetArray(
         int cols, int rows)
     {
@@ -119,12 +141,47 @@ public class GmSimpleFloatGrid extends VgFeature
         int nRows = geom.numberOfRows();
         int nCols = geom.numberOfColumns();
  
-        mVal = GmSimpleFloatGrid.setUpValArray(nCols, nRows); 
-        mIsSetFl = GmSimpleFloatGrid.setUpIsSetArray(nCols, nRows); 
+        mVal = GmSimpleFloatGrid.setUpStorage(nCols, nRows); 
         
         this.setName("unnamed_data_grid");
     }
 
+    /**
+     * Constructor. The grid values will be held by the given storage object, 
+     * e.g. a {@link GmFloatGridStorage} to save memory for large grids. 
+     * The storage's dimensions must match the given grid geometry.
+     * 
+     * @param geom Existing grid geometry
+     * @param storage Grid value storage
+     * @throws T3dException if the storage size does not fit to the geometry
+     */
+    public GmSimpleFloatGrid(GmSimple2dGridGeometry geom, GmGridStorage storage) 
+        throws T3dException
+    {
+        if (
+            storage.numberOfColumns() != geom.numberOfColumns() || 
+            storage.numberOfRows() != geom.numberOfRows()) 
+        {
+            throw new T3dException("Grid storage does not match grid geometry.");
+        }
+        mGeom = geom;
+        mVal = storage;
+        
+        this.setName("unnamed_data_grid");
+    }
+
+    /**
+     * provides access to the storage object that holds the grid values. 
+     * Note that modifications applied directly to the storage object will 
+     * not be recognized by the grid's lazy value-bounds evaluation; use 
+     * {@link #setDataValBoundsInvalid()} after such operations.
+     * 
+     * @return Grid value storage
+     */
+    public GmGridStorage getStorage() {
+        return mVal;
+    }
+
     public String getTheme() {
         return mTheme;
     }
@@ -261,16 +318,13 @@ public class GmSimpleFloatGrid extends VgFeature
      */
     public void setValue(int row, int col, double val) throws T3dException 
     {
-        try {
-            double zOld = mVal[row][col];
-            mVal[row][col] = val;
-            mIsSetFl[row][col] = true;
-            this.updateValBounds(zOld, val);
-        }
-        catch (Exception e) {
+        if (!mVal.isInside(row, col)) {
             throw new T3dException(
             	"Could not set grid value (" + row + ", " + col + ").");
         }
+        double zOld = mVal.get(row, col);
+        mVal.set(row, col, val);
+        this.updateValBounds(zOld, val);
     }
 
     /** 
@@ -286,25 +340,16 @@ public class GmSimpleFloatGrid extends VgFeature
      */
     public boolean isSet(int row, int col) throws T3dException
     {
-        try {
-            return mIsSetFl[row][col];
-        }
-        catch (Exception e) {
-            throw new T3dException(e.getMessage());
-        }
+        if (!mVal.isInside(row, col)) 
+            throw new T3dException("Index out of bounds: (" + row + ", " + col + ")");
+        return mVal.isSet(row, col);
     }
 
     /** 
      * returns <i>true</i>, if all data values are assigned to all grid elements.
      */
-    public boolean isSet()
-    {
-        for (int i = 0; i < this.numberOfRows(); i++) {
-            for (int j = 0; j < this.numberOfColumns(); j++) {
-                if (!mIsSetFl[i][j]) return false; 
-            }
-        }
-        return true;
+    public boolean isSet() {
+        return mVal.isSet();
     }
 
     /**
@@ -321,12 +366,9 @@ public class GmSimpleFloatGrid extends VgFeature
      */
     public void unset(int row, int col) throws T3dException
     {
-        try {
-            mIsSetFl[row][col] = false;
-        }
-        catch (Exception e) {
-            throw new T3dException(e.getMessage());
-        }
+        if (!mVal.isInside(row, col)) 
+            throw new T3dException("Index out of bounds: (" + row + ", " + col + ")");
+        mVal.unset(row, col);
     }
 
     /** 
@@ -345,24 +387,56 @@ public class GmSimpleFloatGrid extends VgFeature
      */
     public double getValue(int row, int col) throws T3dException
     {
-        try {
-            if (mIsSetFl[row][col]) {
-                return mVal[row][col];
-            } else {
-                throw new T3dException("Tried to access unset grid element.");
-            }
+        if (!mVal.isInside(row, col)) {
+            throw new T3dException(
+            	"Illegal grid element access. Index out of bounds: (" + row + ", " + col + ")");
         }
-        catch (Exception e) {
+        if (!mVal.isSet(row, col)) {
             throw new T3dException(
-            	"Illegal grid element access. " + e.getMessage());
+                "Illegal grid element access. Tried to access unset grid element.");
         }
+        return mVal.get(row, col);
+    }
+
+    /**
+     * reads the data values of a complete grid row into the given buffer. 
+     * Unset elements will be given as <tt>Double.NaN</tt>. This method is 
+     * intended for fast sequential grid access.
+     * 
+     * @param row Row index
+     * @param vals Target buffer, holding at least <tt>this.numberOfColumns()</tt> elements
+     * @throws T3dException if the row index is out of bounds
+     */
+    public void getRowValues(int row, double[] vals) throws T3dException
+    {
+        if (row < 0 || row >= this.numberOfRows()) 
+            throw new T3dException("Illegal grid row access: " + row);
+        mVal.getRow(row, vals);
+    }
+
+    /**
+     * sets the data values of a complete grid row. Elements given as 
+     * <tt>Double.NaN</tt> will be unset. This method is intended for fast 
+     * sequential grid access.
+     * 
+     * @param row Row index
+     * @param vals Data values, at least <tt>this.numberOfColumns()</tt> elements
+     * @throws T3dException if the row index is out of bounds
+     */
+    public void setRowValues(int row, double[] vals) throws T3dException
+    {
+        if (row < 0 || row >= this.numberOfRows()) 
+            throw new T3dException("Illegal grid row access: " + row);
+        mVal.setRow(row, vals);
+        mCalculated = false;
     }
 
     /** 
      * gets the data-value for the georeferenced position <tt>pPos</tt>.
      * Note that the method performs a <i>bilinear</i> interpolation. If the 
      * given position is outside the elevation grid's extent, the method will 
-     * return <i>null</i>. If the position-points coordinate reference system 
+     * return <i>null</i>. Positions on the grid's last row or column will be
+     * interpolated inside the adjacent grid cell. If the position-points coordinate reference system 
      * is not compatible to the elevation-grids reference system, a 
      * {@link T3dSRSException} will be thrown.
      * 
@@ -388,19 +462,27 @@ public class GmSimpleFloatGrid extends VgFeature
     
         float is = idx[0], js = idx[1];
         int row = (int)idx[0], col = (int)idx[1];
+        // Positions on the grid's upper border refer to the last grid cell;
+        // beyond the last row or column, no interpolation is possible:
+        if (is > this.numberOfRows() - 1 || js > this.numberOfColumns() - 1)
+            return null;
+        if (row > 0 && row >= this.numberOfRows() - 1) row = this.numberOfRows() - 2;
+        if (col > 0 && col >= this.numberOfColumns() - 1) col = this.numberOfColumns() - 2;
+        if (!mVal.isInside(row + 1, col + 1)) 
+            return null;
     
         if (
-            mIsSetFl[row][col] && 
-            mIsSetFl[row + 1][col] &&
-            mIsSetFl[row][col + 1] &&
-            mIsSetFl[row + 1][col + 1])
+            mVal.isSet(row, col) && 
+            mVal.isSet(row + 1, col) &&
+            mVal.isSet(row, col + 1) &&
+            mVal.isSet(row + 1, col + 1))
         {
             double lambda = js - ((float)col), my = is - ((float)row);
             return 
-                mVal[row][col] * (1.f - my) * (1.f - lambda) +
-                mVal[row + 1][col] * my * (1.f - lambda) +
-                mVal[row][col + 1] * (1.f - my) * lambda + 
-                mVal[row + 1][col + 1] * my * lambda;    			
+                mVal.get(row, col) * (1.f - my) * (1.f - lambda) +
+                mVal.get(row + 1, col) * my * (1.f - lambda) +
+                mVal.get(row, col + 1) * (1.f - my) * lambda + 
+                mVal.get(row + 1, col + 1) * my * lambda;    			
         }
     
         // else:
@@ -491,27 +573,11 @@ public class GmSimpleFloatGrid extends VgFeature
     private void calculateValBounds() throws T3dException
     { 
         if (!mCalculated) {
-            try {
-                mValMin = this.getFirstSetValue(); 
-            }
-            catch (T3dException e) {
-                throw e;
-            }
-            mValMax = mValMin;
-            double val;
-            for (int i = 0; i < this.numberOfRows(); i++) {
-                for (int j = 0; j < this.numberOfColumns(); j++) {
-                   if (this.isSet(i, j)) {
-                       val = this.getValue(i, j);
-                       if (val < mValMin) 
-                    	   mValMin = val; 
-                       else {
-                           if (val > mValMax) 
-                        	   mValMax = val; 
-                       }
-                   }
-                }
-            }
+            double[] bounds = mVal.computeBounds();
+            if (bounds == null)
+                throw new T3dException("Tried to access empty data grid.");
+            mValMin = bounds[0];
+            mValMax = bounds[1];
             mCalculated = true;
         }
     }
@@ -531,19 +597,6 @@ public class GmSimpleFloatGrid extends VgFeature
             ; // skip
     }
 
-    // Get value of some set grid element:
-    private double getFirstSetValue() throws T3dException 
-    {
-        for (int i = 0; i < this.numberOfRows(); i++) {
-            for (int j = 0; j < this.numberOfColumns(); j++) {
-                if (this.isSet(i, j))
-                    return this.getValue(i, j);
-            }
-        }
-        // else:
-        throw new T3dException("Tried to access empty data grid.");
-    }
-
     /**
      * returns the coordinates and the value of a point that is part of the 
      * data-grid. If there is no data value assigned to the grid point, the 
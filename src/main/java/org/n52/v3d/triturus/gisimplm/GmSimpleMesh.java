@@ -35,9 +35,15 @@ import org.n52.v3d.triturus.vgis.*;
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.core.T3dNotYetImplException;
 
-import java.util.Vector;
+import java.util.Arrays;
 
 /**
+ * Mesh consisting of vertices and line segments (edges). The edges are held 
+ * as vertex index pairs inside a primitive array; duplicate edges will be 
+ * detected using an open-addressing hash table of edge indices. Thus, the 
+ * memory consumption is linear in the number of edges, and meshes for large
+ * TINs (e.g. for wireframe generation) can be built.
+ * 
  * @deprecated
  * @author Martin May
  */
@@ -46,10 +52,10 @@ public class GmSimpleMesh extends VgMesh {
 	private int mNumberOfPoints;
 	private VgPoint mPoints[];
 	private int mNumberOfLineSegments = 0;
-	//private int mLineSegments[][];
-	private Vector mLineSegments;
+	private int[] mLineSegments; // references to vertices, pairs
+	private int[] mHashTable; // edge indices, -1 for empty slots
+	private boolean[] mIsConnected; // vertex is part of a line segment
 	private GmEnvelope mEnv;
-	private boolean[][] adjMatrix;
 	private int doppelCount = 0;
 
 	/**
@@ -62,10 +68,11 @@ public class GmSimpleMesh extends VgMesh {
 	public GmSimpleMesh(int pNumberOfPoints) {
 		mNumberOfPoints = pNumberOfPoints;
 		mPoints = new GmPoint[mNumberOfPoints];
-		adjMatrix = new boolean[mNumberOfPoints][mNumberOfPoints];
+		mIsConnected = new boolean[mNumberOfPoints];
 		this.allocateStorage();
-		//mLineSegments = new int[mNumberOfLineSegments][3];
-		mLineSegments = new Vector();
+		mLineSegments = new int[2 * 16];
+		mHashTable = new int[32];
+		Arrays.fill(mHashTable, -1);
 		mEnv = null;
 	}
 
@@ -78,27 +85,59 @@ public class GmSimpleMesh extends VgMesh {
 	 * @param vertex1 Index des ersten Vertex
 	 * @param vertex2 Index des zweiten Vertex
 	 * @throws org.n52.v3d.triturus.core.T3dException
-	 * 
-	 * TODO Implementierung zu "Naiv"....
 	 */
-	public void addLineSegment(int vertex1, int vertex2) throws T3dException {
-		try {
-			if (!areConnected(vertex1, vertex2)) {
-				mLineSegments.add(
-					new GmLineSegment(getPoint(vertex1), getPoint(vertex2)));
-				mNumberOfLineSegments++;
-				adjMatrix[vertex1][vertex2] = true; //markiert als verbunden
-				adjMatrix[vertex2][vertex1] = true; //markiert als verbunden
-				adjMatrix[vertex1][vertex1] = true; //markiert als verbunden
-				adjMatrix[vertex2][vertex2] = true; //markiert als verbunden
-			}
-			else
-				doppelCount++;
+	public void addLineSegment(int vertex1, int vertex2) throws T3dException 
+	{
+		this.checkIndex(vertex1);
+		this.checkIndex(vertex2);
+		int a = Math.min(vertex1, vertex2), b = Math.max(vertex1, vertex2);
+		int slot = this.findSlot(a, b);
+		if (mHashTable[slot] >= 0) {
+			doppelCount++;
+			return;
 		}
-		catch (T3dException e) {
+		if (2 * mNumberOfLineSegments == mLineSegments.length)
+			mLineSegments = Arrays.copyOf(mLineSegments, 2 * mLineSegments.length);
+		mLineSegments[2 * mNumberOfLineSegments] = a;
+		mLineSegments[2 * mNumberOfLineSegments + 1] = b;
+		mHashTable[slot] = mNumberOfLineSegments++;
+		mIsConnected[a] = mIsConnected[b] = true;
+		if (2 * mNumberOfLineSegments > mHashTable.length)
+			this.rehash(2 * mHashTable.length);
+	}
+
+	private void checkIndex(int i) throws T3dException {
+		if (i < 0 || i >= mNumberOfPoints)
+			throw new T3dException("Vertex index " + i + " out of bounds.");
+	}
+
+	// Linear probing; returns the slot holding the edge (a, b) with a <= b, 
+	// or the empty slot where it would have to be inserted.
+	private int findSlot(int a, int b) 
+	{
+		int mask = mHashTable.length - 1;
+		int slot = hash(a, b) & mask;
+		while (true) {
+			int e = mHashTable[slot];
+			if (e < 0 || (mLineSegments[2 * e] == a && mLineSegments[2 * e + 1] == b))
+				return slot;
+			slot = (slot + 1) & mask;
 		}
 	}
 
+	private static int hash(int a, int b) {
+		long h = (((long) a << 32) | (b & 0xffffffffL)) * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32);
+	}
+
+	private void rehash(int size) 
+	{
+		mHashTable = new int[size];
+		Arrays.fill(mHashTable, -1);
+		for (int e = 0; e < mNumberOfLineSegments; e++)
+			mHashTable[this.findSlot(mLineSegments[2 * e], mLineSegments[2 * e + 1])] = e;
+	}
+
 	/**
      * returns the information whether two vertices inside the mesh are connected by a line-segment.<br /><br />
      * <i>German:</i> liefert Aussage dar&uuml;ber, ob zwei Vertizes im Netz mit einem
@@ -115,57 +154,43 @@ public class GmSimpleMesh extends VgMesh {
 	 * TODO 1. vielleicht ein int[] als Parameter
 	 * TODO 2. andere Namensgebung?????????
 	 */
-	public boolean areConnected(int vertex1, int vertex2) throws T3dException {
-		boolean result = false;
-//				try {
-//					VgPoint sPoint = getPoint(vertex1);
-//					VgPoint ePoint = getPoint(vertex2);
-//					GmLineSegment ls = new GmLineSegment(sPoint, ePoint);
-//					if (mLineSegments.contains(ls)) {
-//						result = true;
-//						//TODO muss raus
-//						//doppelCount++;
-//					}
-//				}
-//				catch (T3dException e) {
-//					// TODO Auto-generated catch block
-//					e.printStackTrace();
-//				}
-
-		try {
-			if (adjMatrix[vertex1][vertex2] || adjMatrix[vertex2][vertex1]) {
-				result = true;
-				//doppelCount++;
-			}
+	public boolean areConnected(int vertex1, int vertex2) throws T3dException 
+	{
+		this.checkIndex(vertex1);
+		this.checkIndex(vertex2);
+		if (vertex1 == vertex2) {
+			// As before, a vertex is regarded as connected to itself, if it
+			// is part of a line segment:
+			return mIsConnected[vertex1];
 		}
-		catch (T3dException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		return result;
+		int a = Math.min(vertex1, vertex2), b = Math.max(vertex1, vertex2);
+		return mHashTable[this.findSlot(a, b)] >= 0;
 	}
 
 	/* (non-Javadoc)
 	 * @see org.n52.v3d.triturus.vgis.VgMesh#getLineIndexArray()
 	 */
 	public int[] getLineIndexArray() {
-		// TODO Auto-generated method stub
-		return null;
+		return Arrays.copyOf(mLineSegments, 2 * mNumberOfLineSegments);
 	}
 
 	/* (non-Javadoc)
 	 * @see org.n52.v3d.triturus.vgis.VgMesh#getLineSegment(int)
 	 */
 	public VgLineSegment getLineSegment(int i) throws T3dException {
-		// TODO Auto-generated method stub
-		return (VgLineSegment) mLineSegments.get(i);
+		if (i < 0 || i >= mNumberOfLineSegments)
+			throw new T3dException("Line segment index " + i + " out of bounds.");
+		return new GmLineSegment(
+			this.getPoint(mLineSegments[2 * i]), this.getPoint(mLineSegments[2 * i + 1]));
 	}
 
 	/* (non-Javadoc)
 	 * @see org.n52.v3d.triturus.vgis.VgMesh#getLineSegmentVertexIndices(int)
 	 */
 	public int[] getLineSegmentVertexIndices(int i) throws T3dException {
-		return null;
+		if (i < 0 || i >= mNumberOfLineSegments)
+			throw new T3dException("Line segment index " + i + " out of bounds.");
+		return new int[] {mLineSegments[2 * i], mLineSegments[2 * i + 1]};
 	}
 
 	/* (non-Javadoc)
@@ -203,9 +228,6 @@ public class GmSimpleMesh extends VgMesh {
 	private void allocateStorage() {
 		for (int i = 0; i < mNumberOfPoints; i++) {
 			mPoints[i] = new GmPoint(0., 0., 0.);
-			for (int j = 0; j < mNumberOfPoints; j++) {
-				adjMatrix[i][j] = false;
-			}
 		}
 	}
 
@@ -238,7 +260,22 @@ public class GmSimpleMesh extends VgMesh {
 		return doppelCount;
 	}
 	
-	public boolean[][] getAdjMatrix(){
+	/**
+	 * returns the adjacency matrix. Note that this method allocates a matrix 
+	 * of size <tt>this.getNumberOfPoints()</tt>&sup2;; use 
+	 * <tt>this.areConnected()</tt> or <tt>this.getLineIndexArray()</tt>
+	 * instead.
+	 * @deprecated
+	 * @return Adjacency matrix
+	 */
+	@Deprecated
+	public boolean[][] getAdjMatrix() {
+		boolean[][] adjMatrix = new boolean[mNumberOfPoints][mNumberOfPoints];
+		for (int k = 0; k < 2 * mNumberOfLineSegments; k += 2) {
+			int a = mLineSegments[k], b = mLineSegments[k + 1];
+			adjMatrix[a][b] = adjMatrix[b][a] = true;
+			adjMatrix[a][a] = adjMatrix[b][b] = true;
+		}
 		return adjMatrix;
 	}
 
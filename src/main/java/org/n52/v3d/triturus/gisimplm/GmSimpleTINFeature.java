@@ -32,6 +32,9 @@
 package org.n52.v3d.triturus.gisimplm;
 
 import org.n52.v3d.triturus.vgis.VgFeature;
+import org.n52.v3d.triturus.vgis.VgIndexedTIN;
+import org.n52.v3d.triturus.vgis.VgPoint;
+import org.n52.v3d.triturus.vgis.T3dSRSException;
 import org.n52.v3d.triturus.vgis.VgTIN;
 import org.n52.v3d.triturus.vgis.VgGeomObject;
 import org.n52.v3d.triturus.vgis.VgEnvelope;
@@ -49,6 +52,7 @@ public class GmSimpleTINFeature extends VgFeature
 {
     private VgTIN mGeom;
     private String mTheme = "Elevations"; 
+    private GmTINSpatialIndex mIndex = null;
 
     /**
      * Constructor. The TIN's vertices and triangles may be set via
@@ -90,6 +94,60 @@ public class GmSimpleTINFeature extends VgFeature
      */
     public void setGeometry(VgTIN pGeom) {
         mGeom = pGeom;
+        mIndex = null;
+    }
+
+    /**
+     * returns the spatial index used for elevation queries. The index will 
+     * be built on the first call; after modifications of the TIN geometry, 
+     * <tt>this.setSpatialIndexInvalid()</tt> has to be called.
+     *
+     * @return Spatial index
+     * @throws T3dException if the TIN geometry is not an indexed TIN
+     * @see GmTINSpatialIndex
+     */
+    public GmTINSpatialIndex getSpatialIndex() throws T3dException
+    {
+        if (mIndex == null) {
+            if (!(mGeom instanceof VgIndexedTIN))
+                throw new T3dException("Spatial index requires an indexed TIN geometry.");
+            mIndex = new GmTINSpatialIndex((VgIndexedTIN) mGeom);
+        }
+        return mIndex;
+    }
+
+    /**
+     * discards the spatial index, so that it will be rebuilt on the next 
+     * elevation query. This method has to be called after TIN edits.
+     */
+    public void setSpatialIndexInvalid() {
+        mIndex = null;
+    }
+
+    /**
+     * returns the TIN's elevation at the given position. If the position 
+     * lies outside the TIN, the method will return <i>null</i>. If the 
+     * position-points coordinate reference system is not compatible to the 
+     * TIN's reference system, a {@link T3dSRSException} will be thrown.
+     *
+     * @param pos Position (x, y)
+     * @return Elevation (z) as {@link Double}-object or <i>null</i>
+     * @see GmSimpleElevationGrid#getValue(VgPoint)
+     */
+    public Double getValue(VgPoint pos) throws T3dSRSException {
+        return this.getSpatialIndex().getValue(pos);
+    }
+
+    /**
+     * returns the TIN's elevations for a sequence of positions given as 
+     * flat array <i>x<sub>0</sub>, y<sub>0</sub>, x<sub>1</sub>, ...</i>. 
+     * For positions outside the TIN, <tt>Double.NaN</tt> will be returned.
+     *
+     * @param xy Position coordinates
+     * @return Array holding <tt>xy.length / 2</tt> z-values
+     */
+    public double[] getValues(double[] xy) {
+        return this.getSpatialIndex().getValues(xy);
     }
 
     /**
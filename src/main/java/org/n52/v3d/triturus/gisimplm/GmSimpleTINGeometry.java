@@ -38,6 +38,15 @@ import org.n52.v3d.triturus.vgis.*;
 
 /**
  * Class to hold a TIN-geometry that is static in its size.
+ * <br/>
+ * The vertex coordinates are held in a flat array <i>x<sub>0</sub>, 
+ * y<sub>0</sub>, z<sub>0</sub>, x<sub>1</sub>, ...</i>, the triangles' vertex
+ * indices in a flat array <i>i<sub>0,0</sub>, i<sub>0,1</sub>, 
+ * i<sub>0,2</sub>, i<sub>1,0</sub>, ...</i>. For performance reasons, 
+ * renderers, writers, and filters should access these arrays directly (see 
+ * <tt>this.getCoordinates()</tt> and <tt>this.getTriangleIndices()</tt>) or
+ * use the allocation-free access methods such as 
+ * <tt>this.getTriangle(int, GmTriangle)</tt>.
  * 
  * <b>TODO: Bounding-Box-Berechnung ist noch nicht optimiert; siehe ggf. Coorg.n52.v3d.</b>
  * 
@@ -46,9 +55,9 @@ import org.n52.v3d.triturus.vgis.*;
 public class GmSimpleTINGeometry extends VgIndexedTIN
 {
 	private int mNumberOfPoints;
-	private VgPoint[] mPoints;
+	private double[] mXYZ;
 	private int mNumberOfTriangles;
-	private int mTriangles[][];
+	private int[] mTri;
 	private GmEnvelope mEnv;
 	private GmSimpleMesh mMesh;
 
@@ -65,17 +74,28 @@ public class GmSimpleTINGeometry extends VgIndexedTIN
 		mNumberOfPoints = pNumberOfPoints;
 		mNumberOfTriangles = pNumberOfTriangles;
 
-		mPoints = new GmPoint[mNumberOfPoints];
-		this.allocateStorage();
-		mTriangles = new int[mNumberOfTriangles][3];
+		mXYZ = new double[3 * mNumberOfPoints];
+		mTri = new int[3 * mNumberOfTriangles];
 		
 		mEnv = null;
 	}
 
-	private void allocateStorage() {
-		for (int i = 0; i < mNumberOfPoints; i++) {
-			mPoints[i] = new GmPoint(0., 0., 0.);
-		}
+	/**
+     * Constructor. The given arrays will be referenced, not copied.
+     * 
+     * @param xyz Vertex coordinates <i>x<sub>0</sub>, y<sub>0</sub>, 
+     * z<sub>0</sub>, x<sub>1</sub>, ...</i>
+     * @param tri Triangle vertex indices (3 consecutive entries per triangle)
+	 */
+	public GmSimpleTINGeometry(double[] xyz, int[] tri)
+    {
+		mNumberOfPoints = xyz.length / 3;
+		mNumberOfTriangles = tri.length / 3;
+
+		mXYZ = xyz;
+		mTri = tri;
+		
+		mEnv = null;
 	}
 
 	public int numberOfPoints() {
@@ -86,13 +106,15 @@ public class GmSimpleTINGeometry extends VgIndexedTIN
 		return mNumberOfTriangles;
 	}
 
+	/**
+	 * returns the i-th point (vertex) of the TIN structure. Note that the 
+	 * returned object is a copy; modifications will not affect the TIN.
+	 */
 	public VgPoint getPoint(int i) throws T3dException {
-		try {
-			return mPoints[i];
-		}
-		catch (Exception e) {
-			throw new T3dException(e.getMessage());
-		}
+		this.assertPointIndex(i);
+		GmPoint res = new GmPoint(mXYZ[3 * i], mXYZ[3 * i + 1], mXYZ[3 * i + 2]);
+		res.setSRS(this.getSRS());
+		return res;
 	}
 
     /**
@@ -103,29 +125,62 @@ public class GmSimpleTINGeometry extends VgIndexedTIN
      * @param i Point index
 	 */
 	public void setPoint(int i, VgPoint pPnt) throws T3dException {
-		try {
-			if (mEnvIsUpToDate) {
-				VgPoint lOldPoint = mPoints[i];
-				this.updateBounds(lOldPoint, pPnt);
-			}
+		if (VgGeomObject.SRSNone.equalsIgnoreCase(this.getSRS())) 
+			this.setSRS(pPnt.getSRS());
+		this.setPoint(i, pPnt.getX(), pPnt.getY(), pPnt.getZ());
+	}
 
-			mPoints[i].set(pPnt);
-		}
-		catch (T3dException e) {
-			throw e;
+    /**
+	 * sets the coordinates of the i-th point (vertex) of the TIN structure. 
+	 * Assert that the condition 0 &lt;<= i &lt; <tt>this.numberOfPoints()</tt>
+	 * holds; otherwise a <tt>T3dException</tt> will be thrown.
+	 * 
+     * @param i Point index
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @param z z-coordinate
+	 */
+	public void setPoint(int i, double x, double y, double z) throws T3dException {
+		this.assertPointIndex(i);
+		if (mEnvIsUpToDate) {
+			this.updateBounds();
 		}
+		mXYZ[3 * i] = x;
+		mXYZ[3 * i + 1] = y;
+		mXYZ[3 * i + 2] = z;
 	}
 
+	/**
+	 * returns the i-th triangle of the TIN structure. Note that a new 
+	 * triangle object will be created for each call; to iterate through 
+	 * large TINs, <tt>this.getTriangle(int, GmTriangle)</tt> should be used.
+	 */
 	public VgTriangle getTriangle(int i) throws T3dException {
-		try {
-			return new GmTriangle(
-				mPoints[mTriangles[i][0]],
-				mPoints[mTriangles[i][1]],
-				mPoints[mTriangles[i][2]]);
-		}
-		catch (Exception e) {
-			throw new T3dException(e.getMessage());
-		}
+		return this.getTriangle(i, new GmTriangle(this.getSRS()));
+	}
+
+	/**
+	 * provides the i-th triangle of the TIN structure without object 
+	 * allocation. The corner-points of the given triangle object will be 
+	 * overwritten (&quot;flyweight&quot;); this allows to iterate through 
+	 * large TINs using a single triangle object.
+	 * 
+	 * @param i Triangle index
+	 * @param res Triangle object to be re-used
+	 * @return <tt>res</tt>
+	 * @throws T3dException
+	 */
+	public GmTriangle getTriangle(int i, GmTriangle res) throws T3dException {
+		this.assertTriangleIndex(i);
+		int 
+			i1 = 3 * mTri[3 * i], 
+			i2 = 3 * mTri[3 * i + 1], 
+			i3 = 3 * mTri[3 * i + 2];
+		res.setCornerPoints(
+			mXYZ[i1], mXYZ[i1 + 1], mXYZ[i1 + 2],
+			mXYZ[i2], mXYZ[i2 + 1], mXYZ[i2 + 2],
+			mXYZ[i3], mXYZ[i3 + 1], mXYZ[i3 + 2]);
+		return res;
 	}
 
 	/**
@@ -137,23 +192,54 @@ public class GmSimpleTINGeometry extends VgIndexedTIN
     public void setTriangle(int i, int pPntIdx1, int pPntIdx2, int pPntIdx3)
 		throws T3dException 
     {
-		try {
-			mTriangles[i][0] = pPntIdx1;
-			mTriangles[i][1] = pPntIdx2;
-			mTriangles[i][2] = pPntIdx3;
-		}
-		catch (Exception e) {
-			throw new T3dException(e.getMessage());
-		}
+		this.assertTriangleIndex(i);
+		mTri[3 * i] = pPntIdx1;
+		mTri[3 * i + 1] = pPntIdx2;
+		mTri[3 * i + 2] = pPntIdx3;
 	}
 
 	public int[] getTriangleVertexIndices(int i) throws T3dException {
-		try {
-			return new int[] { mTriangles[i][0], mTriangles[i][1], mTriangles[i][2] };
-		}
-		catch (Exception e) {
-			throw new T3dException(e.getMessage());
-		}
+		return this.getTriangleVertexIndices(i, new int[3]);
+	}
+
+	/**
+	 * provides the vertex-indices of the i-th triangle (face) inside the TIN
+	 * without object allocation.
+	 * 
+	 * @param i Triangle index
+	 * @param res Array of length 3 to be filled 
+	 * @return <tt>res</tt>
+	 * @throws T3dException
+	 */
+	public int[] getTriangleVertexIndices(int i, int[] res) throws T3dException {
+		this.assertTriangleIndex(i);
+		res[0] = mTri[3 * i];
+		res[1] = mTri[3 * i + 1];
+		res[2] = mTri[3 * i + 2];
+		return res;
+	}
+
+	/**
+	 * provides direct access to the vertex coordinates. The array holds the
+	 * values <i>x<sub>0</sub>, y<sub>0</sub>, z<sub>0</sub>, x<sub>1</sub>, 
+	 * ...</i>. Note that modifications will affect the TIN; in this case, 
+	 * <tt>this.setBoundsInvalid()</tt> has to be called.
+	 * 
+	 * @return Coordinate array (3 * <tt>this.numberOfPoints()</tt> elements)
+	 */
+	public double[] getCoordinates() {
+		return mXYZ;
+	}
+
+	/**
+	 * provides direct access to the triangles' vertex indices. The indices of 
+	 * the i-th triangle are stored at the positions <i>3i, 3i+1</i> and 
+	 * <i>3i+2</i>. Note that modifications will affect the TIN.
+	 * 
+	 * @return Index array (3 * <tt>this.numberOfTriangles()</tt> elements)
+	 */
+	public int[] getTriangleIndices() {
+		return mTri;
 	}
 
 	/**
@@ -164,13 +250,13 @@ public class GmSimpleTINGeometry extends VgIndexedTIN
 	 */
 	public void newPointList(int pNumberOfPoints) {
 		mNumberOfPoints = pNumberOfPoints;
-		mPoints = new GmPoint[mNumberOfPoints];
-		this.allocateStorage();
+		mXYZ = new double[3 * mNumberOfPoints];
 
 		mNumberOfTriangles = 0;
-		mTriangles = null;
+		mTri = new int[0];
 
 		mEnv = null;
+		mEnvIsUpToDate = false;
 	}
 
 	/**
@@ -180,7 +266,7 @@ public class GmSimpleTINGeometry extends VgIndexedTIN
 	 */
 	public void newTriangleList(int pNumberOfTriangles) {
 		mNumberOfTriangles = pNumberOfTriangles;
-		mTriangles = new int[mNumberOfTriangles][3];
+		mTri = new int[3 * mNumberOfTriangles];
 	}
 
 	/**
@@ -241,6 +327,16 @@ public class GmSimpleTINGeometry extends VgIndexedTIN
 		mEnvIsUpToDate = false;
 	}
 
+	private void assertPointIndex(int i) throws T3dException {
+		if (i < 0 || i >= mNumberOfPoints)
+			throw new T3dException("Point index out of range: " + i);
+	}
+
+	private void assertTriangleIndex(int i) throws T3dException {
+		if (i < 0 || i >= mNumberOfTriangles)
+			throw new T3dException("Triangle index out of range: " + i);
+	}
+
 	// private helpers to determine the bounding-Box ("lazy evaluation"!):
 
 	private boolean mEnvIsUpToDate = false;
@@ -251,24 +347,22 @@ public class GmSimpleTINGeometry extends VgIndexedTIN
 		}
 
 		if (!mEnvIsUpToDate) {
-			mEnv =
-				new GmEnvelope(
-					mPoints[0].getX(),
-					mPoints[0].getX(),
-					mPoints[0].getY(),
-					mPoints[0].getY(),
-					mPoints[0].getZ(),
-					mPoints[0].getZ());
-
-			for (int i = 1; i < mNumberOfPoints; i++) {
-				mEnv.letContainPoint(mPoints[i]);
-
+			double 
+				xMin = mXYZ[0], xMax = xMin, 
+				yMin = mXYZ[1], yMax = yMin, 
+				zMin = mXYZ[2], zMax = zMin;
+			for (int i = 1, k = 3; i < mNumberOfPoints; i++) {
+				double x = mXYZ[k++], y = mXYZ[k++], z = mXYZ[k++];
+				if (x < xMin) xMin = x; else if (x > xMax) xMax = x;
+				if (y < yMin) yMin = y; else if (y > yMax) yMax = y;
+				if (z < zMin) zMin = z; else if (z > zMax) zMax = z;
 			}
+			mEnv = new GmEnvelope(xMin, xMax, yMin, yMax, zMin, zMax);
 			mEnvIsUpToDate = true;
 		}
 	}
 
-	private void updateBounds(VgPoint pOldPnt, VgPoint pNewPnt) {
+	private void updateBounds() {
 		mEnvIsUpToDate = false; // L�sung suboptimal, aber korrekt ;-)
 	}
 
@@ -279,20 +373,16 @@ public class GmSimpleTINGeometry extends VgIndexedTIN
      * &quot;moved&quot;!<br/>
      * Assert that the condition <i>0 &lt;= i &lt; this.numberOfTriangles()</i>
      * holds; otherweise a <tt>T3dException</tt> will be thrown.<br/>
-     * TODO: This method deserves to be improved! 
      * 
 	 * @param i Index of the triangle to be deleted
 	 * @throws T3dException
 	 */
 	public void deleteTriangle(int i) throws T3dException {
-		if (i > this.numberOfTriangles()) {
+		if (i < 0 || i >= this.numberOfTriangles()) {
 			throw new T3dException("Wrong index.");
 		}
-		for (int c = i; c < mTriangles.length; c++) {
-			mTriangles[c][0] = mTriangles[c + 1][0];
-			mTriangles[c][1] = mTriangles[c + 1][1];
-			mTriangles[c][2] = mTriangles[c + 1][2];
-		}
+		System.arraycopy(mTri, 3 * i + 3, mTri, 3 * i, 3 * (mNumberOfTriangles - i - 1));
+		mNumberOfTriangles--;
 	}
 
 	/**
@@ -313,22 +403,28 @@ public class GmSimpleTINGeometry extends VgIndexedTIN
 		//	for (int i = 0; i < mNumberOfPoints; i++) {
 		//		result.setPoint(i, getPoint(i));
 		//	}
-		result.setPoints(mPoints);
+		result.setPoints(this.getPoints());
 		// perform meshing
-		int[] trVertInd;
-		for (int i = 0; i < mNumberOfTriangles; i++) {
-			trVertInd = getTriangleVertexIndices(i);
-			result.addLineSegment(trVertInd[0], trVertInd[1]);
-			result.addLineSegment(trVertInd[1], trVertInd[2]);
-			result.addLineSegment(trVertInd[2], trVertInd[0]);
+		for (int i = 0, k = 0; i < mNumberOfTriangles; i++, k += 3) {
+			result.addLineSegment(mTri[k], mTri[k + 1]);
+			result.addLineSegment(mTri[k + 1], mTri[k + 2]);
+			result.addLineSegment(mTri[k + 2], mTri[k]);
 		}
 		return result;
 	}
 
 	/**
+	 * returns the TIN's vertices as point array. Note that this method will 
+	 * allocate a new point object for each vertex; for large TINs, 
+	 * <tt>this.getCoordinates()</tt> should be used instead.
+	 * 
 	 * @return Vertex array (VgPoint!)
 	 */
 	public VgPoint[] getPoints() {
-		return mPoints;
+		VgPoint[] res = new VgPoint[mNumberOfPoints];
+		for (int i = 0; i < mNumberOfPoints; i++) {
+			res[i] = this.getPoint(i);
+		}
+		return res;
 	}
 }
@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.util.Arrays;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Edge topology of an indexed triangle mesh. For given triangle vertex 
+ * indices, the undirected edges and, for each triangle, the indices of its
+ * three edges will be determined.<br/>
+ * <br/>
+ * The edges are numbered in the order of their first occurrence; the 
+ * <i>k</i>-th edge of triangle <i>t</i> connects the vertices 
+ * <tt>tri[3t + k]</tt> and <tt>tri[3t + (k + 1) % 3]</tt>. The edge table 
+ * holds the lower vertex index first.<br/>
+ * <br/>
+ * The construction runs in <i>O(n)</i> time and needs no hashing of objects:
+ * the triangle sides are bucket-sorted by their lower vertex index, so 
+ * that duplicate edges can be found inside the (usually small) bucket of 
+ * each vertex. Only primitive arrays will be allocated, thus edge tables of
+ * TINs consisting of millions of triangles can be built within seconds.
+ * 
+ * @see GmTopoTIN
+ * @see GmDoubleIndexTIN
+ * @see org.n52.v3d.triturus.xtin.XTIN
+ * @author Benno Schmidt
+ */
+public class GmTINEdgeTopology
+{
+	private int mNumberOfEdges;
+	private int[] mEdges; // references to vertices, pairs
+	private int[] mTriEdges; // references to edges, triples
+
+	private final static int cMaxLinearBucketSize = 32;
+
+	/**
+	 * Constructor. The topology will be built immediately. The given array 
+	 * will not be modified.
+	 * 
+	 * @param tri Triangle vertex indices (3 consecutive entries per triangle)
+	 * @param numberOfTriangles Number of triangles
+	 * @param numberOfVertices Number of vertices (vertex indices must be less than this value)
+	 * @throws T3dException if an illegal vertex index occurs
+	 */
+	public GmTINEdgeTopology(int[] tri, int numberOfTriangles, int numberOfVertices) 
+		throws T3dException
+	{
+		int n = 3 * numberOfTriangles;
+		if (tri.length < n)
+			throw new T3dException("Triangle index array is too short.");
+
+		// Count the triangle sides per lower vertex index:
+		int[] start = new int[numberOfVertices + 1];
+		for (int s = 0; s < n; s++) {
+			int a = tri[s], b = tri[next(s)];
+			if (a < 0 || a >= numberOfVertices || b < 0 || b >= numberOfVertices)
+				throw new T3dException("Illegal vertex index in triangle " + (s / 3) + ".");
+			start[Math.min(a, b) + 1]++;
+		}
+		for (int v = 0; v < numberOfVertices; v++)
+			start[v + 1] += start[v];
+
+		// Bucket-sort the sides (ascending side index inside each bucket):
+		int[] sides = new int[n];
+		int[] fill = new int[numberOfVertices];
+		System.arraycopy(start, 0, fill, 0, numberOfVertices);
+		for (int s = 0; s < n; s++)
+			sides[fill[Math.min(tri[s], tri[next(s)])]++] = s;
+		fill = null;
+
+		// For each side, determine the first side referring to the same edge:
+		int[] rep = new int[n];
+		long[] keys = null;
+		for (int v = 0; v < numberOfVertices; v++) {
+			int b0 = start[v], b1 = start[v + 1];
+			if (b1 - b0 <= cMaxLinearBucketSize) {
+				for (int i = b0; i < b1; i++) {
+					int s = sides[i], w = other(tri, s, v);
+					rep[s] = s;
+					for (int j = b0; j < i; j++) {
+						if (other(tri, sides[j], v) == w) {
+							rep[s] = sides[j];
+							break;
+						}
+					}
+				}
+			}
+			else {
+				// Large bucket: sort by other vertex index and side index.
+				if (keys == null || keys.length < b1 - b0)
+					keys = new long[b1 - b0];
+				for (int i = b0; i < b1; i++)
+					keys[i - b0] = ((long) other(tri, sides[i], v) << 32) | sides[i];
+				Arrays.sort(keys, 0, b1 - b0);
+				int first = -1, wPrev = -1;
+				for (int i = 0; i < b1 - b0; i++) {
+					int w = (int) (keys[i] >>> 32), s = (int) keys[i];
+					if (i == 0 || w != wPrev)
+						first = s;
+					rep[s] = first;
+					wPrev = w;
+				}
+			}
+		}
+		sides = null;
+		start = null;
+
+		// Number the edges in order of occurrence; note that rep[s] <= s:
+		int ct = 0;
+		for (int s = 0; s < n; s++) {
+			if (rep[s] == s)
+				ct++;
+		}
+		int[] edges = new int[2 * ct];
+		ct = 0;
+		for (int s = 0; s < n; s++) {
+			if (rep[s] == s) {
+				int a = tri[s], b = tri[next(s)];
+				edges[2 * ct] = Math.min(a, b);
+				edges[2 * ct + 1] = Math.max(a, b);
+				rep[s] = ct++;
+			}
+			else
+				rep[s] = rep[rep[s]];
+		}
+
+		mNumberOfEdges = ct;
+		mEdges = edges;
+		mTriEdges = rep;
+	}
+
+	/**
+	 * builds the edge topology of an indexed TIN with respect to ascending 
+	 * vertex indices inside each triangle. Thus, the edge directions get 
+	 * lost; the edges of each triangle will be given in the order 
+	 * <i>(v<sub>0</sub>, v<sub>1</sub>), (v<sub>1</sub>, v<sub>2</sub>), 
+	 * (v<sub>0</sub>, v<sub>2</sub>)</i> with <i>v<sub>0</sub> &lt; 
+	 * v<sub>1</sub> &lt; v<sub>2</sub></i>. This is the edge numbering 
+	 * used by <tt>GmTopoTIN</tt> and <tt>GmDoubleIndexTIN</tt>.
+	 * 
+	 * @param tin Indexed TIN
+	 * @return Edge topology
+	 * @throws T3dException if an illegal vertex index occurs
+	 */
+	public static GmTINEdgeTopology fromSortedTriangles(GmSimpleTINGeometry tin) 
+		throws T3dException
+	{
+		int nt = tin.numberOfTriangles();
+		int[] tri = new int[3 * nt];
+		System.arraycopy(tin.getTriangleIndices(), 0, tri, 0, tri.length);
+		for (int i = 0; i < tri.length; i += 3) {
+			Arrays.sort(tri, i, i + 3);
+		}
+		return new GmTINEdgeTopology(tri, nt, tin.numberOfPoints());
+	}
+
+	private static int next(int s) {
+		return s % 3 == 2 ? s - 2 : s + 1;
+	}
+
+	private static int other(int[] tri, int s, int v) {
+		int a = tri[s];
+		return a != v ? a : tri[next(s)];
+	}
+
+	/**
+	 * returns the number of edges.
+	 * 
+	 * @return Number of edges
+	 */
+	public int numberOfEdges() {
+		return mNumberOfEdges;
+	}
+
+	/**
+	 * returns the edge table. The <i>i</i>-th edge connects the vertices 
+	 * <tt>edges[2i]</tt> and <tt>edges[2i + 1]</tt> with 
+	 * <tt>edges[2i] &lt; edges[2i + 1]</tt>. Note that the internal array 
+	 * will be returned.
+	 * 
+	 * @return Array holding vertex index pairs
+	 */
+	public int[] getEdges() {
+		return mEdges;
+	}
+
+	/**
+	 * returns the triangle-edge table, i.e. the edge indices 
+	 * <tt>triEdges[3t]</tt>, <tt>triEdges[3t + 1]</tt>, and 
+	 * <tt>triEdges[3t + 2]</tt> of the <i>t</i>-th triangle. Note that the 
+	 * internal array will be returned.
+	 * 
+	 * @return Array holding edge index triples
+	 */
+	public int[] getTriangleEdges() {
+		return mTriEdges;
+	}
+}
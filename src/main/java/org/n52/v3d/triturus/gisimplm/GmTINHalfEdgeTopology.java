@@ -0,0 +1,424 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.vgis.VgIndexedTIN;
+
+/**
+ * Array-based half-edge structure for indexed TINs, intended as common kernel
+ * for TIN algorithms that walk over neighboring elements (e.g. flooding, 
+ * contouring or smoothing).<br/>
+ * <br/>
+ * The half-edges are identified by the triangles' corners: half-edge 
+ * <i>h</i> belongs to triangle <i>h / 3</i> and runs from vertex 
+ * <tt>tri[h]</tt> to vertex <tt>tri[next(h)]</tt>. Thus, only a single 
+ * <tt>int</tt> array holding the twin half-edges and a vertex-to-half-edge 
+ * array have to be stored besides the triangle indices; no objects per 
+ * vertex, edge or triangle will be created. Next, previous, twin and 
+ * neighbor triangle queries can be answered in <i>O(1)</i>, one-ring 
+ * queries in <i>O(d)</i> with <i>d</i> = vertex degree.<br/>
+ * <br/>
+ * Note that the triangles must be oriented consistently. Edges shared by 
+ * more than two triangles or by two triangles of opposite orientation will 
+ * be treated as boundary edges.
+ * 
+ * @see GmTINEdgeTopology
+ * @author Benno Schmidt
+ */
+public class GmTINHalfEdgeTopology
+{
+	private int mNumberOfVertices;
+	private int mNumberOfTriangles;
+	private int[] mTri; // half-edge -> start vertex
+	private int[] mTwin; // half-edge -> opposite half-edge, or -1
+	private int[] mEdge; // half-edge -> undirected edge
+	private int[] mOut; // vertex -> outgoing half-edge, or -1
+	private int mNumberOfEdges;
+
+	/**
+	 * Constructor. For {@link GmSimpleTINGeometry}-objects, the triangle 
+	 * index array will be referenced, not copied.
+	 * 
+	 * @param tin Indexed TIN
+	 */
+	public GmTINHalfEdgeTopology(VgIndexedTIN tin)
+	{
+		int nt = tin.numberOfTriangles();
+		int[] tri;
+		if (tin instanceof GmSimpleTINGeometry)
+			tri = ((GmSimpleTINGeometry) tin).getTriangleIndices();
+		else {
+			tri = new int[3 * nt];
+			for (int i = 0; i < nt; i++)
+				System.arraycopy(tin.getTriangleVertexIndices(i), 0, tri, 3 * i, 3);
+		}
+		this.build(tri, nt, tin.numberOfPoints());
+	}
+
+	/**
+	 * Constructor. The given array will be referenced, not copied.
+	 * 
+	 * @param tri Triangle vertex indices (3 consecutive entries per triangle)
+	 * @param numberOfTriangles Number of triangles
+	 * @param numberOfVertices Number of vertices
+	 */
+	public GmTINHalfEdgeTopology(int[] tri, int numberOfTriangles, int numberOfVertices) {
+		this.build(tri, numberOfTriangles, numberOfVertices);
+	}
+
+	private void build(int[] tri, int numberOfTriangles, int numberOfVertices) 
+	{
+		mTri = tri;
+		mNumberOfTriangles = numberOfTriangles;
+		mNumberOfVertices = numberOfVertices;
+
+		GmTINEdgeTopology topo = 
+			new GmTINEdgeTopology(tri, numberOfTriangles, numberOfVertices);
+		mNumberOfEdges = topo.numberOfEdges();
+		mEdge = topo.getTriangleEdges();
+
+		// Pair the half-edges referring to the same edge:
+		int n = 3 * numberOfTriangles;
+		int[] first = new int[mNumberOfEdges];
+		Arrays.fill(first, -1);
+		mTwin = new int[n];
+		for (int h = 0; h < n; h++) {
+			int e = mEdge[h];
+			mTwin[h] = -1;
+			if (first[e] == -1)
+				first[e] = h;
+			else if (first[e] >= 0) {
+				int g = first[e];
+				if (tri[g] == tri[next(h)] && tri[next(g)] == tri[h]) {
+					mTwin[g] = h;
+					mTwin[h] = g;
+				}
+				first[e] = -2 - g; // paired or inconsistent, further sides stay boundary
+			}
+			else {
+				// Non-manifold edge:
+				int g = -2 - first[e];
+				if (mTwin[g] >= 0) {
+					mTwin[mTwin[g]] = -1;
+					mTwin[g] = -1;
+				}
+			}
+		}
+		first = null;
+
+		// Outgoing half-edges; prefer boundary half-edges, so that one-ring 
+		// traversals can start at the boundary:
+		mOut = new int[numberOfVertices];
+		Arrays.fill(mOut, -1);
+		for (int h = 0; h < n; h++) {
+			int v = tri[h];
+			if (mOut[v] == -1 || (mTwin[h] == -1 && mTwin[mOut[v]] != -1))
+				mOut[v] = h;
+		}
+	}
+
+	/**
+	 * returns the number of vertices, including vertices that are not 
+	 * referenced by any triangle.
+	 * 
+	 * @return Number of vertices
+	 */
+	public int numberOfVertices() {
+		return mNumberOfVertices;
+	}
+
+	/**
+	 * returns the number of triangles.
+	 * 
+	 * @return Number of triangles
+	 */
+	public int numberOfTriangles() {
+		return mNumberOfTriangles;
+	}
+
+	/**
+	 * returns the number of undirected edges.
+	 * 
+	 * @return Number of edges
+	 */
+	public int numberOfEdges() {
+		return mNumberOfEdges;
+	}
+
+	/**
+	 * returns the number of half-edges, which is three times the number of 
+	 * triangles.
+	 * 
+	 * @return Number of half-edges
+	 */
+	public int numberOfHalfEdges() {
+		return 3 * mNumberOfTriangles;
+	}
+
+	/**
+	 * returns the next half-edge inside the same triangle.
+	 * 
+	 * @param h Half-edge index
+	 * @return Half-edge index
+	 */
+	public static int next(int h) {
+		return h % 3 == 2 ? h - 2 : h + 1;
+	}
+
+	/**
+	 * returns the previous half-edge inside the same triangle.
+	 * 
+	 * @param h Half-edge index
+	 * @return Half-edge index
+	 */
+	public static int prev(int h) {
+		return h % 3 == 0 ? h + 2 : h - 1;
+	}
+
+	/**
+	 * returns the opposite half-edge inside the neighboring triangle.
+	 * 
+	 * @param h Half-edge index
+	 * @return Half-edge index, or -1 for boundary half-edges
+	 */
+	public int twin(int h) {
+		return mTwin[h];
+	}
+
+	/**
+	 * returns the index of the triangle the given half-edge belongs to.
+	 * 
+	 * @param h Half-edge index
+	 * @return Triangle index
+	 */
+	public static int triangle(int h) {
+		return h / 3;
+	}
+
+	/**
+	 * returns the start vertex of the given half-edge.
+	 * 
+	 * @param h Half-edge index
+	 * @return Vertex index
+	 */
+	public int origin(int h) {
+		return mTri[h];
+	}
+
+	/**
+	 * returns the end vertex of the given half-edge.
+	 * 
+	 * @param h Half-edge index
+	 * @return Vertex index
+	 */
+	public int target(int h) {
+		return mTri[next(h)];
+	}
+
+	/**
+	 * returns the undirected edge the given half-edge refers to.
+	 * 
+	 * @param h Half-edge index
+	 * @return Edge index, see {@link GmTINEdgeTopology#getEdges()}
+	 */
+	public int edge(int h) {
+		return mEdge[h];
+	}
+
+	/**
+	 * returns a half-edge starting at the given vertex. For boundary 
+	 * vertices, the boundary half-edge will be returned.
+	 * 
+	 * @param v Vertex index
+	 * @return Half-edge index, or -1 for vertices that are not referenced
+	 */
+	public int outgoingHalfEdge(int v) {
+		return mOut[v];
+	}
+
+	/**
+	 * checks, if the given half-edge has no twin, i.e. if it lies on the 
+	 * TIN's boundary. Note that this also holds for half-edges of 
+	 * non-manifold or inconsistently oriented edges.
+	 * 
+	 * @param h Half-edge index
+	 * @return <i>true</i> for boundary half-edges
+	 */
+	public boolean isBoundary(int h) {
+		return mTwin[h] == -1;
+	}
+
+	/**
+	 * checks, if the given vertex is the start vertex of a boundary 
+	 * half-edge.
+	 * 
+	 * @param v Vertex index
+	 * @return <i>true</i> for boundary vertices, <i>false</i> for interior 
+	 * vertices and vertices that are not referenced
+	 */
+	public boolean isBoundaryVertex(int v) {
+		return mOut[v] != -1 && mTwin[mOut[v]] == -1;
+	}
+
+	/**
+	 * returns the triangle that is adjacent to the <i>k</i>-th side of the 
+	 * triangle <i>t</i>, i.e. the side from vertex <i>k</i> to vertex 
+	 * <i>(k + 1) % 3</i>.
+	 * 
+	 * @param t Triangle index
+	 * @param k Side index (0, 1, or 2)
+	 * @return Triangle index, or -1 for boundary sides
+	 */
+	public int neighborTriangle(int t, int k) {
+		int g = mTwin[3 * t + k];
+		return g < 0 ? -1 : g / 3;
+	}
+
+	/**
+	 * returns the next outgoing half-edge around the start vertex of 
+	 * <i>h</i> in counter-clockwise direction.
+	 * 
+	 * @param h Half-edge index
+	 * @return Half-edge index, or -1 if the boundary has been reached
+	 */
+	public int rotateCCW(int h) {
+		return mTwin[prev(h)];
+	}
+
+	/**
+	 * determines the vertices adjacent to the vertex <i>v</i> in 
+	 * counter-clockwise order. For boundary vertices, the sequence starts and
+	 * ends with the boundary neighbors.
+	 * 
+	 * @param v Vertex index
+	 * @param res Array to store the neighbor vertex indices; the array must 
+	 * be large enough to hold the vertex degree
+	 * @return Number of neighbors
+	 */
+	public int oneRing(int v, int[] res) 
+	{
+		int h0 = mOut[v], n = 0;
+		if (h0 < 0)
+			return 0;
+		int h = h0;
+		do {
+			res[n++] = mTri[next(h)];
+			int g = mTwin[prev(h)];
+			if (g < 0) {
+				res[n++] = mTri[prev(h)]; // boundary reached
+				break;
+			}
+			h = g;
+		} 
+		while (h != h0);
+		return n;
+	}
+
+	/**
+	 * determines the triangles incident to the vertex <i>v</i> in 
+	 * counter-clockwise order.
+	 * 
+	 * @param v Vertex index
+	 * @param res Array to store the triangle indices; the array must be large
+	 * enough to hold the vertex degree
+	 * @return Number of triangles
+	 */
+	public int incidentTriangles(int v, int[] res) 
+	{
+		int h0 = mOut[v], n = 0;
+		if (h0 < 0)
+			return 0;
+		int h = h0;
+		do {
+			res[n++] = h / 3;
+			h = mTwin[prev(h)];
+		} 
+		while (h >= 0 && h != h0);
+		return n;
+	}
+
+	/**
+	 * returns the boundary half-edge following the given boundary half-edge
+	 * along the boundary loop.
+	 * 
+	 * @param h Boundary half-edge index
+	 * @return Half-edge index
+	 * @throws T3dException if <i>h</i> is not a boundary half-edge
+	 */
+	public int nextBoundaryHalfEdge(int h) throws T3dException
+	{
+		if (mTwin[h] != -1)
+			throw new T3dException("Half-edge " + h + " is not part of the boundary.");
+		int g = next(h);
+		while (mTwin[g] != -1)
+			g = next(mTwin[g]);
+		return g;
+	}
+
+	/**
+	 * determines all boundary loops. Each loop will be given as sequence of 
+	 * boundary half-edges; the loops follow the triangles' orientation, i.e.
+	 * the TIN's interior lies left of the boundary half-edges.
+	 * 
+	 * @return List of boundary loops
+	 * @throws T3dException if a boundary loop can not be closed (non-manifold TIN)
+	 */
+	public ArrayList<int[]> boundaryLoops() throws T3dException
+	{
+		ArrayList<int[]> res = new ArrayList<int[]>();
+		int n = 3 * mNumberOfTriangles;
+		boolean[] visited = new boolean[n];
+		int[] loop = new int[16];
+		for (int h0 = 0; h0 < n; h0++) {
+			if (mTwin[h0] != -1 || visited[h0])
+				continue;
+			int len = 0, h = h0;
+			do {
+				if (visited[h])
+					throw new T3dException("Boundary loop can not be closed (non-manifold TIN).");
+				visited[h] = true;
+				if (len == loop.length)
+					loop = Arrays.copyOf(loop, 2 * len);
+				loop[len++] = h;
+				h = this.nextBoundaryHalfEdge(h);
+			} 
+			while (h != h0);
+			res.add(Arrays.copyOf(loop, len));
+		}
+		return res;
+	}
+}
@@ -0,0 +1,456 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.util.Arrays;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.t3dutil.TriangleKernel;
+import org.n52.v3d.triturus.vgis.VgIndexedTIN;
+import org.n52.v3d.triturus.vgis.VgPoint;
+import org.n52.v3d.triturus.vgis.T3dSRSException;
+
+/**
+ * Spatial index to locate the triangles of an indexed TIN that contain given
+ * positions (x, y) and to query the TIN's elevations at these positions.<br/>
+ * <br/>
+ * The triangles' bounding-boxes are registered in a uniform bucket grid 
+ * consisting of about as many cells as there are triangles; the cell 
+ * contents are held in flat <tt>int</tt> arrays. Point queries follow a 
+ * jump-and-walk strategy: starting at the triangle found by the previous 
+ * query, the locator walks over adjacent triangles towards the query 
+ * position (see {@link GmTINHalfEdgeTopology}); if this walk does not 
+ * succeed within a few steps, the triangles registered in the query 
+ * position's bucket will be checked. Thus, spatially coherent query 
+ * sequences (e.g. profile points or marker lists) will mostly be answered 
+ * by a single point-in-triangle test.<br/>
+ * <br/>
+ * Note that the index refers to the TIN's coordinates at construction time;
+ * after modifications of the TIN, a new index has to be built. Since the 
+ * start triangle of the previous query is kept, an index instance should not
+ * be queried by multiple threads concurrently.
+ * 
+ * @see GmSimpleTINFeature#getValue(VgPoint)
+ * @author Benno Schmidt
+ */
+public class GmTINSpatialIndex
+{
+	private static final int cMaxWalkSteps = 32;
+	private static final double cMaxWalkCells = 4.; // max. query distance for walks
+	private static final int cMinSortedBatch = 1024;
+
+	private double[] mXYZ;
+	private int[] mTri;
+	private int mNumberOfTriangles;
+	private String mSRS;
+	private GmTINHalfEdgeTopology mTopo;
+
+	private double mXMin, mYMin, mXMax, mYMax, mCellX, mCellY;
+	private int mCols, mRows;
+	private int[] mCellStart; // cell -> first entry in mCellTri
+	private int[] mCellTri; // triangle indices, sorted by cells
+	private float[] mBox; // per triangle: x-min, y-min, x-max, y-max (rounded outwards)
+
+	private int mLastTri = -1;
+	private double mLastX, mLastY;
+
+	/**
+	 * Constructor. For {@link GmSimpleTINGeometry}-objects, the vertex and
+	 * triangle arrays will be referenced, not copied.
+	 * 
+	 * @param tin Indexed TIN
+	 */
+	public GmTINSpatialIndex(VgIndexedTIN tin)
+	{
+		int nv = tin.numberOfPoints(), nt = tin.numberOfTriangles();
+		if (tin instanceof GmSimpleTINGeometry) {
+			mXYZ = ((GmSimpleTINGeometry) tin).getCoordinates();
+			mTri = ((GmSimpleTINGeometry) tin).getTriangleIndices();
+		}
+		else {
+			mXYZ = new double[3 * nv];
+			for (int i = 0; i < nv; i++) {
+				VgPoint p = tin.getPoint(i);
+				mXYZ[3 * i] = p.getX();
+				mXYZ[3 * i + 1] = p.getY();
+				mXYZ[3 * i + 2] = p.getZ();
+			}
+			mTri = new int[3 * nt];
+			for (int i = 0; i < nt; i++)
+				System.arraycopy(tin.getTriangleVertexIndices(i), 0, mTri, 3 * i, 3);
+		}
+		mNumberOfTriangles = nt;
+		mSRS = tin.getSRS();
+		mTopo = new GmTINHalfEdgeTopology(mTri, nt, nv);
+		this.buildBuckets();
+	}
+
+	private void buildBuckets()
+	{
+		int nt = mNumberOfTriangles;
+		double 
+			xMin = Double.POSITIVE_INFINITY, xMax = Double.NEGATIVE_INFINITY, 
+			yMin = Double.POSITIVE_INFINITY, yMax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < 3 * nt; i++) {
+			int v = 3 * mTri[i];
+			double x = mXYZ[v], y = mXYZ[v + 1];
+			if (x < xMin) xMin = x;
+			if (x > xMax) xMax = x;
+			if (y < yMin) yMin = y;
+			if (y > yMax) yMax = y;
+		}
+		if (nt == 0) {
+			xMin = xMax = yMin = yMax = 0.;
+		}
+
+		// Choose about one cell per triangle, cells as square as possible:
+		double w = xMax - xMin, h = yMax - yMin;
+		int n = Math.max(nt, 1);
+		if (w > 0. && h > 0.) {
+			mCols = (int) Math.ceil(Math.sqrt(n * w / h));
+			mCols = Math.max(1, Math.min(mCols, n));
+			mRows = Math.max(1, (int) Math.ceil((double) n / mCols));
+		}
+		else if (w > 0.) {
+			mCols = n; mRows = 1;
+		}
+		else if (h > 0.) {
+			mCols = 1; mRows = n;
+		}
+		else {
+			mCols = mRows = 1;
+		}
+		mXMin = xMin;
+		mYMin = yMin;
+		mXMax = xMax;
+		mYMax = yMax;
+		mCellX = w > 0. ? w / mCols : 1.;
+		mCellY = h > 0. ? h / mRows : 1.;
+
+		// Compact triangle bounding-boxes for fast rejection tests:
+		mBox = new float[4 * nt];
+		for (int t = 0; t < nt; t++) {
+			int a = 3 * mTri[3 * t], b = 3 * mTri[3 * t + 1], c = 3 * mTri[3 * t + 2];
+			mBox[4 * t] = floor(Math.min(mXYZ[a], Math.min(mXYZ[b], mXYZ[c])));
+			mBox[4 * t + 1] = floor(Math.min(mXYZ[a + 1], Math.min(mXYZ[b + 1], mXYZ[c + 1])));
+			mBox[4 * t + 2] = ceil(Math.max(mXYZ[a], Math.max(mXYZ[b], mXYZ[c])));
+			mBox[4 * t + 3] = ceil(Math.max(mXYZ[a + 1], Math.max(mXYZ[b + 1], mXYZ[c + 1])));
+		}
+
+		// Count the triangles per cell, then fill the cells (two passes):
+		int nCells = mCols * mRows;
+		mCellStart = new int[nCells + 1];
+		for (int pass = 0; pass < 2; pass++) {
+			int[] pos = null;
+			if (pass == 1) {
+				for (int c = 0; c < nCells; c++)
+					mCellStart[c + 1] += mCellStart[c];
+				mCellTri = new int[mCellStart[nCells]];
+				pos = new int[nCells];
+				System.arraycopy(mCellStart, 0, pos, 0, nCells);
+			}
+			for (int t = 0; t < nt; t++) {
+				int 
+					c0 = this.col(mBox[4 * t]), r0 = this.row(mBox[4 * t + 1]),
+					c1 = this.col(mBox[4 * t + 2]), r1 = this.row(mBox[4 * t + 3]);
+				for (int r = r0; r <= r1; r++) {
+					for (int cc = c0; cc <= c1; cc++) {
+						int cell = r * mCols + cc;
+						if (pass == 0)
+							mCellStart[cell + 1]++;
+						else
+							mCellTri[pos[cell]++] = t;
+					}
+				}
+			}
+		}
+	}
+
+	private static float floor(double v) {
+		float f = (float) v;
+		return f > v ? Math.nextAfter(f, Double.NEGATIVE_INFINITY) : f;
+	}
+
+	private static float ceil(double v) {
+		float f = (float) v;
+		return f < v ? Math.nextAfter(f, Double.POSITIVE_INFINITY) : f;
+	}
+
+	private int col(double x) {
+		int c = (int) ((x - mXMin) / mCellX);
+		return c < 0 ? 0 : (c >= mCols ? mCols - 1 : c);
+	}
+
+	private int row(double y) {
+		int r = (int) ((y - mYMin) / mCellY);
+		return r < 0 ? 0 : (r >= mRows ? mRows - 1 : r);
+	}
+
+	/**
+	 * returns the number of triangles of the indexed TIN.
+	 * 
+	 * @return Number of triangles
+	 */
+	public int numberOfTriangles() {
+		return mNumberOfTriangles;
+	}
+
+	/**
+	 * returns the half-edge topology that is used by the locator.
+	 * 
+	 * @return Half-edge structure
+	 */
+	public GmTINHalfEdgeTopology getTopology() {
+		return mTopo;
+	}
+
+	/**
+	 * determines the index of a triangle containing the position (x, y). 
+	 * Positions on common edges will be assigned to one of the adjacent 
+	 * triangles. Triangles that are degenerated inside the x-y plane will 
+	 * never be returned. If the previous query position lies close to 
+	 * (x, y), the search starts at the triangle found by the previous query.
+	 * 
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @return Triangle index, or -1 if the position lies outside the TIN
+	 */
+	public int locate(double x, double y) 
+	{
+		int start = -1;
+		if (mLastTri >= 0 && 
+			Math.abs(x - mLastX) <= cMaxWalkCells * mCellX && 
+			Math.abs(y - mLastY) <= cMaxWalkCells * mCellY) 
+		{
+			start = mLastTri;
+		}
+		int t = this.locate(x, y, start);
+		if (t >= 0) {
+			mLastTri = t;
+			mLastX = x;
+			mLastY = y;
+		}
+		return t;
+	}
+
+	/**
+	 * determines the index of a triangle containing the position (x, y), 
+	 * starting the search at the given triangle.
+	 * 
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param startTri Start triangle index, or -1 to use the bucket grid only
+	 * @return Triangle index, or -1 if the position lies outside the TIN
+	 */
+	public int locate(double x, double y, int startTri)
+	{
+		if (Double.isNaN(x) || Double.isNaN(y))
+			return -1;
+		if (startTri >= 0 && startTri < mNumberOfTriangles) {
+			int t = this.walk(startTri, x, y);
+			if (t >= 0)
+				return t;
+		}
+
+		// Jump to the position's bucket (note that col() and row() clamp 
+		// positions on the upper borders, where (x - x-min) / cell-size may 
+		// exceed the number of columns or rows due to rounding):
+		if (x < mXMin || y < mYMin || x > mXMax || y > mYMax)
+			return -1;
+		int cell = this.row(y) * mCols + this.col(x);
+		for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++) {
+			int t = mCellTri[i];
+			if (this.contains(t, x, y))
+				return t;
+		}
+		return -1;
+	}
+
+	// Visibility walk towards (x, y). Returns -1, if the walk leaves the TIN, 
+	// reaches a degenerated triangle or exceeds the step limit.
+	private int walk(int t, double x, double y)
+	{
+		int from = -1; // half-edge the walk entered the current triangle through
+		for (int step = 0; step < cMaxWalkSteps; step++) 
+		{
+			int h0 = 3 * t;
+			int 
+				a = 3 * mTri[h0], b = 3 * mTri[h0 + 1], c = 3 * mTri[h0 + 2];
+			double orient = TriangleKernel.orient2d(
+				mXYZ[a], mXYZ[a + 1], mXYZ[b], mXYZ[b + 1], mXYZ[c], mXYZ[c + 1]);
+			if (orient == 0.)
+				return -1;
+
+			int exit = -1;
+			for (int k = 0; k < 3 && exit < 0; k++) {
+				int h = h0 + (step + k) % 3; // vary the first side to avoid cycles
+				if (h == from)
+					continue;
+				int p = 3 * mTri[h], q = 3 * mTri[GmTINHalfEdgeTopology.next(h)];
+				double o = TriangleKernel.orient2d(
+					mXYZ[p], mXYZ[p + 1], mXYZ[q], mXYZ[q + 1], x, y);
+				if ((o < 0. && orient > 0.) || (o > 0. && orient < 0.))
+					exit = h;
+			}
+			if (exit < 0)
+				return t; // (x, y) lies inside or on the triangle's boundary
+
+			int twin = mTopo.twin(exit);
+			if (twin < 0)
+				return -1;
+			from = twin;
+			t = GmTINHalfEdgeTopology.triangle(twin);
+		}
+		return -1;
+	}
+
+	private boolean contains(int t, double x, double y)
+	{
+		int b4 = 4 * t;
+		if (x < mBox[b4] || y < mBox[b4 + 1] || x > mBox[b4 + 2] || y > mBox[b4 + 3])
+			return false;
+		int a = 3 * mTri[3 * t], b = 3 * mTri[3 * t + 1], c = 3 * mTri[3 * t + 2];
+		double 
+			ax = mXYZ[a], ay = mXYZ[a + 1], 
+			bx = mXYZ[b], by = mXYZ[b + 1], 
+			cx = mXYZ[c], cy = mXYZ[c + 1];
+		if (TriangleKernel.orient2d(ax, ay, bx, by, cx, cy) == 0.)
+			return false;
+		return TriangleKernel.isInsideXY(ax, ay, bx, by, cx, cy, x, y, true);
+	}
+
+	/**
+	 * returns the TIN's elevation at the position (x, y).
+	 * 
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @return Interpolated z-value, or <tt>Double.NaN</tt> if the position
+	 * lies outside the TIN
+	 */
+	public double getValue(double x, double y)
+	{
+		int t = this.locate(x, y);
+		if (t < 0)
+			return Double.NaN;
+		return this.interpolate(t, x, y);
+	}
+
+	private double interpolate(int t, double x, double y)
+	{
+		int a = 3 * mTri[3 * t], b = 3 * mTri[3 * t + 1], c = 3 * mTri[3 * t + 2];
+		return TriangleKernel.interpolateZ(
+			mXYZ[a], mXYZ[a + 1], mXYZ[a + 2], 
+			mXYZ[b], mXYZ[b + 1], mXYZ[b + 2], 
+			mXYZ[c], mXYZ[c + 1], mXYZ[c + 2], 
+			x, y);
+	}
+
+	/**
+	 * returns the TIN's elevation at the given position. If the position 
+	 * lies outside the TIN, the method will return <i>null</i>. 
+	 * 
+	 * @param pos Position (x, y)
+	 * @return Elevation (z) as {@link Double}-object or <i>null</i>
+	 * @throws T3dSRSException if the position's coordinate reference system 
+	 * is not compatible to the TIN's reference system
+	 */
+	public Double getValue(VgPoint pos) throws T3dSRSException
+	{
+		if (pos == null)
+			return null;
+		this.assertSRS(pos.getSRS());
+		double z = this.getValue(pos.getX(), pos.getY());
+		return Double.isNaN(z) ? null : Double.valueOf(z);
+	}
+
+	/**
+	 * returns the TIN's elevations for a sequence of positions. The 
+	 * positions are given as flat array <i>x<sub>0</sub>, y<sub>0</sub>, 
+	 * x<sub>1</sub>, y<sub>1</sub>, ...</i>; for positions outside the TIN,
+	 * <tt>Double.NaN</tt> will be returned. Large batches will be processed
+	 * in bucket order, so that successive queries can be answered by short
+	 * walks, even if the given positions are scattered.
+	 * 
+	 * @param xy Position coordinates
+	 * @return Array holding <tt>xy.length / 2</tt> z-values
+	 */
+	public double[] getValues(double[] xy) {
+		return this.getValues(xy, new double[xy.length / 2]);
+	}
+
+	/**
+	 * returns the TIN's elevations for a sequence of positions and stores 
+	 * them in the given array.
+	 * 
+	 * @param xy Position coordinates <i>x<sub>0</sub>, y<sub>0</sub>, 
+	 * x<sub>1</sub>, y<sub>1</sub>, ...</i>
+	 * @param res Array to store the z-values, holding at least 
+	 * <tt>xy.length / 2</tt> elements
+	 * @return <tt>res</tt>
+	 * @throws T3dException if the result array is too small
+	 */
+	public double[] getValues(double[] xy, double[] res) throws T3dException
+	{
+		int n = xy.length / 2;
+		if (res.length < n)
+			throw new T3dException("Result array too small (" + res.length + " < " + n + ").");
+		if (n < cMinSortedBatch) {
+			for (int i = 0; i < n; i++)
+				res[i] = this.getValue(xy[2 * i], xy[2 * i + 1]);
+			return res;
+		}
+
+		// Process the positions in the order of their bucket cells; the
+		// query index is kept in the lower 32 bits of the sort key:
+		long[] key = new long[n];
+		for (int i = 0; i < n; i++) {
+			double x = xy[2 * i], y = xy[2 * i + 1];
+			long cell = Double.isNaN(x) || Double.isNaN(y) ? 0 : this.row(y) * mCols + this.col(x);
+			key[i] = (cell << 32) | i;
+		}
+		Arrays.sort(key);
+		for (int k = 0; k < n; k++) {
+			int i = (int) key[k];
+			res[i] = this.getValue(xy[2 * i], xy[2 * i + 1]);
+		}
+		return res;
+	}
+
+	private void assertSRS(String srs) throws T3dSRSException
+	{
+		if (srs == null && mSRS == null)
+			return;
+		if (srs == null || !srs.equalsIgnoreCase(mSRS))
+			throw new T3dSRSException();
+	}
+}
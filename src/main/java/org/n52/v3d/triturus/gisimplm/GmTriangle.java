@@ -32,6 +32,7 @@
  */
 package org.n52.v3d.triturus.gisimplm;
 
+import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.vgis.*;
 
 /**
@@ -58,6 +59,22 @@ public class GmTriangle extends VgTriangle
         this.setCornerPoints(p1, p2, p3); 
     }
 
+    /* 
+     * Constructor. The corner-points will be set to (0, 0, 0); use 
+     * <tt>setCornerPoints()</tt> to specify the coordinates.
+     * 
+     * @param srs Coordinate reference system of the corner points
+     */
+    GmTriangle(String srs) 
+    {
+        p1 = new GmPoint(); 
+        p2 = new GmPoint(); 
+        p3 = new GmPoint();
+        p1.setSRS(srs);
+        p2.setSRS(srs);
+        p3.setSRS(srs);
+    }
+
     public void setCornerPoints(VgPoint p1, VgPoint p2, VgPoint p3)
     {
         this.p1 = new GmPoint(p1);
@@ -68,6 +85,23 @@ public class GmTriangle extends VgTriangle
         envHasBeenCalculated = false;
     }
 
+    /**
+     * sets the triangle's corner-points by their coordinates. The existing
+     * corner-point objects will be re-used, so this method does not allocate
+     * any objects. Note that point objects previously received by
+     * <tt>this.getCornerPoints()</tt> will be modified, too.
+     */
+    public void setCornerPoints(
+    	double x1, double y1, double z1,
+    	double x2, double y2, double z2,
+    	double x3, double y3, double z3)
+    {
+        p1.setX(x1); p1.setY(y1); p1.setZ(z1);
+        p2.setX(x2); p2.setY(y2); p2.setZ(z2);
+        p3.setX(x3); p3.setY(y3); p3.setZ(z3);
+        envHasBeenCalculated = false;
+    }
+
     /**
      * returns the triangle's corner-points.
      * 
@@ -79,6 +113,16 @@ public class GmTriangle extends VgTriangle
         return res;
     }
 
+    public VgPoint getCornerPoint(int i) 
+    {
+        switch (i) {
+            case 0: return p1;
+            case 1: return p2;
+            case 2: return p3;
+            default: throw new T3dException("Illegal corner index " + i + ".");
+        }
+    }
+
     /**
      * returns the triangle's center point.
      * 
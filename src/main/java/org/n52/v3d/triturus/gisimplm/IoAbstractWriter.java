@@ -35,13 +35,23 @@ package org.n52.v3d.triturus.gisimplm;
 import org.n52.v3d.triturus.core.IoObject;
 import org.n52.v3d.triturus.core.T3dException;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 
 /**
  * Abstract base-class for I/O objects that write geo-data to files or streams.
  * Note that machine-specific locale settings might affect the way coordinates 
- * will be written to files.
+ * will be written to files.<br/>
+ * <br/>
+ * To write large numbers of coordinates, subclasses should use the methods
+ * <tt>writeXY()</tt> and <tt>writeZ()</tt>, which format numbers without 
+ * allocating any objects, instead of <tt>DecimalFormat</tt> objects. For
+ * formats that are written with full precision by default, the methods 
+ * <tt>writePreciseXY()</tt> and <tt>writePreciseZ()</tt> should be used.
  * 
  * @author Benno Schmidt
  */
@@ -49,6 +59,17 @@ abstract public class IoAbstractWriter extends IoObject
 {
     private int mPrecisionXY = 2; // # positions after decimal point for x- und y-coordinates
     private int mPrecisionZ = 2; // # positions after decimal point for z-coordinates
+    private boolean mPrecisionXYSet = false, mPrecisionZSet = false;
+
+    private char[] mNumBuf = new char[32];
+
+    private final static double[] cPow10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 
+        1e11, 1e12, 1e13, 1e14, 1e15};
+    private final static long[] cLongPow10 = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 
+        1000000000L, 10000000000L, 100000000000L, 1000000000000L, 
+        10000000000000L, 100000000000000L, 1000000000000000L};
 
     /**
      * returns the number of decimal places (after decimal point) for <i>x</i>- 
@@ -63,6 +84,8 @@ abstract public class IoAbstractWriter extends IoObject
     /**
      * sets the number of decimal places (after decimal point) for <i>x</i>- 
      * and <i>y</i>-coordinates to be written. By default, a value of 2 is set.
+     * Note that some formats will be written with full precision, unless the
+     * precision has been set explicitly.
      * 
      * @param prec Number of decimal places (after decimal point)
      */
@@ -70,6 +93,7 @@ abstract public class IoAbstractWriter extends IoObject
         if (prec < 0)
             throw new T3dException("Invalid value for precision (" + prec + ").");
         mPrecisionXY = prec;
+        mPrecisionXYSet = true;
     }
 
     /**
@@ -85,6 +109,8 @@ abstract public class IoAbstractWriter extends IoObject
     /**
      * sets the number of decimal places (after decimal point) for 
      * <i>z</i>-coordinates to be written. By default, a value of 2 is set.
+     * Note that some formats will be written with full precision, unless the
+     * precision has been set explicitly.
      * 
      * @param prec Number of decimal places (after decimal point) &gt;= 0
      */
@@ -92,6 +118,7 @@ abstract public class IoAbstractWriter extends IoObject
         if (prec < 0)
             throw new T3dException("Invalid value for precision (" + prec + ").");
         mPrecisionZ = prec;
+        mPrecisionZSet = true;
     }
 
     /**
@@ -126,6 +153,153 @@ abstract public class IoAbstractWriter extends IoObject
         return new DecimalFormat(format, this.decimalFormatSymbols());
     }
 
+    /**
+     * writes an <i>x</i>- or <i>y</i>-coordinate according to the precision
+     * that has been set for <i>x</i>- and <i>y</i>-coordinates. The result 
+     * corresponds to the output of the <tt>DecimalFormat</tt>-object provided
+     * by <tt>this.getDecimalFormatXY()</tt>, but no objects will be allocated.
+     * 
+     * @param out Target writer
+     * @param val Coordinate value
+     * @throws IOException
+     */
+    protected void writeXY(Writer out, double val) throws IOException {
+        this.writeFixed(out, val, mPrecisionXY);
+    }
+
+    /**
+     * writes a <i>z</i>-coordinate according to the precision that has been 
+     * set for <i>z</i>-coordinates. The result corresponds to the output of 
+     * the <tt>DecimalFormat</tt>-object provided by 
+     * <tt>this.getDecimalFormatZ()</tt>, but no objects will be allocated.
+     * 
+     * @param out Target writer
+     * @param val Coordinate value
+     * @throws IOException
+     */
+    protected void writeZ(Writer out, double val) throws IOException {
+        this.writeFixed(out, val, mPrecisionZ);
+    }
+
+    /**
+     * writes an <i>x</i>- or <i>y</i>-coordinate with full precision (see 
+     * <tt>Double.toString()</tt>). If a precision has been set explicitly by
+     * <tt>this.setPrecisionXY()</tt>, <tt>this.writeXY()</tt> will be used 
+     * instead.
+     * 
+     * @param out Target writer
+     * @param val Coordinate value
+     * @throws IOException
+     */
+    protected void writePreciseXY(Writer out, double val) throws IOException {
+        if (mPrecisionXYSet)
+            this.writeFixed(out, val, mPrecisionXY);
+        else
+            out.write(Double.toString(val));
+    }
+
+    /**
+     * writes a <i>z</i>-coordinate with full precision (see 
+     * <tt>Double.toString()</tt>). If a precision has been set explicitly by
+     * <tt>this.setPrecisionZ()</tt>, <tt>this.writeZ()</tt> will be used 
+     * instead.
+     * 
+     * @param out Target writer
+     * @param val Coordinate value
+     * @throws IOException
+     */
+    protected void writePreciseZ(Writer out, double val) throws IOException {
+        if (mPrecisionZSet)
+            this.writeFixed(out, val, mPrecisionZ);
+        else
+            out.write(Double.toString(val));
+    }
+
+    /**
+     * writes an integer number, e.g. a vertex index, without allocating any
+     * objects.
+     * 
+     * @param out Target writer
+     * @param val Number
+     * @throws IOException
+     */
+    protected void writeInt(Writer out, long val) throws IOException
+    {
+        if (val == Long.MIN_VALUE) {
+            out.write(Long.toString(val));
+            return;
+        }
+        char[] buf = mNumBuf;
+        int pos = buf.length;
+        long v = Math.abs(val);
+        do {
+            buf[--pos] = (char) ('0' + v % 10L);
+            v /= 10L;
+        } while (v > 0L);
+        if (val < 0L)
+            buf[--pos] = '-';
+        out.write(buf, pos, buf.length - pos);
+    }
+
+    /**
+     * writes a number with a fixed number of decimal places. Rounding will 
+     * be performed half-even, as <tt>DecimalFormat</tt> does. As decimal 
+     * point, the '.' character will be used. Unlike <tt>DecimalFormat</tt>, 
+     * negative numbers that are rounded to zero will be written without 
+     * minus sign.
+     * 
+     * @param out Target writer
+     * @param val Number
+     * @param prec Number of decimal places (after decimal point) &gt;= 0
+     * @throws IOException
+     */
+    protected void writeFixed(Writer out, double val, int prec) throws IOException
+    {
+        if (val != val || Double.isInfinite(val)) {
+            out.write(Double.toString(val));
+            return;
+        }
+        double scaled = Math.abs(val) * (prec < cPow10.length ? cPow10[prec] : 0.);
+        if (prec >= cPow10.length || scaled >= 1e15) {
+            // More digits than a double value can provide are requested, thus 
+            // the shortest decimal representation will be rounded (ties will 
+            // be decided by the exact binary value):
+            BigDecimal sh = new BigDecimal(Double.toString(val));
+            BigDecimal res = sh.setScale(prec, RoundingMode.HALF_UP);
+            if (res.compareTo(sh.setScale(prec, RoundingMode.HALF_DOWN)) != 0)
+                res = new BigDecimal(val).setScale(prec, RoundingMode.HALF_EVEN);
+            out.write(res.toPlainString());
+            return;
+        }
+        // Since the product might be inexact, values close to a tie have to be 
+        // rounded exactly:
+        double r = Math.rint(scaled);
+        if (Math.abs(Math.abs(scaled - r) - 0.5) <= Math.ulp(scaled)) {
+            out.write(new BigDecimal(val).setScale(prec, RoundingMode.HALF_EVEN).toPlainString());
+            return;
+        }
+
+        // Fill the buffer from right to left:
+        long digits = (long) r;
+        char[] buf = mNumBuf;
+        int pos = buf.length;
+        long frac = digits % cLongPow10[prec], intPart = digits / cLongPow10[prec];
+        if (prec > 0) {
+            for (int i = 0; i < prec; i++) {
+                buf[--pos] = (char) ('0' + frac % 10L);
+                frac /= 10L;
+            }
+            buf[--pos] = '.';
+        }
+        do {
+            buf[--pos] = (char) ('0' + intPart % 10L);
+            intPart /= 10L;
+        } while (intPart > 0L);
+        if (val < 0. && digits != 0L)
+            buf[--pos] = '-';
+        out.write(buf, pos, buf.length - pos);
+    }
+
     private DecimalFormatSymbols decimalFormatSymbols()
     {
         DecimalFormatSymbols ret = new DecimalFormatSymbols();
@@ -0,0 +1,276 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.nio.charset.Charset;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Scanner to parse decimal numbers directly from ASCII encoded bytes, e.g. 
+ * the contents of a memory-mapped file region, without allocating 
+ * <tt>String</tt> objects. Numbers may be given in integer, 
+ * fixed-point or exponential notation. Blanks, tabulators and carriage 
+ * returns separate the tokens; further delimiters can be set by 
+ * <tt>setDelimiters()</tt>. Line feeds terminate lines.<br/>
+ * <br/>
+ * Note: For numbers with more than 18 significant digits or large decimal
+ * exponents, parsing will be delegated to <tt>Double.parseDouble()</tt>.
+ * 
+ * @author Benno Schmidt
+ */
+final class IoAsciiNumberScanner
+{
+    private byte[] mBuf;
+    private int mPos, mLimit;
+    private boolean[] mSeparator = new boolean[128];
+    private boolean mDecimalComma = false;
+
+    private final static Charset cCharset = Charset.forName("US-ASCII");
+    private final static double[] cPow10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Constructor.
+     */
+    IoAsciiNumberScanner() {
+        this.setDelimiters("");
+    }
+
+    /**
+     * sets additional delimiters. Blanks, tabulators, carriage returns and 
+     * line feeds will always be treated as delimiters.
+     * 
+     * @param delimiters ASCII characters separating the tokens 
+     */
+    void setDelimiters(String delimiters) 
+    {
+        mSeparator = new boolean[128];
+        mSeparator[' '] = mSeparator['\t'] = mSeparator['\r'] = mSeparator['\n'] = true;
+        for (int i = 0; i < delimiters.length(); i++) {
+            char c = delimiters.charAt(i);
+            if (c < 128) 
+                mSeparator[c] = true;
+        }
+    }
+
+    /**
+     * specifies whether a comma shall be accepted as decimal point (default: 
+     * <i>false</i>).
+     * 
+     * @param decimalComma <i>true</i> to accept commas as decimal points
+     */
+    void setDecimalComma(boolean decimalComma) {
+        mDecimalComma = decimalComma;
+    }
+
+    /**
+     * sets the buffer region that shall be scanned.
+     * 
+     * @param buf Bytes to scan
+     * @param from Start position
+     * @param to End position (exclusive)
+     */
+    void reset(byte[] buf, int from, int to) {
+        mBuf = buf;
+        mPos = from;
+        mLimit = to;
+    }
+
+    /**
+     * returns the current position.
+     */
+    int position() {
+        return mPos;
+    }
+
+    /**
+     * skips blanks, tabulators, carriage returns and the delimiters set.
+     * 
+     * @return <i>true</i>, if a token follows in the current line
+     */
+    boolean skipBlanks() 
+    {
+        while (mPos < mLimit) {
+            byte b = mBuf[mPos];
+            if (b == '\n' || !this.isSeparator(b)) 
+                return b != '\n';
+            mPos++;
+        }
+        return false;
+    }
+
+    /**
+     * skips all remaining characters of the current line including the 
+     * line feed.
+     * 
+     * @return <i>false</i>, if the end of the region has been reached
+     */
+    boolean nextLine() 
+    {
+        while (mPos < mLimit) {
+            if (mBuf[mPos++] == '\n') 
+                return mPos < mLimit;
+        }
+        return false;
+    }
+
+    /**
+     * returns the current character or -1, if the end of the region has been 
+     * reached.
+     */
+    int peek() {
+        return mPos < mLimit ? mBuf[mPos] : -1;
+    }
+
+    /**
+     * reads a word consisting of letters, digits and underscores. 
+     * 
+     * @return Word
+     */
+    String nextWord() 
+    {
+        int start = mPos;
+        while (mPos < mLimit && isWordChar(mBuf[mPos])) 
+            mPos++;
+        return this.token(start, mPos);
+    }
+
+    /**
+     * parses the number at the current position. 
+     * 
+     * @return Number
+     * @throws T3dException if no valid number is found
+     */
+    double nextDouble() throws T3dException
+    {
+        int start = mPos, p = mPos;
+        boolean neg = false;
+        if (p < mLimit && (mBuf[p] == '-' || mBuf[p] == '+')) {
+            neg = mBuf[p] == '-';
+            p++;
+        }
+
+        long mant = 0L;
+        int nDigits = 0, exp = 0;
+        boolean any = false, exact = true;
+        byte b;
+        while (p < mLimit && (b = mBuf[p]) >= '0' && b <= '9') {
+            if (nDigits < 18) {
+                mant = 10L * mant + (b - '0');
+                if (mant != 0L) nDigits++;
+            } else {
+                exp++;
+                exact &= b == '0';
+            }
+            any = true;
+            p++;
+        }
+        if (p < mLimit && (mBuf[p] == '.' || (mDecimalComma && mBuf[p] == ','))) {
+            p++;
+            while (p < mLimit && (b = mBuf[p]) >= '0' && b <= '9') {
+                if (nDigits < 18) {
+                    mant = 10L * mant + (b - '0');
+                    if (mant != 0L) nDigits++;
+                    exp--;
+                } else 
+                    exact &= b == '0';
+                any = true;
+                p++;
+            }
+        }
+        if (any && p < mLimit && ((b = mBuf[p]) == 'e' || b == 'E')) {
+            p++;
+            boolean eNeg = false;
+            if (p < mLimit && (mBuf[p] == '-' || mBuf[p] == '+')) {
+                eNeg = mBuf[p] == '-';
+                p++;
+            }
+            int e = 0;
+            boolean eAny = false;
+            while (p < mLimit && (b = mBuf[p]) >= '0' && b <= '9') {
+                if (e < 100000) e = 10 * e + (b - '0');
+                eAny = true;
+                p++;
+            }
+            any &= eAny;
+            exp += eNeg ? -e : e;
+        }
+        if (!any || (p < mLimit && !this.isSeparator(mBuf[p]))) {
+            return this.slowPath(start);
+        }
+        mPos = p;
+
+        // Fast path: Both the mantissa and the power of ten can be represented 
+        // exactly as double values, thus the result will be correctly rounded.
+        double res;
+        if (mant == 0L)
+            res = 0.;
+        else if (!exact || mant >= (1L << 53) || exp < -22 || exp > 22)
+            return this.slowPath(start);
+        else if (exp >= 0)
+            res = mant * cPow10[exp];
+        else
+            res = mant / cPow10[-exp];
+        return neg ? -res : res;
+    }
+
+    private double slowPath(int start) throws T3dException
+    {
+        int p = start;
+        while (p < mLimit && !this.isSeparator(mBuf[p]))
+            p++;
+        mPos = p;
+        String tok = this.token(start, p);
+        try {
+            return Double.parseDouble(mDecimalComma ? tok.replace(',', '.') : tok);
+        }
+        catch (NumberFormatException e) {
+            throw new T3dException("Could not parse number \"" + tok + "\".");
+        }
+    }
+
+    private String token(int from, int to) 
+    {
+        return new String(mBuf, from, to - from, cCharset);
+    }
+
+    private boolean isSeparator(byte b) {
+        return b >= 0 && mSeparator[b];
+    }
+
+    private static boolean isWordChar(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_';
+    }
+}
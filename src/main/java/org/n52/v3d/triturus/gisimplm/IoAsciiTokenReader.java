@@ -0,0 +1,358 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Token reader for large ASCII files. The input will be read chunk-wise 
+ * into a byte buffer; numbers will be parsed directly from the buffer 
+ * (see {@link IoAsciiNumberScanner}), so that no <tt>String</tt> objects 
+ * have to be allocated for numeric tokens. Tokens are separated by blanks, 
+ * tabulators, line breaks and the delimiters set by 
+ * <tt>setDelimiters()</tt>. Tokens starting with a digit, a sign or a 
+ * decimal point are treated as numbers, all other tokens as words. Quoted 
+ * strings and comments will be skipped.
+ * 
+ * @author Benno Schmidt
+ */
+final class IoAsciiTokenReader
+{
+    /**
+     * Token types.
+     */
+    final static int cEOF = -1, cWord = 1, cNumber = 2;
+
+    private ReadableByteChannel mChannel;
+    private String mFilename;
+    private byte[] mBuf = new byte[1 << 20];
+    private int mPos = 0, mLen = 0;
+    private boolean mEOF = false;
+    private int mTokStart = 0, mTokEnd = 0;
+    private long mLineNumber = 1;
+    private boolean[] mSeparator = new boolean[128];
+    private int mCommentChar = -1;
+    private IoAsciiNumberScanner mScanner = new IoAsciiNumberScanner();
+
+    /**
+     * Constructor.
+     * 
+     * @param channel Input channel
+     * @param filename File name or URL, used for error messages only
+     */
+    IoAsciiTokenReader(ReadableByteChannel channel, String filename) 
+    {
+        mChannel = channel;
+        mFilename = filename;
+        this.setDelimiters("");
+    }
+
+    /**
+     * sets additional delimiters. Blanks, tabulators, carriage returns and 
+     * line feeds will always be treated as delimiters.
+     * 
+     * @param delimiters ASCII characters separating the tokens, e.g. <tt>",[]{}"</tt>
+     */
+    void setDelimiters(String delimiters) 
+    {
+        mSeparator = new boolean[128];
+        mSeparator[' '] = mSeparator['\t'] = mSeparator['\r'] = mSeparator['\n'] = true;
+        for (int i = 0; i < delimiters.length(); i++) {
+            char c = delimiters.charAt(i);
+            if (c < 128) 
+                mSeparator[c] = true;
+        }
+        mScanner.setDelimiters(delimiters);
+    }
+
+    /**
+     * sets the character that starts a comment reaching to the end of the 
+     * line, e.g. '#'.
+     * 
+     * @param c Comment character
+     */
+    void setCommentChar(char c) {
+        mCommentChar = c;
+    }
+
+    /**
+     * returns the number of the line holding the current token.
+     */
+    long lineNumber() {
+        return mLineNumber;
+    }
+
+    /**
+     * advances to the next token.
+     * 
+     * @return Token type (<tt>cWord</tt>, <tt>cNumber</tt> or <tt>cEOF</tt>)
+     * @throws T3dException if an I/O error occurs
+     */
+    int next() throws T3dException
+    {
+        // Skip separators, comments and quoted strings:
+        while (true) {
+            if (mPos >= mLen) {
+                if (mEOF) 
+                    return cEOF;
+                this.fill();
+                continue;
+            }
+            byte b = mBuf[mPos];
+            if (b == '\n') {
+                mLineNumber++;
+                mPos++;
+            }
+            else if (b >= 0 && mSeparator[b])
+                mPos++;
+            else if (b == mCommentChar) {
+                if (!this.skipTo('\n'))
+                    return cEOF;
+            }
+            else if (b == '"') {
+                mPos++;
+                if (!this.skipTo('"'))
+                    return cEOF;
+                mPos++;
+            }
+            else
+                break;
+        }
+
+        // Find the token's end:
+        int end = mPos;
+        while (true) {
+            while (end < mLen) {
+                byte b = mBuf[end];
+                if ((b >= 0 && mSeparator[b]) || b == mCommentChar || b == '"')
+                    break;
+                end++;
+            }
+            if (end < mLen || mEOF)
+                break;
+            int off = mPos;
+            this.fill();
+            end -= off;
+        }
+        mTokStart = mPos;
+        mTokEnd = end;
+        mPos = end;
+
+        byte b = mBuf[mTokStart];
+        if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.')
+            return cNumber;
+        return cWord;
+    }
+
+    // Advances to the next occurrence of the given character. Line feeds 
+    // will be counted.
+    private boolean skipTo(char c) throws T3dException
+    {
+        while (true) {
+            while (mPos < mLen) {
+                byte b = mBuf[mPos];
+                if (b == c)
+                    return true;
+                if (b == '\n')
+                    mLineNumber++;
+                mPos++;
+            }
+            if (mEOF)
+                return false;
+            this.fill();
+        }
+    }
+
+    /**
+     * returns the current token as string.
+     */
+    String word() {
+        return new String(mBuf, mTokStart, mTokEnd - mTokStart);
+    }
+
+    /**
+     * checks if the current token equals the given word, ignoring case. 
+     * 
+     * @param word Word consisting of ASCII characters
+     */
+    boolean isWord(String word) 
+    {
+        if (mTokEnd - mTokStart != word.length())
+            return false;
+        for (int i = 0; i < word.length(); i++) {
+            int a = mBuf[mTokStart + i], b = word.charAt(i);
+            if (a >= 'A' && a <= 'Z') a += 'a' - 'A';
+            if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+            if (a != b)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * parses the current token as floating-point number.
+     * 
+     * @return Number
+     * @throws T3dException if the token is not a valid number
+     */
+    double number() throws T3dException
+    {
+        mScanner.reset(mBuf, mTokStart, mTokEnd);
+        try {
+            return mScanner.nextDouble();
+        }
+        catch (T3dException e) {
+            throw this.parserError(e.getMessage());
+        }
+    }
+
+    /**
+     * parses the current token as integer number.
+     * 
+     * @return Number
+     * @throws T3dException if the token is not a valid integer
+     */
+    int intNumber() throws T3dException
+    {
+        int p = mTokStart;
+        boolean neg = false;
+        if (mBuf[p] == '-' || mBuf[p] == '+') {
+            neg = mBuf[p] == '-';
+            p++;
+        }
+        if (p >= mTokEnd)
+            throw this.parserError("Could not parse integer \"" + this.word() + "\".");
+        long val = 0L;
+        for (; p < mTokEnd; p++) {
+            int d = mBuf[p] - '0';
+            if (d < 0 || d > 9 || val > Integer.MAX_VALUE)
+                throw this.parserError("Could not parse integer \"" + this.word() + "\".");
+            val = 10L * val + d;
+        }
+        if (neg) 
+            val = -val;
+        if (val > Integer.MAX_VALUE || val < Integer.MIN_VALUE)
+            throw this.parserError("Could not parse integer \"" + this.word() + "\".");
+        return (int) val;
+    }
+
+    /**
+     * advances to the next token, which has to be a number.
+     * 
+     * @return Number
+     * @throws T3dException if no valid number follows
+     */
+    double nextNumber() throws T3dException
+    {
+        if (this.next() != cNumber)
+            throw this.parserError("Number expected.");
+        return this.number();
+    }
+
+    /**
+     * advances to the next token, which has to be an integer number.
+     * 
+     * @return Number
+     * @throws T3dException if no valid integer follows
+     */
+    int nextInt() throws T3dException
+    {
+        if (this.next() != cNumber)
+            throw this.parserError("Integer number expected.");
+        return this.intNumber();
+    }
+
+    /**
+     * advances to the next token, which has to be the given key-word.
+     * 
+     * @param word Key-word
+     * @throws T3dException if the key-word is not found
+     */
+    void expect(String word) throws T3dException
+    {
+        if (this.next() != cWord || !this.isWord(word))
+            throw this.parserError("Expected key-word " + word + ".");
+    }
+
+    /**
+     * generates an exception that refers to the current line.
+     * 
+     * @param msg Error message
+     * @return Exception
+     */
+    T3dException parserError(String msg) {
+        return new T3dException("Parser error in \"" + mFilename + "\":" + mLineNumber + " (" + msg + ")");
+    }
+
+    // Moves the remaining bytes to the buffer's start and reads the next 
+    // chunk. The buffer will grow if a single token does not fit.
+    private void fill() throws T3dException
+    {
+        if (mPos > 0) {
+            System.arraycopy(mBuf, mPos, mBuf, 0, mLen - mPos);
+            mLen -= mPos;
+            mPos = 0;
+        }
+        if (mLen == mBuf.length) {
+            byte[] h = new byte[2 * mBuf.length];
+            System.arraycopy(mBuf, 0, h, 0, mLen);
+            mBuf = h;
+        }
+        try {
+            int k = mChannel.read(ByteBuffer.wrap(mBuf, mLen, mBuf.length - mLen));
+            if (k < 0)
+                mEOF = true;
+            else
+                mLen += k;
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
+    /**
+     * closes the underlying channel.
+     */
+    void close() 
+    {
+        try {
+            mChannel.close();
+        }
+        catch (IOException e) {
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.vgis.VgIndexedTIN;
+import org.n52.v3d.triturus.vgis.VgPoint;
+
+/**
+ * Native binary indexed TIN format. A file consists of
+ * <ol>
+ * <li>a header holding the number of vertices and the number of 
+ * triangles,</li>
+ * <li>the vertex coordinates <i>x<sub>0</sub>, y<sub>0</sub>, 
+ * z<sub>0</sub>, x<sub>1</sub>, ...</i> given as 64 bit floating-point 
+ * numbers,</li>
+ * <li>the triangles' vertex indices (3 consecutive 32 bit integers per 
+ * triangle).</li>
+ * </ol>
+ * Since the coordinates are stored without loss of precision, the format is
+ * suitable to exchange TINs between processing stages. The arrays will be 
+ * transferred chunk-wise between the file and the 
+ * {@link GmSimpleTINGeometry}'s primitive arrays. All numbers are stored in
+ * big-endian byte order.
+ * 
+ * @see IoTINWriter
+ * @see IoTINReader
+ * @author Benno Schmidt
+ */
+final class IoBinaryTINFile
+{
+    private final static int cMagic = 0x54334454; // "T3DT"
+    private final static int cVersion = 1;
+    private final static int cHeaderSize = 4 + 4 + 4 + 4;
+
+    private final static int cChunkSize = 1 << 20;
+
+    private IoBinaryTINFile() {
+    }
+
+    /**
+     * reads a TIN from a binary indexed TIN file.
+     * 
+     * @param filename File name (with path optionally)
+     * @return TIN geometry
+     * @throws T3dException if the file can not be read
+     */
+    static GmSimpleTINGeometry read(String filename) throws T3dException
+    {
+        FileInputStream file = null;
+        try {
+            file = new FileInputStream(filename);
+            FileChannel fc = file.getChannel();
+
+            ByteBuffer buf = ByteBuffer.allocate(cChunkSize);
+            buf.limit(cHeaderSize);
+            readFully(fc, buf);
+            if (buf.getInt() != cMagic)
+                throw new T3dException("\"" + filename + "\" is not a binary TIN file.");
+            int version = buf.getInt();
+            if (version > cVersion)
+                throw new T3dException("Unsupported binary TIN file version " + version + ".");
+            int nPoints = buf.getInt(), nTriangles = buf.getInt();
+            if (nPoints < 0 || nTriangles < 0)
+                throw new T3dException("Corrupt binary TIN file \"" + filename + "\".");
+
+            double[] xyz = new double[3 * nPoints];
+            for (int k = 0; k < xyz.length; ) {
+                int n = Math.min(xyz.length - k, cChunkSize / 8);
+                buf.clear();
+                buf.limit(8 * n);
+                readFully(fc, buf);
+                buf.asDoubleBuffer().get(xyz, k, n);
+                k += n;
+            }
+            int[] tri = new int[3 * nTriangles];
+            for (int k = 0; k < tri.length; ) {
+                int n = Math.min(tri.length - k, cChunkSize / 4);
+                buf.clear();
+                buf.limit(4 * n);
+                readFully(fc, buf);
+                buf.asIntBuffer().get(tri, k, n);
+                k += n;
+            }
+            for (int k = 0; k < tri.length; k++) {
+                if (tri[k] < 0 || tri[k] >= nPoints)
+                    throw new T3dException("Corrupt binary TIN file \"" + filename + "\" (illegal vertex index).");
+            }
+            return new GmSimpleTINGeometry(xyz, tri);
+        }
+        catch (FileNotFoundException e) {
+            throw new T3dException("Could not access file \"" + filename + "\".");
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+        finally {
+            try {
+                if (file != null)
+                    file.close();
+            }
+            catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * writes a TIN to a binary indexed TIN file. If the file already exists,
+     * it will be overwritten.
+     * 
+     * @param geom TIN geometry
+     * @param filename File name (with path optionally)
+     * @throws T3dException if the file can not be written
+     */
+    static void write(VgIndexedTIN geom, String filename) throws T3dException
+    {
+        double[] xyz;
+        int[] tri;
+        int nPoints = geom.numberOfPoints(), nTriangles = geom.numberOfTriangles();
+        if (geom instanceof GmSimpleTINGeometry) {
+            xyz = ((GmSimpleTINGeometry) geom).getCoordinates();
+            tri = ((GmSimpleTINGeometry) geom).getTriangleIndices();
+        }
+        else {
+            xyz = new double[3 * nPoints];
+            for (int i = 0; i < nPoints; i++) {
+                VgPoint pt = geom.getPoint(i);
+                xyz[3 * i] = pt.getX();
+                xyz[3 * i + 1] = pt.getY();
+                xyz[3 * i + 2] = pt.getZ();
+            }
+            tri = new int[3 * nTriangles];
+            for (int i = 0; i < nTriangles; i++) {
+                int[] crn = geom.getTriangleVertexIndices(i);
+                System.arraycopy(crn, 0, tri, 3 * i, 3);
+            }
+        }
+
+        FileOutputStream file = null;
+        try {
+            file = new FileOutputStream(filename);
+            FileChannel fc = file.getChannel();
+
+            ByteBuffer buf = ByteBuffer.allocate(cChunkSize);
+            buf.putInt(cMagic);
+            buf.putInt(cVersion);
+            buf.putInt(nPoints);
+            buf.putInt(nTriangles);
+            buf.flip();
+            writeFully(fc, buf);
+
+            for (int k = 0; k < 3 * nPoints; ) {
+                int n = Math.min(3 * nPoints - k, cChunkSize / 8);
+                buf.clear();
+                buf.asDoubleBuffer().put(xyz, k, n);
+                buf.limit(8 * n);
+                writeFully(fc, buf);
+                k += n;
+            }
+            for (int k = 0; k < 3 * nTriangles; ) {
+                int n = Math.min(3 * nTriangles - k, cChunkSize / 4);
+                buf.clear();
+                buf.asIntBuffer().put(tri, k, n);
+                buf.limit(4 * n);
+                writeFully(fc, buf);
+                k += n;
+            }
+        }
+        catch (FileNotFoundException e) {
+            throw new T3dException("Could not access file \"" + filename + "\".");
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+        finally {
+            try {
+                if (file != null)
+                    file.close();
+            }
+            catch (IOException e) {
+            }
+        }
+    }
+
+    private static void readFully(FileChannel fc, ByteBuffer buf) throws IOException 
+    {
+        while (buf.hasRemaining()) {
+            if (fc.read(buf) < 0)
+                throw new IOException("Unexpected end of file.");
+        }
+        buf.flip();
+    }
+
+    private static void writeFully(FileChannel fc, ByteBuffer buf) throws IOException 
+    {
+        while (buf.hasRemaining()) {
+            fc.write(buf);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.n52.v3d.triturus.core.IoObject;
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.survey.TileLocator;
+import org.n52.v3d.triturus.vgis.VgEnvelope;
+import org.n52.v3d.triturus.vgis.VgPoint;
+
+/**
+ * Reader that assembles an elevation grid from a directory holding tiled 
+ * elevation data. The tile files have to follow a tiling scheme known by the
+ * {@link TileLocator}, e.g. <tt>"TK25"</tt> or <tt>"europe-1deg"</tt>. For a
+ * given bounding-box, only the intersecting tiles will be read; the tiles will
+ * be decoded concurrently by a bounded thread pool and stitched to a single
+ * {@link GmSimpleElevationGrid}.<br/>
+ * <br/>
+ * All tiles have to share the same cell-size and grid alignment. Grid 
+ * elements covered by more than one tile (e.g. the common border rows and 
+ * columns of adjacent lattices) will receive the mean of the tiles' values. 
+ * Unset elements and elements holding the NODATA value will not contribute; 
+ * grid elements not covered by any tile remain unset. Missing tile files will
+ * be skipped.
+ * 
+ * @see IoElevationGridReader
+ * @author Benno Schmidt
+ */
+public class IoElevationGridMosaicReader extends IoObject
+{
+    private String mLogString = "";
+
+    private String mDirectory;
+    private TileLocator mLocator;
+    private String mTileId;
+    private String mFormat;
+    private String mFileNamePattern = "dgm%s.asc";
+    private double mNoData = Double.NaN;
+    private int mNumberOfThreads = 1;
+    private GmSimpleElevationGrid.Aggregation mMode = GmSimpleElevationGrid.Aggregation.MEAN;
+
+    /**
+     * Constructor.
+     * 
+     * @param directory Directory holding the tile files
+     * @param locator Tile locator
+     * @param tileId Tiling name, e.g. <tt>"TK25"</tt> or <tt>"earth-10deg"</tt>
+     * @param format Tile file format, e.g. <tt>&quot;ArcIGrd&quot;</tt> (see {@link IoElevationGridReader})
+     */
+    public IoElevationGridMosaicReader(
+        String directory, TileLocator locator, String tileId, String format)
+    {
+        mLogString = this.getClass().getName();
+        mDirectory = directory;
+        mLocator = locator;
+        mTileId = tileId;
+        mFormat = format;
+    }
+
+    public String log() {
+        return mLogString;
+    }
+
+    /**
+     * sets the pattern used to construct the tile file names. The pattern 
+     * has to contain the placeholder <tt>%s</tt>, which will be replaced by 
+     * the four-digit tile number. By default, the pattern 
+     * <tt>&quot;dgm%s.asc&quot;</tt> will be used. 
+     * 
+     * @param pattern File name pattern, e.g. <tt>&quot;tile_%s.t3dg&quot;</tt>
+     */
+    public void setFileNamePattern(String pattern) 
+    {
+        if (pattern == null || pattern.indexOf("%s") < 0)
+            throw new T3dException("Illegal file name pattern.");
+        mFileNamePattern = pattern;
+    }
+
+    /**
+     * sets a NODATA value. Tile elements holding this value will be treated 
+     * as unset elements. By default, no NODATA value will be considered.
+     * 
+     * @param noData NODATA value
+     */
+    public void setNoDataValue(double noData) {
+        mNoData = noData;
+    }
+
+    /**
+     * sets the maximum number of tiles that will be decoded concurrently. By
+     * default, a single thread will be used.
+     * 
+     * @param numberOfThreads Number of threads (&gt;= 1)
+     */
+    public void setNumberOfThreads(int numberOfThreads) 
+    {
+        if (numberOfThreads < 1)
+            throw new T3dException("Illegal number of threads.");
+        mNumberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * sets the aggregation method used by 
+     * {@link #read(VgEnvelope, double)}. By default, mean values will be 
+     * provided.
+     * 
+     * @param mode Aggregation method
+     */
+    public void setAggregation(GmSimpleElevationGrid.Aggregation mode) {
+        mMode = mode;
+    }
+
+    /**
+     * returns the file paths of the tiles intersecting the given 
+     * bounding-box. Tile files that do not exist will not be listed.
+     * 
+     * @param env Bounding-box given in geographic coordinates
+     * @return List of file paths
+     */
+    public List<String> tileFiles(VgEnvelope env)
+    {
+        List<String> res = new ArrayList<String>();
+        for (String tileNo : mLocator.tileNumbers(mTileId, env)) {
+            File file = new File(mDirectory, mFileNamePattern.replace("%s", tileNo));
+            if (file.isFile())
+                res.add(file.getPath());
+        }
+        return res;
+    }
+
+    /**
+     * reads the part of the tiled elevation data that lies inside the given 
+     * bounding-box at the tiles' full resolution.
+     * 
+     * @param env Bounding-box given in geographic coordinates
+     * @return Elevation grid
+     * @throws T3dException if no tile intersects the bounding-box or a tile can not be read
+     */
+    public GmSimpleElevationGrid read(VgEnvelope env) throws T3dException {
+        return this.read(env, 0.);
+    }
+
+    /**
+     * reads the part of the tiled elevation data that lies inside the given 
+     * bounding-box. The result will be aggregated using the method set by
+     * {@link #setAggregation(GmSimpleElevationGrid.Aggregation)}, if the 
+     * given target cell-size is a multiple of the tiles' cell-size. 
+     * 
+     * @param env Bounding-box given in geographic coordinates
+     * @param cellSize Target cell-size
+     * @return Elevation grid
+     * @throws T3dException if no tile intersects the bounding-box or a tile can not be read
+     * @see GmSimpleElevationGrid#aggregate(int, GmSimpleElevationGrid.Aggregation)
+     */
+    public GmSimpleElevationGrid read(final VgEnvelope env, double cellSize) 
+        throws T3dException
+    {
+        List<String> files = this.tileFiles(env);
+        if (files.size() == 0)
+            throw new T3dException("No tiles found for the given bounding-box.");
+
+        List<GmSimpleElevationGrid> tiles = new ArrayList<GmSimpleElevationGrid>();
+        ExecutorService executor = mNumberOfThreads <= 1 || files.size() <= 1 ? null : 
+            Executors.newFixedThreadPool(Math.min(mNumberOfThreads, files.size()));
+        try {
+            if (executor == null) {
+                for (String file : files)
+                    tiles.add(this.readTile(file, env));
+            }
+            else {
+                List<Future<GmSimpleElevationGrid>> tasks = new ArrayList<Future<GmSimpleElevationGrid>>();
+                for (final String file : files) {
+                    tasks.add(executor.submit(new Callable<GmSimpleElevationGrid>() {
+                        public GmSimpleElevationGrid call() {
+                            return readTile(file, env);
+                        }
+                    }));
+                }
+                for (Future<GmSimpleElevationGrid> task : tasks) {
+                    tiles.add(task.get());
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            throw new T3dException("Reading tiles has been interrupted.");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof T3dException)
+                throw (T3dException) e.getCause();
+            throw new T3dException("Tile read error. " + e.getCause());
+        }
+        finally {
+            if (executor != null) 
+                executor.shutdown();
+        }
+
+        GmSimpleElevationGrid res = this.stitch(tiles);
+        if (res == null)
+            throw new T3dException("No tiles found for the given bounding-box.");
+
+        int factor = (int) Math.floor(
+            cellSize / Math.max(res.getDeltaX(), res.getDeltaY()) * (1. + 1.e-9));
+        if (factor > 1)
+            res = res.aggregate(factor, mMode);
+        return res;
+    }
+
+    // Reads the part of a tile that lies inside the bounding-box. Empty 
+    // windows will be given as null.
+    private GmSimpleElevationGrid readTile(String file, VgEnvelope env) throws T3dException
+    {
+        IoElevationGridReader reader = new IoElevationGridReader(mFormat);
+        GmSimpleElevationGrid tile = reader.readWindow(file, env, 0.);
+        if (tile == null || tile.numberOfRows() <= 0 || tile.numberOfColumns() <= 0)
+            return null;
+        return tile;
+    }
+
+    private GmSimpleElevationGrid stitch(List<GmSimpleElevationGrid> tiles) throws T3dException
+    {
+        // Determine the mosaic's extent, aligned to the first tile:
+        GmSimpleElevationGrid first = null;
+        double 
+            xMin = Double.POSITIVE_INFINITY, xMax = Double.NEGATIVE_INFINITY,
+            yMin = Double.POSITIVE_INFINITY, yMax = Double.NEGATIVE_INFINITY;
+        for (GmSimpleElevationGrid tile : tiles) {
+            if (tile == null)
+                continue;
+            if (first == null)
+                first = tile;
+            else if (
+                Math.abs(tile.getDeltaX() - first.getDeltaX()) > 1.e-6 * first.getDeltaX() || 
+                Math.abs(tile.getDeltaY() - first.getDeltaY()) > 1.e-6 * first.getDeltaY()) 
+            {
+                throw new T3dException("Tiles differ in cell-size.");
+            }
+            VgPoint origin = ((GmSimple2dGridGeometry) tile.getGeometry()).getOrigin();
+            xMin = Math.min(xMin, origin.getX());
+            xMax = Math.max(xMax, origin.getX() + (tile.numberOfColumns() - 1) * tile.getDeltaX());
+            yMin = Math.min(yMin, origin.getY());
+            yMax = Math.max(yMax, origin.getY() + (tile.numberOfRows() - 1) * tile.getDeltaY());
+        }
+        if (first == null)
+            return null;
+
+        double dx = first.getDeltaX(), dy = first.getDeltaY();
+        VgPoint anchor = ((GmSimple2dGridGeometry) first.getGeometry()).getOrigin();
+        double 
+            x0 = anchor.getX() + Math.round((xMin - anchor.getX()) / dx) * dx,
+            y0 = anchor.getY() + Math.round((yMin - anchor.getY()) / dy) * dy;
+        int 
+            nCols = (int) Math.round((xMax - x0) / dx) + 1,
+            nRows = (int) Math.round((yMax - y0) / dy) + 1;
+
+        // Accumulate the tiles' values:
+        double[] sum = new double[nRows * nCols];
+        int[] cnt = new int[nRows * nCols];
+        boolean checkNoData = !Double.isNaN(mNoData);
+        for (GmSimpleElevationGrid tile : tiles) {
+            if (tile == null)
+                continue;
+            VgPoint origin = ((GmSimple2dGridGeometry) tile.getGeometry()).getOrigin();
+            int 
+                rowOff = (int) Math.round((origin.getY() - y0) / dy),
+                colOff = (int) Math.round((origin.getX() - x0) / dx);
+            int n = tile.numberOfColumns();
+            double[] row = new double[n];
+            for (int i = 0; i < tile.numberOfRows(); i++) {
+                int ii = rowOff + i;
+                if (ii < 0 || ii >= nRows)
+                    continue;
+                tile.getRowValues(i, row);
+                for (int j = 0; j < n; j++) {
+                    int jj = colOff + j;
+                    double z = row[j];
+                    if (jj < 0 || jj >= nCols || z != z || (checkNoData && z == mNoData))
+                        continue;
+                    sum[ii * nCols + jj] += z;
+                    cnt[ii * nCols + jj]++;
+                }
+            }
+        }
+
+        GmSimpleElevationGrid res = new GmSimpleElevationGrid(
+            nCols, nRows, new GmPoint(x0, y0, 0.), dx, dy);
+        res.getGeometry().setSRS(first.getGeometry().getSRS());
+        res.setLatticeInterpretation(first.isLatticeInterpretion());
+        double[] row = new double[nCols];
+        for (int i = 0; i < nRows; i++) {
+            for (int j = 0; j < nCols; j++) {
+                int k = i * nCols + j;
+                row[j] = cnt[k] == 0 ? Double.NaN : sum[k] / cnt[k];
+            }
+            res.setRowValues(i, row);
+        }
+        return res;
+    }
+}
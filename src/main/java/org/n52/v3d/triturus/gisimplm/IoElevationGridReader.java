@@ -48,7 +48,12 @@ import org.w3c.dom.NodeList;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.net.URL;
 import java.net.MalformedURLException;
 
@@ -67,6 +72,12 @@ public class IoElevationGridReader extends IoObject
 
     private String format;
     private GmSimpleElevationGrid elevGrid = null;
+    private int numberOfThreads = 1;
+    private GmSimpleElevationGrid.Aggregation overviewMode = GmSimpleElevationGrid.Aggregation.MEAN;
+
+    // Size of the file regions that will be mapped into memory when reading 
+    // ArcInfo ASCII grids:
+    private final static int cChunkSize = 1 << 24;
 
     /**
      * Constructor. As parameter, a format type identifier has to be set.
@@ -75,8 +86,11 @@ public class IoElevationGridReader extends IoObject
      * <ul>
      * <li><i>ArcIGrd:</i> ArcInfo ASCII grids</li>
      * <li><i>AcGeo:</i> ACADGEO format (lattice without color-information</li>
-     * <li><i>BSQ:</i> Byte-sequential ESRI-format</li>
+     * <li><i>BSQ:</i> Band-sequential ESRI raw raster format</li>
+     * <li><i>BIL:</i> Band-interleaved by line ESRI raw raster format</li>
+     * <li><i>BIP:</i> Band-interleaved by pixel ESRI raw raster format</li>
      * <li><i>X3D:</i> X3D-encoded elevation grids</li>
+     * <li><i>TiledGrid:</i> native binary format holding separately compressed grid tiles</li>
      * </ul>
      * 
      * @param format Format-string, e.g. <tt></tt>&quot;ArcIGrd&quot;</tt>
@@ -101,6 +115,31 @@ public class IoElevationGridReader extends IoObject
         this.format = format;
     }
 
+    /**
+     * sets the number of threads used to parse ArcInfo ASCII grids from local
+     * files, to decode binary tiled grids and to convert raw raster values. 
+     * By default, a single thread will be used.
+     * 
+     * @param numberOfThreads Number of threads (&gt;= 1)
+     */
+    public void setNumberOfThreads(int numberOfThreads) 
+    {
+        if (numberOfThreads < 1)
+            throw new T3dException("Illegal number of threads.");
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * sets the aggregation method used by 
+     * {@link #readWindow(String, VgEnvelope, double)}. By default, mean 
+     * values will be provided.
+     * 
+     * @param mode Aggregation method
+     */
+    public void setOverviewAggregation(GmSimpleElevationGrid.Aggregation mode) {
+        this.overviewMode = mode;
+    }
+
     /**
      * @deprecated
      * reads an elevation-grid from a file or URL location.
@@ -129,43 +168,34 @@ public class IoElevationGridReader extends IoObject
      * @throws org.n52.v3d.triturus.core.T3dException
      */
     public GmSimpleElevationGrid read(String location) throws T3dException {
-        InputStream is;
-        try {
-            if (location.startsWith("http")) {
-                is = this.createInputStream(new URL(location));
-            }
-            else {
-                is = this.createInputStream(location);
-            }
-        }
-        catch (MalformedURLException e) {
-            throw new T3dException("Couldn't read location \"" + location + "\" (malformed URL).");
-        }
-        catch (IOException e) {
-            throw new T3dException("Couldn't read location \"" + location + "\" (IO error).");
-        }
-
         int i = 0;
         if (format.equalsIgnoreCase(IoFormatType.ARCINFO_ASCII_GRID)) i = 1;
         if (format.equalsIgnoreCase(IoFormatType.ACGEO)) i = 2;
-        if (format.equalsIgnoreCase("BSQ")) i = 3;
+        if (format.equalsIgnoreCase("BSQ") || format.equalsIgnoreCase("BIL") || format.equalsIgnoreCase("BIP")) i = 3;
         if (format.equalsIgnoreCase(IoFormatType.X3D)) i = 4;
+        if (format.equalsIgnoreCase(IoFormatType.TILED_GRID)) i = 5;
         // --> add more types here...
 
         try {
             switch (i) {
                 case 1:
-                    this.readArcInfoAsciiGrid(this.createBufferedReader(is));
+                    if (!location.startsWith("http") && new File(location).isFile())
+                        this.readArcInfoAsciiGrid(location);
+                    else
+                        this.readArcInfoAsciiGrid(this.createBufferedReader(this.openLocation(location)));
                     break;
                 case 2:
-                    this.readAcadGeoGrid(this.createBufferedReader(is));
+                    this.readAcadGeoGrid(this.createBufferedReader(this.openLocation(location)));
                     break;
                 case 3:
-                    this.readEsriBandSequential(location);
+                    this.readRawRaster(location, 0, 0, -1, -1, 1);
                     break;
                 case 4:
                     this.readX3D(location);
                     break;
+                case 5:
+                    this.readTiledGrid(location, 0, 0, -1, -1, 1);
+                    break;
                 // --> add more types here...
 
                 default:
@@ -179,6 +209,153 @@ public class IoElevationGridReader extends IoObject
         return elevGrid;
     }
 
+    /**
+     * reads a rectangular window of an elevation-grid from a file. Currently,
+     * this method is supported for the binary tiled grid format and the ESRI 
+     * raw raster formats (BSQ, BIL, BIP) only. Here, only the file parts 
+     * intersecting the given window will be accessed. For raw rasters, the 
+     * first band will be read.
+     *
+     * @param location File path
+     * @param rowFrom Index of the window's first row
+     * @param colFrom Index of the window's first column
+     * @param nRows Number of rows to read
+     * @param nCols Number of columns to read
+     * @return Elevation-grid holding the window
+     * @throws org.n52.v3d.triturus.core.T3dNotYetImplException
+     * @throws org.n52.v3d.triturus.core.T3dException
+     * @see IoFormatType#TILED_GRID
+     */
+    public GmSimpleElevationGrid readWindow(
+        String location, int rowFrom, int colFrom, int nRows, int nCols) 
+        throws T3dException 
+    {
+        return this.readWindow(location, rowFrom, colFrom, nRows, nCols, 1);
+    }
+
+    /**
+     * reads a decimated rectangular window of an elevation-grid from a file. 
+     * Only every <tt>stride</tt>-th row and column of the window will be read,
+     * i.e. the resulting grid's cell-sizes will be <tt>stride</tt> times the 
+     * original cell-sizes.
+     *
+     * @param location File path
+     * @param rowFrom Index of the window's first row
+     * @param colFrom Index of the window's first column
+     * @param nRows Number of rows the window covers
+     * @param nCols Number of columns the window covers
+     * @param stride Decimation step (&gt;= 1)
+     * @return Elevation-grid holding the window
+     * @throws org.n52.v3d.triturus.core.T3dNotYetImplException
+     * @throws org.n52.v3d.triturus.core.T3dException
+     * @see IoElevationGridReader#readWindow(String, int, int, int, int)
+     */
+    public GmSimpleElevationGrid readWindow(
+        String location, int rowFrom, int colFrom, int nRows, int nCols, int stride) 
+        throws T3dException 
+    {
+        if (nRows < 0 || nCols < 0)
+            throw new T3dException("Illegal grid window.");
+
+        if (format.equalsIgnoreCase(IoFormatType.TILED_GRID))
+            this.readTiledGrid(location, rowFrom, colFrom, nRows, nCols, stride);
+        else if (format.equalsIgnoreCase("BSQ") || format.equalsIgnoreCase("BIL") || format.equalsIgnoreCase("BIP"))
+            this.readRawRaster(location, rowFrom, colFrom, nRows, nCols, stride);
+        else
+            throw new T3dNotYetImplException("Window reads are not supported for format " + format + ".");
+        return elevGrid;
+    }
+
+    /**
+     * reads the part of an elevation-grid that lies inside a given 
+     * bounding-box at a given target resolution. The returned grid will not be
+     * coarser than <tt>cellSize</tt>.
+     * <p>
+     * For binary tiled grids holding overview levels for the aggregation 
+     * method set by {@link #setOverviewAggregation(GmSimpleElevationGrid.Aggregation)},
+     * the coarsest suitable overview level will be read; here, only the 
+     * tiles intersecting the bounding-box will be decoded. Tiled grids 
+     * without suitable overviews will be aggregated after reading the 
+     * bounding-box' full-resolution tiles. For ESRI raw 
+     * rasters, the grid will be decimated without aggregation. For all other
+     * formats, the whole grid will be read and aggregated afterwards.
+     *
+     * @param location File path or valid URL
+     * @param env Bounding-box
+     * @param cellSize Target cell-size
+     * @return Elevation-grid holding the window
+     * @throws org.n52.v3d.triturus.core.T3dNotYetImplException
+     * @throws org.n52.v3d.triturus.core.T3dException
+     * @see GmSimpleElevationGrid#getWindow(VgEnvelope, double, GmSimpleElevationGrid.Aggregation)
+     */
+    public GmSimpleElevationGrid readWindow(String location, VgEnvelope env, double cellSize) 
+        throws T3dException 
+    {
+        if (format.equalsIgnoreCase(IoFormatType.TILED_GRID)) {
+            IoTiledGridFile file = new IoTiledGridFile(location);
+            try {
+                int level = file.selectLevel(cellSize, overviewMode);
+                elevGrid = file.read(overviewMode, level, env, numberOfThreads);
+            }
+            finally {
+                file.close();
+            }
+            // Aggregate the remaining factor, if there are no overviews:
+            int factor = (int) Math.floor(
+                cellSize / Math.max(elevGrid.getDeltaX(), elevGrid.getDeltaY()) * (1. + 1.e-9));
+            if (factor > 1)
+                elevGrid = elevGrid.aggregate(factor, overviewMode);
+            return elevGrid;
+        }
+        else if (format.equalsIgnoreCase("BSQ") || format.equalsIgnoreCase("BIL") || format.equalsIgnoreCase("BIP")) {
+            IoRawRasterFile file = new IoRawRasterFile(location);
+            int[] rows = GmSimpleElevationGrid.windowIndices(
+                file.originY, file.deltaY, file.nRows, env.getYMin(), env.getYMax(), true);
+            int[] cols = GmSimpleElevationGrid.windowIndices(
+                file.originX, file.deltaX, file.nCols, env.getXMin(), env.getXMax(), true);
+            int stride = (int) Math.floor(
+                cellSize / Math.max(file.deltaX, file.deltaY) * (1. + 1.e-9));
+            elevGrid = file.read(0, rows[0], cols[0], rows[1], cols[1], Math.max(stride, 1), numberOfThreads);
+            return elevGrid;
+        }
+
+        elevGrid = this.read(location).getWindow(env, cellSize, overviewMode);
+        return elevGrid;
+    }
+
+    // Negative window sizes refer to the whole grid.
+    private void readTiledGrid(
+        String filename, int rowFrom, int colFrom, int nRows, int nCols, int stride) 
+        throws T3dException
+    {
+        IoTiledGridFile file = new IoTiledGridFile(filename);
+        try {
+            if (nRows < 0) nRows = file.nRows;
+            if (nCols < 0) nCols = file.nCols;
+            elevGrid = file.read(rowFrom, colFrom, nRows, nCols, stride, numberOfThreads);
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    private InputStream openLocation(String location) throws T3dException {
+        try {
+            if (location.startsWith("http")) {
+                return this.createInputStream(new URL(location));
+            }
+            else {
+                return this.createInputStream(location);
+            }
+        }
+        catch (MalformedURLException e) {
+            throw new T3dException("Couldn't read location \"" + location + "\" (malformed URL).");
+        }
+        catch (IOException e) {
+            throw new T3dException("Couldn't read location \"" + location + "\" (IO error).");
+        }
+    }
+
     private InputStream createInputStream(URL url) throws IOException {
         return url.openConnection().getInputStream();
     }
@@ -266,6 +443,8 @@ public class IoElevationGridReader extends IoObject
             elevGrid.setLatticeInterpretation(); // todo: okay? Consequences?
 
             // Read elevation values and populate target-grid:
+            GmGridStorage val = elevGrid.getStorage();
+            double[] row = new double[nCols];
             float z = 0.f;
             String line = null;
 
@@ -281,12 +460,12 @@ public class IoElevationGridReader extends IoObject
                         catch (NumberFormatException nfe) {
                             z = 0.f;
                         }
-                        if (z != NODATA_value) {
-                            elevGrid.setValue(i, j, z);
-                        }
+                        row[j] = z != NODATA_value ? z : Double.NaN;
                     }
+                    val.setRow(i, row);
                 }
             }
+            elevGrid.setZBoundsInvalid();
         }
         catch (IOException e) {
             throw new T3dException(e.getMessage());
@@ -296,6 +475,200 @@ public class IoElevationGridReader extends IoObject
         }
     } // readArcInfoAsciiGrid()
 
+    // Reads an ArcInfo ASCII grid from a local file. The file will be mapped
+    // into memory chunk-wise, and the numbers will be parsed directly from 
+    // the chunks' bytes. As for the stream-based reader, each grid row is 
+    // expected to be given in a separate line. After the line offsets have 
+    // been determined, the chunks can be parsed by multiple threads.
+    private void readArcInfoAsciiGrid(String filename) throws T3dException
+    {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(filename, "r");
+            final FileChannel fc = file.getChannel();
+            long size = fc.size();
+
+            // Read header:
+            IoAsciiNumberScanner sc = new IoAsciiNumberScanner();
+            byte[] bytes = new byte[(int) Math.min(size, cChunkSize)];
+            fc.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 1 << 16)).get(bytes, 0, (int) Math.min(size, 1 << 16));
+            sc.reset(bytes, 0, (int) Math.min(size, 1 << 16));
+            Hashtable<String, Double> header = new Hashtable<String, Double>();
+            while (sc.skipBlanks() || sc.peek() == '\n') {
+                int c = sc.peek();
+                if (c == '\n') {
+                    sc.nextLine();
+                    continue;
+                }
+                if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) 
+                    break; // first data row
+                String key = sc.nextWord().toLowerCase();
+                if (!sc.skipBlanks())
+                    throw new T3dException("Header-value \"" + key + "\" is missing in input file.");
+                header.put(key, sc.nextDouble());
+                sc.nextLine();
+            }
+            final long dataOffset = sc.position();
+
+            final int nCols = (int) this.headerValue(header, "ncols");
+            final int nRows = (int) this.headerValue(header, "nrows");
+            double cellSize = this.headerValue(header, "cellsize");
+            double xFrom, yFrom;
+            // Since it is a lattice (not a grid), half cell-sizes have to be 
+            // added to the corner coordinates. 
+            if (header.containsKey("xllcenter")) 
+                xFrom = header.get("xllcenter");
+            else 
+                xFrom = this.headerValue(header, "xllcorner") + cellSize / 2.;
+            if (header.containsKey("yllcenter")) 
+                yFrom = header.get("yllcenter");
+            else 
+                yFrom = this.headerValue(header, "yllcorner") + cellSize / 2.;
+            final double noData = header.containsKey("nodata_value") ? 
+                header.get("nodata_value") : Double.NaN;
+
+            // Elevation-grid construction:
+            elevGrid = new GmSimpleElevationGrid(
+                    nCols, nRows,
+                    new GmPoint(xFrom, yFrom, 0.), // Origin
+                    cellSize, // Cell-size x-direction
+                    cellSize); // Cell-size y-direction
+            elevGrid.setLatticeInterpretation();
+
+            // Determine line offsets (skipping empty lines):
+            final long[] rowStart = new long[nRows + 1];
+            int n = 0;
+            boolean inLine = false;
+            for (long off = dataOffset; off < size && n <= nRows; off += cChunkSize) {
+                int len = (int) Math.min(cChunkSize, size - off);
+                fc.map(FileChannel.MapMode.READ_ONLY, off, len).get(bytes, 0, len);
+                for (int k = 0; k < len; k++) {
+                    byte b = bytes[k];
+                    if (b == '\n') 
+                        inLine = false;
+                    else if (!inLine && b != ' ' && b != '\t' && b != '\r') {
+                        inLine = true;
+                        rowStart[n++] = off + k;
+                        if (n > nRows) 
+                            break;
+                    }
+                }
+            }
+            if (n < nRows)
+                throw new T3dException("Input file contains only " + n + " of " + nRows + " grid rows.");
+            if (n == nRows)
+                rowStart[nRows] = size;
+
+            // Group rows into chunks and parse them:
+            final GmGridStorage val = elevGrid.getStorage();
+            List<Integer> chunks = new ArrayList<Integer>();
+            chunks.add(0);
+            for (int i = 1; i < nRows; i++) {
+                if (rowStart[i + 1] - rowStart[chunks.get(chunks.size() - 1)] > cChunkSize)
+                    chunks.add(i);
+            }
+            chunks.add(nRows);
+
+            ExecutorService executor = numberOfThreads <= 1 ? null : 
+                Executors.newFixedThreadPool(numberOfThreads);
+            try {
+                if (executor == null) 
+                    parseRows(fc, rowStart, 0, nRows, nCols, noData, val);
+                else {
+                    List<Future<?>> tasks = new ArrayList<Future<?>>();
+                    for (int c = 0; c < chunks.size() - 1; c++) {
+                        final int 
+                            from = chunks.get(c), 
+                            to = chunks.get(c + 1);
+                        tasks.add(executor.submit(new Runnable() {
+                            public void run() {
+                                parseRows(fc, rowStart, from, to, nCols, noData, val);
+                            }
+                        }));
+                    }
+                    for (Future<?> task : tasks) {
+                        task.get();
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                throw new T3dException("Reading \"" + filename + "\" has been interrupted.");
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof T3dException)
+                    throw (T3dException) e.getCause();
+                throw new T3dException("Read error in \"" + filename + "\". " + e.getCause());
+            }
+            finally {
+                if (executor != null) 
+                    executor.shutdown();
+            }
+            elevGrid.setZBoundsInvalid();
+        }
+        catch (FileNotFoundException e) {
+            throw new T3dException("Could not access file \"" + filename + "\".");
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+        finally {
+            try {
+                if (file != null)
+                    file.close();
+            }
+            catch (IOException e) {
+            }
+        }
+    } // readArcInfoAsciiGrid()
+
+    // Parses the data lines from .. to - 1. Note that the first line holds
+    // the northernmost grid row. The parsing will be performed chunk-wise,
+    // the single rows will be written to the grid's storage in bulk.
+    private static void parseRows(
+        FileChannel fc, long[] rowStart, int from, int to, int nCols, double noData, 
+        GmGridStorage val) throws T3dException
+    {
+        int nRows = rowStart.length - 1;
+        double[] row = new double[nCols];
+        byte[] bytes = new byte[0];
+        IoAsciiNumberScanner sc = new IoAsciiNumberScanner();
+        int i0 = from;
+        while (i0 < to) {
+            int i1 = i0 + 1;
+            while (i1 < to && rowStart[i1 + 1] - rowStart[i0] <= cChunkSize)
+                i1++;
+            long off = rowStart[i0];
+            int len = (int) (rowStart[i1] - off);
+            if (bytes.length < len) 
+                bytes = new byte[len];
+            try {
+                fc.map(FileChannel.MapMode.READ_ONLY, off, len).get(bytes, 0, len);
+            }
+            catch (IOException e) {
+                throw new T3dException(e.getMessage());
+            }
+            for (int i = i0; i < i1; i++) {
+                sc.reset(bytes, (int) (rowStart[i] - off), (int) (rowStart[i + 1] - off));
+                for (int j = 0; j < nCols; j++) {
+                    if (!sc.skipBlanks())
+                        throw new T3dException("Too few values in data line " + (i + 1) + ".");
+                    double z = sc.nextDouble();
+                    row[j] = z != noData ? z : Double.NaN;
+                }
+                val.setRow(nRows - 1 - i, row);
+            }
+            i0 = i1;
+        }
+    }
+
+    private double headerValue(Hashtable<String, Double> header, String key) throws T3dException
+    {
+        Double res = header.get(key.toLowerCase());
+        if (res == null)
+            throw new T3dException("Header-value \"" + key + "\" is missing in input file.");
+        return res.doubleValue();
+    }
+
     // Helpers for readArcInfoAsciiGrid():
     
     private int parseInt(String check, String line) throws T3dException {
@@ -474,185 +847,15 @@ public class IoElevationGridReader extends IoObject
         return Integer.parseInt(str);
     }
 
-    private void readEsriBandSequential(String filename) throws T3dException 
+    private void readRawRaster(
+        String filename, int rowFrom, int colFrom, int nRows, int nCols, int stride) 
+        throws T3dException 
     {
-        try {
-            String bsqName = filename, hdrName = null, bqwName = null;
-            boolean isFloat;
-            
-            if (bsqName.toLowerCase().endsWith("bsq")) {
-                hdrName = bsqName.substring(0, bsqName.length() - 3) + "hdr";
-                bqwName = bsqName.substring(0, bsqName.length() - 3) + "bqw";
-            }
-            else {
-                throw new T3dException("File-name not correct: " + filename);
-            }
-
-            // Read header:
-            FileReader hdrFileRead = new FileReader(hdrName);
-            BufferedReader hdrDatRead = new BufferedReader(hdrFileRead);
-            StreamTokenizer hdrTokRead = new StreamTokenizer(hdrDatRead);
-            hdrTokRead.lowerCaseMode(true); // fetch all tokens (in lower case)
-            hdrTokRead.commentChar(35); // Hashes mark comment lines...
-            hdrTokRead.eolIsSignificant(false); // line feeds are irrelevant
-            hdrTokRead.wordChars(65, 90); // upper-case characters
-            hdrTokRead.wordChars(97, 122); // lower-case characters
-            int tokType = 0;
-            hdrTokRead.parseNumbers(); // The numbers are read 'directly'
-            String valueName = "";
-            Hashtable<String, Serializable> 
-            	header = new Hashtable<String, Serializable>();
-            // traverse everything and put it to the hash-table pairwise
-            do {
-                tokType = hdrTokRead.nextToken();
-                if (tokType == StreamTokenizer.TT_WORD) {
-                    valueName = hdrTokRead.sval;
-                }
-                tokType = hdrTokRead.nextToken();
-                if (tokType == StreamTokenizer.TT_WORD) {
-                    header.put(valueName, hdrTokRead.sval);
-                }
-                else if (tokType == StreamTokenizer.TT_NUMBER) {
-                    Integer value = new Integer((int) hdrTokRead.nval);
-                    header.put(valueName, value);
-                }
-            } while (tokType != StreamTokenizer.TT_EOF);
-
-            // Check some values:
-            if (header.get("pixeltype").equals("float")) {
-                isFloat = true;
-            }
-            else if (header.get("pixeltype").equals("int") || header.get("pixeltype").equals("integer")) {
-                isFloat = false;
-            }
-            else {
-                throw new T3dException("Pixeltype not supported: " + header.get("pixeltype"));
-            }
-            if (((Integer) header.get("nbands")).intValue() != 1) {
-                throw new T3dException("Number of bands not supported: " + header.get("nbands"));
-            }
-
-            // Read lower-left:
-            double LLx = 0;
-            double LLy = 0;
-            double Dx = 10;
-            double Dy = 10;
-            int colOrder = 1; // Values will be read to the left
-            int rowOrder = 1; // and to top
-            FileReader bqwFileRead = new FileReader(bqwName);
-            BufferedReader bqwDatRead = new BufferedReader(bqwFileRead);
-            StreamTokenizer bqwTokRead = new StreamTokenizer(bqwDatRead);
-            bqwTokRead.lowerCaseMode(true); // fetch all tokens (in lower case)
-            bqwTokRead.commentChar(35); // Hashes mark comment-lines...
-            bqwTokRead.eolIsSignificant(false); // line feeds are irrelevant
-            bqwTokRead.wordChars(65, 90); // upper-case characters
-            bqwTokRead.wordChars(97, 122); // lower-case characters
-            tokType = 0;
-            bqwTokRead.parseNumbers(); // The numbers are read 'directly'
-            tokType = bqwTokRead.nextToken();
-            if (tokType == StreamTokenizer.TT_NUMBER) {
-                Dx = bqwTokRead.nval;
-            }
-            tokType = bqwTokRead.nextToken();
-            tokType = bqwTokRead.nextToken();
-            tokType = bqwTokRead.nextToken();
-            if (tokType == StreamTokenizer.TT_NUMBER) {
-                Dy = bqwTokRead.nval;
-            }
-            tokType = bqwTokRead.nextToken();
-            if (tokType == StreamTokenizer.TT_NUMBER) {
-                LLx = bqwTokRead.nval;
-            }
-            tokType = bqwTokRead.nextToken();
-            if (tokType == StreamTokenizer.TT_NUMBER) {
-                LLy = bqwTokRead.nval;
-            }
-
-            // Origin correction to LL (if necessary)
-            if (Dx < 0) {
-                LLx = LLx + Dx * ((Integer) header.get("ncols")).intValue();
-                Dx = 0 - Dx;
-                colOrder = -1;
-            }
-            if (Dy < 0) {
-                LLy = LLy + Dy * ((Integer) header.get("nrows")).intValue();
-                Dy = 0 - Dy;
-                rowOrder = -1;
-            }
-
-            // Elevation-grid construction:
-            elevGrid = new GmSimpleElevationGrid(
-                    ((Integer) header.get("nrows")).intValue(), ((Integer) header.get("ncols")).intValue(),
-                    new GmPoint(LLx, LLy, 0.), // Origin
-                    Dx, // Cell-size x-direction
-                    Dy); // Cell-size y-direction
-            elevGrid.setLatticeInterpretation();
-            elevGrid.setZBoundsInvalid(); // Performance!
-
-            FileInputStream bsqFS = new FileInputStream(bsqName);
-
-            // Populate grid with elevation-values:
-            int startrow, startcol;
-            if (rowOrder == -1) {
-                startrow = elevGrid.numberOfRows() - 1;
-            }
-            else {
-                startrow = 0;
-            }
-            if (colOrder == -1) {
-                startcol = elevGrid.numberOfColumns() - 1;
-            }
-            else {
-                startcol = 0;
-            }
-
-            System.out.println("i(rows): " + startrow + " j(cols): " + startcol + " rowOrder: " + rowOrder + " colOrder: " + colOrder);
-            ByteBuffer lBBuf = ByteBuffer.allocateDirect(elevGrid.numberOfColumns() * 4);
-            FloatBuffer lBuf = lBBuf.asFloatBuffer();
-            FileChannel fc = bsqFS.getChannel();
-
-            for (int i = startrow; i >= 0 && i < elevGrid.numberOfRows(); i = i + rowOrder) { // Reihenfolge?
-                fc.read(lBBuf);
-                for (int j = startcol; j >= 0 && j < elevGrid.numberOfColumns(); j = j + colOrder) {
-//					int zRaw = 0;
-//					zRaw = bsqFS.read();
-//					zRaw = zRaw<<8;
-//					zRaw = zRaw|bsqFS.read();
-//					zRaw = zRaw<<8;
-//					zRaw = zRaw|bsqFS.read();
-//					zRaw = zRaw<<8;
-//					zRaw = zRaw|bsqFS.read();
-                    if (isFloat) {
-//						float z = Float.intBitsToFloat(zRaw);
-                        float z = lBuf.get(j);
-                        if (z > -8000) {
-                            elevGrid.setValue(i, j, z);
-                            // Here, one could check for NaN, but...
-                        }
-                    }
-                    else {
-                        elevGrid.setValue(i, j, lBuf.get(j));
-                    }
-                }
-                System.out.println("Reihe: " + i);
-                lBBuf.clear();
-            }
-
-            bsqFS.close();
-        }
-        catch (FileNotFoundException e) {
-            throw new T3dException("Could not access file \"" + filename + "\".");
-        }
-        catch (IOException e) {
-            throw new T3dException(e.getMessage());
-        }
-        catch (T3dException e) {
-            throw new T3dException(e.getMessage());
-        }
-        catch (Exception e) {
-            throw new T3dException("Read error in \"" + filename + "\".");
-        }
-    } // readEsriBandSequential()
+        IoRawRasterFile file = new IoRawRasterFile(filename);
+        if (nRows < 0) nRows = file.nRows;
+        if (nCols < 0) nCols = file.nCols;
+        elevGrid = file.read(0, rowFrom, colFrom, nRows, nCols, stride, numberOfThreads);
+    }
 
     private void readX3D(String filename) throws T3dException {
         try {
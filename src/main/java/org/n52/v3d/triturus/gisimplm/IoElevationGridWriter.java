@@ -44,7 +44,6 @@ import org.n52.v3d.triturus.vgis.VgPoint;
 import org.n52.v3d.triturus.t3dutil.T3dColor;
 import org.n52.v3d.triturus.t3dutil.MpHypsometricColor;
 
-import java.text.DecimalFormat;
 
 /**
  * The <tt>IoElevationGridWriter</tt> provides methods to write elevation grids
@@ -62,6 +61,9 @@ public class IoElevationGridWriter extends IoAbstractWriter
     private int noDataValue = -9999;
     private MpHypsometricColor hypsometricColMap = null;
     private double exaggeration = 1.;
+    private int tileSize = 256;
+    private int overviewLevels = -1;
+    private GmSimpleElevationGrid.Aggregation[] overviewModes = {GmSimpleElevationGrid.Aggregation.MEAN};
     
     /**
      * Constructor. As an input parameter, the file format type identifier must
@@ -70,7 +72,9 @@ public class IoElevationGridWriter extends IoAbstractWriter
      * <li><i>ArcIGrd:</i> ArcInfo ASCII grids (cell-based)</li>
      * <li><i>AcGeo:</i> ACADGEO format, lattice without color information</li>
      * <li><i>AcGeoTIN:</i> ACADGEO-TIN format</li>
+     * <li><i>GLB:</i> binary glTF 2.0 (see {@link IoGltfWriter})</li>
      * <li><i>OBJ:</i> Wavefront OBJ file</li>
+     * <li><i>TiledGrid:</i> native binary format holding separately compressed grid tiles</li>
      * <li><i>VRML1:</i> VRML 1.0 scene (non-optimized triangle mesh)</li>
      * <li><i>VRML2:</i> VRML 2.0 scene (type ElevationGrid)</li>
      * <li><i>VTK:</i> VTK 3.0 format (polydata with cell attributes)</li>
@@ -110,6 +114,7 @@ public class IoElevationGridWriter extends IoAbstractWriter
      * @see IoFormatType#ARCINFO_ASCII_GRID
      * @see IoFormatType#ACGEO
      * @see IoFormatType#OBJ
+     * @see IoFormatType#TILED_GRID
      * @see IoFormatType#VRML2
      * @see IoFormatType#VTK_DATASET
      * @see IoFormatType#X3D
@@ -141,6 +146,8 @@ public class IoElevationGridWriter extends IoAbstractWriter
         if (format.equalsIgnoreCase(IoFormatType.X3DOM)) i = 8;
         if (format.equalsIgnoreCase(IoFormatType.OBJ)) i = 9;
         if (format.equalsIgnoreCase(IoFormatType.VTK_DATASET)) i = 10;
+        if (format.equalsIgnoreCase(IoFormatType.TILED_GRID)) i = 11;
+        if (format.equalsIgnoreCase(IoFormatType.GLB)) i = 12;
         // --> add more types here...
 
         switch (i) {
@@ -174,6 +181,15 @@ public class IoElevationGridWriter extends IoAbstractWriter
             case 10:
                 this.writeVtkDataset(grid, filename);
                 break;
+            case 11:
+                if (grid == null)
+                    throw new T3dException("Grid information not available.");
+                IoTiledGridFile.write(
+                    grid, filename, tileSize, this.getPrecisionZ(), overviewLevels, overviewModes);
+                break;
+            case 12:
+                this.writeGlb(grid, filename);
+                break;
             // --> add more types here...
 
             default:
@@ -181,6 +197,19 @@ public class IoElevationGridWriter extends IoAbstractWriter
         }
     }
 
+    private void writeGlb(GmSimpleElevationGrid grid, String filename) 
+        throws T3dException 
+    {
+        if (grid == null)
+            throw new T3dException("Grid information not available.");
+
+        IoGltfWriter writer = new IoGltfWriter();
+        writer.setHypsometricColorMapper(hypsometricColMap);
+        writer.setExaggeration(exaggeration);
+        writer.addElevationGrid(grid);
+        writer.writeToFile(filename);
+    }
+
     private void writeArcInfoAsciiGrid(GmSimpleElevationGrid grid, String filename) 
    		throws T3dException 
     {
@@ -199,8 +228,6 @@ public class IoElevationGridWriter extends IoAbstractWriter
             noDataValueStr = "" + noDataValue;
         }
 
-        DecimalFormat dfZ = this.getDecimalFormatZ();
-
         try {
             doc = new BufferedWriter(new FileWriter(filename));
 
@@ -224,10 +251,12 @@ public class IoElevationGridWriter extends IoAbstractWriter
             wl();
 
             // Write elevation-values for grid vertices:
+            double[] row = new double[geom.numberOfColumns()];
             for (int i = geom.numberOfRows() - 1; i >= 0; i--) {
-                for (int j = 0; j < geom.numberOfColumns(); j++) {
-                    if (grid.isSet(i, j)) {
-                        w(dfZ.format(grid.getValue(i, j)));
+                grid.getRowValues(i, row);
+                for (int j = 0; j < row.length; j++) {
+                    if (row[j] == row[j]) { // i.e., !Double.isNaN(row[j])
+                        wZ(row[j]);
                     }
                     else {
                         w(noDataValueStr);
@@ -259,6 +288,50 @@ public class IoElevationGridWriter extends IoAbstractWriter
         this.noDataValue = noDataValue;
     }
 
+    /**
+     * sets the tile size for the binary tiled grid format. Each tile will 
+     * consist of <tt>tileSize</tt> x <tt>tileSize</tt> grid elements (default: 
+     * 256). Note that elevation values will be quantized according to the 
+     * precision set by <tt>setPrecisionZ()</tt>.
+     *
+     * @param tileSize Number of rows and columns per tile
+     * @throws T3dException if <tt>tileSize</tt> is not positive
+     * @see IoFormatType#TILED_GRID
+     */
+    public void setTileSize(int tileSize) throws T3dException {
+        if (tileSize <= 0)
+            throw new T3dException("Illegal tile size.");
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * sets the number of overview levels that will be stored in binary tiled 
+     * grid files. Overview level <i>l</i> holds the grid aggregated over 
+     * blocks of 2<sup><i>l</i></sup> x 2<sup><i>l</i></sup> elements. By 
+     * default (-1), levels will be added until the coarsest level fits into a 
+     * single tile; 0 disables overviews.
+     *
+     * @param nLevels Number of overview levels
+     * @throws T3dException if <tt>nLevels</tt> &lt; -1 or &gt; 30
+     * @see IoElevationGridReader#readWindow(String, org.n52.v3d.triturus.vgis.VgEnvelope, double)
+     */
+    public void setOverviewLevels(int nLevels) throws T3dException {
+        if (nLevels < -1 || nLevels > 30)
+            throw new T3dException("Illegal number of overview levels.");
+        this.overviewLevels = nLevels;
+    }
+
+    /**
+     * sets the aggregation methods overview levels will be stored for in 
+     * binary tiled grid files. By default, the mean values will be stored.
+     *
+     * @param modes Aggregation methods
+     * @see IoElevationGridWriter#setOverviewLevels(int)
+     */
+    public void setOverviewAggregations(GmSimpleElevationGrid.Aggregation... modes) {
+        this.overviewModes = modes;
+    }
+
     private void writeAcadGeoGrid(GmSimpleElevationGrid grid, String filename) 
     	throws T3dException 
     {
@@ -280,13 +353,11 @@ public class IoElevationGridWriter extends IoAbstractWriter
             w("SIZE " + geom.numberOfColumns() + " x " + geom.numberOfRows()); // line 5
             wl();
 
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-
             // Write elevation-values for grid vertices:
             for (int j = 0; j < geom.numberOfColumns(); j++) {
                 for (int i = 0; i < geom.numberOfRows(); i++) {
                     if (grid.isSet(i, j)) {
-                        w(dfZ.format(grid.getValue(i, j)));
+                        wZ(grid.getValue(i, j));
                     }
                     else {
                         w("?");
@@ -333,17 +404,17 @@ public class IoElevationGridWriter extends IoAbstractWriter
             w("POINTS " + numberOfVertices); // line 4
             wl();
 
-            DecimalFormat dfXY = this.getDecimalFormatXY();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-
             // Write elevation-values for grid vertices:
             for (int j = 0; j < geom.numberOfColumns(); j++) {
                 for (int i = 0; i < geom.numberOfRows(); i++) 
                 {
-                    GmPoint pt = new GmPoint(geom.getVertexPoint(i, j));
+                    VgPoint pt = geom.getVertexPoint(i, j);
                     
-                    w(dfXY.format(pt.getX()) + " " + dfXY.format(pt.getY()));
-                    w(" " + dfZ.format(grid.getValue(i, j)));
+                    wXY(pt.getX()); 
+                    w(" ");
+                    wXY(pt.getY());
+                    w(" ");
+                    wZ(grid.getValue(i, j));
                     wl();
                 }
             }
@@ -420,17 +491,17 @@ public class IoElevationGridWriter extends IoAbstractWriter
             wl("      point [");
 
             // VRML part 1 (vertices):
-            DecimalFormat dfXY = this.getDecimalFormatZ();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-
             for (int j = 0; j < geom.numberOfColumns(); j++) {
                 for (int i = 0; i < geom.numberOfRows(); i++) 
                 {
-                    GmPoint pt = new GmPoint(geom.getVertexPoint(i, j));
-                    wl("        " 
-                    		+ dfXY.format(pt.getX()) + " " 
-                    		+ dfXY.format(pt.getY()) + " " 
-                    		+ dfZ.format(grid.getValue(i, j)));
+                    VgPoint pt = geom.getVertexPoint(i, j);
+                    w("        "); 
+                    wXY(pt.getX());
+                    w(" "); 
+                    wXY(pt.getY());
+                    w(" "); 
+                    wZ(grid.getValue(i, j));
+                    wl();
                 }
             }
 
@@ -565,11 +636,10 @@ public class IoElevationGridWriter extends IoAbstractWriter
             wl("                        zSpacing " + +geom.getDeltaY());
             wl("                        height [");
             
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-
             for (int i = geom.numberOfRows() - 1; i >= 0; i--) {
                 for (int j = 0; j < geom.numberOfColumns(); j++) {
-                    w(dfZ.format(grid.getValue(i, j)) + ",");
+                    wZ(grid.getValue(i, j));
+                    w(",");
                 }
                 wl();
             }
@@ -698,12 +768,11 @@ public class IoElevationGridWriter extends IoAbstractWriter
             
             w("      height=\"");
 
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-
             // Elevation-values:
             for (int i = geom.numberOfRows() - 1; i >= 0; i--) {
                 for (int j = 0; j < geom.numberOfColumns(); j++) {
-                    w("" + dfZ.format(grid.getValue(i, j)) + " ");
+                    wZ(grid.getValue(i, j));
+                    w(" ");
                 }
             }
             
@@ -742,18 +811,17 @@ public class IoElevationGridWriter extends IoAbstractWriter
 
             GmSimple2dGridGeometry geom = ((GmSimple2dGridGeometry) grid.getGeometry());
 
-            DecimalFormat dfXY = this.getDecimalFormatZ();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-
             for (int j = 0; j < grid.numberOfColumns(); j++) {
                 for (int i = 0; i < grid.numberOfRows(); i++) 
                 {
                     if (grid.isSet(i, j)) {
                         VgPoint pt = geom.getVertexPoint(i, j);                        
-                        wl(
-                        	dfXY.format(pt.getX()) + " " +
-                        	dfXY.format(pt.getY()) + " " +
-                        	dfZ.format(grid.getValue(i, j)));
+                        wXY(pt.getX());
+                        w(" ");
+                        wXY(pt.getY());
+                        w(" ");
+                        wZ(grid.getValue(i, j));
+                        wl();
                     }
                 }
             }
@@ -787,18 +855,18 @@ public class IoElevationGridWriter extends IoAbstractWriter
             wl("o ElevationGrid");
             
             // Write vertex information:
-            // DecimalFormat dfXY = this.getDecimalFormatXY();
-            // DecimalFormat dfZ = this.getDecimalFormatZ();
-            GmPoint pt;
+            VgPoint pt;
             for (int j = 0; j < geom.numberOfColumns(); j++) {
                 for (int i = 0; i < geom.numberOfRows(); i++) 
                 {
                 	if (grid.isSet(i, j))
-                		pt = new GmPoint(grid.getPoint(i, j));
+                		pt = grid.getPoint(i, j);
                 	else
                 		pt = new GmPoint(0., 0., 0.); // dummy values
                 	
-                	wl("v "+ (pt.getX() * scale + offsetX) + " " + (pt.getY() * scale + offsetY) + " " + (pt.getZ() * scale) );
+                	w("v ");
+                	wPreciseXYZ(pt.getX() * scale + offsetX, pt.getY() * scale + offsetY, pt.getZ() * scale);
+                	wl();
                 }
             }
             
@@ -843,22 +911,22 @@ public class IoElevationGridWriter extends IoAbstractWriter
             	nRows = geom.numberOfRows(),
             	nCols = geom.numberOfColumns();
             	
-            DecimalFormat dfXY = this.getDecimalFormatXY();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-            
         	wl("POINTS " + (nRows * nCols) + " float");
-        	GmPoint pt;
+        	VgPoint pt;
             for (int j = 0; j < geom.numberOfColumns(); j++) {
                 for (int i = 0; i < geom.numberOfRows(); i++) 
                 {
                 	if (grid.isSet(i, j))
-                		pt = new GmPoint(grid.getPoint(i, j));
+                		pt = grid.getPoint(i, j);
                 	else
                 		pt = new GmPoint(0., 0., 0.); // dummy values
 
-                    w(dfXY.format(pt.getX()));
-                    w(" " + dfXY.format(pt.getY()));
-                    wl(" " + dfZ.format(pt.getZ()));
+                    wXY(pt.getX());
+                    w(" ");
+                    wXY(pt.getY());
+                    w(" ");
+                    wZ(pt.getZ());
+                    wl();
                 }
             }
             
@@ -907,11 +975,10 @@ public class IoElevationGridWriter extends IoAbstractWriter
 	                for (int i = 0; i < geom.numberOfRows(); i++) 
 	                {
 			        	if (grid.isSet(i, j))
-		            		pt = new GmPoint(grid.getPoint(i, j));
+		            		wZ(grid.getValue(i, j));
 		            	else
-		            		pt = new GmPoint(0., 0., 0.); // dummy values
-		
-		                wl("" + dfZ.format(pt.getZ()));
+		            		wZ(0.); // dummy value
+		                wl();
 	                }
 	            }
 //         	}
@@ -932,6 +999,37 @@ public class IoElevationGridWriter extends IoAbstractWriter
         }
     }
 
+    private void wXY(double val) {
+        try {
+            this.writeXY(doc, val);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
+    private void wZ(double val) {
+        try {
+            this.writeZ(doc, val);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
+    private void wPreciseXYZ(double x, double y, double z) {
+        try {
+            this.writePreciseXY(doc, x);
+            doc.write(' ');
+            this.writePreciseXY(doc, y);
+            doc.write(' ');
+            this.writePreciseZ(doc, z);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
     private void wl(String line) {
         try {
             doc.write(line);
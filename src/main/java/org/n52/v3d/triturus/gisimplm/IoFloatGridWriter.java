@@ -41,7 +41,6 @@ import org.n52.v3d.triturus.core.T3dNotYetImplException;
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.t3dutil.T3dVector;
 
-import java.text.DecimalFormat;
 
 /**
  * The <tt>IoFloatGridWriter</tt> provides methods to write grids holding
@@ -127,9 +126,6 @@ public class IoFloatGridWriter extends IoAbstractWriter
                 nRows = geom.numberOfRows(),
                 nCols = geom.numberOfColumns();
          
-            DecimalFormat dfXY = this.getDecimalFormatXY();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-            
             wl("POINTS " + (nRows * nCols) + " float");
             T3dVector pt;
             for (int j = 0; j < geom.numberOfColumns(); j++) {
@@ -140,9 +136,8 @@ public class IoFloatGridWriter extends IoAbstractWriter
                     else
                         pt = new T3dVector(0., 0., 0.); // dummy values
 
-                    w(dfXY.format(pt.getX()));
-                    w(" " + dfXY.format(pt.getY()));
-                    wl(" " + dfZ.format(pt.getZ()));
+                    wXYZ(pt.getX(), pt.getY(), pt.getZ());
+                    wl();
                 }
             }
             
@@ -198,14 +193,10 @@ public class IoFloatGridWriter extends IoAbstractWriter
             for (int j = 0; j < geom.numberOfColumns(); j++) {
                 for (int i = 0; i < geom.numberOfRows(); i++) 
                 {
-                    if (grid.isSet(i, j))
-                        pt = new T3dVector(grid.getPoint(i, j));
-                    else
-                        pt = new T3dVector(0., 0., 0.); // dummy values
-
-                    wl("" + dfZ.format(pt.getZ())); 
-                    // Note: getZ() and dfZ appear 'ugly' getZ() since the 3rd
-                    // dimesion refers to non-georeferenced values here...
+                    wZ(grid.isSet(i, j) ? grid.getValue(i, j) : 0.); // 0 as dummy value
+                    wl();
+                    // Note: wZ() appears 'ugly' since the 3rd dimension refers
+                    // to non-georeferenced values here...
                 }
             }
 
@@ -225,6 +216,28 @@ public class IoFloatGridWriter extends IoAbstractWriter
         }
     }
 
+    private void wZ(double val) {
+        try {
+            this.writeZ(doc, val);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
+    private void wXYZ(double x, double y, double z) {
+        try {
+            this.writeXY(doc, x);
+            doc.write(' ');
+            this.writeXY(doc, y);
+            doc.write(' ');
+            this.writeZ(doc, z);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
     private void wl(String line) {
         try {
             doc.write(line);
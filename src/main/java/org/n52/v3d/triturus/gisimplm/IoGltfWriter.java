@@ -0,0 +1,949 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.n52.v3d.triturus.core.IoObject;
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.t3dutil.MpHypsometricColor;
+import org.n52.v3d.triturus.t3dutil.T3dColor;
+import org.n52.v3d.triturus.vgis.VgEnvelope;
+import org.n52.v3d.triturus.vgis.VgIndexedTIN;
+import org.n52.v3d.triturus.vgis.VgPoint;
+
+/**
+ * Writer to export elevation grids and TINs as binary glTF 2.0 files (GLB). 
+ * Multiple meshes can be added to a single file; each mesh will be written 
+ * as node holding triangle primitives with an optional per-vertex color 
+ * attribute.<br/>
+ * <br/>
+ * The vertex and index buffers will be written directly from the grid rows 
+ * or the TIN's coordinate and index arrays, no intermediate mesh objects 
+ * will be built. By default, meshes will be split into chunks of at most 
+ * 65535 vertices, so that 16 bit indices can be used. Optionally, vertex 
+ * positions can be quantized to 16 bit integers per chunk (glTF extension 
+ * <tt>KHR_mesh_quantization</tt>), which reduces the file size further.
+ * <br/>
+ * <br/>
+ * Following the glTF conventions, the <i>y</i>-axis points upwards, i.e. 
+ * geo-coordinates <i>(x, y, z)</i> will be mapped to <i>(x, z, -y)</i>. 
+ * By default, the vertex coordinates will be given relative to the center 
+ * of the meshes' bounding-box, which will be stored as the root node's 
+ * translation; thus, single-precision vertex coordinates will suffice even 
+ * for large geo-coordinates. Alternatively, a normalization transformation 
+ * as used by {@link org.n52.v3d.triturus.vscene.MultiTerrainScene} can be 
+ * set.
+ * 
+ * @see IoElevationGridWriter
+ * @see IoTINWriter
+ * @author Benno Schmidt
+ */
+public class IoGltfWriter extends IoObject
+{
+    private String mLogString = "";
+
+    private boolean mQuantize = false;
+    private boolean mShortIndices = true;
+    private double mExaggeration = 1.;
+    private T3dColor mColor = new T3dColor(0.f, 1.f, 0.f);
+    private MpHypsometricColor mColMap = null;
+    private List<Mesh> mMeshes = new ArrayList<Mesh>();
+
+    private boolean mNormTransform = false;
+    private double mNormScale = 1., mNormOffsetX = 0., mNormOffsetY = 0.;
+
+    // Transformation geo-coordinates -> glTF coordinates, determined when 
+    // writing:
+    private double mOX, mOY, mOZ, mS;
+
+    private final static int cMaxShortIndexVertices = 65535; // 0xffff is reserved
+    private final static int cGridBlockSize = 255;
+
+    private final static int 
+        cArrayBuffer = 34962, cElementArrayBuffer = 34963,
+        cUnsignedByte = 5121, cUnsignedShort = 5123, cUnsignedInt = 5125, cFloat = 5126;
+
+    /**
+     * Constructor.
+     */
+    public IoGltfWriter() {
+        mLogString = this.getClass().getName();
+    }
+
+    public String log() {
+        return mLogString;
+    }
+
+    /**
+     * enables the quantization of vertex positions to 16 bit integers using 
+     * the glTF extension <tt>KHR_mesh_quantization</tt>. The quantization 
+     * will be performed per chunk; the dequantization transformation will be
+     * given as the chunk's node transformation. By default, positions will be
+     * written as 32 bit floating-point numbers.
+     * 
+     * @param quantize <i>true</i>, to quantize vertex positions
+     */
+    public void setQuantization(boolean quantize) {
+        mQuantize = quantize;
+    }
+
+    /**
+     * controls whether meshes shall be split into chunks of at most 65535 
+     * vertices that use 16 bit indices (default), or whether each mesh 
+     * shall be written as single primitive using 32 bit indices.
+     * 
+     * @param shortIndices <i>true</i>, to write 16 bit indices
+     */
+    public void set16BitIndices(boolean shortIndices) {
+        mShortIndices = shortIndices;
+    }
+
+    /**
+     * sets a vertical exaggeration factor, which will be applied by the root 
+     * node's transformation. The default value is 1.
+     * 
+     * @param exaggeration Exaggeration factor
+     */
+    public void setExaggeration(double exaggeration) {
+        mExaggeration = exaggeration;
+    }
+
+    /**
+     * sets the color that will be assigned to meshes added subsequently, if no
+     * hypsometric color mapper is set. By default, green is used.
+     * 
+     * @param color Mesh color
+     */
+    public void setDefaultColor(T3dColor color) {
+        mColor = color;
+    }
+
+    /**
+     * sets a hypsometric color mapper that will be used to assign per-vertex 
+     * colors to meshes added subsequently. If no per-vertex colors shall be 
+     * written, call this method with a <i>null</i>-value.
+     * 
+     * @param colMap Hypsometric color-assignment or <i>null</i>
+     */
+    public void setHypsometricColorMapper(MpHypsometricColor colMap) {
+        mColMap = colMap;
+    }
+
+    /**
+     * sets a normalization transformation. The vertex coordinates will be 
+     * given as <tt>(x * scale + offsetX, z * scale, -(y * scale + offsetY))</tt>.
+     * 
+     * @param scale Scaling factor
+     * @param offsetX Translation in <i>x</i>-direction
+     * @param offsetY Translation in <i>y</i>-direction
+     * @see org.n52.v3d.triturus.vscene.MultiTerrainScene#getScale()
+     * @see org.n52.v3d.triturus.vscene.MultiTerrainScene#getOffset()
+     */
+    public void setNormTransformation(double scale, double offsetX, double offsetY) 
+    {
+        if (!(scale > 0.))
+            throw new T3dException("Illegal scaling factor.");
+        mNormTransform = true;
+        mNormScale = scale;
+        mNormOffsetX = offsetX;
+        mNormOffsetY = offsetY;
+    }
+
+    /**
+     * adds an elevation grid. Triangles referring to unset grid elements 
+     * will be omitted.
+     * 
+     * @param grid Elevation grid
+     */
+    public void addElevationGrid(GmSimpleElevationGrid grid) {
+        mMeshes.add(new GridMesh(grid, grid.getName(), mColor, mColMap));
+    }
+
+    /**
+     * adds a TIN.
+     * 
+     * @param tin TIN
+     */
+    public void addTIN(GmSimpleTINFeature tin) {
+        mMeshes.add(new TINMesh((VgIndexedTIN) tin.getGeometry(), tin.getName(), mColor, mColMap));
+    }
+
+    /**
+     * removes all meshes that have been added.
+     */
+    public void clear() {
+        mMeshes.clear();
+    }
+
+    /**
+     * writes the meshes that have been added to a GLB file.
+     * 
+     * @param filename File name (with path optionally)
+     * @throws T3dException if the file can not be written
+     */
+    public void writeToFile(String filename) throws T3dException
+    {
+        this.setUpTransformation();
+
+        // Pass 1: Determine chunks, bounds and buffer layout:
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        for (Mesh mesh : mMeshes) {
+            mesh.chunks = new ArrayList<Chunk>();
+            mesh.layout();
+            chunks.addAll(mesh.chunks);
+        }
+        long binLength = 0L;
+        for (Chunk c : chunks) {
+            c.posOffset = binLength;
+            binLength += (long) c.nVerts * (mQuantize ? 8 : 12);
+            if (c.mesh.colMap != null) {
+                c.colOffset = binLength;
+                binLength += 4L * c.nVerts;
+            }
+            c.idxOffset = binLength;
+            binLength += c.shortIndices() ? 2L * c.nIdx : 4L * c.nIdx;
+            binLength = (binLength + 3L) & ~3L;
+        }
+
+        byte[] json = this.generateJson(binLength).getBytes(Charset.forName("UTF-8"));
+        int jsonLength = (json.length + 3) & ~3;
+        long total = 12L + 8L + jsonLength + (binLength > 0L ? 8L + binLength : 0L);
+        if (total > 0xffffffffL)
+            throw new T3dException("GLB files are limited to 4 GB.");
+
+        // Pass 2: Write header, JSON chunk and binary chunk:
+        FileOutputStream file = null;
+        try {
+            file = new FileOutputStream(filename);
+            BinarySink out = new BinarySink(file.getChannel());
+            out.putInt(0x46546C67); // "glTF"
+            out.putInt(2);
+            out.putInt((int) total);
+            out.putInt(jsonLength);
+            out.putInt(0x4E4F534A); // "JSON"
+            for (int i = 0; i < json.length; i++)
+                out.put(json[i]);
+            for (int i = json.length; i < jsonLength; i++)
+                out.put((byte) ' ');
+            if (binLength > 0L) {
+                out.putInt((int) binLength);
+                out.putInt(0x004E4942); // "BIN"
+            }
+            out.position = 0L;
+            for (Chunk c : chunks) {
+                c.mesh.write(c, out);
+                out.align();
+            }
+            out.flush();
+            if (out.position != binLength)
+                throw new T3dException("Internal error: unexpected GLB buffer size.");
+        }
+        catch (FileNotFoundException e) {
+            throw new T3dException("Could not access file \"" + filename + "\".");
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+        finally {
+            try {
+                if (file != null)
+                    file.close();
+            }
+            catch (IOException e) {
+            }
+        }
+    }
+
+    private void setUpTransformation() 
+    {
+        if (mNormTransform) {
+            mS = mNormScale;
+            mOX = -mNormOffsetX / mNormScale;
+            mOY = -mNormOffsetY / mNormScale;
+            mOZ = 0.;
+            return;
+        }
+        // Use the center of the meshes' bounding-box as local origin:
+        GmEnvelope env = null;
+        for (Mesh mesh : mMeshes) {
+            VgEnvelope e = mesh.envelope();
+            if (e == null)
+                continue;
+            if (env == null)
+                env = new GmEnvelope(e);
+            else
+                env.letContainEnvelope(e);
+        }
+        mS = 1.;
+        if (env == null)
+            mOX = mOY = mOZ = 0.;
+        else {
+            mOX = 0.5 * (env.getXMin() + env.getXMax());
+            mOY = 0.5 * (env.getYMin() + env.getYMax());
+            mOZ = 0.5 * (env.getZMin() + env.getZMax());
+        }
+    }
+
+    // glTF coordinates:
+
+    private double tx(double x) {
+        return (x - mOX) * mS;
+    }
+
+    private double ty(double z) {
+        return (z - mOZ) * mS;
+    }
+
+    private double tz(double y) {
+        return -(y - mOY) * mS;
+    }
+
+    private String generateJson(long binLength)
+    {
+        StringBuilder s = new StringBuilder();
+        s.append("{\"asset\":{\"version\":\"2.0\",\"generator\":\"52N Triturus\"}");
+        if (mQuantize) {
+            s.append(",\"extensionsUsed\":[\"KHR_mesh_quantization\"]");
+            s.append(",\"extensionsRequired\":[\"KHR_mesh_quantization\"]");
+        }
+        s.append(",\"scene\":0,\"scenes\":[{\"nodes\":[0]}]");
+
+        // Nodes: root node, mesh nodes, chunk nodes
+        StringBuilder nodes = new StringBuilder(), meshes = new StringBuilder(), 
+            materials = new StringBuilder(), accessors = new StringBuilder(), 
+            views = new StringBuilder();
+        int nNodes = 1 + mMeshes.size(), nAccessors = 0;
+        nodes.append("{\"name\":\"Triturus\"");
+        if (!mNormTransform)
+            nodes.append(",\"translation\":[").append(num(mOX)).append(',').append(num(mOZ)).append(',').append(num(-mOY)).append(']');
+        nodes.append(",\"scale\":[1,").append(num(mExaggeration)).append(",1]");
+        nodes.append(children(1, mMeshes.size())).append('}');
+
+        int chunkNode = nNodes, meshIdx = 0;
+        for (int m = 0; m < mMeshes.size(); m++) {
+            Mesh mesh = mMeshes.get(m);
+            nodes.append(",{\"name\":").append(str(mesh.name));
+            nodes.append(children(chunkNode, mesh.chunks.size())).append('}');
+            chunkNode += mesh.chunks.size();
+
+            if (m > 0) 
+                materials.append(',');
+            materials.append("{\"pbrMetallicRoughness\":{\"baseColorFactor\":[");
+            if (mesh.colMap != null)
+                materials.append("1,1,1,1");
+            else {
+                materials.append(num(toLinear(mesh.color.getRed()))).append(',');
+                materials.append(num(toLinear(mesh.color.getGreen()))).append(',');
+                materials.append(num(toLinear(mesh.color.getBlue()))).append(",1");
+            }
+            materials.append("],\"metallicFactor\":0,\"roughnessFactor\":1},\"doubleSided\":true}");
+        }
+        for (int m = 0; m < mMeshes.size(); m++) {
+            Mesh mesh = mMeshes.get(m);
+            for (Chunk c : mesh.chunks) {
+                // Chunk node:
+                nodes.append(",{\"mesh\":").append(meshIdx);
+                if (mQuantize) {
+                    nodes.append(",\"translation\":[");
+                    for (int a = 0; a < 3; a++)
+                        nodes.append(a > 0 ? "," : "").append(num(c.min[a]));
+                    nodes.append("],\"scale\":[");
+                    for (int a = 0; a < 3; a++)
+                        nodes.append(a > 0 ? "," : "").append(num(c.quantScale(a)));
+                    nodes.append(']');
+                }
+                nodes.append('}');
+
+                // Buffer views and accessors:
+                int posAcc = nAccessors++;
+                if (posAcc > 0) {
+                    views.append(',');
+                    accessors.append(',');
+                }
+                views.append("{\"buffer\":0,\"byteOffset\":").append(c.posOffset);
+                views.append(",\"byteLength\":").append((long) c.nVerts * (mQuantize ? 8 : 12));
+                if (mQuantize)
+                    views.append(",\"byteStride\":8");
+                views.append(",\"target\":").append(cArrayBuffer).append('}');
+                accessors.append("{\"bufferView\":").append(posAcc);
+                accessors.append(",\"componentType\":").append(mQuantize ? cUnsignedShort : cFloat);
+                accessors.append(",\"count\":").append(c.nVerts).append(",\"type\":\"VEC3\",\"min\":[");
+                for (int a = 0; a < 3; a++)
+                    accessors.append(a > 0 ? "," : "").append(mQuantize ? "0" : num(c.min[a]));
+                accessors.append("],\"max\":[");
+                for (int a = 0; a < 3; a++)
+                    accessors.append(a > 0 ? "," : "").append(mQuantize ? (c.max[a] > c.min[a] ? "65535" : "0") : num(c.max[a]));
+                accessors.append("]}");
+
+                int colAcc = -1;
+                if (mesh.colMap != null) {
+                    colAcc = nAccessors++;
+                    views.append(",{\"buffer\":0,\"byteOffset\":").append(c.colOffset);
+                    views.append(",\"byteLength\":").append(4L * c.nVerts);
+                    views.append(",\"target\":").append(cArrayBuffer).append('}');
+                    accessors.append(",{\"bufferView\":").append(colAcc);
+                    accessors.append(",\"componentType\":").append(cUnsignedByte);
+                    accessors.append(",\"normalized\":true,\"count\":").append(c.nVerts).append(",\"type\":\"VEC4\"}");
+                }
+
+                int idxAcc = nAccessors++;
+                views.append(",{\"buffer\":0,\"byteOffset\":").append(c.idxOffset);
+                views.append(",\"byteLength\":").append(c.shortIndices() ? 2L * c.nIdx : 4L * c.nIdx);
+                views.append(",\"target\":").append(cElementArrayBuffer).append('}');
+                accessors.append(",{\"bufferView\":").append(idxAcc);
+                accessors.append(",\"componentType\":").append(c.shortIndices() ? cUnsignedShort : cUnsignedInt);
+                accessors.append(",\"count\":").append(c.nIdx).append(",\"type\":\"SCALAR\"}");
+
+                // Mesh:
+                if (meshIdx > 0)
+                    meshes.append(',');
+                meshes.append("{\"primitives\":[{\"attributes\":{\"POSITION\":").append(posAcc);
+                if (colAcc >= 0)
+                    meshes.append(",\"COLOR_0\":").append(colAcc);
+                meshes.append("},\"indices\":").append(idxAcc);
+                meshes.append(",\"material\":").append(m).append(",\"mode\":4}]}");
+                meshIdx++;
+            }
+        }
+
+        s.append(",\"nodes\":[").append(nodes).append(']');
+        if (meshIdx > 0) {
+            s.append(",\"meshes\":[").append(meshes).append(']');
+            s.append(",\"accessors\":[").append(accessors).append(']');
+            s.append(",\"bufferViews\":[").append(views).append(']');
+            s.append(",\"buffers\":[{\"byteLength\":").append(binLength).append("}]");
+        }
+        if (mMeshes.size() > 0)
+            s.append(",\"materials\":[").append(materials).append(']');
+        s.append('}');
+        return s.toString();
+    }
+
+    // Note that glTF does not allow empty child node lists.
+    private static String children(int first, int n) 
+    {
+        if (n <= 0)
+            return "";
+        StringBuilder s = new StringBuilder(",\"children\":[");
+        for (int i = 0; i < n; i++)
+            s.append(i > 0 ? "," : "").append(first + i);
+        return s.append(']').toString();
+    }
+
+    private static String num(double val) 
+    {
+        if (Double.isNaN(val) || Double.isInfinite(val))
+            return "0";
+        if (val == Math.rint(val) && Math.abs(val) < 1.e15)
+            return Long.toString((long) val);
+        return Double.toString(val);
+    }
+
+    private static String str(String val) 
+    {
+        if (val == null)
+            return "null";
+        StringBuilder s = new StringBuilder("\"");
+        for (int i = 0; i < val.length(); i++) {
+            char c = val.charAt(i);
+            if (c == '"' || c == '\\')
+                s.append('\\').append(c);
+            else if (c < 0x20)
+                s.append(String.format("\\u%04x", (int) c));
+            else
+                s.append(c);
+        }
+        return s.append('"').toString();
+    }
+
+    // Conversion sRGB -> linear RGB, as required for glTF colors.
+    private static double toLinear(float c) 
+    {
+        if (c <= 0.04045f)
+            return c / 12.92;
+        return Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    private static byte colorByte(double linear) {
+        return (byte) Math.max(0, Math.min(255, (int) Math.round(255. * linear)));
+    }
+
+    // Part of a mesh that will be written as single glTF primitive.
+    private class Chunk
+    {
+        Mesh mesh;
+        int nVerts = 0, nIdx = 0;
+        double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        long posOffset, colOffset, idxOffset;
+
+        // Grid blocks:
+        int row0, col0, nRows, nCols;
+        // TIN chunks:
+        int tri0, tri1;
+
+        Chunk(Mesh mesh) {
+            this.mesh = mesh;
+        }
+
+        boolean shortIndices() {
+            return nVerts <= cMaxShortIndexVertices;
+        }
+
+        // Adds a vertex to the bounds. The values will be stored as they will
+        // be written.
+        void extend(double gx, double gy, double gz) 
+        {
+            double[] v = {gx, gy, gz};
+            for (int a = 0; a < 3; a++) {
+                if (!mQuantize)
+                    v[a] = (float) v[a];
+                if (v[a] < min[a]) min[a] = v[a];
+                if (v[a] > max[a]) max[a] = v[a];
+            }
+        }
+
+        double quantScale(int a) {
+            return max[a] > min[a] ? (max[a] - min[a]) / 65535. : 1.;
+        }
+
+        void putPosition(BinarySink out, double gx, double gy, double gz) 
+            throws IOException
+        {
+            if (mQuantize) {
+                out.putShort(this.quantize(gx, 0));
+                out.putShort(this.quantize(gy, 1));
+                out.putShort(this.quantize(gz, 2));
+                out.putShort(0);
+            }
+            else {
+                out.putFloat((float) gx);
+                out.putFloat((float) gy);
+                out.putFloat((float) gz);
+            }
+        }
+
+        private int quantize(double v, int a) {
+            if (!(max[a] > min[a]))
+                return 0;
+            return (int) Math.max(0, Math.min(65535, Math.round((v - min[a]) / (max[a] - min[a]) * 65535.)));
+        }
+
+        void putColor(BinarySink out, double z) throws IOException 
+        {
+            T3dColor col = mesh.colMap.transform(z);
+            out.put(colorByte(toLinear(col.getRed())));
+            out.put(colorByte(toLinear(col.getGreen())));
+            out.put(colorByte(toLinear(col.getBlue())));
+            out.put((byte) 255);
+        }
+
+        void putIndex(BinarySink out, int idx) throws IOException 
+        {
+            if (this.shortIndices())
+                out.putShort(idx);
+            else
+                out.putInt(idx);
+        }
+    }
+
+    private abstract class Mesh
+    {
+        String name;
+        T3dColor color;
+        MpHypsometricColor colMap;
+        List<Chunk> chunks;
+
+        Mesh(String name, T3dColor color, MpHypsometricColor colMap) {
+            this.name = name;
+            this.color = color;
+            this.colMap = colMap;
+        }
+
+        abstract VgEnvelope envelope();
+
+        // Determines the chunks and their bounds.
+        abstract void layout();
+
+        // Writes a chunk's vertex positions, colors and indices.
+        abstract void write(Chunk c, BinarySink out) throws IOException;
+    }
+
+    private class GridMesh extends Mesh
+    {
+        private GmSimpleElevationGrid grid;
+        private double x0, y0, dx, dy;
+
+        GridMesh(GmSimpleElevationGrid grid, String name, T3dColor color, MpHypsometricColor colMap) 
+        {
+            super(name, color, colMap);
+            this.grid = grid;
+            VgPoint origin = ((GmSimple2dGridGeometry) grid.getGeometry()).getOrigin();
+            x0 = origin.getX();
+            y0 = origin.getY();
+            dx = grid.getDeltaX();
+            dy = grid.getDeltaY();
+        }
+
+        VgEnvelope envelope() 
+        {
+            VgEnvelope env = grid.getGeometry().envelope();
+            try {
+                return new GmEnvelope(
+                    env.getXMin(), env.getXMax(), env.getYMin(), env.getYMax(), 
+                    grid.minimalElevation(), grid.maximalElevation());
+            }
+            catch (T3dException e) {
+                return null; // no elevation values set
+            }
+        }
+
+        // Neighboring blocks share their border rows and columns.
+        void layout() 
+        {
+            int 
+                nRows = grid.numberOfRows(), nCols = grid.numberOfColumns(),
+                bw = mShortIndices ? Math.min(nCols, cGridBlockSize) : nCols,
+                bh = mShortIndices ? Math.min(nRows, cMaxShortIndexVertices / Math.max(bw, 1)) : nRows;
+            if (nRows < 2 || nCols < 2)
+                return;
+            double[][] band = new double[bh][nCols];
+            for (int r0 = 0; r0 < nRows - 1; r0 += bh - 1) {
+                int nr = Math.min(bh, nRows - r0);
+                for (int i = 0; i < nr; i++)
+                    grid.getRowValues(r0 + i, band[i]);
+                for (int c0 = 0; c0 < nCols - 1; c0 += bw - 1) {
+                    Chunk c = new Chunk(this);
+                    c.row0 = r0;
+                    c.col0 = c0;
+                    c.nRows = nr;
+                    c.nCols = Math.min(bw, nCols - c0);
+                    c.nVerts = c.nRows * c.nCols;
+                    boolean any = false;
+                    for (int i = 0; i < c.nRows; i++) {
+                        for (int j = 0; j < c.nCols; j++) {
+                            if (i > 0 && j > 0) 
+                                c.nIdx += 3 * this.numberOfTriangles(band, i, c0 + j);
+                            double z = band[i][c0 + j];
+                            if (z != z) // i.e., Double.isNaN(z)
+                                continue;
+                            c.extend(tx(x0 + (c0 + j) * dx), ty(z), tz(y0 + (r0 + i) * dy));
+                            any = true;
+                        }
+                    }
+                    if (any && c.nIdx > 0)
+                        chunks.add(c);
+                }
+            }
+        }
+
+        // Number of triangles of the cell left below (i, j).
+        private int numberOfTriangles(double[][] band, int i, int j) 
+        {
+            int n = 0;
+            if (band[i - 1][j - 1] == band[i - 1][j - 1]) n++;
+            if (band[i - 1][j] == band[i - 1][j]) n++;
+            if (band[i][j - 1] == band[i][j - 1]) n++;
+            if (band[i][j] == band[i][j]) n++;
+            return n == 4 ? 2 : (n == 3 ? 1 : 0);
+        }
+
+        void write(Chunk c, BinarySink out) throws IOException
+        {
+            double[][] band = new double[c.nRows][grid.numberOfColumns()];
+            for (int i = 0; i < c.nRows; i++)
+                grid.getRowValues(c.row0 + i, band[i]);
+
+            // Unset vertices will not be referenced, but have to be placed 
+            // inside the accessor's bounds:
+            double zUnset = c.min[1];
+            for (int i = 0; i < c.nRows; i++) {
+                double gz = tz(y0 + (c.row0 + i) * dy);
+                for (int j = 0; j < c.nCols; j++) {
+                    double z = band[i][c.col0 + j];
+                    double gx = tx(x0 + (c.col0 + j) * dx);
+                    if (z != z)
+                        c.putPosition(out, gx, zUnset, gz);
+                    else 
+                        c.putPosition(out, gx, ty(z), gz);
+                }
+            }
+            if (colMap != null) {
+                out.align();
+                for (int i = 0; i < c.nRows; i++) {
+                    for (int j = 0; j < c.nCols; j++) {
+                        double z = band[i][c.col0 + j];
+                        c.putColor(out, z != z ? 0. : z);
+                    }
+                }
+            }
+            out.align();
+
+            // Counter-clockwise triangles (seen from above):
+            int n = c.nCols;
+            for (int i = 1; i < c.nRows; i++) {
+                double[] lo = band[i - 1], hi = band[i];
+                for (int j = 1; j < n; j++) {
+                    int jj = c.col0 + j;
+                    boolean 
+                        s00 = lo[jj - 1] == lo[jj - 1], s01 = lo[jj] == lo[jj],
+                        s10 = hi[jj - 1] == hi[jj - 1], s11 = hi[jj] == hi[jj];
+                    int 
+                        v00 = (i - 1) * n + j - 1, v01 = v00 + 1, 
+                        v10 = v00 + n, v11 = v10 + 1;
+                    if (s00 && s01 && s10 && s11) {
+                        c.putIndex(out, v00); c.putIndex(out, v01); c.putIndex(out, v11);
+                        c.putIndex(out, v00); c.putIndex(out, v11); c.putIndex(out, v10);
+                    }
+                    else if (s01 && s10 && s11) {
+                        c.putIndex(out, v01); c.putIndex(out, v11); c.putIndex(out, v10);
+                    }
+                    else if (s00 && s10 && s11) {
+                        c.putIndex(out, v00); c.putIndex(out, v11); c.putIndex(out, v10);
+                    }
+                    else if (s00 && s01 && s11) {
+                        c.putIndex(out, v00); c.putIndex(out, v01); c.putIndex(out, v11);
+                    }
+                    else if (s00 && s01 && s10) {
+                        c.putIndex(out, v00); c.putIndex(out, v01); c.putIndex(out, v10);
+                    }
+                }
+            }
+        }
+    }
+
+    private class TINMesh extends Mesh
+    {
+        private VgIndexedTIN tin;
+        private double[] xyz;
+        private int[] tri;
+        private int[] mark, local; // vertex -> chunk number + 1, index inside chunk
+
+        TINMesh(VgIndexedTIN tin, String name, T3dColor color, MpHypsometricColor colMap) {
+            super(name, color, colMap);
+            this.tin = tin;
+        }
+
+        VgEnvelope envelope() {
+            return tin.numberOfPoints() > 0 ? tin.envelope() : null;
+        }
+
+        // Direct access to the TIN's arrays; other TIN implementations will
+        // be copied.
+        private void fetchArrays() 
+        {
+            if (tin instanceof GmSimpleTINGeometry) {
+                xyz = ((GmSimpleTINGeometry) tin).getCoordinates();
+                tri = ((GmSimpleTINGeometry) tin).getTriangleIndices();
+                return;
+            }
+            xyz = new double[3 * tin.numberOfPoints()];
+            for (int i = 0; i < tin.numberOfPoints(); i++) {
+                VgPoint pt = tin.getPoint(i);
+                xyz[3 * i] = pt.getX();
+                xyz[3 * i + 1] = pt.getY();
+                xyz[3 * i + 2] = pt.getZ();
+            }
+            tri = new int[3 * tin.numberOfTriangles()];
+            for (int i = 0; i < tin.numberOfTriangles(); i++)
+                System.arraycopy(tin.getTriangleVertexIndices(i), 0, tri, 3 * i, 3);
+        }
+
+        void layout() 
+        {
+            this.fetchArrays();
+            int nPoints = xyz.length / 3, nTriangles = tin.numberOfTriangles();
+            if (nTriangles == 0)
+                return;
+
+            if (!mShortIndices) {
+                Chunk c = new Chunk(this);
+                c.tri0 = 0;
+                c.tri1 = nTriangles;
+                c.nVerts = nPoints;
+                c.nIdx = 3 * nTriangles;
+                for (int v = 0; v < nPoints; v++)
+                    this.extend(c, v);
+                chunks.add(c);
+                return;
+            }
+
+            // Collect triangles as long as the chunk's vertices do not 
+            // exceed the 16 bit index range:
+            mark = new int[nPoints];
+            Chunk c = null;
+            for (int t = 0; t < nTriangles; t++) {
+                if (c == null || c.nVerts + 3 > cMaxShortIndexVertices) {
+                    if (c != null) {
+                        c.tri1 = t;
+                        chunks.add(c);
+                    }
+                    c = new Chunk(this);
+                    c.tri0 = t;
+                }
+                int id = chunks.size() + 1;
+                for (int k = 3 * t; k < 3 * t + 3; k++) {
+                    int v = tri[k];
+                    if (mark[v] != id) {
+                        mark[v] = id;
+                        c.nVerts++;
+                        this.extend(c, v);
+                    }
+                }
+                c.nIdx += 3;
+            }
+            c.tri1 = nTriangles;
+            chunks.add(c);
+            mark = null;
+        }
+
+        private void extend(Chunk c, int v) {
+            c.extend(tx(xyz[3 * v]), ty(xyz[3 * v + 2]), tz(xyz[3 * v + 1]));
+        }
+
+        void write(Chunk c, BinarySink out) throws IOException
+        {
+            if (!mShortIndices) {
+                for (int v = 0, k = 0; v < c.nVerts; v++, k += 3)
+                    c.putPosition(out, tx(xyz[k]), ty(xyz[k + 2]), tz(xyz[k + 1]));
+                if (colMap != null) {
+                    out.align();
+                    for (int v = 0; v < c.nVerts; v++)
+                        c.putColor(out, xyz[3 * v + 2]);
+                }
+                out.align();
+                for (int k = 0; k < c.nIdx; k++)
+                    c.putIndex(out, tri[k]);
+                return;
+            }
+
+            // Assign chunk-local indices in the order of first reference:
+            if (mark == null) {
+                mark = new int[xyz.length / 3];
+                local = new int[xyz.length / 3];
+            }
+            int id = chunks.indexOf(c) + 1;
+            int[] verts = new int[c.nVerts];
+            int n = 0;
+            for (int k = 3 * c.tri0; k < 3 * c.tri1; k++) {
+                int v = tri[k];
+                if (mark[v] != id) {
+                    mark[v] = id;
+                    local[v] = n;
+                    verts[n++] = v;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                int k = 3 * verts[i];
+                c.putPosition(out, tx(xyz[k]), ty(xyz[k + 2]), tz(xyz[k + 1]));
+            }
+            if (colMap != null) {
+                out.align();
+                for (int i = 0; i < n; i++)
+                    c.putColor(out, xyz[3 * verts[i] + 2]);
+            }
+            out.align();
+            for (int k = 3 * c.tri0; k < 3 * c.tri1; k++)
+                c.putIndex(out, local[tri[k]]);
+            if (c == chunks.get(chunks.size() - 1)) {
+                mark = null;
+                local = null;
+            }
+        }
+    }
+
+    // Little-endian output buffer. The position counts the bytes written 
+    // since the last reset.
+    private static class BinarySink
+    {
+        private FileChannel fc;
+        private ByteBuffer buf = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        long position = 0L;
+
+        BinarySink(FileChannel fc) {
+            this.fc = fc;
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buf.remaining() < n)
+                this.flush();
+        }
+
+        void put(byte b) throws IOException {
+            this.ensure(1);
+            buf.put(b);
+            position++;
+        }
+
+        void putShort(int val) throws IOException {
+            this.ensure(2);
+            buf.putShort((short) val);
+            position += 2;
+        }
+
+        void putInt(int val) throws IOException {
+            this.ensure(4);
+            buf.putInt(val);
+            position += 4;
+        }
+
+        void putFloat(float val) throws IOException {
+            this.ensure(4);
+            buf.putFloat(val);
+            position += 4;
+        }
+
+        // Pads with zero bytes to a multiple of 4 bytes.
+        void align() throws IOException {
+            while ((position & 3L) != 0L)
+                this.put((byte) 0);
+        }
+
+        void flush() throws IOException 
+        {
+            buf.flip();
+            while (buf.hasRemaining())
+                fc.write(buf);
+            buf.clear();
+        }
+    }
+}
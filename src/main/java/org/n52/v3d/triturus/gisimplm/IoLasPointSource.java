@@ -0,0 +1,316 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.n52.v3d.triturus.core.IoObject;
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.vgis.VgEnvelope;
+
+/**
+ * Point source reading uncompressed LAS files (ASPRS LAS versions 1.0 to 
+ * 1.4, point data record formats 0 to 3). The point records will be accessed 
+ * through memory-mapped file regions; coordinates will be derived from the 
+ * records' integer values using the header's scale factors and offsets. 
+ * Spatial and classification filters will be applied while decoding, so 
+ * that only the requested points will be delivered.<br/>
+ * <br/>
+ * Note: Compressed (LAZ) files are not supported.
+ * 
+ * @see FltPointSet2ElevationGrid#transform(IoPointBatchSource)
+ * @see FltPointSet2TIN#transform(IoPointBatchSource)
+ * @author Benno Schmidt
+ */
+public class IoLasPointSource extends IoObject implements IoPointBatchSource
+{
+    private String mLogString = "";
+
+    private final static int cMaxChunkSize = 1 << 30;
+
+    private RandomAccessFile mFile;
+    private FileChannel mChannel;
+    private ByteBuffer mChunk = null;
+    private long mChunkStart = 0, mChunkEnd = 0; // point numbers
+
+    // Header information:
+    private int mVersionMajor, mVersionMinor, mPointFormat, mRecordLength;
+    private long mPointOffset, mNumberOfPoints;
+    private double mScaleX, mScaleY, mScaleZ, mOffsetX, mOffsetY, mOffsetZ;
+    private GmEnvelope mEnvelope;
+
+    private long mNext = 0; // number of the next point record to decode
+
+    private boolean mFilter = false;
+    private double mXMin, mXMax, mYMin, mYMax, mZMin, mZMax;
+    private boolean[] mClasses = null;
+
+    /**
+     * Constructor. Opens the given LAS file and reads its header.
+     * 
+     * @param filename File name (with path optionally)
+     * @throws T3dException if the file can not be opened or is not a supported LAS file
+     */
+    public IoLasPointSource(String filename) throws T3dException
+    {
+        mLogString = this.getClass().getName();
+        try {
+            mFile = new RandomAccessFile(filename, "r");
+            mChannel = mFile.getChannel();
+            this.readHeader(filename);
+        }
+        catch (FileNotFoundException e) {
+            throw new T3dException("Could not access file \"" + filename + "\".");
+        }
+        catch (IOException e) {
+            this.close();
+            throw new T3dException(e.getMessage());
+        }
+        catch (T3dException e) {
+            this.close();
+            throw e;
+        }
+    }
+
+    public String log() {
+        return mLogString;
+    }
+
+    private void readHeader(String filename) throws IOException, T3dException
+    {
+        int size = (int) Math.min(mChannel.size(), 375L);
+        if (size < 227)
+            throw new T3dException("File \"" + filename + "\" is not a LAS file.");
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (mChannel.read(buf, buf.position()) < 0)
+                break;
+        }
+        if (buf.get(0) != 'L' || buf.get(1) != 'A' || buf.get(2) != 'S' || buf.get(3) != 'F')
+            throw new T3dException("File \"" + filename + "\" is not a LAS file.");
+
+        mVersionMajor = buf.get(24);
+        mVersionMinor = buf.get(25);
+        int headerSize = buf.getShort(94) & 0xffff;
+        mPointOffset = buf.getInt(96) & 0xffffffffL;
+        mPointFormat = buf.get(104) & 0xff;
+        mRecordLength = buf.getShort(105) & 0xffff;
+        mNumberOfPoints = buf.getInt(107) & 0xffffffffL;
+        mScaleX = buf.getDouble(131);
+        mScaleY = buf.getDouble(139);
+        mScaleZ = buf.getDouble(147);
+        mOffsetX = buf.getDouble(155);
+        mOffsetY = buf.getDouble(163);
+        mOffsetZ = buf.getDouble(171);
+        mEnvelope = new GmEnvelope(
+            buf.getDouble(187), buf.getDouble(179), 
+            buf.getDouble(203), buf.getDouble(195), 
+            buf.getDouble(219), buf.getDouble(211));
+        if (mNumberOfPoints == 0L && headerSize >= 375 && size >= 375) 
+            mNumberOfPoints = buf.getLong(247); // LAS 1.4 64-bit point count
+
+        if ((mPointFormat & 0xc0) != 0)
+            throw new T3dException("Compressed LAS files are not supported.");
+        if (mPointFormat > 3)
+            throw new T3dException("LAS point data record format " + mPointFormat + " is not supported.");
+        int[] minLength = {20, 28, 26, 34};
+        if (mRecordLength < minLength[mPointFormat])
+            throw new T3dException("Illegal LAS point data record length.");
+        if (mPointOffset + mNumberOfPoints * mRecordLength > mChannel.size())
+            throw new T3dException("LAS file \"" + filename + "\" is too short.");
+    }
+
+    /**
+     * returns the LAS version (e.g. <tt>&quot;1.2&quot;</tt>).
+     */
+    public String getVersion() {
+        return mVersionMajor + "." + mVersionMinor;
+    }
+
+    /**
+     * returns the point data record format (0 to 3).
+     */
+    public int getPointDataFormat() {
+        return mPointFormat;
+    }
+
+    /**
+     * returns the number of point records given in the header. 
+     */
+    public long numberOfPoints() {
+        return mNumberOfPoints;
+    }
+
+    /**
+     * returns the bounding-box given in the header.
+     * 
+     * @return Bounding-box
+     */
+    public VgEnvelope envelope() {
+        return mEnvelope;
+    }
+
+    /**
+     * defines a spatial filter. Points outside the given envelope will be 
+     * skipped. Note that the filter refers to the <i>z</i>-coordinates, too.
+     * 
+     * @param filter Bounding-box, or <i>null</i> to deliver all points
+     */
+    public void setSpatialFilter(VgEnvelope filter) 
+    {
+        mFilter = filter != null;
+        if (mFilter) {
+            mXMin = filter.getXMin(); mXMax = filter.getXMax();
+            mYMin = filter.getYMin(); mYMax = filter.getYMax();
+            mZMin = filter.getZMin(); mZMax = filter.getZMax();
+        }
+    }
+
+    /**
+     * defines a classification filter. Only points holding one of the given 
+     * ASPRS classification values (0 to 31, e.g. 2 for ground points) will be 
+     * delivered. Calling this method without arguments or with <i>null</i> 
+     * removes the filter.
+     * 
+     * @param classes Classification values
+     */
+    public void setClassificationFilter(int... classes) 
+    {
+        if (classes == null || classes.length == 0) {
+            mClasses = null;
+            return;
+        }
+        mClasses = new boolean[32];
+        for (int i = 0; i < classes.length; i++) {
+            if (classes[i] < 0 || classes[i] > 31)
+                throw new T3dException("Illegal classification value.");
+            mClasses[classes[i]] = true;
+        }
+    }
+
+    /**
+     * restarts reading with the first point record.
+     */
+    public void rewind() {
+        mNext = 0;
+    }
+
+    public int nextBatch(double[] x, double[] y, double[] z) throws T3dException
+    {
+        if (mNext >= mNumberOfPoints)
+            return -1;
+        if (mFilter && (
+            mEnvelope.getXMax() < mXMin || mEnvelope.getXMin() > mXMax ||
+            mEnvelope.getYMax() < mYMin || mEnvelope.getYMin() > mYMax ||
+            mEnvelope.getZMax() < mZMin || mEnvelope.getZMin() > mZMax))
+        {
+            mNext = mNumberOfPoints; // no point inside the filter envelope
+            return -1;
+        }
+
+        int n = 0;
+        while (n < x.length && mNext < mNumberOfPoints) {
+            if (mNext < mChunkStart || mNext >= mChunkEnd)
+                this.map(mNext); // e.g. after rewind() on multi-chunk files
+
+            ByteBuffer buf = mChunk;
+            int 
+                pos = (int) ((mNext - mChunkStart) * mRecordLength),
+                end = (int) ((mChunkEnd - mChunkStart) * mRecordLength);
+            // Restrict the loop to the batch size and the current chunk:
+            int maxRecords = Math.min(x.length - n, (end - pos) / mRecordLength);
+            int last = pos + maxRecords * mRecordLength;
+            for (; pos < last; pos += mRecordLength) {
+                if (mClasses != null && !mClasses[buf.get(pos + 15) & 0x1f])
+                    continue;
+                double 
+                    px = buf.getInt(pos) * mScaleX + mOffsetX,
+                    py = buf.getInt(pos + 4) * mScaleY + mOffsetY,
+                    pz = buf.getInt(pos + 8) * mScaleZ + mOffsetZ;
+                if (mFilter && (
+                    px < mXMin || px > mXMax || 
+                    py < mYMin || py > mYMax || 
+                    pz < mZMin || pz > mZMax))
+                {
+                    continue;
+                }
+                x[n] = px;
+                y[n] = py;
+                z[n] = pz;
+                n++;
+            }
+            mNext += maxRecords;
+        }
+        return n;
+    }
+
+    // Maps the chunk of point records starting with the given point number.
+    private void map(long first) throws T3dException
+    {
+        long nRecords = Math.min(mNumberOfPoints - first, cMaxChunkSize / mRecordLength);
+        try {
+            mChunk = mChannel.map(
+                FileChannel.MapMode.READ_ONLY, 
+                mPointOffset + first * mRecordLength, 
+                nRecords * mRecordLength);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+        mChunk.order(ByteOrder.LITTLE_ENDIAN);
+        mChunkStart = first;
+        mChunkEnd = first + nRecords;
+    }
+
+    /**
+     * closes the underlying file.
+     */
+    public void close() 
+    {
+        mChunk = null;
+        mChunkStart = mChunkEnd = 0;
+        try {
+            if (mFile != null) 
+                mFile.close();
+        }
+        catch (IOException e) {
+        }
+        mFile = null;
+    }
+}
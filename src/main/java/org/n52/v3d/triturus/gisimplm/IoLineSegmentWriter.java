@@ -40,7 +40,6 @@ import org.n52.v3d.triturus.vgis.VgLineSegment;
 import org.n52.v3d.triturus.vgis.VgPoint;
 
 import java.io.*;
-import java.text.DecimalFormat;
 import java.util.List;
 
 /** 
@@ -127,16 +126,16 @@ public class IoLineSegmentWriter extends IoAbstractWriter
             wl("ASCII");
             wl("DATASET POLYDATA");
             
-            DecimalFormat dfXY = this.getDecimalFormatXY();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
             VgPoint p1, p2;
 
             wl("POINTS " + (2 * lines.size()) + " float");
             for (int i = 0; i < lines.size(); i++) {
                 p1 = lines.get(i).getStartPoint();
             	p2 = lines.get(i).getEndPoint();
-                wl(p1.getX() + " " + p1.getY() + " " + p1.getZ());
-                wl(p2.getX() + " " + p2.getY() + " " + p2.getZ());
+                wXYZ(p1.getX(), p1.getY(), p1.getZ());
+                wl();
+                wXYZ(p2.getX(), p2.getY(), p2.getZ());
+                wl();
             }
 
             w("LINES " + lines.size());
@@ -161,6 +160,19 @@ public class IoLineSegmentWriter extends IoAbstractWriter
         }
     }
 
+    protected void wXYZ(double x, double y, double z) {
+        try {
+            this.writePreciseXY(doc, x);
+            doc.write(' ');
+            this.writePreciseXY(doc, y);
+            doc.write(' ');
+            this.writePreciseZ(doc, z);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
     protected void wl(String line) {
         try {
             doc.write(line);
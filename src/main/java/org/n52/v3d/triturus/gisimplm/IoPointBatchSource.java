@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Interface for sources that deliver (possibly huge) sets of 3-D points in 
+ * batches of primitive coordinate arrays instead of lists of 
+ * {@link org.n52.v3d.triturus.vgis.VgPoint}-objects. Consumers such as 
+ * {@link FltPointSet2ElevationGrid} will process the points batch by batch, 
+ * so that the point set never has to be held in memory completely.
+ * 
+ * @author Benno Schmidt
+ */
+public interface IoPointBatchSource 
+{
+    /**
+     * fills the given arrays with the coordinates of the next points. All 
+     * arrays have the same length, which gives the maximum batch size.
+     * 
+     * @param x Target array for <i>x</i>-coordinates
+     * @param y Target array for <i>y</i>-coordinates
+     * @param z Target array for <i>z</i>-coordinates
+     * @return Number of points delivered (may be 0), or -1 if the source is exhausted
+     * @throws T3dException if an error occurs
+     */
+    public abstract int nextBatch(double[] x, double[] y, double[] z) 
+        throws T3dException;
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+import org.n52.v3d.triturus.core.IoObject;
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Point source reading binary <i>x</i>-<i>y</i>-<i>z</i> records from a 
+ * channel, e.g. a file channel. Each record consists of three 64-bit 
+ * floating-point numbers (<i>x</i>, <i>y</i>, <i>z</i>), the byte order can
+ * be specified (default: little-endian). The points will be delivered in 
+ * batches, so that arbitrarily large files can be processed with constant 
+ * memory.
+ * 
+ * @see FltPointSet2ElevationGrid#transform(IoPointBatchSource)
+ * @author Benno Schmidt
+ */
+public class IoPointChannelSource extends IoObject implements IoPointBatchSource
+{
+    private String mLogString = "";
+
+    private ReadableByteChannel mChannel;
+    private ByteBuffer mBuf = null;
+    private ByteOrder mByteOrder;
+    private boolean mEOF = false;
+
+    private final static int cRecordSize = 24;
+    
+    /**
+     * Constructor.
+     * 
+     * @param channel Channel providing the binary point records
+     * @param byteOrder Byte order of the records
+     */
+    public IoPointChannelSource(ReadableByteChannel channel, ByteOrder byteOrder) 
+    {
+        mLogString = this.getClass().getName();
+        mChannel = channel;
+        mByteOrder = byteOrder;
+    }
+
+    /**
+     * Constructor. Opens the given file holding little-endian records.
+     * 
+     * @param filename File name (with path optionally)
+     * @throws T3dException if the file can not be opened
+     */
+    public IoPointChannelSource(String filename) throws T3dException
+    {
+        mLogString = this.getClass().getName();
+        try {
+            mChannel = new FileInputStream(filename).getChannel();
+        }
+        catch (IOException e) {
+            throw new T3dException("Could not access file \"" + filename + "\".");
+        }
+        mByteOrder = ByteOrder.LITTLE_ENDIAN;
+    }
+
+    public String log() {
+        return mLogString;
+    }
+
+    public int nextBatch(double[] x, double[] y, double[] z) throws T3dException
+    {
+        if (mBuf == null || mBuf.capacity() < x.length * cRecordSize) {
+            mBuf = ByteBuffer.allocateDirect(x.length * cRecordSize);
+            mBuf.order(mByteOrder);
+            mBuf.flip(); // empty buffer in read mode
+        }
+        if (mEOF && mBuf.remaining() < cRecordSize) 
+            return -1;
+
+        int n = 0;
+        try {
+            while (n < x.length) {
+                if (mBuf.remaining() < cRecordSize) {
+                    if (mEOF)
+                        break;
+                    mBuf.compact();
+                    if (mChannel.read(mBuf) < 0)
+                        mEOF = true;
+                    mBuf.flip();
+                    continue;
+                }
+                x[n] = mBuf.getDouble();
+                y[n] = mBuf.getDouble();
+                z[n] = mBuf.getDouble();
+                n++;
+            }
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+        if (n == 0 && mEOF)
+            return -1;
+        return n;
+    }
+
+    /**
+     * closes the underlying channel.
+     * 
+     * @throws T3dException if an I/O error occurs
+     */
+    public void close() throws T3dException
+    {
+        try {
+            mChannel.close();
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+}
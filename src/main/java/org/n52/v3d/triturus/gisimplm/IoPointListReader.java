@@ -38,7 +38,6 @@ import org.n52.v3d.triturus.core.T3dNotYetImplException;
 import org.n52.v3d.triturus.vgis.VgEnvelope;
 import org.n52.v3d.triturus.vgis.VgPoint;
 
-import java.io.*;
 import java.util.ArrayList;
 
 /**
@@ -49,7 +48,10 @@ import java.util.ArrayList;
  * <br/>
  * Optionally, other separators, e.g. <tt>&quot;,&quot;</tt> or 
  * <tt>&quot;;&quot;</tt>, can be set by calling this class's 
- * <tt>setDelimiter()</tt> method.
+ * <tt>setDelimiter()</tt> method.<br/>
+ * <br/>
+ * Large files should be processed by the streaming source provided by 
+ * <tt>openBatchSource()</tt> instead of <tt>readFromFile()</tt>.
  * 
  * @author Benno Schmidt
  */
@@ -70,11 +72,19 @@ public class IoPointListReader extends IoObject
      */
     public static final String PLAIN = "Plain";
 
+    /**
+     * File-format type identifier to be used for uncompressed LAS files.
+     * 
+     * @see IoLasPointSource
+     */
+    public static final String LAS = "LAS";
+
     /**
      * Constructor. As an input parameter, the file format type identifier must
      * be specified. The supported formats are listed below:<br />
      * <ul>
      * <li><i>Plain:</i> ASCII file, <i>x</i>, <i>y</i> and <i>z</i> line by line, separated by space character</li>
+     * <li><i>LAS:</i> uncompressed LAS file (point data record formats 0 to 3)</li>
      * </ul>
      * @param format Format-string, e.g. <tt>"Plain"</tt>
      * @see IoPointListReader#PLAIN
@@ -114,6 +124,9 @@ public class IoPointListReader extends IoObject
         if (mFormat.equalsIgnoreCase("Plain")) {
             i = 1;
         }
+        if (mFormat.equalsIgnoreCase(LAS)) {
+            i = 2;
+        }
         // --> add more types here...
 
         try {
@@ -121,6 +134,9 @@ public class IoPointListReader extends IoObject
                 case 1: 
                     this.readPlainAscii(filename); 
                     break;
+                case 2: 
+                    this.readLas(filename); 
+                    break;
                 // --> add more types here...
 
                 default: 
@@ -134,60 +150,69 @@ public class IoPointListReader extends IoObject
         return mPointList;
     }
 
+    /**
+     * opens a file for streaming access. The returned source delivers the 
+     * points batch by batch as primitive coordinate arrays, thus it is 
+     * suitable for files that are too large to be held in memory as lists of 
+     * {@link VgPoint}-objects. The delimiter and the spatial filter set for 
+     * this reader will be applied. The caller is responsible for closing the
+     * source.
+     * 
+     * @param filename File name (with path optionally)
+     * @return Point source
+     * @throws org.n52.v3d.triturus.core.T3dException
+     * @throws org.n52.v3d.triturus.core.T3dNotYetImplException
+     * @see FltPointSet2ElevationGrid#transform(IoPointBatchSource)
+     */
+    public IoPointListSource openBatchSource(String filename) 
+        throws T3dException, T3dNotYetImplException
+    {
+        if (!mFormat.equalsIgnoreCase(PLAIN)) 
+            throw new T3dNotYetImplException("Unsupported file format");
+
+        IoPointListSource source = new IoPointListSource(filename);
+        source.setDelimiter(mDelimiter);
+        source.setSpatialFilter(mSpatialFilter);
+        return source;
+    }
+
     private void readPlainAscii(String filename) throws T3dException
     {
         // TODO: Also keep configurable: x-y-z order, skip point-identifiers etc.
-        String line = "";
-        int lineNumber = 0;
-
         mPointList = new ArrayList<VgPoint>();
 
+        IoPointListSource source = this.openBatchSource(filename);
         try {
-            FileReader lFileRead = new FileReader(filename);
-            BufferedReader lDatRead = new BufferedReader(lFileRead);
-
-            String tok1, tok2, tok3;
-            double x, y, z;
-            VgPoint pt = null;
-
-            line = lDatRead.readLine();
-            while (line != null) {
-                lineNumber++;
-
-                tok1 = this.getStrTok(line, 1, mDelimiter);
-                tok2 = this.getStrTok(line, 2, mDelimiter);
-                tok3 = this.getStrTok(line, 3, mDelimiter);
-
-                x = this.toDouble(tok1);
-                y = this.toDouble(tok2);
-                z = this.toDouble(tok3);
-
-                pt = new GmPoint(x, y, z);
-
-                if (mSpatialFilter != null) {
-                    if (mSpatialFilter.contains(pt))
-                        mPointList.add(pt);
-                } else
-                    mPointList.add(pt);
-
-                line = lDatRead.readLine();
-                //if (lineNumber % 1000000 == 0) System.out.println("lineNumber = " + lineNumber);
+            double[] x = new double[4096], y = new double[4096], z = new double[4096];
+            int n;
+            while ((n = source.nextBatch(x, y, z)) >= 0) {
+                for (int i = 0; i < n; i++)
+                    mPointList.add(new GmPoint(x[i], y[i], z[i]));
             }
-            lDatRead.close();
-        }
-        catch (FileNotFoundException e) {
-            throw new T3dException("Could not access file \"" + filename + "\".");
         }
-        catch (IOException e) {
-            throw new T3dException(e.getMessage());
+        finally {
+            source.close();
         }
-        catch (T3dException e) {
+    } // readPlainAscii()
+
+    private void readLas(String filename) throws T3dException
+    {
+        mPointList = new ArrayList<VgPoint>();
+
+        IoLasPointSource source = new IoLasPointSource(filename);
+        source.setSpatialFilter(mSpatialFilter);
+        try {
+            double[] x = new double[4096], y = new double[4096], z = new double[4096];
+            int n;
+            while ((n = source.nextBatch(x, y, z)) >= 0) {
+                for (int i = 0; i < n; i++)
+                    mPointList.add(new GmPoint(x[i], y[i], z[i]));
+            }
         }
-        catch (Exception e) {
-            throw new T3dException("Parser error in \"" + filename + "\":" + lineNumber);
+        finally {
+            source.close();
         }
-        //System.out.println("lineNumber = " + lineNumber);
-    } // readPlainAscii()
+    } // readLas()
 
     /**
      * defines a spatial filter. Points outside the given envelope will be ignored 
@@ -212,39 +237,15 @@ public class IoPointListReader extends IoObject
         return mSpatialFilter;
     }
 
+    /**
+     * sets the delimiters separating the coordinates. Each character of the 
+     * given string will be treated as delimiter; blanks and tabulators will
+     * always be accepted. If the comma is not a delimiter, it will be 
+     * accepted as decimal point.
+     * 
+     * @param delimiter Delimiter characters (default: <tt>&quot; &quot;</tt>)
+     */
     public void setDelimiter(String delimiter) {
         mDelimiter = delimiter;
     }
-
-    // private helpers, used by readPlainAscii():
-
-    // Extraction of the i-th token from a string ('sep' as separator):
-    private String getStrTok(String str, int i, String sep) throws T3dException
-    {
-        String[] tok = str.split("[" + sep + "]+");
-        if (tok != null) {
-            boolean empty1 = tok[0].length() == 0 ? true : false; // preceding empty token 
-            if (empty1) {
-                if (i < tok.length)
-                    return tok[i]; 
-            } else {
-                if (i - 1 < tok.length)
-                    return tok[i - 1];
-            }
-        } 
-        throw new T3dException("Logical parser error.");
-    } 
-
-    // Convert String to floating-point number:
-    private double toDouble(String pStr) 
-    {
-        pStr = pStr.replaceAll(",", "."); // TODO: ',' as decimal-point
-        return Double.parseDouble(pStr);
-    } 
-
-    // Convert String to integer:
-    private int toInt(String pStr)
-    {
-        return Integer.parseInt(pStr);
-    } 
 }
@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.n52.v3d.triturus.core.IoObject;
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.vgis.VgEnvelope;
+
+/**
+ * Point source reading ASCII files that contain <i>x</i>-, <i>y</i>- and 
+ * <i>z</i>-coordinates line by line (see {@link IoPointListReader}). The 
+ * file will be read chunk-wise and parsed without creating 
+ * <tt>String</tt>- or {@link org.n52.v3d.triturus.vgis.VgPoint}-objects; the 
+ * points will be delivered in batches, so that arbitrarily large files can 
+ * be processed with constant memory. Empty lines will be skipped, further 
+ * tokens following the <i>z</i>-coordinate will be ignored.
+ * 
+ * @see IoPointListReader#openBatchSource(String)
+ * @see FltPointSet2ElevationGrid#transform(IoPointBatchSource)
+ * @author Benno Schmidt
+ */
+public class IoPointListSource extends IoObject implements IoPointBatchSource
+{
+    private String mLogString = "";
+
+    private String mFilename;
+    private ReadableByteChannel mChannel;
+    private IoAsciiNumberScanner mScanner = new IoAsciiNumberScanner();
+    private byte[] mBuf = new byte[1 << 20];
+    private int mPos = 0, mLen = 0;
+    private boolean mEOF = false;
+    private long mLineNumber = 0;
+
+    private boolean mFilter = false;
+    private double mXMin, mXMax, mYMin, mYMax, mZMin, mZMax;
+
+    /**
+     * Constructor. Opens the given file.
+     * 
+     * @param filename File name (with path optionally)
+     * @throws T3dException if the file can not be opened
+     */
+    public IoPointListSource(String filename) throws T3dException
+    {
+        mLogString = this.getClass().getName();
+        mFilename = filename;
+        try {
+            mChannel = new FileInputStream(filename).getChannel();
+        }
+        catch (FileNotFoundException e) {
+            throw new T3dException("Could not access file \"" + filename + "\".");
+        }
+    }
+
+    public String log() {
+        return mLogString;
+    }
+
+    /**
+     * sets the delimiters separating the coordinates. Each character of the 
+     * given string will be treated as delimiter; blanks and tabulators will
+     * always be accepted. If the comma is not a delimiter, it will be 
+     * accepted as decimal point.
+     * 
+     * @param delimiter Delimiter characters, e.g. <tt>&quot;,&quot;</tt> or <tt>&quot;;&quot;</tt>
+     */
+    public void setDelimiter(String delimiter) {
+        mScanner.setDelimiters(delimiter);
+        mScanner.setDecimalComma(delimiter.indexOf(',') < 0);
+    }
+
+    /**
+     * defines a spatial filter. Points outside the given envelope will be 
+     * skipped. Note that the filter refers to the <i>z</i>-coordinates, too.
+     * 
+     * @param filter Bounding-box, or <i>null</i> to deliver all points
+     */
+    public void setSpatialFilter(VgEnvelope filter) 
+    {
+        mFilter = filter != null;
+        if (mFilter) {
+            mXMin = filter.getXMin(); mXMax = filter.getXMax();
+            mYMin = filter.getYMin(); mYMax = filter.getYMax();
+            mZMin = filter.getZMin(); mZMax = filter.getZMax();
+        }
+    }
+
+    public int nextBatch(double[] x, double[] y, double[] z) throws T3dException
+    {
+        int n = 0;
+        while (n < x.length) {
+            // Find the next complete line:
+            int end = mPos;
+            while (end < mLen && mBuf[end] != '\n') 
+                end++;
+            if (end == mLen && !mEOF) {
+                this.fill();
+                continue;
+            }
+            if (mPos >= mLen)
+                break; // assert: mEOF
+            
+            mLineNumber++;
+            mScanner.reset(mBuf, mPos, end);
+            mPos = end + 1;
+            if (!mScanner.skipBlanks())
+                continue; // empty line
+
+            double px, py, pz;
+            try {
+                px = mScanner.nextDouble();
+                if (!mScanner.skipBlanks()) 
+                    throw new T3dException("Missing y-coordinate.");
+                py = mScanner.nextDouble();
+                if (!mScanner.skipBlanks()) 
+                    throw new T3dException("Missing z-coordinate.");
+                pz = mScanner.nextDouble();
+            }
+            catch (T3dException e) {
+                throw new T3dException(
+                    "Parser error in \"" + mFilename + "\":" + mLineNumber + " (" + e.getMessage() + ")");
+            }
+
+            if (mFilter && (
+                px < mXMin || px > mXMax || 
+                py < mYMin || py > mYMax || 
+                pz < mZMin || pz > mZMax))
+            {
+                continue;
+            }
+            x[n] = px;
+            y[n] = py;
+            z[n] = pz;
+            n++;
+        }
+        if (n == 0 && mEOF && mPos >= mLen)
+            return -1;
+        return n;
+    }
+
+    // Moves the remaining bytes to the buffer's start and reads the next 
+    // chunk. The buffer will grow if a single line does not fit.
+    private void fill() throws T3dException
+    {
+        if (mPos > 0) {
+            System.arraycopy(mBuf, mPos, mBuf, 0, mLen - mPos);
+            mLen -= mPos;
+            mPos = 0;
+        }
+        if (mLen == mBuf.length) {
+            byte[] h = new byte[2 * mBuf.length];
+            System.arraycopy(mBuf, 0, h, 0, mLen);
+            mBuf = h;
+        }
+        try {
+            int k = mChannel.read(ByteBuffer.wrap(mBuf, mLen, mBuf.length - mLen));
+            if (k < 0)
+                mEOF = true;
+            else
+                mLen += k;
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
+    /**
+     * closes the underlying file.
+     * 
+     * @throws T3dException if an I/O error occurs
+     */
+    public void close() throws T3dException
+    {
+        try {
+            mChannel.close();
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+}
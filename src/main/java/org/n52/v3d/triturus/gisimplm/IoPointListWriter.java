@@ -32,7 +32,6 @@
  */
 package org.n52.v3d.triturus.gisimplm;
 
-import org.n52.v3d.triturus.core.IoObject;
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.core.T3dNotYetImplException;
 import org.n52.v3d.triturus.vgis.VgPoint;
@@ -41,11 +40,14 @@ import java.io.*;
 import java.util.List;
 
 /**
- * Export of files that contain point coordinates. 
+ * Export of files that contain point coordinates. By default, the 
+ * coordinates will be written with full precision; the number of written 
+ * decimal places can be restricted by <tt>setPrecisionXY()</tt> and 
+ * <tt>setPrecisionZ()</tt>.
  * 
  * @author Benno Schmidt
  */
-public class IoPointListWriter extends IoObject
+public class IoPointListWriter extends IoAbstractWriter
 {
     private String logString = "";
     private String format;
@@ -171,11 +173,12 @@ public class IoPointListWriter extends IoObject
     	List<VgPoint> points, String filename, boolean commaSeparated) 
     	throws T3dException
     {
-    	// TODO: Keep configurable: Separator, x-y-z order, number of written digits,
-    	// bounding-box filter, skip point-identifiers etc.
+    	// TODO: Keep configurable: Separator, x-y-z order, bounding-box filter, 
+    	// skip point-identifiers etc.
         try {
             BufferedWriter doc = new BufferedWriter(new FileWriter(filename));
             String sep = commaSeparated ? "," : " ";
+            char sepChar = sep.charAt(0);
             
             if (writeHeaderLine) {
                 doc.write(fieldNames[0] + sep + fieldNames[1] + sep + fieldNames[2]);
@@ -183,7 +186,11 @@ public class IoPointListWriter extends IoObject
             }
             
             for (VgPoint p : points) {
-                doc.write(p.getX() + sep + p.getY() + sep + p.getZ());
+                this.writePreciseXY(doc, p.getX());
+                doc.write(sepChar);
+                this.writePreciseXY(doc, p.getY());
+                doc.write(sepChar);
+                this.writePreciseZ(doc, p.getZ());
                 doc.newLine();           	
             }
             
@@ -33,7 +33,6 @@
 package org.n52.v3d.triturus.gisimplm;
 
 import java.io.*;
-import java.text.DecimalFormat;
 
 import org.n52.v3d.triturus.core.IoFormatType;
 import org.n52.v3d.triturus.core.T3dException;
@@ -134,22 +133,22 @@ public class IoProfileWriter extends IoAbstractWriter
 
             // Write the stations:
             VgLineString pDefLine = (VgLineString) profile.getGeometry();
-            DecimalFormat dfXY = this.getDecimalFormatXY();
             wl("STATIONS");
             if (pDefLine.numberOfVertices() > 0) {
                 double t = 0.;
-                wl(dfXY.format(t));
+                wXY(t);
+                wl();
                 VgPoint last = pDefLine.getVertex(0);
                 for (int i = 1; i < pDefLine.numberOfVertices(); i++) {
                     VgPoint curr = pDefLine.getVertex(i);
                     t += curr.distanceXY(last);
-                    wl(dfXY.format(t));
+                    wXY(t);
+                    wl();
                     last = pDefLine.getVertex(i);
                 }                
             }
 
             // Write the z-values:
-            DecimalFormat dfZ = this.getDecimalFormatZ();
             wl("DATA");
             wl("NAME unnamed");
             for (int i = 0; i < profile.numberOfTZPairs(); i++) {
@@ -160,9 +159,10 @@ public class IoProfileWriter extends IoAbstractWriter
                     t = 0.;
                     z = 0.; // since ACADGEO profile files can not handle no-data values
             	} 
-                w(dfXY.format(t));
+                wXY(t);
                 w(" ");
-                wl(dfZ.format(z));
+                wZ(z);
+                wl();
             }
 
             wl("END");
@@ -214,9 +214,6 @@ public class IoProfileWriter extends IoAbstractWriter
             	" height=\"" + SVGParams.imageHeight + "\"" + 
             	" style=\"fill:rgb(255,255,255)\"/>");
 
-            DecimalFormat dfXY = this.getDecimalFormatXY();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-
             this.setCanvasPrf( // profile canvas
             	SVGParams.imageBorder + SVGParams.zAnnotWidth, // xmin
             	SVGParams.imageWidth - SVGParams.imageBorder, // xmax
@@ -352,7 +349,9 @@ public class IoProfileWriter extends IoAbstractWriter
 	                    w("M"); first = false;
 	                } else
 	                    w(" L"); 
-	                w("" + dfXY.format(x) + " " + dfZ.format(y)); 
+	                wXY(x);
+	                w(" ");
+	                wZ(y);
         		} else {
         			// do not draw holes (unset values) in the path 
         			first = true;
@@ -472,6 +471,24 @@ public class IoProfileWriter extends IoAbstractWriter
         }
     }
 
+    private void wXY(double val) {
+        try {
+            this.writeXY(doc, val);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
+    private void wZ(double val) {
+        try {
+            this.writeZ(doc, val);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
     private void wl(String line) {
         try {
             doc.write(line);
@@ -0,0 +1,497 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Reader for raw raster files in ESRI band-sequential (BSQ), band-interleaved 
+ * by line (BIL) and band-interleaved by pixel (BIP) layout. The raster 
+ * description will be taken from the header file (<tt>.hdr</tt>), the 
+ * georeference from the world file (<tt>.bqw</tt>, <tt>.blw</tt> or 
+ * <tt>.bpw</tt>) or, if not present, from the header's <tt>ulxmap</tt>, 
+ * <tt>ulymap</tt>, <tt>xdim</tt> and <tt>ydim</tt> entries.<br/>
+ * <br/>
+ * Supported are 8 bit unsigned, 16 and 32 bit signed or unsigned integer 
+ * values and 32 and 64 bit floating-point values in either byte order. The 
+ * data file will be memory-mapped; only the rows of the requested window will 
+ * be accessed.<br/>
+ * <br/>
+ * Note that the resulting grids will be vertex-based, i.e. grid points refer 
+ * to the raster cells' centers. Values equal to the header's <tt>nodata</tt> 
+ * entry will remain unset; for floating-point rasters without such an entry, 
+ * this holds for values &lt;= -8000.
+ * 
+ * @see IoElevationGridReader
+ * @author Benno Schmidt
+ */
+final class IoRawRasterFile
+{
+    private final static int cMaxChunkSize = 1 << 30;
+
+    private final static int 
+        cUInt = 0, cInt = 1, cFloat = 2;
+
+    // Raster description:
+    int nCols, nRows, nBands;
+    double originX, originY, deltaX, deltaY;
+    
+    private String mDataFile;
+    private int mBits, mPixelType;
+    private ByteOrder mByteOrder = ByteOrder.nativeOrder();
+    private long mSkipBytes, mBandOffset, mRowStride, mColStride;
+    private boolean mHasNoData = false, mTopDown = true, mRightToLeft = false;
+    private double mNoData;
+    private boolean mFloatNoDataLimit = false;
+
+    /**
+     * opens a raw raster file and reads its header and world file.
+     * 
+     * @param filename File name of the data file (<tt>.bsq</tt>, <tt>.bil</tt> or <tt>.bip</tt>)
+     * @throws T3dException if the header can not be read or describes an unsupported raster
+     */
+    IoRawRasterFile(String filename) throws T3dException
+    {
+        int dot = filename.lastIndexOf('.');
+        String ext = dot < 0 ? "" : filename.substring(dot + 1).toLowerCase();
+        if (!ext.equals("bsq") && !ext.equals("bil") && !ext.equals("bip"))
+            throw new T3dException("File-name not correct: " + filename);
+        String base = filename.substring(0, dot + 1);
+        mDataFile = filename;
+
+        Hashtable<String, String> header = this.readKeyValues(base + "hdr");
+        nRows = this.intValue(header, "nrows", -1);
+        nCols = this.intValue(header, "ncols", -1);
+        if (nRows < 0 || nCols < 0)
+            throw new T3dException("Missing raster dimensions in header.");
+        nBands = this.intValue(header, "nbands", 1);
+
+        String pixelType = header.get("pixeltype");
+        if (pixelType == null || pixelType.startsWith("unsigned"))
+            mPixelType = cUInt;
+        else if (pixelType.startsWith("signed") || pixelType.startsWith("int"))
+            mPixelType = cInt;
+        else if (pixelType.startsWith("float"))
+            mPixelType = cFloat;
+        else
+            throw new T3dException("Pixeltype not supported: " + pixelType);
+        mBits = this.intValue(header, "nbits", mPixelType == cFloat ? 32 : 8);
+        if (mPixelType == cFloat ? mBits != 32 && mBits != 64 
+            : mBits != 8 && mBits != 16 && mBits != 32) 
+        {
+            throw new T3dException("Number of bits not supported: " + mBits);
+        }
+
+        String byteOrder = header.get("byteorder");
+        if (byteOrder != null) {
+            if (byteOrder.startsWith("m")) // Motorola
+                mByteOrder = ByteOrder.BIG_ENDIAN;
+            else if (byteOrder.startsWith("i")) // Intel
+                mByteOrder = ByteOrder.LITTLE_ENDIAN;
+            else 
+                throw new T3dException("Byte order not supported: " + byteOrder);
+        }
+
+        String layout = header.get("layout");
+        if (layout == null) 
+            layout = ext;
+        int bpp = mBits / 8;
+        long bandRowBytes = this.intValue(header, "bandrowbytes", nCols * bpp);
+        mSkipBytes = this.intValue(header, "skipbytes", 0);
+        if (layout.equals("bsq")) {
+            mRowStride = bandRowBytes;
+            mColStride = bpp;
+            mBandOffset = mRowStride * nRows;
+        }
+        else if (layout.equals("bil")) {
+            mRowStride = this.intValue(header, "totalrowbytes", (int) (nBands * bandRowBytes));
+            mColStride = bpp;
+            mBandOffset = bandRowBytes;
+        }
+        else if (layout.equals("bip")) {
+            mRowStride = this.intValue(header, "totalrowbytes", nBands * nCols * bpp);
+            mColStride = nBands * bpp;
+            mBandOffset = bpp;
+        }
+        else
+            throw new T3dException("Layout not supported: " + layout);
+
+        if (header.get("nodata") != null) {
+            mHasNoData = true;
+            mNoData = this.doubleValue(header, "nodata", 0.);
+        }
+        else if (mPixelType == cFloat) {
+            mFloatNoDataLimit = true; // as before, values <= -8000 will be ignored
+        }
+
+        // Georeference, given by the upper-left cell's center:
+        double 
+            ulx = this.doubleValue(header, "ulxmap", 0.), 
+            uly = this.doubleValue(header, "ulymap", nRows - 1.),
+            dx = this.doubleValue(header, "xdim", 1.), 
+            dy = -this.doubleValue(header, "ydim", 1.);
+        String worldName = base + ext.charAt(0) + ext.charAt(2) + "w";
+        if (ext.equals("bsq"))
+            worldName = base + "bqw";
+        if (new File(worldName).isFile()) {
+            double[] w = this.readWorldFile(worldName);
+            dx = w[0];
+            dy = w[3];
+            ulx = w[4];
+            uly = w[5];
+        }
+        if (dx == 0. || dy == 0.)
+            throw new T3dException("Illegal cell-size.");
+
+        mRightToLeft = dx < 0.;
+        mTopDown = dy < 0.;
+        deltaX = Math.abs(dx);
+        deltaY = Math.abs(dy);
+        originX = mRightToLeft ? ulx - deltaX * (nCols - 1) : ulx;
+        originY = mTopDown ? uly - deltaY * (nRows - 1) : uly;
+    }
+
+    private Hashtable<String, String> readKeyValues(String filename) throws T3dException
+    {
+        Hashtable<String, String> res = new Hashtable<String, String>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(filename));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#"))
+                    continue;
+                int k = 0;
+                while (k < line.length() && !Character.isWhitespace(line.charAt(k))) 
+                    k++;
+                if (k < line.length())
+                    res.put(line.substring(0, k).toLowerCase(), line.substring(k).trim().toLowerCase());
+            }
+        }
+        catch (FileNotFoundException e) {
+            throw new T3dException("Could not access file \"" + filename + "\".");
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+        finally {
+            try {
+                if (reader != null)
+                    reader.close();
+            }
+            catch (IOException e) {
+            }
+        }
+        return res;
+    }
+
+    private double[] readWorldFile(String filename) throws T3dException
+    {
+        double[] res = new double[6];
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(filename));
+            int k = 0;
+            String line;
+            while (k < 6 && (line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0)
+                    res[k++] = Double.parseDouble(line);
+            }
+            if (k < 6)
+                throw new T3dException("Incomplete world file \"" + filename + "\".");
+        }
+        catch (NumberFormatException e) {
+            throw new T3dException("Illegal entry in world file \"" + filename + "\".");
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+        finally {
+            try {
+                if (reader != null)
+                    reader.close();
+            }
+            catch (IOException e) {
+            }
+        }
+        return res;
+    }
+
+    private int intValue(Hashtable<String, String> header, String key, int defaultVal) 
+        throws T3dException 
+    {
+        String val = header.get(key);
+        if (val == null)
+            return defaultVal;
+        try {
+            return Integer.parseInt(val);
+        }
+        catch (NumberFormatException e) {
+            throw new T3dException("Illegal header entry for \"" + key + "\": " + val);
+        }
+    }
+
+    private double doubleValue(Hashtable<String, String> header, String key, double defaultVal) 
+        throws T3dException 
+    {
+        String val = header.get(key);
+        if (val == null)
+            return defaultVal;
+        try {
+            return Double.parseDouble(val);
+        }
+        catch (NumberFormatException e) {
+            throw new T3dException("Illegal header entry for \"" + key + "\": " + val);
+        }
+    }
+
+    /**
+     * reads a grid window of a single band. The window is given in grid 
+     * coordinates, i.e. row 0 refers to the southernmost raster row. For 
+     * <tt>stride</tt> &gt; 1, only every <tt>stride</tt>-th row and column 
+     * of the window will be read.
+     * 
+     * @param band Band index (starting with 0)
+     * @param rowFrom First row
+     * @param colFrom First column
+     * @param nRowsW Number of rows
+     * @param nColsW Number of columns
+     * @param stride Decimation step (&gt;= 1)
+     * @param numberOfThreads Number of threads used to convert the values
+     * @return Elevation-grid
+     * @throws T3dException
+     */
+    GmSimpleElevationGrid read(
+        final int band, final int rowFrom, final int colFrom, int nRowsW, int nColsW, 
+        final int stride, int numberOfThreads) throws T3dException
+    {
+        if (band < 0 || band >= nBands)
+            throw new T3dException("Illegal band index.");
+        if (stride < 1)
+            throw new T3dException("Illegal stride.");
+        if (rowFrom < 0 || colFrom < 0 || nRowsW < 0 || nColsW < 0 
+            || rowFrom + nRowsW > nRows || colFrom + nColsW > nCols) 
+        {
+            throw new T3dException("Illegal grid window.");
+        }
+
+        final int 
+            nRowsRes = (nRowsW + stride - 1) / stride, 
+            nColsRes = (nColsW + stride - 1) / stride;
+        GmSimpleElevationGrid grid = new GmSimpleElevationGrid(
+            nColsRes, nRowsRes, 
+            new GmPoint(originX + colFrom * deltaX, originY + rowFrom * deltaY, 0.), 
+            stride * deltaX, stride * deltaY);
+        grid.setLatticeInterpretation();
+        final GmGridStorage val = grid.getStorage();
+        if (nRowsRes == 0 || nColsRes == 0)
+            return grid;
+
+        // Map the file region holding the window's rows. Since mappings are 
+        // limited to 2 GB, large regions will be mapped chunk-wise.
+        int 
+            fileRow0 = this.fileRow(rowFrom), 
+            fileRow1 = this.fileRow(rowFrom + (nRowsRes - 1) * stride);
+        final int firstFileRow = Math.min(fileRow0, fileRow1);
+        int lastFileRow = Math.max(fileRow0, fileRow1);
+        final long 
+            rowOffset = mSkipBytes + band * mBandOffset,
+            rowLength = (nCols - 1) * mColStride + mBits / 8;
+        final int rowsPerChunk = (int) Math.max(1L, 
+            Math.min(lastFileRow - firstFileRow + 1L, (cMaxChunkSize - rowLength) / mRowStride + 1L));
+        final int nChunks = (lastFileRow - firstFileRow) / rowsPerChunk + 1;
+        final ByteBuffer[] chunks = new ByteBuffer[nChunks];
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mDataFile, "r");
+            FileChannel fc = file.getChannel();
+            for (int c = 0; c < nChunks; c++) {
+                int 
+                    r0 = firstFileRow + c * rowsPerChunk,
+                    r1 = Math.min(r0 + rowsPerChunk - 1, lastFileRow);
+                long 
+                    pos = rowOffset + r0 * mRowStride, 
+                    len = (r1 - r0) * mRowStride + rowLength;
+                if (pos + len > fc.size())
+                    throw new T3dException("Raw raster file \"" + mDataFile + "\" is too short.");
+                MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                buf.order(mByteOrder);
+                chunks[c] = buf;
+            }
+        }
+        catch (FileNotFoundException e) {
+            throw new T3dException("Could not access file \"" + mDataFile + "\".");
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+        finally {
+            try {
+                if (file != null)
+                    file.close(); // The mappings remain valid.
+            }
+            catch (IOException e) {
+            }
+        }
+
+        ExecutorService executor = numberOfThreads <= 1 || nRowsRes < 2 ? null : 
+            Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            if (executor == null) 
+                this.readRows(chunks, firstFileRow, rowsPerChunk, 0, nRowsRes, rowFrom, colFrom, nColsRes, stride, val);
+            else {
+                int nTasks = Math.min(nRowsRes, 4 * numberOfThreads);
+                List<Future<?>> tasks = new ArrayList<Future<?>>();
+                for (int t = 0; t < nTasks; t++) {
+                    final int 
+                        i0 = (int) ((long) nRowsRes * t / nTasks), 
+                        i1 = (int) ((long) nRowsRes * (t + 1) / nTasks);
+                    tasks.add(executor.submit(new Runnable() {
+                        public void run() {
+                            readRows(chunks, firstFileRow, rowsPerChunk, i0, i1, rowFrom, colFrom, nColsRes, stride, val);
+                        }
+                    }));
+                }
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            throw new T3dException("Reading raw raster has been interrupted.");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof T3dException)
+                throw (T3dException) e.getCause();
+            throw new T3dException("Could not read raw raster. " + e.getCause());
+        }
+        finally {
+            if (executor != null) 
+                executor.shutdown();
+        }
+        grid.setZBoundsInvalid();
+        return grid;
+    }
+
+    private int fileRow(int row) {
+        return mTopDown ? nRows - 1 - row : row;
+    }
+
+    // Reads the result rows i0, ..., i1 - 1.
+    private void readRows(
+        ByteBuffer[] chunks, int firstFileRow, int rowsPerChunk, 
+        int i0, int i1, int rowFrom, int colFrom, int nColsRes, int stride, 
+        GmGridStorage val)
+    {
+        double[] row = new double[nColsRes];
+        long colStride = stride * mColStride;
+        int colStart = mRightToLeft ? nCols - 1 - colFrom : colFrom;
+        if (mRightToLeft) 
+            colStride = -colStride;
+
+        for (int i = i0; i < i1; i++) {
+            int fileRow = this.fileRow(rowFrom + i * stride) - firstFileRow;
+            ByteBuffer buf = chunks[fileRow / rowsPerChunk];
+            int pos = (int) ((fileRow % rowsPerChunk) * mRowStride + colStart * mColStride);
+            int step = (int) colStride;
+
+            switch (mPixelType * 100 + mBits) {
+                case cUInt * 100 + 8:
+                    for (int j = 0; j < nColsRes; j++, pos += step) 
+                        row[j] = buf.get(pos) & 0xff;
+                    break;
+                case cUInt * 100 + 16:
+                    for (int j = 0; j < nColsRes; j++, pos += step) 
+                        row[j] = buf.getShort(pos) & 0xffff;
+                    break;
+                case cUInt * 100 + 32:
+                    for (int j = 0; j < nColsRes; j++, pos += step) 
+                        row[j] = buf.getInt(pos) & 0xffffffffL;
+                    break;
+                case cInt * 100 + 8:
+                    for (int j = 0; j < nColsRes; j++, pos += step) 
+                        row[j] = buf.get(pos);
+                    break;
+                case cInt * 100 + 16:
+                    for (int j = 0; j < nColsRes; j++, pos += step) 
+                        row[j] = buf.getShort(pos);
+                    break;
+                case cInt * 100 + 32:
+                    for (int j = 0; j < nColsRes; j++, pos += step) 
+                        row[j] = buf.getInt(pos);
+                    break;
+                case cFloat * 100 + 32:
+                    for (int j = 0; j < nColsRes; j++, pos += step) 
+                        row[j] = buf.getFloat(pos);
+                    break;
+                case cFloat * 100 + 64:
+                    for (int j = 0; j < nColsRes; j++, pos += step) 
+                        row[j] = buf.getDouble(pos);
+                    break;
+            }
+
+            if (mHasNoData) {
+                for (int j = 0; j < nColsRes; j++) {
+                    if (row[j] == mNoData) row[j] = Double.NaN;
+                }
+            }
+            else if (mFloatNoDataLimit) {
+                for (int j = 0; j < nColsRes; j++) {
+                    if (row[j] <= -8000.) row[j] = Double.NaN;
+                }
+            }
+            val.setRow(i, row); // NaN values remain unset
+        }
+    }
+}
@@ -37,17 +37,18 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.StreamTokenizer;
 import java.net.URL;
 import java.net.MalformedURLException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
 import org.n52.v3d.triturus.core.IoFormatType;
 import org.n52.v3d.triturus.core.IoObject;
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.core.T3dNotYetImplException;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
@@ -78,6 +79,7 @@ public class IoTINReader extends IoObject
 	 * <li><i>VRML2:</i> VRML 2</li>
 	 * <li><i>ArcTIN:</i> ESRI TIN format</li>
 	 * <li><i>GMT_TIN:</i> ...</li>
+     * <li><i>BinaryTIN:</i> native binary indexed TIN format</li>
      * </ul>
      * 
      * @param format Format-string, e.g. <tt></tt>&quot;Vrml2&quot;</tt>
@@ -137,18 +139,13 @@ public class IoTINReader extends IoObject
         if (format.equalsIgnoreCase(IoFormatType.VRML2)) i = 2;
 		if (format.equalsIgnoreCase(ESRI_TIN)) i = 3;
 		if (format.equalsIgnoreCase("GMT_TIN")) i = 4;
+        if (format.equalsIgnoreCase(IoFormatType.BINARY_TIN)) i = 5;
         // --> add more types here...
 
-        BufferedReader reader = null;
         try {
-        	if (pLocation.startsWith("http"))
-				reader = createBufferedReader(new URL(pLocation));
-			else
-        		reader = createBufferedReader(pLocation);
-
         	switch (i) {
                 case 1: 
-                	this.readAcadGeoTIN(reader, pLocation); 
+                	this.readAcadGeoTIN(pLocation); 
                 	break;
                 case 2: 
                 	this.readVRML2(pLocation); 
@@ -167,6 +164,10 @@ public class IoTINReader extends IoObject
 					//System.out.println("Load GMT file: " + xyzFilename+ " "+ tinFilename);
 					this.readGMTTin(xyzFilename, tinFilename);
 					break;
+                case 5: 
+                    tin = new GmSimpleTINFeature();
+                    tin.setGeometry(IoBinaryTINFile.read(pLocation));
+                    break;
 				// --> add more types here...
 
                 default: throw new T3dNotYetImplException("Unsupported file format");
@@ -174,186 +175,93 @@ public class IoTINReader extends IoObject
         }
         catch (T3dException e) {
             throw e;
-        } catch (MalformedURLException e1) {
-			e1.printStackTrace();
-		}
+        }
 
         return tin;
     }
 
-    private BufferedReader createBufferedReader(URL url) {
-		InputStream is = null;
-		try {
-			is = url.openStream();
-			return new BufferedReader(new InputStreamReader(is));
-		} catch (IOException e) {
-        	System.out.println("<TINReader> Loading failed: "+url);
-			e.printStackTrace();
-			return null;
-		}
-    }
-
-    private BufferedReader createBufferedReader(String pFilename) {
-        InputStream  input  = this.getClass().getClassLoader().getResourceAsStream(pFilename);
-        BufferedReader lDatRead = null;
-
+    // Opens a URL, a class-path resource or a file.
+    private ReadableByteChannel openChannel(String pLocation) throws T3dException
+    {
         try {
-        	//System.out.println("LoadingStream: "+input);
-        	if(input == null)
-        		input =  new FileInputStream(pFilename);
-        	lDatRead = new BufferedReader(new InputStreamReader(input));
+            InputStream input;
+            if (pLocation.startsWith("http"))
+                input = new URL(pLocation).openStream();
+            else {
+                input = this.getClass().getClassLoader().getResourceAsStream(pLocation);
+                if (input == null)
+                    return new FileInputStream(pLocation).getChannel();
+            }
+            return Channels.newChannel(input);
+        }
+        catch (MalformedURLException e) {
+            throw new T3dException("Illegal URL \"" + pLocation + "\".");
+        }
+        catch (FileNotFoundException e) {
+            throw new T3dException("Could not access file \"" + pLocation + "\".");
         }
-        catch( Exception e){
-        	System.out.println("<TINReader> Loading failed: "+pFilename);
-        	e.printStackTrace();
-			return null;
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
         }
-        return lDatRead;
     }
 
-    private void readAcadGeoTIN(BufferedReader pDatRead, String pFilename) throws T3dException
+    // The vertices and triangles will be parsed chunk-wise into primitive 
+    // arrays which are referenced by the resulting TIN geometry.
+    private void readAcadGeoTIN(String pLocation) throws T3dException
     {
-        String line = "";
-        int lineNumber = 0;
-             
+        IoAsciiTokenReader tok = new IoAsciiTokenReader(this.openChannel(pLocation), pLocation);
         try {
-            String tok1, tok2, tok3;
-
-            line = pDatRead.readLine(); // line 1
-            lineNumber++;
-            tok1 = this.getStrTok(line, 1, " ");
-            if (!tok1.equalsIgnoreCase("TINBEGIN")) 
-                throw new T3dException("Expected key-word TINBEGIN in \"" + pFilename + "\":" + lineNumber);
-
-            line = pDatRead.readLine(); // line 2
-            lineNumber++;
-            tok1 = this.getStrTok(line, 1, " ");
-            if (!tok1.equalsIgnoreCase("FORMAT")) 
-                throw new T3dException("Expected key-word FORMAT in \"" + pFilename + "\":" + lineNumber);
-            tok2 = this.getStrTok(line, 2, " ");
-            boolean refPresent = false;
-            if (tok2.equalsIgnoreCase("R=ON"))
-                refPresent = true;    
-            tok3 = this.getStrTok(line, 3, " ");
-            boolean colPresent = false;
-            if (tok3.equalsIgnoreCase("C=ON"))
-                colPresent = true;    
+            tok.expect("TINBEGIN");
+            tok.expect("FORMAT");
+            boolean refPresent = false, colPresent = false;
+            for (int k = 0; k < 2; k++) {
+                if (tok.next() != IoAsciiTokenReader.cWord) 
+                    throw tok.parserError("Expected format specification.");
+                if (tok.isWord("R=ON"))
+                    refPresent = true;    
+                if (tok.isWord("C=ON"))
+                    colPresent = true;    
+            }
 
             if (colPresent) 
                 throw new T3dException("Coloured AcadGeo-TINs are not supported (yet)."); 
             if (refPresent) 
                 throw new T3dException("TINs holding full topology information are not supported (yet)."); 
            
-            line = pDatRead.readLine(); // line 3
-            lineNumber++;
-            tok1 = this.getStrTok(line, 1, " ");
-            if (!tok1.equalsIgnoreCase("TIN:")) 
-                throw new T3dException("Expected key-word TIN: in \"" + pFilename + "\":" + lineNumber);
-
-            line = pDatRead.readLine(); // line 4
-            lineNumber++;
-            tok1 = this.getStrTok(line, 1, " ");
-            if (!tok1.equalsIgnoreCase("POINTS")) 
-                throw new T3dException("Expected key-word POINTS in \"" + pFilename + "\":" + lineNumber);
-            tok2 = this.getStrTok(line, 2, " ");
-            int nPoints = this.toInt(tok2);
-
-            // Konstruktion des TINs:
-
-            tin = new GmSimpleTINFeature();
-            GmSimpleTINGeometry lTINGeom = (GmSimpleTINGeometry) tin.getGeometry();
-            lTINGeom.newPointList(nPoints);
-
-            // Belegen der TIN-Punkte:
-
-            double x, y, z;
-            //mTIN.setBoundsInvalid(); // Performanz!
-
-            for (int i = 0; i < nPoints; i++) {
-                line = pDatRead.readLine();
-                lineNumber++;
-                tok1 = this.getStrTok(line, 1, " ");
-                x = this.toDouble(tok1);
-                tok2 = this.getStrTok(line, 2, " ");
-                y = this.toDouble(tok2);
-                tok3 = this.getStrTok(line, 3, " ");
-                z = this.toDouble(tok3);
-                lTINGeom.setPoint(i, new GmPoint( x, y, z ));
-            }
-
-            line = pDatRead.readLine();
-            lineNumber++;
-            tok1 = this.getStrTok(line, 1, " ");
-            if (!tok1.equalsIgnoreCase("TRIANGLES")) 
-                throw new T3dException("Expected key-word TRIANGLES in \"" + pFilename + "\":" + lineNumber);
-            tok2 = this.getStrTok(line, 2, " ");
-            int nTriangles = this.toInt(tok2);
-
-            lTINGeom.newTriangleList(nTriangles);
-
-            // Dreiecksvermaschung:
-
-            int i1, i2, i3;
-
-            for (int i = 0; i < nTriangles; i++) {
-                line = pDatRead.readLine();
-                lineNumber++;
-                tok1 = this.getStrTok(line, 1, " ");
-                i1 = this.toInt(tok1);
-                tok2 = this.getStrTok(line, 2, " ");
-                i2 = this.toInt(tok2);
-                tok3 = this.getStrTok(line, 3, " ");
-                i3 = this.toInt(tok3);
-                lTINGeom.setTriangle(i, i1, i2, i3);
+            tok.expect("TIN:");
+            tok.expect("POINTS");
+            int nPoints = tok.nextInt();
+            if (nPoints < 0)
+                throw tok.parserError("Illegal number of points.");
+
+            double[] xyz = new double[3 * nPoints];
+            for (int k = 0; k < xyz.length; k++)
+                xyz[k] = tok.nextNumber();
+
+            tok.expect("TRIANGLES");
+            int nTriangles = tok.nextInt();
+            if (nTriangles < 0)
+                throw tok.parserError("Illegal number of triangles.");
+
+            int[] tri = new int[3 * nTriangles];
+            for (int k = 0; k < tri.length; k++) {
+                int idx = tok.nextInt();
+                if (idx < 0 || idx >= nPoints)
+                    throw tok.parserError("Illegal point index " + idx + ".");
+                tri[k] = idx;
             }
 
-            line = pDatRead.readLine(); // letzte Zeile
-            lineNumber++;
-            tok1 = this.getStrTok(line, 1, " ");
-            if (!tok1.equalsIgnoreCase("END")) 
-                throw new T3dException("Expected key-word END in \"" + pFilename + "\":" + lineNumber);
+            tok.expect("END");
 
-            pDatRead.close();
-        }
-        catch (FileNotFoundException e) {
-            throw new T3dException("Could not access file \"" + pFilename + "\".");
-        }
-        catch (IOException e) {
-            throw new T3dException(e.getMessage());
-        }
-        catch (T3dException e) {
-            throw new T3dException(e.getMessage());
+            tin = new GmSimpleTINFeature();
+            tin.setGeometry(new GmSimpleTINGeometry(xyz, tri));
         }
-        catch (Exception e) {
-            throw new T3dException("Parser error in \"" + pFilename + "\":" + lineNumber);
+        finally {
+            tok.close();
         }
     } // readAcadGeoTIN()
 
-    // private Helfer, die in readAcadGeoTIN() benoetigt werden:
-
-    // Extraktion des i-ten Tokens (i >= 1!, i max. = 4) aus einem String ('pSep' als Trenner):
-    private String getStrTok(String pStr, int i, String pSep) throws T3dException
-    {
-        ArrayList lStrArr = new ArrayList(); 
-        lStrArr.add(pStr);
-        int i0 = 0, i1 = 0, k = 0;
-        while (k < 4 && i1 >= 0) {
-           i1 = pStr.indexOf(pSep, i0);
-           if (i1 >= 0) {
-               if (k == 0)
-                   lStrArr.set(0, pStr.substring( i0, i1 ));
-               else
-                   lStrArr.add(pStr.substring( i0, i1 ));
-               i0 = i1 + 1;
-               k++;
-           }
-        }
-        if (k <= 3)
-            lStrArr.add( pStr.substring(i0) );
-        if (i < 1 || i > 4)
-            throw new T3dException("Logical parser error.");
-        return (String) lStrArr.get(i - 1);
-    } 
+    // private Helfer, die in readARCTin() benoetigt werden:
 
     // Konvertierung String -> Gleitpunktzahl:
     private double toDouble(String pStr) 
@@ -367,113 +275,84 @@ public class IoTINReader extends IoObject
         return Integer.parseInt(pStr);
     } 
 
-	// Quick-and-dirty-Implementierung f�r VRML 2-Import: Versuche das erste IndexedFaceSet zu finden und hole es...
-	// Das muss nat�rlich GeoVRML sein... :-]
-	private void readVRML2(String pFilename) throws T3dException
+	// Reads the first IndexedFaceSet found inside a geometry node. Both the 
+	// coordinates and the indices will be parsed chunk-wise into primitive 
+	// arrays. Faces with more than three vertices will be split into 
+	// triangle fans.
+	private void readVRML2(String pLocation) throws T3dException
     {
-		int lineNumber = 0;
-		InputStream  input  = this.getClass().getClassLoader().getResourceAsStream(pFilename); 
-		BufferedReader lDatRead = null;
-		
-		try { 
-//			System.out.println("LoadingStream: "+input);        	
-			if(input == null) 
-				input =  new FileInputStream(pFilename); 
-			lDatRead = new BufferedReader(new InputStreamReader(input));
-		} 
-		catch( Exception e){ 
-			System.out.println("LoadingStreamFailed: "+pFilename);
-		} 
+		IoAsciiTokenReader tok = new IoAsciiTokenReader(this.openChannel(pLocation), pLocation);
+		tok.setDelimiters(",[]{}");
+		tok.setCommentChar('#');
 		try {
-//			FileReader lFileRead = new FileReader(pFilename);
-//			BufferedReader lDatRead = new BufferedReader(lFileRead);
-			StreamTokenizer lTokRead = new StreamTokenizer(lDatRead);
-			lTokRead.lowerCaseMode(true);//alle Tokens in Kleinbuchstaben holen
-			lTokRead.commentChar(35);//Hash signalisiert Kommentar-Zeile...
-			lTokRead.eolIsSignificant(false);//Zeilenumbruch unwichtig
-			lTokRead.wordChars(65,90);//Gro�buchstaben
-			lTokRead.wordChars(97,122);//Kleinbuchstaben
-//			System.out.println("EOF: " + StreamTokenizer.TT_EOF);
-//			System.out.println("EOL: " + StreamTokenizer.TT_EOL);
-//			System.out.println("NUM: " + StreamTokenizer.TT_NUMBER);
-//			System.out.println("CAR: " + StreamTokenizer.TT_WORD);
-			int tokType=0;
+			int t;
 			boolean geometryFound = false;
-			boolean isIndexedFaceSet = false;
-			boolean pointsFound = false;
-			do {
-				tokType = lTokRead.nextToken();
-//				if(tokType<0) System.out.println(tokType);
-//				else { System.out.write(tokType); System.out.println();} 
-				if(tokType==StreamTokenizer.TT_WORD) {
-					lineNumber = lTokRead.lineno();
-//					System.out.println("gefunden: " + lTokRead.sval);
-					if(lTokRead.sval.equals("geometry")) geometryFound=true;
-					if(lTokRead.sval.equals("indexedfaceset") && geometryFound) isIndexedFaceSet=true;
-					if(lTokRead.sval.equals("point")&& isIndexedFaceSet) {pointsFound=true;break;} 
-				}
-			} while (tokType!=StreamTokenizer.TT_EOF);
-			if(!pointsFound) throw new T3dException("Could not find points.");
-			lTokRead.parseNumbers();//Die Doubles lesen wir 'direkt'
-			int countO=0;
-			double[] ordinates = new double[100000];
-			while((tokType=lTokRead.nextToken())!=StreamTokenizer.TT_EOF){
-				if(tokType==StreamTokenizer.TT_NUMBER) ordinates[countO++]=lTokRead.nval;
-				if(countO==ordinates.length) {
-					double[] buf = new double[ordinates.length*2];
-					System.arraycopy(ordinates,0,buf,0,ordinates.length);
-					ordinates=buf;
-				}
-				if(tokType==StreamTokenizer.TT_WORD) break;
+			while ((t = tok.next()) != IoAsciiTokenReader.cEOF) {
+				if (t != IoAsciiTokenReader.cWord)
+					continue;
+				if (tok.isWord("geometry")) 
+					geometryFound = true;
+				else if (geometryFound && tok.isWord("IndexedFaceSet")) 
+					break;
 			}
-			if(!lTokRead.sval.equals("coordindex")) throw new T3dException("Could not find indices.");
-			int countI=0;
-			int[] indices = new int[100000]; //Hier k�nnten auch Facetten kommen - fehlt noch!
-			while((tokType=lTokRead.nextToken())!=StreamTokenizer.TT_EOF){
-				if(tokType==StreamTokenizer.TT_NUMBER){
-					if(lTokRead.nval>=0) indices[countI++]=(int)lTokRead.nval;
+			if (t == IoAsciiTokenReader.cEOF)
+				throw new T3dException("Could not find IndexedFaceSet.");
+
+			double[] xyz = null;
+			int[] tri = null;
+			int nOrd = 0, nIdx = 0;
+			t = tok.next();
+			while (t != IoAsciiTokenReader.cEOF && (xyz == null || tri == null)) {
+				if (xyz == null && t == IoAsciiTokenReader.cWord && tok.isWord("point")) {
+					xyz = new double[3 << 16];
+					while ((t = tok.next()) == IoAsciiTokenReader.cNumber) {
+						if (nOrd == xyz.length)
+							xyz = Arrays.copyOf(xyz, 2 * nOrd);
+						xyz[nOrd++] = tok.number();
+					}
 				}
-				if(countI==indices.length){
-					int[] buf = new int[indices.length*2];
-					System.arraycopy(indices,0,buf,0,indices.length);
-					indices=buf;
+				else if (tri == null && t == IoAsciiTokenReader.cWord && tok.isWord("coordIndex")) {
+					tri = new int[3 << 16];
+					int nFace = 0, first = 0, prev = 0;
+					while ((t = tok.next()) == IoAsciiTokenReader.cNumber) {
+						int idx = tok.intNumber();
+						if (idx < 0) {
+							nFace = 0; // end of face
+							continue;
+						}
+						if (nFace == 0) 
+							first = idx;
+						else if (nFace >= 2) {
+							if (nIdx + 3 > tri.length)
+								tri = Arrays.copyOf(tri, 2 * tri.length);
+							tri[nIdx++] = first;
+							tri[nIdx++] = prev;
+							tri[nIdx++] = idx;
+						}
+						prev = idx;
+						nFace++;
+					}
 				}
-				if(tokType==StreamTokenizer.TT_WORD) break;
+				else
+					t = tok.next();
 			}
-			if((countO % 3 != 0)||(countI % 3 != 0)) throw new T3dException("Enexpected error." + countO + " " + countI);
-			
-			tin = new GmSimpleTINFeature();
-			GmSimpleTINGeometry lTINGeom = (GmSimpleTINGeometry) tin.getGeometry();
-			lTINGeom.newPointList(countO/3);
-			
-			//mTIN.setBoundsInvalid(); // Performanz!
-			
-			for (int i=0; i<countO/3; i++) {
-				lTINGeom.setPoint(i, new GmPoint(ordinates[i*3],ordinates[i*3+1],ordinates[i*3+2]));
+			if (xyz == null)
+				throw new T3dException("Could not find points.");
+			if (tri == null)
+				throw new T3dException("Could not find indices.");
+			if (nOrd % 3 != 0) 
+				throw new T3dException("Unexpected number of coordinates (" + nOrd + ").");
+			for (int k = 0; k < nIdx; k++) {
+				if (tri[k] >= nOrd / 3)
+					throw new T3dException("Illegal point index " + tri[k] + ".");
 			}
-			
-			lTINGeom.newTriangleList(countI/3);
-			for (int i=0; i<countI/3; i++) {
-				lTINGeom.setTriangle(i,indices[i*3],indices[i*3+1],indices[i*3+2]);
-			}
-			
-		}
-        catch (FileNotFoundException e) {
-		    throw new T3dException("Could not access file \"" + pFilename + "\".");
-		}
-		catch (IOException e) {
-		    throw new T3dException(e.getMessage());
-		}
-		catch (T3dException e) {
-		    throw new T3dException(e.getMessage());
+
+			tin = new GmSimpleTINFeature();
+			tin.setGeometry(new GmSimpleTINGeometry(
+				Arrays.copyOf(xyz, nOrd), Arrays.copyOf(tri, nIdx)));
 		}
-        catch (T3dNotYetImplException e) {
-            System.out.println("Warning: Caught T3dNotYetImplException...");
-                ;  // todo: das ist noch unsauber!!"
-        }
-		catch (Exception e) {
-		    e.printStackTrace();
-			throw new T3dException("Parser error in \"" + pFilename + "\":" + lineNumber);
+		finally {
+			tok.close();
 		}
 	}
 	
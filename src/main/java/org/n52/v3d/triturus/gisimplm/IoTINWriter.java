@@ -36,9 +36,9 @@ import org.n52.v3d.triturus.core.IoFormatType;
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.core.T3dNotYetImplException;
 import org.n52.v3d.triturus.vgis.VgIndexedTIN;
+import org.n52.v3d.triturus.vgis.VgPoint;
 
 import java.io.*;
-import java.text.DecimalFormat;
 
 /** 
  * Writer which exports TINs to files or streams. Various formats such as
@@ -67,6 +67,8 @@ public class IoTINWriter extends IoAbstractWriter
      * <li><i>X3D:</i> X3D scene (as IndexedFaceSet without viewpoint setting)</li>
      * <li><i>X3DOM:</i> X3D scene (as IndexedFaceSet without viewpoint setting)</li>
      * <li><i>OBJ:</i> Wavefront OBJ file</li>
+     * <li><i>BinaryTIN:</i> native binary indexed TIN format</li>
+     * <li><i>GLB:</i> binary glTF 2.0 (see {@link IoGltfWriter})</li>
      * </ul>
      * 
      * @param format Format string (e.g. <tt></tt>&quot;AcGeo&quot;</tt>)
@@ -75,6 +77,8 @@ public class IoTINWriter extends IoAbstractWriter
      * @see IoFormatType#X3D
      * @see IoFormatType#X3DOM
      * @see IoFormatType#OBJ
+     * @see IoFormatType#BINARY_TIN
+     * @see IoFormatType#GLB
      */
     public IoTINWriter(String format) {
         logString = this.getClass().getName();
@@ -112,6 +116,8 @@ public class IoTINWriter extends IoAbstractWriter
         if (format.equalsIgnoreCase(IoFormatType.X3D)) i = 3;
         if (format.equalsIgnoreCase(IoFormatType.X3DOM)) i = 4;
         if (format.equalsIgnoreCase(IoFormatType.OBJ)) i = 5;
+        if (format.equalsIgnoreCase(IoFormatType.BINARY_TIN)) i = 6;
+        if (format.equalsIgnoreCase(IoFormatType.GLB)) i = 7;
         // --> add more formats here...
 
         try {
@@ -121,6 +127,8 @@ public class IoTINWriter extends IoAbstractWriter
                 case 3: this.writeSimpleX3d(tin, filename); break;
                 case 4: this.writeSimpleX3Dom(tin, filename); break;
                 case 5: this.writeSimpleObj(tin, filename); break;
+                case 6: IoBinaryTINFile.write((VgIndexedTIN) tin.getGeometry(), filename); break;
+                case 7: this.writeGlb(tin, filename); break;
                 // --> add more formats here...
 
                 default: throw new T3dNotYetImplException("Unsupported file format");
@@ -131,6 +139,13 @@ public class IoTINWriter extends IoAbstractWriter
         }
     }
     
+    private void writeGlb(GmSimpleTINFeature tin, String filename) throws T3dException
+    {
+        IoGltfWriter writer = new IoGltfWriter();
+        writer.addTIN(tin);
+        writer.writeToFile(filename);
+    }
+
     private void writeAcadGeoTIN(GmSimpleTINFeature tin, String filename) throws T3dException
     {
         try {
@@ -143,21 +158,41 @@ public class IoTINWriter extends IoAbstractWriter
             wl("FORMAT R=OFF C=OFF");
             wl("TIN:");
             
-            DecimalFormat dfXY = this.getDecimalFormatZ();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-            
             wl("POINTS " + geom.numberOfPoints());
-            for (int i = 0; i < geom.numberOfPoints(); i++) {
-                w(dfXY.format(geom.getPoint(i).getX()));
-                w(" " + dfXY.format(geom.getPoint(i).getY()));
-                wl(" " + dfZ.format(geom.getPoint(i).getZ()));
+            if (geom instanceof GmSimpleTINGeometry) {
+                // Write directly from the TIN's primitive arrays:
+                double[] xyz = ((GmSimpleTINGeometry) geom).getCoordinates();
+                for (int i = 0, k = 0; i < geom.numberOfPoints(); i++, k += 3) {
+                    wXYZ(xyz[k], xyz[k + 1], xyz[k + 2]);
+                    wl();
+                }
+            }
+            else {
+                VgPoint pt;
+                for (int i = 0; i < geom.numberOfPoints(); i++) {
+                    pt = geom.getPoint(i);
+                    wXYZ(pt.getX(), pt.getY(), pt.getZ());
+                    wl();
+                }
             }
             
             wl("TRIANGLES " + geom.numberOfTriangles());
+            int crn[] = null;
+            int k = 0;
+            if (geom instanceof GmSimpleTINGeometry)
+                crn = ((GmSimpleTINGeometry) geom).getTriangleIndices();
             for (int i = 0; i < geom.numberOfTriangles(); i++) {
-                w("" + geom.getTriangleVertexIndices(i)[0]);
-                w(" " + geom.getTriangleVertexIndices(i)[1]);
-                wl(" " + geom.getTriangleVertexIndices(i)[2]);
+                if (!(geom instanceof GmSimpleTINGeometry)) {
+                    crn = geom.getTriangleVertexIndices(i);
+                    k = 0;
+                }
+                wI(crn[k]);
+                w(" ");
+                wI(crn[k + 1]);
+                w(" ");
+                wI(crn[k + 2]);
+                wl();
+                k += 3;
             }
             wl("END");
             
@@ -201,12 +236,11 @@ public class IoTINWriter extends IoAbstractWriter
             
             // VRML Section 1 (vertices):
             
-            DecimalFormat dfXY = this.getDecimalFormatZ();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-            
-            for (int i = 0; i < geom.numberOfPoints(); i++) {
-                GmPoint pt = new GmPoint(geom.getPoint(i));
-                wl("        " + dfXY.format(pt.getX()) + " " + dfXY.format(pt.getY()) + " " + dfZ.format(pt.getZ()));
+            double[] xyz = geom.getCoordinates();
+            for (int i = 0, k = 0; i < geom.numberOfPoints(); i++, k += 3) {
+                w("        ");
+                wXYZ(xyz[k], xyz[k + 1], xyz[k + 2]);
+                wl();
             }
             
             wl("      ]"); 
@@ -218,10 +252,15 @@ public class IoTINWriter extends IoAbstractWriter
             wl("    IndexedFaceSet {"); 
             wl("      coordIndex ["); 
             
-            int crn[];
-            for (int i = 0; i < geom.numberOfTriangles(); i++) {
-                crn = geom.getTriangleVertexIndices(i);
-                wl("        " + crn[0] + ", " + crn[1] + ", " + crn[2] + ", -1,"); 
+            int crn[] = geom.getTriangleIndices();
+            for (int i = 0, k = 0; i < geom.numberOfTriangles(); i++, k += 3) {
+                w("        ");
+                wI(crn[k]);
+                w(", ");
+                wI(crn[k + 1]);
+                w(", ");
+                wI(crn[k + 2]);
+                wl(", -1,"); 
             }
             
             wl("      ]"); 
@@ -257,10 +296,14 @@ public class IoTINWriter extends IoAbstractWriter
             wl("      <Appearance><Material/></Appearance>"); 
             
             wl("        <IndexedFaceSet solid=\"TRUE\" coordIndex=\""); 
-            int crn[];
-            for (int i = 0; i < geom.numberOfTriangles(); i++) {
-                crn = geom.getTriangleVertexIndices(i);
-                w(crn[0] + " " + crn[1] + " " + crn[2] + " -1"); 
+            int crn[] = geom.getTriangleIndices();
+            for (int i = 0, k = 0; i < geom.numberOfTriangles(); i++, k += 3) {
+                wI(crn[k]);
+                w(" ");
+                wI(crn[k + 1]);
+                w(" ");
+                wI(crn[k + 2]);
+                w(" -1"); 
                 if (i < geom.numberOfTriangles() - 1) 
                      w(", "); 
                 wl();
@@ -268,11 +311,9 @@ public class IoTINWriter extends IoAbstractWriter
             wl("        \">"); 
              
             wl("          <Coordinate point=\""); 
-            DecimalFormat dfXY = this.getDecimalFormatZ();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-            for (int i = 0; i < geom.numberOfPoints(); i++) {
-                GmPoint pt = new GmPoint(geom.getPoint(i));
-                w(dfXY.format(pt.getX()) + " " + dfXY.format(pt.getY()) + " " + dfZ.format(pt.getZ()));
+            double[] xyz = geom.getCoordinates();
+            for (int i = 0, k = 0; i < geom.numberOfPoints(); i++, k += 3) {
+                wXYZ(xyz[k], xyz[k + 1], xyz[k + 2]);
                 if (i < geom.numberOfPoints() - 1) 
                     w(", "); 
                 wl();
@@ -323,10 +364,13 @@ public class IoTINWriter extends IoAbstractWriter
             wl("          </appearance>"); 
             wl("          <IndexedFaceSet solid='false' coordIndex='"); 
  
-            int crn[];
-            for (int i = 0; i < geom.numberOfTriangles(); i++) {
-                crn = geom.getTriangleVertexIndices(i);
-                w(crn[0] + " " + crn[1] + " " + crn[2]); 
+            int crn[] = geom.getTriangleIndices();
+            for (int i = 0, k = 0; i < geom.numberOfTriangles(); i++, k += 3) {
+                wI(crn[k]);
+                w(" ");
+                wI(crn[k + 1]);
+                w(" ");
+                wI(crn[k + 2]); 
                 if (i < geom.numberOfTriangles() - 1) 
                     w(" -1"); 
                 wl();
@@ -334,11 +378,9 @@ public class IoTINWriter extends IoAbstractWriter
             wl("          '>"); 
          
             wl("            <Coordinate point='"); 
-            DecimalFormat dfXY = this.getDecimalFormatZ();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-            for (int i = 0; i < geom.numberOfPoints(); i++) {
-                GmPoint pt = new GmPoint(geom.getPoint(i));
-                w(dfXY.format(pt.getX()) + " " + dfXY.format(pt.getY()) + " " + dfZ.format(pt.getZ()));
+            double[] xyz = geom.getCoordinates();
+            for (int i = 0, k = 0; i < geom.numberOfPoints(); i++, k += 3) {
+                wXYZ(xyz[k], xyz[k + 1], xyz[k + 2]);
                 if (i < geom.numberOfPoints() - 1) 
                     w(","); 
                 wl();
@@ -398,21 +440,25 @@ public class IoTINWriter extends IoAbstractWriter
             wl("o TIN");
             
             // Write vertex information:
-            // DecimalFormat dfXY = this.getDecimalFormatXY();
-            // DecimalFormat dfZ = this.getDecimalFormatZ();
-            for (int i = 0; i < geom.numberOfPoints(); i++){
-            	GmPoint pt = new GmPoint(geom.getPoint(i));
-            	wl("v "+ (pt.getX() * scale + offsetX) + " " + (pt.getY() * scale + offsetY) + " " + (pt.getZ() * scale) );
-
+            double[] xyz = geom.getCoordinates();
+            for (int i = 0, k = 0; i < geom.numberOfPoints(); i++, k += 3){
+            	w("v ");
+            	wPreciseXYZ(xyz[k] * scale + offsetX, xyz[k + 1] * scale + offsetY, xyz[k + 2] * scale);
+            	wl();
             }
             
             wl("s off"); // disable smoothing 
             
             // Write triangle face information:
-            int crn[];
-            for (int i = 0; i < geom.numberOfTriangles(); i++){
-            	crn = geom.getTriangleVertexIndices(i);
-            	wl("f " + (crn[0] + 1) + " " + (crn[1] + 1) + " " + (crn[2] + 1));
+            int crn[] = geom.getTriangleIndices();
+            for (int i = 0, k = 0; i < geom.numberOfTriangles(); i++, k += 3){
+            	w("f ");
+            	wI(crn[k] + 1);
+            	w(" ");
+            	wI(crn[k + 1] + 1);
+            	w(" ");
+            	wI(crn[k + 2] + 1);
+            	wl();
             }
             
 			doc.close();
@@ -430,6 +476,41 @@ public class IoTINWriter extends IoAbstractWriter
         }
     }
 
+    private void wI(int val) {
+        try {
+            this.writeInt(doc, val);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
+    private void wXYZ(double x, double y, double z) {
+        try {
+            this.writeXY(doc, x);
+            doc.write(' ');
+            this.writeXY(doc, y);
+            doc.write(' ');
+            this.writeZ(doc, z);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
+    private void wPreciseXYZ(double x, double y, double z) {
+        try {
+            this.writePreciseXY(doc, x);
+            doc.write(' ');
+            this.writePreciseXY(doc, y);
+            doc.write(' ');
+            this.writePreciseZ(doc, z);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
     private void wl(String line) {
         try {
             doc.write(line);
@@ -36,9 +36,9 @@ import org.n52.v3d.triturus.core.IoFormatType;
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.core.T3dNotYetImplException;
 import org.n52.v3d.triturus.vgis.VgIndexedTetrMesh;
+import org.n52.v3d.triturus.vgis.VgPoint;
 
 import java.io.*;
-import java.text.DecimalFormat;
 
 /** 
  * Writer which exports indexed tetrahedronal meshes to files or streams. 
@@ -150,14 +150,11 @@ public class IoTetrMeshWriter extends IoAbstractWriter
             wl("ASCII");
             wl("DATASET UNSTRUCTURED_GRID");
             
-            DecimalFormat dfXY = this.getDecimalFormatXY();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-            
             wl("POINTS " + mesh.numberOfPoints() + " float");
             for (int i = 0; i < mesh.numberOfPoints(); i++) {
-                w(dfXY.format(mesh.getPoint(i).getX()));
-                w(" " + dfXY.format(mesh.getPoint(i).getY()));
-                wl(" " + dfZ.format(mesh.getPoint(i).getZ()));
+                VgPoint pt = mesh.getPoint(i);
+                wXYZ(pt.getX(), pt.getY(), pt.getZ());
+                wl();
             }
             
             w("CELLS " + mesh.numberOfTetrahedrons());
@@ -240,6 +237,19 @@ public class IoTetrMeshWriter extends IoAbstractWriter
         }
     }
 
+    private void wXYZ(double x, double y, double z) {
+        try {
+            this.writeXY(doc, x);
+            doc.write(' ');
+            this.writeXY(doc, y);
+            doc.write(' ');
+            this.writeZ(doc, z);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
     private void wl(String line) {
         try {
             doc.write(line);
@@ -0,0 +1,829 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.vgis.VgEnvelope;
+
+/**
+ * Native binary tiled elevation-grid format. A file consists of
+ * <ol>
+ * <li>a header holding the grid geometry, the tile size, the number of 
+ * decimal places the elevation values have been quantized to and the stored 
+ * overview levels,</li>
+ * <li>the tile indices holding the file offsets of the tiles (row-major 
+ * order) of the grid and of the overview grids,</li>
+ * <li>the compressed tiles.</li>
+ * </ol>
+ * For each aggregation method stored, overview level <i>l</i> = 1, 2, ... 
+ * holds the grid aggregated over blocks of 2<sup><i>l</i></sup> x 
+ * 2<sup><i>l</i></sup> elements (see 
+ * {@link GmSimpleElevationGrid#aggregate(int, GmSimpleElevationGrid.Aggregation)}).
+ * <br/>
+ * Inside a tile, elevation values will be quantized according to the given 
+ * number of decimal places. Each quantized value will be predicted from its 
+ * already encoded neighbors (planar prediction, where possible); the residuals 
+ * will be written as variable-length integers. Unset grid elements are 
+ * encoded by a bit mask. Finally, each tile will be deflated.<br/>
+ * <br/>
+ * Since the tiles are compressed separately, arbitrary windows of the grid 
+ * can be read without decoding the whole file. All numbers are stored in 
+ * big-endian byte order.
+ * 
+ * @see IoElevationGridWriter
+ * @see IoElevationGridReader
+ * @author Benno Schmidt
+ */
+final class IoTiledGridFile
+{
+    private final static int cMagic = 0x54334447; // "T3DG"
+    private final static int cVersion = 1;
+    private final static int cHeaderSize = 4 + 4 + 4 * 4 + 4 * 8 + 1 + 4 + 4;
+
+    private final static byte cAllUnset = 0, cAllSet = 1, cMasked = 2;
+
+    // Header information:
+    int nCols, nRows, tileSize, decimals, nLevels;
+    double originX, originY, deltaX, deltaY;
+    boolean latticeMode;
+
+    private GmSimpleElevationGrid.Aggregation[] mAggregations;
+    private long[][] mIndex; // tile indices of the grid and the overview grids
+    private RandomAccessFile mFile;
+    private FileChannel mChannel;
+
+    /**
+     * opens a tiled grid file and reads the header and the tile index.
+     * 
+     * @param filename File name (with path optionally)
+     * @throws T3dException if the file can not be read
+     */
+    IoTiledGridFile(String filename) throws T3dException
+    {
+        try {
+            mFile = new RandomAccessFile(filename, "r");
+            mChannel = mFile.getChannel();
+            ByteBuffer buf = ByteBuffer.allocate(cHeaderSize);
+            readFully(mChannel, buf, 0L);
+            if (buf.getInt() != cMagic)
+                throw new T3dException("File \"" + filename + "\" is not a tiled grid file.");
+            if (buf.getInt() != cVersion)
+                throw new T3dException("Unsupported tiled grid file version.");
+            nCols = buf.getInt();
+            nRows = buf.getInt();
+            tileSize = buf.getInt();
+            decimals = buf.getInt();
+            originX = buf.getDouble();
+            originY = buf.getDouble();
+            deltaX = buf.getDouble();
+            deltaY = buf.getDouble();
+            latticeMode = buf.get() != 0;
+            nLevels = buf.getInt();
+            mAggregations = aggregations(buf.getInt());
+            if (nCols < 0 || nRows < 0 || tileSize <= 0 || nLevels < 0 || nLevels > 30)
+                throw new T3dException("Corrupt tiled grid file header.");
+
+            mIndex = new long[1 + mAggregations.length * nLevels][];
+            long pos = cHeaderSize;
+            for (int g = 0; g < mIndex.length; g++) {
+                int nTiles = this.numberOfTiles(this.level(g));
+                buf = ByteBuffer.allocate(8 * (nTiles + 1));
+                readFully(mChannel, buf, pos);
+                pos += 8 * (nTiles + 1);
+                mIndex[g] = new long[nTiles + 1];
+                for (int t = 0; t <= nTiles; t++) 
+                    mIndex[g][t] = buf.getLong();
+            }
+        }
+        catch (FileNotFoundException e) {
+            throw new T3dException("Could not access file \"" + filename + "\".");
+        }
+        catch (IOException e) {
+            this.close();
+            throw new T3dException(e.getMessage());
+        }
+        catch (T3dException e) {
+            this.close();
+            throw e;
+        }
+    }
+
+    /**
+     * closes the file.
+     */
+    void close() 
+    {
+        try {
+            if (mFile != null) 
+                mFile.close();
+        }
+        catch (IOException e) {
+        }
+        mFile = null;
+    }
+
+    private static GmSimpleElevationGrid.Aggregation[] aggregations(int mask) 
+    {
+        GmSimpleElevationGrid.Aggregation[] all = GmSimpleElevationGrid.Aggregation.values();
+        int n = 0;
+        for (int a = 0; a < all.length; a++) {
+            if ((mask & (1 << a)) != 0) n++;
+        }
+        GmSimpleElevationGrid.Aggregation[] res = new GmSimpleElevationGrid.Aggregation[n];
+        for (int a = 0, k = 0; a < all.length; a++) {
+            if ((mask & (1 << a)) != 0) res[k++] = all[a];
+        }
+        return res;
+    }
+
+    // Grid index g = 0 refers to the grid itself, g = 1 + a * nLevels + l - 1 
+    // to overview level l of the a-th aggregation method. 
+    private int level(int g) {
+        return g == 0 ? 0 : (g - 1) % nLevels + 1;
+    }
+
+    private int numberOfRows(int level) {
+        return (nRows + (1 << level) - 1) >> level;
+    }
+
+    private int numberOfColumns(int level) {
+        return (nCols + (1 << level) - 1) >> level;
+    }
+
+    private int numberOfTileColumns(int level) {
+        return (this.numberOfColumns(level) + tileSize - 1) / tileSize;
+    }
+
+    private int numberOfTiles(int level) {
+        return ((this.numberOfRows(level) + tileSize - 1) / tileSize) * this.numberOfTileColumns(level);
+    }
+
+    /**
+     * returns the information whether overview levels for the given 
+     * aggregation method are available.
+     * 
+     * @param mode Aggregation method
+     * @return <i>true</i> if overviews are available
+     */
+    boolean hasOverviews(GmSimpleElevationGrid.Aggregation mode) 
+    {
+        for (int a = 0; a < mAggregations.length; a++) {
+            if (mAggregations[a] == mode) 
+                return nLevels > 0;
+        }
+        return false;
+    }
+
+    /**
+     * returns the coarsest level whose cell-size does not exceed the given 
+     * cell-size. If there are no overviews for the given aggregation method, 
+     * 0 will be returned.
+     * 
+     * @param cellSize Target cell-size
+     * @param mode Aggregation method
+     * @return Level (0 for the full-resolution grid)
+     */
+    int selectLevel(double cellSize, GmSimpleElevationGrid.Aggregation mode) 
+    {
+        if (!this.hasOverviews(mode))
+            return 0;
+        double delta = Math.max(deltaX, deltaY);
+        int level = 0;
+        while (level < nLevels && delta * (2 << level) <= cellSize * (1. + 1.e-9))
+            level++;
+        return level;
+    }
+
+    /**
+     * reads the grid elements lying inside a given bounding-box from the grid 
+     * or one of its overview levels. 
+     * 
+     * @param mode Aggregation method (will be ignored for level 0)
+     * @param level Overview level (0 for the full-resolution grid)
+     * @param env Bounding-box
+     * @param numberOfThreads Number of threads used to decode the tiles
+     * @return Elevation-grid
+     * @throws T3dException
+     * @see GmSimpleElevationGrid#getWindow(VgEnvelope, double, GmSimpleElevationGrid.Aggregation)
+     */
+    GmSimpleElevationGrid read(
+        GmSimpleElevationGrid.Aggregation mode, int level, VgEnvelope env, int numberOfThreads) 
+        throws T3dException
+    {
+        int factor = 1 << level;
+        double off = 0.5 * (factor - 1);
+        // Overview elements will be considered if their blocks intersect the 
+        // bounding-box:
+        boolean lattice = latticeMode && level == 0;
+        int[] rows = GmSimpleElevationGrid.windowIndices(
+            originY + off * deltaY, factor * deltaY, this.numberOfRows(level), 
+            env.getYMin(), env.getYMax(), lattice);
+        int[] cols = GmSimpleElevationGrid.windowIndices(
+            originX + off * deltaX, factor * deltaX, this.numberOfColumns(level), 
+            env.getXMin(), env.getXMax(), lattice);
+        return this.read(mode, level, rows[0], cols[0], rows[1], cols[1], 1, numberOfThreads);
+    }
+
+    /**
+     * reads a grid window. Only the tiles intersecting the window will be 
+     * decoded. For <tt>stride</tt> &gt; 1, only every <tt>stride</tt>-th row 
+     * and column of the window will be read.
+     * 
+     * @param rowFrom First row
+     * @param colFrom First column
+     * @param nRowsW Number of rows
+     * @param nColsW Number of columns
+     * @param stride Decimation step (&gt;= 1)
+     * @param numberOfThreads Number of threads used to decode the tiles
+     * @return Elevation-grid
+     * @throws T3dException
+     */
+    GmSimpleElevationGrid read(
+        final int rowFrom, final int colFrom, final int nRowsW, final int nColsW, 
+        final int stride, int numberOfThreads) throws T3dException
+    {
+        return this.read(null, 0, rowFrom, colFrom, nRowsW, nColsW, stride, numberOfThreads);
+    }
+
+    /**
+     * reads a window of the grid or one of its overview levels. The window 
+     * refers to the selected level's rows and columns.
+     * 
+     * @param mode Aggregation method (will be ignored for level 0)
+     * @param level Overview level (0 for the full-resolution grid)
+     * @param rowFrom First row
+     * @param colFrom First column
+     * @param nRowsW Number of rows
+     * @param nColsW Number of columns
+     * @param stride Decimation step (&gt;= 1)
+     * @param numberOfThreads Number of threads used to decode the tiles
+     * @return Elevation-grid
+     * @throws T3dException
+     */
+    GmSimpleElevationGrid read(
+        GmSimpleElevationGrid.Aggregation mode, final int level, 
+        final int rowFrom, final int colFrom, final int nRowsW, final int nColsW, 
+        final int stride, int numberOfThreads) throws T3dException
+    {
+        int g = 0;
+        if (level > 0) {
+            g = -1;
+            for (int a = 0; a < mAggregations.length; a++) {
+                if (mAggregations[a] == mode) 
+                    g = 1 + a * nLevels + level - 1;
+            }
+            if (g < 0 || level > nLevels)
+                throw new T3dException("Overview level not available.");
+        }
+        if (stride < 1)
+            throw new T3dException("Illegal stride.");
+        if (rowFrom < 0 || colFrom < 0 || nRowsW < 0 || nColsW < 0 
+            || rowFrom + nRowsW > this.numberOfRows(level) 
+            || colFrom + nColsW > this.numberOfColumns(level)) 
+        {
+            throw new T3dException("Illegal grid window.");
+        }
+
+        int factor = 1 << level;
+        double off = 0.5 * (factor - 1);
+        GmSimpleElevationGrid res = new GmSimpleElevationGrid(
+            (nColsW + stride - 1) / stride, (nRowsW + stride - 1) / stride, 
+            new GmPoint(
+                originX + (off + colFrom * factor) * deltaX, 
+                originY + (off + rowFrom * factor) * deltaY, 0.), 
+            stride * factor * deltaX, stride * factor * deltaY);
+        res.setLatticeInterpretation(latticeMode);
+        final GmGridStorage val = res.getStorage();
+        if (nRowsW == 0 || nColsW == 0)
+            return res;
+
+        final int 
+            tr0 = rowFrom / tileSize, 
+            tr1 = (rowFrom + nRowsW - 1) / tileSize,
+            grid = g;
+
+        // Tile rows will be decoded in parallel; since they cover disjoint 
+        // grid rows, the target storage can be accessed concurrently.
+        ExecutorService executor = numberOfThreads <= 1 || tr0 == tr1 ? null : 
+            Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            if (executor == null) {
+                for (int tr = tr0; tr <= tr1; tr++) 
+                    this.readTileRow(grid, tr, rowFrom, colFrom, nRowsW, nColsW, stride, val);
+            }
+            else {
+                List<Future<?>> tasks = new ArrayList<Future<?>>();
+                for (int tr = tr0; tr <= tr1; tr++) {
+                    final int tileRow = tr;
+                    tasks.add(executor.submit(new Runnable() {
+                        public void run() {
+                            readTileRow(grid, tileRow, rowFrom, colFrom, nRowsW, nColsW, stride, val);
+                        }
+                    }));
+                }
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            throw new T3dException("Reading tiled grid has been interrupted.");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof T3dException)
+                throw (T3dException) e.getCause();
+            throw new T3dException("Could not read tiled grid. " + e.getCause());
+        }
+        finally {
+            if (executor != null) 
+                executor.shutdown();
+        }
+        res.setZBoundsInvalid();
+        return res;
+    }
+
+    private void readTileRow(
+        int g, int tr, int rowFrom, int colFrom, int nRowsW, int nColsW, int stride, 
+        GmGridStorage val) throws T3dException
+    {
+        int 
+            level = this.level(g),
+            nColsG = this.numberOfColumns(level),
+            nTileCols = this.numberOfTileColumns(level),
+            tc0 = colFrom / tileSize, 
+            tc1 = (colFrom + nColsW - 1) / tileSize,
+            r0 = tr * tileSize, 
+            th = Math.min(tileSize, this.numberOfRows(level) - r0),
+            iFrom = Math.max(r0, rowFrom), 
+            iTo = Math.min(r0 + th, rowFrom + nRowsW),
+            nColsRes = (nColsW + stride - 1) / stride;
+        // Align the bounds to the window's decimation raster:
+        iFrom += (stride - (iFrom - rowFrom) % stride) % stride;
+        if (iFrom >= iTo)
+            return;
+        Inflater inf = new Inflater();
+        byte[] comp = new byte[0], raw = new byte[0];
+        double[] z = new double[tileSize * tileSize];
+        long[] q = new long[tileSize * tileSize];
+        boolean[] set = new boolean[tileSize * tileSize];
+        double[][] band = new double[(iTo - iFrom + stride - 1) / stride][nColsRes];
+        long[] index = mIndex[g];
+
+        try {
+            for (int tc = tc0; tc <= tc1; tc++) {
+                int t = tr * nTileCols + tc;
+                int len = (int) (index[t + 1] - index[t]);
+                if (comp.length < len)
+                    comp = new byte[len];
+                readFully(mChannel, ByteBuffer.wrap(comp, 0, len), index[t]);
+
+                int rawLen = ((comp[0] & 0xff) << 24) | ((comp[1] & 0xff) << 16) 
+                    | ((comp[2] & 0xff) << 8) | (comp[3] & 0xff);
+                if (raw.length < rawLen)
+                    raw = new byte[rawLen];
+                inf.reset();
+                inf.setInput(comp, 4, len - 4);
+                int n = 0;
+                while (n < rawLen && !inf.finished()) {
+                    int k = inf.inflate(raw, n, rawLen - n);
+                    if (k == 0 && (inf.needsInput() || inf.needsDictionary()))
+                        break;
+                    n += k;
+                }
+                if (n != rawLen)
+                    throw new T3dException("Corrupt tile " + t + ".");
+
+                int 
+                    c0 = tc * tileSize,
+                    tw = Math.min(tileSize, nColsG - c0);
+                decodeTile(raw, rawLen, th, tw, decimals, z, q, set);
+
+                // Copy the window's part:
+                int 
+                    jFrom = Math.max(c0, colFrom), 
+                    jTo = Math.min(c0 + tw, colFrom + nColsW);
+                jFrom += (stride - (jFrom - colFrom) % stride) % stride;
+                for (int i = iFrom; i < iTo; i += stride) {
+                    double[] row = band[(i - iFrom) / stride];
+                    int off = (i - r0) * tw - c0;
+                    if (stride == 1)
+                        System.arraycopy(z, off + jFrom, row, jFrom - colFrom, jTo - jFrom);
+                    else {
+                        for (int j = jFrom; j < jTo; j += stride)
+                            row[(j - colFrom) / stride] = z[off + j];
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+        catch (DataFormatException e) {
+            throw new T3dException("Corrupt tiled grid file. " + e.getMessage());
+        }
+        finally {
+            inf.end();
+        }
+
+        for (int i = iFrom; i < iTo; i += stride) 
+            val.setRow((i - rowFrom) / stride, band[(i - iFrom) / stride]);
+    }
+
+    /**
+     * writes an elevation-grid to a tiled grid file.
+     * 
+     * @param grid Elevation-grid
+     * @param filename File name (with path optionally)
+     * @param tileSize Tile size (number of rows and columns per tile)
+     * @param decimals Number of decimal places elevation values will be quantized to
+     * @param nLevels Number of overview levels, or -1 to add levels until the coarsest level fits into a single tile
+     * @param modes Aggregation methods overview levels will be stored for
+     * @throws T3dException
+     */
+    static void write(
+        GmSimpleElevationGrid grid, String filename, int tileSize, int decimals, 
+        int nLevels, GmSimpleElevationGrid.Aggregation[] modes) 
+        throws T3dException
+    {
+        if (tileSize <= 0) 
+            throw new T3dException("Illegal tile size.");
+        if (decimals < 0 || decimals > 15) 
+            throw new T3dException("Illegal number of decimal places.");
+
+        GmSimple2dGridGeometry geom = (GmSimple2dGridGeometry) grid.getGeometry();
+        int 
+            nCols = grid.numberOfColumns(), 
+            nRows = grid.numberOfRows();
+        if (nLevels < 0) {
+            nLevels = 0;
+            while (((Math.max(nRows, nCols) - 1) >> nLevels) >= tileSize)
+                nLevels++;
+        }
+        if (nLevels > 30)
+            throw new T3dException("Illegal number of overview levels.");
+        int mask = 0;
+        for (int a = 0; a < modes.length; a++) 
+            mask |= 1 << modes[a].ordinal();
+        if (nLevels == 0)
+            mask = 0;
+        GmSimpleElevationGrid.Aggregation[] aggr = aggregations(mask);
+
+        RandomAccessFile file = null;
+        TileWriter writer = new TileWriter(tileSize, decimals);
+        try {
+            file = new RandomAccessFile(filename, "rw");
+            file.setLength(0L);
+            FileChannel fc = file.getChannel();
+
+            ByteBuffer buf = ByteBuffer.allocate(cHeaderSize);
+            buf.putInt(cMagic);
+            buf.putInt(cVersion);
+            buf.putInt(nCols);
+            buf.putInt(nRows);
+            buf.putInt(tileSize);
+            buf.putInt(decimals);
+            buf.putDouble(geom.getOrigin().getX());
+            buf.putDouble(geom.getOrigin().getY());
+            buf.putDouble(grid.getDeltaX());
+            buf.putDouble(grid.getDeltaY());
+            buf.put((byte) (grid.isLatticeInterpretion() ? 1 : 0));
+            buf.putInt(nLevels);
+            buf.putInt(mask);
+            buf.flip();
+            writeFully(fc, buf, 0L);
+
+            // Reserve space for the tile indices:
+            int nGrids = 1 + aggr.length * nLevels;
+            long[][] index = new long[nGrids][];
+            long pos = cHeaderSize;
+            for (int g = 0; g < nGrids; g++) {
+                int 
+                    level = g == 0 ? 0 : (g - 1) % nLevels + 1,
+                    nRowsG = (nRows + (1 << level) - 1) >> level,
+                    nColsG = (nCols + (1 << level) - 1) >> level,
+                    nTiles = ((nRowsG + tileSize - 1) / tileSize) * ((nColsG + tileSize - 1) / tileSize);
+                index[g] = new long[nTiles + 1];
+                pos += 8L * (nTiles + 1);
+            }
+
+            pos = writer.write(grid, fc, pos, index[0]);
+            for (int a = 0; a < aggr.length; a++) {
+                for (int l = 1; l <= nLevels; l++) {
+                    GmSimpleElevationGrid overview = grid.aggregate(1 << l, aggr[a]);
+                    pos = writer.write(overview, fc, pos, index[1 + a * nLevels + l - 1]);
+                }
+            }
+
+            pos = cHeaderSize;
+            for (int g = 0; g < nGrids; g++) {
+                buf = ByteBuffer.allocate(8 * index[g].length);
+                for (int t = 0; t < index[g].length; t++) 
+                    buf.putLong(index[g][t]);
+                buf.flip();
+                writeFully(fc, buf, pos);
+                pos += buf.capacity();
+            }
+        }
+        catch (FileNotFoundException e) {
+            throw new T3dException("Could not access file \"" + filename + "\".");
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+        finally {
+            writer.end();
+            try {
+                if (file != null) 
+                    file.close();
+            }
+            catch (IOException e) {
+            }
+        }
+    }
+
+    // Encodes and writes the tiles of a grid.
+    private static class TileWriter
+    {
+        private int tileSize, decimals;
+        private double[] z;
+        private long[] q;
+        private boolean[] set;
+        private ByteSink raw = new ByteSink();
+        private byte[] comp = new byte[1 << 16];
+        private Deflater def = new Deflater();
+
+        TileWriter(int tileSize, int decimals) {
+            this.tileSize = tileSize;
+            this.decimals = decimals;
+            z = new double[tileSize * tileSize];
+            q = new long[tileSize * tileSize];
+            set = new boolean[tileSize * tileSize];
+        }
+
+        // Writes the tiles starting at file position pos and fills the tile 
+        // index. Returns the position following the last tile.
+        long write(GmSimpleElevationGrid grid, FileChannel fc, long pos, long[] index) 
+            throws IOException, T3dException
+        {
+            int 
+                nCols = grid.numberOfColumns(), 
+                nRows = grid.numberOfRows(),
+                nTileRows = (nRows + tileSize - 1) / tileSize,
+                nTileCols = (nCols + tileSize - 1) / tileSize;
+            GmGridStorage val = grid.getStorage();
+            double[][] rows = new double[tileSize][nCols];
+
+            for (int tr = 0; tr < nTileRows; tr++) {
+                int r0 = tr * tileSize, th = Math.min(tileSize, nRows - r0);
+                for (int i = 0; i < th; i++)
+                    val.getRow(r0 + i, rows[i]);
+
+                for (int tc = 0; tc < nTileCols; tc++) {
+                    int c0 = tc * tileSize, tw = Math.min(tileSize, nCols - c0);
+                    for (int i = 0; i < th; i++)
+                        System.arraycopy(rows[i], c0, z, i * tw, tw);
+                    raw.reset();
+                    encodeTile(z, th, tw, decimals, q, set, raw);
+
+                    def.reset();
+                    def.setInput(raw.buf, 0, raw.len);
+                    def.finish();
+                    int n = 4;
+                    comp[0] = (byte) (raw.len >>> 24);
+                    comp[1] = (byte) (raw.len >>> 16);
+                    comp[2] = (byte) (raw.len >>> 8);
+                    comp[3] = (byte) raw.len;
+                    while (!def.finished()) {
+                        if (n == comp.length) {
+                            byte[] h = new byte[2 * comp.length];
+                            System.arraycopy(comp, 0, h, 0, n);
+                            comp = h;
+                        }
+                        n += def.deflate(comp, n, comp.length - n);
+                    }
+
+                    index[tr * nTileCols + tc] = pos;
+                    writeFully(fc, ByteBuffer.wrap(comp, 0, n), pos);
+                    pos += n;
+                }
+            }
+            index[index.length - 1] = pos;
+            return pos;
+        }
+
+        void end() {
+            def.end();
+        }
+    }
+
+    // Encodes a tile given by the values z[0 .. th * tw - 1] (row-major order,
+    // NaN for unset elements). The arrays q and set serve as working storage.
+    private static void encodeTile(
+        double[] z, int th, int tw, int decimals, 
+        long[] q, boolean[] set, ByteSink out) 
+        throws T3dException
+    {
+        int n = th * tw, nSet = 0;
+        for (int k = 0; k < n; k++) {
+            if (z[k] == z[k]) nSet++;
+        }
+        if (nSet == 0) {
+            out.put(cAllUnset);
+            return;
+        }
+        if (nSet == n)
+            out.put(cAllSet);
+        else {
+            out.put(cMasked);
+            for (int k = 0; k < n; k += 8) {
+                int b = 0;
+                for (int l = 0; l < 8 && k + l < n; l++) {
+                    if (z[k + l] == z[k + l]) b |= 1 << l;
+                }
+                out.put((byte) b);
+            }
+        }
+
+        double scale = Math.pow(10., decimals);
+        long last = 0L;
+        for (int i = 0, k = 0; i < th; i++) {
+            for (int j = 0; j < tw; j++, k++) {
+                if (z[k] != z[k]) {
+                    set[k] = false;
+                    continue;
+                }
+                double s = z[k] * scale;
+                if (Math.abs(s) >= 4.5e15)
+                    throw new T3dException("Elevation value " + z[k] + " can not be quantized.");
+                q[k] = Math.round(s);
+                set[k] = true;
+                long pred = predict(q, set, i, j, k, tw, last);
+                out.putVarLong(q[k] - pred);
+                last = q[k];
+            }
+        }
+    }
+
+    // Decodes a tile into z[0 .. th * tw - 1] (row-major order, NaN for 
+    // unset elements). The arrays q and set serve as working storage.
+    private static void decodeTile(
+        byte[] raw, int rawLen, int th, int tw, int decimals, 
+        double[] z, long[] q, boolean[] set) 
+        throws T3dException
+    {
+        int n = th * tw, p = 0;
+        byte flags = raw[p++];
+        if (flags == cAllUnset) {
+            for (int k = 0; k < n; k++) z[k] = Double.NaN;
+            return;
+        }
+        if (flags == cAllSet) {
+            for (int k = 0; k < n; k++) set[k] = true;
+        }
+        else if (flags == cMasked) {
+            for (int k = 0; k < n; k += 8) {
+                int b = raw[p++];
+                for (int l = 0; l < 8 && k + l < n; l++) 
+                    set[k + l] = (b & (1 << l)) != 0;
+            }
+        }
+        else
+            throw new T3dException("Corrupt tile header.");
+
+        double scale = Math.pow(10., decimals);
+        long last = 0L;
+        for (int i = 0, k = 0; i < th; i++) {
+            for (int j = 0; j < tw; j++, k++) {
+                if (!set[k]) {
+                    z[k] = Double.NaN;
+                    continue;
+                }
+                // Read zig-zag encoded variable-length integer:
+                long u = 0L;
+                int shift = 0;
+                byte b;
+                do {
+                    if (p >= rawLen || shift > 63)
+                        throw new T3dException("Corrupt tile data.");
+                    b = raw[p++];
+                    u |= (long) (b & 0x7f) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                long res = (u >>> 1) ^ -(u & 1L);
+                q[k] = predict(q, set, i, j, k, tw, last) + res;
+                last = q[k];
+                z[k] = q[k] / scale;
+            }
+        }
+    }
+
+    // Predicts the quantized value at position k = i * tw + j from its left, 
+    // upper and upper-left neighbors. If these are not available, the last 
+    // encoded value will be used.
+    private static long predict(long[] q, boolean[] set, int i, int j, int k, int tw, long last) 
+    {
+        boolean 
+            left = j > 0 && set[k - 1], 
+            up = i > 0 && set[k - tw];
+        if (left && up && set[k - tw - 1])
+            return q[k - 1] + q[k - tw] - q[k - tw - 1];
+        if (left)
+            return q[k - 1];
+        if (up)
+            return q[k - tw];
+        return last;
+    }
+
+    private static void readFully(FileChannel fc, ByteBuffer buf, long pos) throws IOException 
+    {
+        while (buf.hasRemaining()) {
+            int k = fc.read(buf, pos);
+            if (k < 0)
+                throw new IOException("Unexpected end of file.");
+            pos += k;
+        }
+        buf.flip();
+    }
+
+    private static void writeFully(FileChannel fc, ByteBuffer buf, long pos) throws IOException 
+    {
+        while (buf.hasRemaining()) {
+            pos += fc.write(buf, pos);
+        }
+    }
+
+    // Growable byte array.
+    private static class ByteSink 
+    {
+        byte[] buf = new byte[1 << 16];
+        int len = 0;
+
+        void reset() {
+            len = 0;
+        }
+
+        void put(byte b) {
+            if (len == buf.length) {
+                byte[] h = new byte[2 * buf.length];
+                System.arraycopy(buf, 0, h, 0, len);
+                buf = h;
+            }
+            buf[len++] = b;
+        }
+
+        // Writes a zig-zag encoded variable-length integer.
+        void putVarLong(long v) {
+            long u = (v << 1) ^ (v >> 63);
+            while ((u & ~0x7fL) != 0L) {
+                this.put((byte) ((u & 0x7f) | 0x80));
+                u >>>= 7;
+            }
+            this.put((byte) u);
+        }
+    }
+}
@@ -37,9 +37,9 @@ import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.core.T3dNotYetImplException;
 import org.n52.v3d.triturus.t3dutil.T3dVector;
 import org.n52.v3d.triturus.vgis.VgIndexedWedgeMesh;
+import org.n52.v3d.triturus.vgis.VgPoint;
 
 import java.io.*;
-import java.text.DecimalFormat;
 
 /** 
  * Writer which exports indexed 3-D wedge meshes to files or streams. 
@@ -171,14 +171,11 @@ public class IoWedgeMeshWriter extends IoAbstractWriter
             wl("ASCII");
             wl("DATASET UNSTRUCTURED_GRID");
             
-            DecimalFormat dfXY = this.getDecimalFormatXY();
-            DecimalFormat dfZ = this.getDecimalFormatZ();
-            
             wl("POINTS " + mesh.numberOfPoints() + " float");
             for (int i = 0; i < mesh.numberOfPoints(); i++) {
-                w(dfXY.format(mesh.getPoint(i).getX()));
-                w(" " + dfXY.format(mesh.getPoint(i).getY()));
-                wl(" " + dfZ.format(mesh.getPoint(i).getZ()));
+                VgPoint pt = mesh.getPoint(i);
+                wXYZ(pt.getX(), pt.getY(), pt.getZ());
+                wl();
             }
             
             w("CELLS " + mesh.numberOfWedges());
@@ -323,6 +320,19 @@ public class IoWedgeMeshWriter extends IoAbstractWriter
         }
     }
 
+    private void wXYZ(double x, double y, double z) {
+        try {
+            this.writeXY(doc, x);
+            doc.write(' ');
+            this.writeXY(doc, y);
+            doc.write(' ');
+            this.writeZ(doc, z);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
     private void wl(String line) {
         try {
             doc.write(line);
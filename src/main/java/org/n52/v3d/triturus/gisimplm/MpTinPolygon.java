@@ -119,10 +119,9 @@ public class MpTinPolygon extends T3dProcMapper
 	private Vector involvedEdgesAsVertexPairsIndices(int[] vertInPol) {
 		GmSimpleMesh mesh = tin.getMesh();
 		Vector v = new Vector(); //help var
-		boolean[][] aMatrix = mesh.getAdjMatrix();
 		for (int i = 0; i < vertInPol.length; i++) {//i - index eines inneren Vertex
 			for (int j = 0; j < mesh.getNumberOfPoints(); j++) {
-				if (aMatrix[vertInPol[i]][j] || i!=j) {
+				if (mesh.areConnected(vertInPol[i], j) || i!=j) {
 					int[] edge = {i,j};
 					v.add(edge);
 				}
@@ -263,6 +263,74 @@ public class TileLocator
         return new GmEnvelope(lambda_min, lambda_max, phi_min, phi_max, 0., 0.);
     }
 
+    /**
+     * returns the envelope of the tile with the given identifier.
+     * 
+     * @param pTileNumber Four-digit tile identifier, e.g. <tt>"4709"</tt>
+     * @param pTileId Tiling name, e.g. <tt>"TK25"</tt> or <tt>"earth-10deg"</tt>
+     * @return Tile envelope given in geographic coordinates
+     * @throws org.n52.v3d.triturus.core.T3dException
+     */
+    public VgEnvelope envelope(String pTileNumber, String pTileId) throws T3dException
+    {
+        if (pTileNumber == null || pTileNumber.length() != 4)
+            throw new T3dException("Illegal tile number \"" + pTileNumber + "\".");
+        try {
+            return this.envelope(
+                Integer.parseInt(pTileNumber.substring(0, 2)), 
+                Integer.parseInt(pTileNumber.substring(2, 4)), 
+                pTileId);
+        }
+        catch (NumberFormatException e) {
+            throw new T3dException("Illegal tile number \"" + pTileNumber + "\".");
+        }
+    }
+
+    /**
+     * determines the identifiers of all tiles that intersect a given 
+     * bounding-box. Tiles that touch the bounding-box' border only will not
+     * be considered.
+     * 
+     * @param pTileId Tiling name, e.g. <tt>"TK25"</tt> or <tt>"earth-10deg"</tt>
+     * @param pEnv Bounding-box given in geographic coordinates
+     * @return List of four-digit tile identifiers
+     * @throws org.n52.v3d.triturus.core.T3dException
+     */
+    public ArrayList<String> tileNumbers(String pTileId, VgEnvelope pEnv) throws T3dException
+    {
+        TileLocatorEntry lEntry = this.getTileLocatorEntry(pTileId);
+        if (lEntry == null)
+            throw new T3dException("TileLocatorEntry \"" + pTileId + "\" is not available!");
+        double[] par = lEntry.getParameter();
+
+        // Since the tile numbers depend linearly on the coordinates, the 
+        // bounding-box' corners give the number ranges: 
+        double 
+            b12Min = Double.POSITIVE_INFINITY, b12Max = Double.NEGATIVE_INFINITY,
+            b34Min = Double.POSITIVE_INFINITY, b34Max = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < 4; k++) {
+            double lambda = (k % 2 == 0) ? pEnv.getXMin() : pEnv.getXMax();
+            double phi = (k < 2) ? pEnv.getYMin() : pEnv.getYMax();
+            double b12 = par[0] * lambda + par[1] * phi + par[2];
+            double b34 = par[3] * lambda + par[4] * phi + par[5];
+            b12Min = Math.min(b12Min, b12); b12Max = Math.max(b12Max, b12);
+            b34Min = Math.min(b34Min, b34); b34Max = Math.max(b34Max, b34);
+        }
+        final double eps = 1.e-9;
+        int 
+            i0 = Math.max((int) Math.floor(b12Min + eps), 0), 
+            i1 = Math.min((int) Math.ceil(b12Max - eps) - 1, 99),
+            j0 = Math.max((int) Math.floor(b34Min + eps), 0), 
+            j1 = Math.min((int) Math.ceil(b34Max - eps) - 1, 99);
+
+        ArrayList<String> res = new ArrayList<String>();
+        for (int i = i0; i <= i1; i++) {
+            for (int j = j0; j <= j1; j++)
+                res.add(blattnummer(i, j));
+        }
+        return res;
+    }
+
     private String generateNumber()
     {
         if (mB34 < 10)
@@ -0,0 +1,820 @@
+/**
+ * Copyright (C) 2007-2015 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * license version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * Contact: Benno Schmidt & Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.t3dutil;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.vgis.VgPoint;
+
+/** 
+ * Incremental Delaunay triangulation following the Bowyer-Watson approach. 
+ * In contrast to <tt>SimpleDelaunay</tt>, this implementation needs 
+ * O(N log N) expected runtime, so it is suitable for large point sets, too.
+ * <br/>
+ * The points are inserted in a biased randomized insertion order (BRIO, see 
+ * Amenta, Choi & Rote (2003): Incremental constructions con BRIO, Proc. 19th 
+ * ACM Symp. on Computational Geometry), where the points of each round are 
+ * sorted along a Hilbert curve. Every point is located by a visibility walk 
+ * starting at the most recently created triangle; due to the insertion order 
+ * these walks are short. Then all triangles whose circumcircles contain the 
+ * new point are removed, and the resulting cavity is re-triangulated by 
+ * connecting its boundary edges to the new point.
+ * <br/>
+ * The convex hull is handled by &quot;ghost triangles&quot; connecting each
+ * hull edge to a vertex at infinity, so no bounding triangle is needed and 
+ * the resulting triangulation always covers the points' convex hull. 
+ * Coordinates and triangles are held in primitive arrays. The orientation 
+ * and in-circle tests are performed by the robust predicates of 
+ * <tt>TriangleKernel</tt>, so that collinear and cocircular input (e.g. 
+ * regular grids) will be handled correctly.
+ * <br/>
+ * Note that z-coordinates will be ignored (this is a so-called 
+ * &quot;2.5-D&quot; triangulation). Of a set of coincident points, only the 
+ * point with the lowest index will be part of the triangulation. If all 
+ * points are collinear, the result will be empty.
+ * 
+ * @author Benno Schmidt
+ * @see SimpleDelaunay
+ */
+public class BowyerWatsonDelaunay 
+{
+	private double[] mX, mY;
+	private int mNumberOfPoints;
+	private int mGhost; // index of the vertex at infinity
+
+	// Triangle i consists of the vertices mTri[3i], mTri[3i+1], mTri[3i+2] 
+	// (counter-clockwise order); mAdj[3i+k] is the neighbor opposite to the
+	// vertex mTri[3i+k]. For ghost triangles, the vertex at infinity always 
+	// is stored at position 2.
+	private int[] mTri, mAdj;
+	private int mNumberOfTriangles; // including ghost triangles
+	private int mLast = 0; // start triangle for point location
+	private int mNumberOfDuplicates = 0;
+
+	// Temporary data used during point insertion:
+	private int[] mStamp; // marks triangles belonging to the current cavity
+	private int mCurrStamp = 0;
+	private int[] mCavity = new int[64];
+	private int mCavitySize;
+	private int[] mStack = new int[64];
+	private int[] mBndA = new int[64], mBndB = new int[64], 
+		mBndOut = new int[64], mBndOutEdge = new int[64];
+	private int mBndSize;
+	private int[] mInTri; // vertex -> new triangle holding the edge (v, p)
+	private int mGhostInTri; // the same for the vertex at infinity
+	private int mCapacity = 0; // number of points the triangle arrays can hold
+	private int[] mChanged = new int[64]; // triangles created by last insertion
+	private int mChangedCount = 0;
+
+	private final static long cSeed = 4711L;
+	private final static int cInitialCapacity = 1024;
+	// Maximal number of points, so that 3 * (2n + 2) array elements fit into 
+	// an int-indexed array:
+	private final static int cMaxPoints = (Integer.MAX_VALUE / 3 - 2) / 2;
+
+	/**
+	 * Constructor. The triangulation will be performed immediately.
+	 * 
+	 * @param points Point list
+	 */
+	public BowyerWatsonDelaunay(List<VgPoint> points) {
+		int n = points.size();
+		double[] x = new double[n], y = new double[n];
+		for (int i = 0; i < n; i++) {
+			VgPoint p = points.get(i);
+			x[i] = p.getX();
+			y[i] = p.getY();
+		}
+		this.compute(x, y, n);
+	}
+
+	/**
+	 * Constructor. The triangulation will be performed immediately. Note that 
+	 * the given arrays will be referenced, but not modified. 
+	 * 
+	 * @param x x-coordinates of the points
+	 * @param y y-coordinates of the points
+	 * @param n Number of points
+	 */
+	public BowyerWatsonDelaunay(double[] x, double[] y, int n) {
+		this.compute(x, y, n);
+	}
+
+	/**
+	 * Constructor for incremental mode. Points can be added one by one using
+	 * <tt>this.addPoint()</tt>; no spatial sorting will be performed. The 
+	 * internal arrays start small and grow as points are added, so 
+	 * <tt>maxNumberOfPoints</tt> may be a generous upper bound.
+	 * 
+	 * @param maxNumberOfPoints Maximal number of points
+	 */
+	public BowyerWatsonDelaunay(int maxNumberOfPoints) {
+		int n = Math.min(maxNumberOfPoints, cInitialCapacity);
+		mX = new double[n];
+		mY = new double[n];
+		mNumberOfPoints = 0;
+		mGhost = maxNumberOfPoints;
+		mNumberOfTriangles = 0;
+	}
+
+	/**
+	 * returns an index set containing a Delaunay triangulation for the given 
+	 * set of points. The result set is organized as follows: For the input 
+	 * points <i>p<sub>0</sub> .. p<sub>N-1</sub></i> the indices (point 
+	 * numbers) of the i-th triangle of the result set are stored at the output
+	 * array's positions <i>3i, 3i+1</i> and <i>3i+2</i> (counter-clockwise 
+	 * order). Thus, the output array will consist of 3 * M elements, where M 
+	 * gives the number of triangles.
+	 * 
+	 * @param points Point list
+	 * @return Triangle index set as described above 
+	 */
+	public static int[] triangulate(List<VgPoint> points) {
+		return new BowyerWatsonDelaunay(points).getIndices();
+	}
+
+	/**
+	 * returns an index set containing a Delaunay triangulation for the given 
+	 * set of points. The result set is organized as described for 
+	 * <tt>triangulate(List)</tt>.
+	 * 
+	 * @param x x-coordinates of the points
+	 * @param y y-coordinates of the points
+	 * @param n Number of points
+	 * @return Triangle index set 
+	 */
+	public static int[] triangulate(double[] x, double[] y, int n) {
+		return new BowyerWatsonDelaunay(x, y, n).getIndices();
+	}
+
+	/**
+	 * returns the triangulation's index set.
+	 * 
+	 * @return Triangle index set as described for <tt>triangulate(List)</tt>
+	 */
+	public int[] getIndices() {
+		int[] r = new int[3 * this.numberOfFaces()];
+		for (int t = 0, k = 0; t < mNumberOfTriangles; t++) {
+			if (mTri[3 * t + 2] != mGhost) {
+				r[k++] = mTri[3 * t];
+				r[k++] = mTri[3 * t + 1];
+				r[k++] = mTri[3 * t + 2];
+			}
+		}
+		return r;
+	}
+
+	/** 
+	 * gets the number of faces (triangles) inside the triangulation.
+	 */
+	public int numberOfFaces() {
+		int cnt = 0;
+		for (int t = 0; t < mNumberOfTriangles; t++) {
+			if (mTri[3 * t + 2] != mGhost) cnt++;
+		}
+		return cnt;
+	}
+
+	/** 
+	 * gets the number of input points.
+	 */
+	public int numberOfPoints() {
+		return mNumberOfPoints;
+	}
+
+	/** 
+	 * gets the number of input points that have been ignored since they 
+	 * coincide with other points.
+	 */
+	public int numberOfDuplicates() {
+		return mNumberOfDuplicates;
+	}
+
+	private void compute(double[] x, double[] y, int n) 
+	{
+		mX = x;
+		mY = y;
+		mNumberOfPoints = n;
+		mGhost = n;
+		mNumberOfTriangles = 0;
+
+		int[] order = this.insertionOrder();
+		int[] init = this.initialTriangle(order, n);
+		if (init == null)
+			return;
+		this.ensureCapacity(n);
+		this.initTriangles(order[0], order[init[0]], order[init[1]]);
+		for (int k = 1; k < n; k++) {
+			if (k != init[0] && k != init[1]) 
+				this.insert(order[k]);
+		}
+	}
+
+	/*
+	 * finds a non-degenerate initial triangle consisting of the point 
+	 * order[0] and two further points order[p1], order[p2] (p1 &lt; p2). The
+	 * result is {p1, p2} or null, if all points are collinear.
+	 */
+	private int[] initialTriangle(int[] order, int n) 
+	{
+		if (n < 3)
+			return null;
+		int i0 = order[0], p1 = -1, p2 = -1;
+		for (int k = 1; k < n && p1 < 0; k++) {
+			if (mX[order[k]] != mX[i0] || mY[order[k]] != mY[i0]) p1 = k;
+		}
+		if (p1 < 0) 
+			return null;
+		int i1 = order[p1];
+		for (int k = p1 + 1; k < n && p2 < 0; k++) {
+			if (this.orient(i0, i1, order[k]) != 0.) p2 = k;
+		}
+		if (p2 < 0)
+			return null;
+		return new int[] {p1, p2};
+	}
+
+	/*
+	 * ensures that the triangle arrays can hold a triangulation of n points.
+	 * In incremental mode, the capacity will be doubled (at most up to the 
+	 * given maximal number of points).
+	 */
+	private void ensureCapacity(int n) 
+	{
+		if (n <= mCapacity)
+			return;
+		if (n > cMaxPoints)
+			throw new T3dException("Too many points to triangulate.");
+		int nNew = (int) Math.max((long) n, 
+			Math.min(2L * mCapacity, Math.min((long) mGhost, (long) cMaxPoints)));
+		int cap = 2 * nNew + 2;
+		mTri = grow(mTri, 3 * cap);
+		mAdj = grow(mAdj, 3 * cap);
+		mStamp = grow(mStamp, cap);
+		mInTri = grow(mInTri, nNew);
+		mCapacity = nNew;
+	}
+
+	/**
+	 * adds a point to the triangulation (incremental mode, see constructor 
+	 * <tt>BowyerWatsonDelaunay(int)</tt>). Afterwards, the triangles that 
+	 * have been created or modified can be queried using 
+	 * <tt>this.numberOfChangedTriangles()</tt> and 
+	 * <tt>this.changedTriangle()</tt>. Note that the triangulation will be 
+	 * set up as soon as three non-collinear points have been added.
+	 * 
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @return Index of the added point
+	 * @throws T3dException if the maximal number of points is exceeded
+	 */
+	public int addPoint(double x, double y) throws T3dException
+	{
+		if (mNumberOfPoints >= mGhost)
+			throw new T3dException("Maximal number of points exceeded.");
+		int p = mNumberOfPoints++;
+		if (p >= mX.length) {
+			int nNew = (int) Math.min(2L * mX.length, (long) mGhost);
+			mX = grow(mX, nNew);
+			mY = grow(mY, nNew);
+		}
+		this.ensureCapacity(mNumberOfPoints);
+		mX[p] = x;
+		mY[p] = y;
+		mChangedCount = 0;
+
+		if (mNumberOfTriangles > 0) {
+			this.insert(p);
+			return p;
+		}
+
+		int[] order = new int[p + 1];
+		for (int i = 0; i <= p; i++) order[i] = i;
+		int[] init = this.initialTriangle(order, p + 1);
+		if (init == null)
+			return p;
+		this.initTriangles(0, init[0], init[1]);
+		for (int k = 1; k <= p; k++) {
+			if (k != init[0] && k != init[1]) 
+				this.insert(k);
+		}
+		if (mChanged.length < mNumberOfTriangles) 
+			mChanged = new int[mNumberOfTriangles];
+		for (int t = 0; t < mNumberOfTriangles; t++) mChanged[t] = t;
+		mChangedCount = mNumberOfTriangles;
+		return p;
+	}
+
+	/**
+	 * returns the number of triangles (including ghost triangles) that have 
+	 * been created by the last <tt>addPoint()</tt>-call. Note that triangle 
+	 * slots of removed triangles will be re-used.
+	 */
+	public int numberOfChangedTriangles() {
+		return mChangedCount;
+	}
+
+	/**
+	 * returns the slot index of the k-th triangle created by the last 
+	 * <tt>addPoint()</tt>-call.
+	 * 
+	 * @param k Number inside the range 0 .. <tt>this.numberOfChangedTriangles() - 1</tt>
+	 * @return Triangle slot index
+	 */
+	public int changedTriangle(int k) {
+		return mChanged[k];
+	}
+
+	private void initTriangles(int a, int b, int c) 
+	{
+		// The seed triangle must be counter-clockwise; otherwise, the ghost 
+		// triangles would be set up with reversed hull edges:
+		if (this.orient(a, b, c) < 0.) {
+			int h = b; b = c; c = h;
+		}
+		this.setTri(0, a, b, c, 1, 2, 3);
+		this.setTri(1, c, b, mGhost, 3, 2, 0);
+		this.setTri(2, a, c, mGhost, 1, 3, 0);
+		this.setTri(3, b, a, mGhost, 2, 1, 0);
+		mNumberOfTriangles = 4;
+		mLast = 0;
+	}
+
+	private void setTri(int t, int a, int b, int c, int n0, int n1, int n2) {
+		int tp = 3 * t;
+		mTri[tp] = a; mTri[tp + 1] = b; mTri[tp + 2] = c;
+		mAdj[tp] = n0; mAdj[tp + 1] = n1; mAdj[tp + 2] = n2;
+	}
+
+	/*
+	 * BRIO: The points are shuffled and split into rounds of doubling size;
+	 * inside each round the points are sorted along a Hilbert curve.
+	 */
+	int[] insertionOrder() 
+	{
+		int n = mNumberOfPoints;
+		int[] perm = new int[n];
+		for (int i = 0; i < n; i++) perm[i] = i;
+		Random rnd = new Random(cSeed);
+		for (int i = n - 1; i > 0; i--) {
+			int j = rnd.nextInt(i + 1), h = perm[i];
+			perm[i] = perm[j];
+			perm[j] = h;
+		}
+		if (n == 0)
+			return perm;
+
+		double xMin = mX[0], xMax = mX[0], yMin = mY[0], yMax = mY[0];
+		for (int i = 1; i < n; i++) {
+			if (mX[i] < xMin) xMin = mX[i]; 
+			if (mX[i] > xMax) xMax = mX[i];
+			if (mY[i] < yMin) yMin = mY[i]; 
+			if (mY[i] > yMax) yMax = mY[i];
+		}
+		double ext = Math.max(xMax - xMin, yMax - yMin);
+		double scale = ext > 0. ? 65535. / ext : 0.;
+
+		long[] key = new long[n];
+		for (int i = 0; i < n; i++) {
+			int 
+				ix = (int) ((mX[perm[i]] - xMin) * scale),
+				iy = (int) ((mY[perm[i]] - yMin) * scale);
+			// The Hilbert index takes 32 bits, so the sign bit is flipped to 
+			// get an unsigned sort order:
+			key[i] = ((hilbertIndex(ix, iy) << 32) | perm[i]) ^ Long.MIN_VALUE;
+		}
+		int end = n;
+		while (end > 0) {
+			int start = end < 64 ? 0 : end / 2;
+			Arrays.sort(key, start, end);
+			end = start;
+		}
+		for (int i = 0; i < n; i++) perm[i] = (int) (key[i] & 0xffffffffL);
+		return perm;
+	}
+
+	/**
+	 * computes the position of the cell (x, y) of a 65536 x 65536 grid along
+	 * a Hilbert curve.
+	 */
+	static long hilbertIndex(int x, int y) 
+	{
+		final int n = 1 << 16;
+		long d = 0;
+		for (int s = n / 2; s > 0; s /= 2) {
+			int 
+				rx = (x & s) > 0 ? 1 : 0,
+				ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * (long) s * ((3 * rx) ^ ry);
+			if (ry == 0) {
+				if (rx == 1) {
+					x = n - 1 - x;
+					y = n - 1 - y;
+				}
+				int h = x; x = y; y = h;
+			}
+		}
+		return d;
+	}
+
+	private void insert(int p) 
+	{
+		int t = this.locate(p);
+		if (this.isVertexOf(p, t)) {
+			mNumberOfDuplicates++;
+			this.replaceDuplicate(t, p);
+			return;
+		}
+
+		// Collect all triangles in conflict with p:
+		mCurrStamp++;
+		mCavitySize = 0;
+		mBndSize = 0;
+		int sp = 0;
+		mStamp[t] = mCurrStamp;
+		mStack[sp++] = t;
+		while (sp > 0) {
+			int c = mStack[--sp];
+			this.addToCavity(c);
+			for (int k = 0; k < 3; k++) {
+				int nb = mAdj[3 * c + k];
+				if (mStamp[nb] == mCurrStamp)
+					continue;
+				if (this.inConflict(nb, p) || !this.visible(c, k, p)) {
+					mStamp[nb] = mCurrStamp;
+					if (sp >= mStack.length) 
+						mStack = doubleSize(mStack);
+					mStack[sp++] = nb;
+				}
+			}
+		}
+
+		// Determine the cavity's boundary:
+		for (int i = 0; i < mCavitySize; i++) {
+			int c = mCavity[i];
+			for (int k = 0; k < 3; k++) {
+				int nb = mAdj[3 * c + k];
+				if (mStamp[nb] != mCurrStamp) 
+					this.addBoundaryEdge(c, k, nb);
+			}
+		}
+
+		// Re-triangulate the cavity, re-using the removed triangles' slots:
+		if (mChanged.length < mBndSize)
+			mChanged = new int[2 * mBndSize];
+		int[] newTri = mChanged;
+		for (int i = 0; i < mBndSize; i++) {
+			int tNew = i < mCavitySize ? mCavity[i] : mNumberOfTriangles++;
+			newTri[i] = tNew;
+			int a = mBndA[i], b = mBndB[i], tp = 3 * tNew;
+			if (a == mGhost) {
+				this.setTri(tNew, b, p, mGhost, -1, -1, -1);
+				mAdj[tp + 1] = mBndOut[i];
+			} else if (b == mGhost) {
+				this.setTri(tNew, p, a, mGhost, -1, -1, -1);
+				mAdj[tp] = mBndOut[i];
+			} else {
+				this.setTri(tNew, a, b, p, -1, -1, -1);
+				mAdj[tp + 2] = mBndOut[i];
+			}
+			mAdj[3 * mBndOut[i] + mBndOutEdge[i]] = tNew;
+			// The edge (y, p) of the new triangle:
+			this.setInTri(mTri[tp + (this.posOf(tNew, p) + 2) % 3], tNew);
+		}
+		// Connect the new triangles among each other:
+		for (int i = 0; i < mBndSize; i++) {
+			int tNew = newTri[i], k = this.posOf(tNew, p);
+			int nb = this.inTri(mTri[3 * tNew + (k + 1) % 3]);
+			mAdj[3 * tNew + (k + 2) % 3] = nb;
+			mAdj[3 * nb + (this.posOf(nb, p) + 1) % 3] = tNew;
+		}
+		mLast = newTri[0];
+		mChangedCount = mBndSize;
+	}
+
+	/*
+	 * ensures that of two coincident points the one with the lower index will 
+	 * be kept. Here, t is a triangle with a vertex coinciding with p.
+	 */
+	private void replaceDuplicate(int t, int p) 
+	{
+		int v = -1;
+		for (int k = 0; k < 3 && v < 0; k++) {
+			int w = mTri[3 * t + k];
+			if (w != mGhost && mX[w] == mX[p] && mY[w] == mY[p]) v = w;
+		}
+		if (v < p) 
+			return;
+		// Replace v inside all triangles around v:
+		int t0 = t;
+		do {
+			int k = this.posOf(t, v), next = mAdj[3 * t + (k + 2) % 3];
+			mTri[3 * t + k] = p;
+			t = next;
+		} while (t != t0);
+	}
+
+	private void addToCavity(int t) {
+		if (mCavitySize >= mCavity.length) 
+			mCavity = doubleSize(mCavity);
+		mCavity[mCavitySize++] = t;
+	}
+
+	private void addBoundaryEdge(int t, int k, int nb) 
+	{
+		if (mBndSize >= mBndA.length) {
+			mBndA = doubleSize(mBndA);
+			mBndB = doubleSize(mBndB);
+			mBndOut = doubleSize(mBndOut);
+			mBndOutEdge = doubleSize(mBndOutEdge);
+		}
+		mBndA[mBndSize] = mTri[3 * t + (k + 1) % 3];
+		mBndB[mBndSize] = mTri[3 * t + (k + 2) % 3];
+		mBndOut[mBndSize] = nb;
+		int j = 0;
+		while (mAdj[3 * nb + j] != t) j++;
+		mBndOutEdge[mBndSize] = j;
+		mBndSize++;
+	}
+
+	private void setInTri(int v, int t) {
+		if (v == mGhost) 
+			mGhostInTri = t;
+		else 
+			mInTri[v] = t;
+	}
+
+	private int inTri(int v) {
+		return v == mGhost ? mGhostInTri : mInTri[v];
+	}
+
+	private int posOf(int t, int v) {
+		int tp = 3 * t;
+		return mTri[tp] == v ? 0 : (mTri[tp + 1] == v ? 1 : 2);
+	}
+
+	/*
+	 * checks, if the boundary edge opposite to the k-th vertex of the cavity
+	 * triangle t would form a properly oriented triangle with p. 
+	 */
+	private boolean visible(int t, int k, int p) {
+		int 
+			a = mTri[3 * t + (k + 1) % 3], 
+			b = mTri[3 * t + (k + 2) % 3];
+		if (a == mGhost || b == mGhost)
+			return true;
+		return this.orient(a, b, p) > 0.;
+	}
+
+	private boolean isVertexOf(int p, int t) {
+		for (int k = 0, tp = 3 * t; k < 3; k++, tp++) {
+			int v = mTri[tp];
+			if (v != mGhost && mX[v] == mX[p] && mY[v] == mY[p])
+				return true;
+		}
+		return false;
+	}
+
+	/*
+	 * checks, if p lies inside the circumcircle of the triangle t. For ghost
+	 * triangles, the circumcircle degenerates to the open half-plane outside 
+	 * the hull edge together with the open hull edge itself.  
+	 */
+	private boolean inConflict(int t, int p) 
+	{
+		int tp = 3 * t, a = mTri[tp], b = mTri[tp + 1], c = mTri[tp + 2];
+		if (c == mGhost) {
+			double o = this.orient(a, b, p);
+			if (o > 0.) 
+				return true;
+			return o == 0. && this.strictlyBetween(a, b, p);
+		}
+		return this.inCircle(a, b, c, p) > 0.;
+	}
+
+	private boolean strictlyBetween(int a, int b, int p) {
+		return 
+			this.direction(a, b, mX[p], mY[p]) > 0 && 
+			this.direction(b, a, mX[p], mY[p]) > 0;
+	}
+
+	/*
+	 * returns the sign of the dot product of (p - a) and (b - a) for a 
+	 * position p on the line through a and b. Since p is collinear, the sign
+	 * can be determined exactly by coordinate comparisons.
+	 */
+	private int direction(int a, int b, double px, double py) 
+	{
+		if (mX[a] != mX[b])
+			return mX[a] < mX[b] ? Double.compare(px, mX[a]) : Double.compare(mX[a], px);
+		return mY[a] < mY[b] ? Double.compare(py, mY[a]) : Double.compare(mY[a], py);
+	}
+
+	/*
+	 * visibility walk from the last created triangle to a triangle containing
+	 * p or, if p lies outside the convex hull, to a ghost triangle in 
+	 * conflict with p.
+	 */
+	private int locate(int p) 
+	{
+		int t = mLast, steps = 0, maxSteps = 4 * mNumberOfTriangles + 16;
+		while (steps++ < maxSteps) {
+			int tp = 3 * t, a = mTri[tp], b = mTri[tp + 1];
+			if (mTri[tp + 2] == mGhost) {
+				double o = this.orient(a, b, p);
+				if (o > 0.)
+					return t;
+				if (o < 0.) {
+					t = mAdj[tp + 2];
+					continue;
+				}
+				if (this.isVertexOf(p, t) || this.strictlyBetween(a, b, p))
+					return t;
+				t = this.direction(a, b, mX[p], mY[p]) > 0 ? mAdj[tp] : mAdj[tp + 1];
+				continue;
+			}
+			int next = -1, k0 = steps % 3;
+			for (int j = 0; j < 3 && next < 0; j++) {
+				int k = (k0 + j) % 3;
+				if (this.orient(mTri[tp + (k + 1) % 3], mTri[tp + (k + 2) % 3], p) < 0.)
+					next = mAdj[tp + k];
+			}
+			if (next < 0)
+				return t;
+			t = next;
+		}
+		// Fallback (should not be necessary for Delaunay triangulations):
+		for (t = 0; t < mNumberOfTriangles; t++) {
+			if (this.isVertexOf(p, t)) 
+				return t;
+		}
+		for (t = 0; t < mNumberOfTriangles; t++) {
+			if (this.inConflict(t, p)) 
+				return t;
+		}
+		return mLast;
+	}
+
+	/**
+	 * returns the number of triangle slots. Note that the slots also hold
+	 * &quot;ghost triangles&quot; connecting the convex hull's edges to a 
+	 * vertex at infinity.
+	 */
+	public int numberOfTriangleSlots() {
+		return mNumberOfTriangles;
+	}
+
+	/**
+	 * checks, if the triangle slot t holds a ghost triangle.
+	 * 
+	 * @param t Triangle slot index
+	 */
+	public boolean isGhost(int t) {
+		return mTri[3 * t + 2] == mGhost;
+	}
+
+	/**
+	 * returns the index of the k-th vertex (k = 0, 1, 2) of the triangle in 
+	 * slot t. The vertices are given in counter-clockwise order. For ghost 
+	 * triangles, the vertex at position 2 is the vertex at infinity.
+	 * 
+	 * @param t Triangle slot index
+	 * @param k Vertex position
+	 * @return Point index
+	 */
+	public int vertex(int t, int k) {
+		return mTri[3 * t + k];
+	}
+
+	/*
+	 * returns for each point a non-ghost triangle containing it as vertex or 
+	 * -1, if the point is not part of the triangulation.
+	 */
+	int[] vertexTriangles() 
+	{
+		int[] res = new int[mNumberOfPoints];
+		Arrays.fill(res, -1);
+		for (int t = 0; t < mNumberOfTriangles; t++) {
+			if (!this.isGhost(t)) {
+				for (int k = 0; k < 3; k++) res[mTri[3 * t + k]] = t;
+			}
+		}
+		return res;
+	}
+
+	/*
+	 * returns a non-ghost triangle containing the position (px, py) or -1, if
+	 * the position lies outside the triangulation. The walk will start at the
+	 * triangle t. Note that this method does not modify the triangulation.
+	 */
+	int find(double px, double py, int t) 
+	{
+		if (mNumberOfTriangles == 0)
+			return -1;
+		if (t < 0 || t >= mNumberOfTriangles) 
+			t = mLast;
+		int steps = 0, maxSteps = 4 * mNumberOfTriangles + 16;
+		while (steps++ < maxSteps) {
+			int tp = 3 * t, a = mTri[tp], b = mTri[tp + 1];
+			if (mTri[tp + 2] == mGhost) {
+				double o = this.orient(a, b, px, py);
+				if (o > 0.)
+					return -1;
+				if (o < 0.) {
+					t = mAdj[tp + 2];
+					continue;
+				}
+				int 
+					da = this.direction(a, b, px, py), 
+					db = this.direction(b, a, px, py);
+				if (da >= 0 && db >= 0)
+					return mAdj[tp + 2];
+				t = da > 0 ? mAdj[tp] : mAdj[tp + 1];
+				continue;
+			}
+			int next = -1, k0 = steps % 3;
+			for (int j = 0; j < 3 && next < 0; j++) {
+				int k = (k0 + j) % 3;
+				if (this.orient(mTri[tp + (k + 1) % 3], mTri[tp + (k + 2) % 3], px, py) < 0.)
+					next = mAdj[tp + k];
+			}
+			if (next < 0)
+				return t;
+			t = next;
+		}
+		// Fallback (should not be necessary for Delaunay triangulations):
+		for (t = 0; t < mNumberOfTriangles; t++) {
+			if (!this.isGhost(t)
+				&& this.orient(mTri[3 * t], mTri[3 * t + 1], px, py) >= 0.
+				&& this.orient(mTri[3 * t + 1], mTri[3 * t + 2], px, py) >= 0.
+				&& this.orient(mTri[3 * t + 2], mTri[3 * t], px, py) >= 0.)
+				return t;
+		}
+		return -1;
+	}
+
+	private double orient(int a, int b, double px, double py) {
+		return TriangleKernel.orient2d(mX[a], mY[a], mX[b], mY[b], px, py);
+	}
+
+	private double orient(int a, int b, int c) {
+		return TriangleKernel.orient2d(mX[a], mY[a], mX[b], mY[b], mX[c], mY[c]);
+	}
+
+	private double inCircle(int a, int b, int c, int d) {
+		return TriangleKernel.inCircle(
+			mX[a], mY[a], mX[b], mY[b], mX[c], mY[c], mX[d], mY[d]);
+	}
+
+	private static int[] grow(int[] arr, int len) {
+		int[] arrNew = new int[len];
+		if (arr != null)
+			System.arraycopy(arr, 0, arrNew, 0, arr.length);
+		return arrNew;
+	}
+
+	private static double[] grow(double[] arr, int len) {
+		double[] arrNew = new double[len];
+		System.arraycopy(arr, 0, arrNew, 0, arr.length);
+		return arrNew;
+	}
+
+	private static int[] doubleSize(int[] arr) {
+		int[] arrNew = new int[2 * arr.length];
+		System.arraycopy(arr, 0, arrNew, 0, arr.length);
+		return arrNew;
+	}
+}
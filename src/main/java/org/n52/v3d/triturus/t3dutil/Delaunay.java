@@ -6,8 +6,11 @@ import org.n52.v3d.triturus.core.T3dNotYetImplException;
 import org.n52.v3d.triturus.vgis.VgPoint;
 
 /** 
- * Simple Delaunay triangulation implementation.<br/>
- * <b>Note:</b> This non-efficient O(N^2) implementation has been removed. 
+ * Delaunay triangulation entry point.<br/>
+ * <b>Note:</b> The former non-efficient O(N^2) implementation has been 
+ * removed. Triangulations will be performed by the O(N log N) implementation
+ * <tt>BowyerWatsonDelaunay</tt>.
+ * @see BowyerWatsonDelaunay
  * @see SimpleDelaunay
  */
 public class Delaunay 
@@ -25,7 +28,7 @@ public class Delaunay
 	 * @return Triangle index set as described above 
 	 */
 	public static int[] triangulate(List<VgPoint> points) {
-    	return new SimpleDelaunay(points).getIndices();
+    	return new BowyerWatsonDelaunay(points).getIndices();
 	}
 
 	// Deprecated stuff:
@@ -0,0 +1,419 @@
+/**
+ * Copyright (C) 2007-2015 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * license version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * Contact: Benno Schmidt & Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.t3dutil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.vgis.VgPoint;
+
+/** 
+ * Parallel Delaunay triangulation for large point sets. The point set will 
+ * be partitioned into vertical strips, which will be triangulated in parallel
+ * using <tt>BowyerWatsonDelaunay</tt>. Afterwards, the strip triangulations 
+ * will be merged:
+ * <br/>
+ * A strip triangle whose circumcircle lies completely inside the area between
+ * the neighboring strips' points is part of the global Delaunay 
+ * triangulation, too (&quot;final triangle&quot;). The vertices of all 
+ * remaining triangles and of the strip hulls will be triangulated once more; 
+ * from this seam triangulation, those triangles will be taken that do not 
+ * overlap any final triangle.
+ * <br/>
+ * For points in general position, the result is identical in topology to the
+ * result of <tt>BowyerWatsonDelaunay</tt>; only the order of the triangles 
+ * differs. For cocircular points (e.g. regular grids), the Delaunay 
+ * triangulation is not unique; then, both results are valid Delaunay 
+ * triangulations, but might differ in the choice of diagonals. Note that 
+ * triangles sharing the same circumcircle will always be classified 
+ * identically, so the strip and seam triangles fit together in this case, 
+ * too. As for <tt>BowyerWatsonDelaunay</tt>, z-coordinates will be 
+ * ignored and of a set of coincident points, only the point with the lowest 
+ * index will be part of the triangulation.
+ * 
+ * @author Benno Schmidt
+ * @see BowyerWatsonDelaunay
+ */
+public class ParallelDelaunay 
+{
+	private int mNumberOfThreads = Runtime.getRuntime().availableProcessors();
+	private int mMinPointsPerStrip = 20000;
+
+	// Strip data:
+	private double[] mXRef, mYRef; // input coordinates
+	private int mNumberOfStrips;
+	private BowyerWatsonDelaunay[] mStrip;
+	private int[][] mStripPoints; // strip-local index -> global index
+	private double[] mStripMinX, mStripMaxX;
+	private boolean[][] mFinal; // triangle slot -> final triangle flag
+	private int[][] mVertexTri; // strip-local vertex -> triangle
+	private int[] mStripOf, mLocalIndex; // global index -> strip, local index
+
+	/**
+	 * Constructor.
+	 */
+	public ParallelDelaunay() {
+	}
+
+	/**
+	 * sets the number of threads used for the triangulation. By default, the 
+	 * number of available processors will be used.
+	 * 
+	 * @param numberOfThreads Number of threads (&gt;= 1)
+	 */
+	public void setNumberOfThreads(int numberOfThreads) 
+	{
+		if (numberOfThreads < 1)
+			throw new T3dException("Illegal number of threads.");
+		mNumberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * sets the minimal number of points per strip. For smaller point sets, 
+	 * the triangulation will be performed serially. The default value is 
+	 * 20000.
+	 * 
+	 * @param minPointsPerStrip Minimal number of points per strip
+	 */
+	public void setMinPointsPerStrip(int minPointsPerStrip) {
+		mMinPointsPerStrip = Math.max(3, minPointsPerStrip);
+	}
+
+	/**
+	 * returns an index set containing a Delaunay triangulation for the given 
+	 * set of points. The result set is organized as described for 
+	 * <tt>BowyerWatsonDelaunay.triangulate(List)</tt>.
+	 * 
+	 * @param points Point list
+	 * @return Triangle index set 
+	 * @throws T3dException
+	 */
+	public int[] triangulate(List<VgPoint> points) throws T3dException 
+	{
+		int n = points.size();
+		double[] x = new double[n], y = new double[n];
+		for (int i = 0; i < n; i++) {
+			VgPoint p = points.get(i);
+			x[i] = p.getX();
+			y[i] = p.getY();
+		}
+		return this.triangulate(x, y, n);
+	}
+
+	/**
+	 * returns an index set containing a Delaunay triangulation for the given 
+	 * set of points. The result set is organized as described for 
+	 * <tt>BowyerWatsonDelaunay.triangulate(List)</tt>.
+	 * 
+	 * @param x x-coordinates of the points
+	 * @param y y-coordinates of the points
+	 * @param n Number of points
+	 * @return Triangle index set 
+	 * @throws T3dException
+	 */
+	public int[] triangulate(double[] x, double[] y, int n) throws T3dException
+	{
+		int nStrips = Math.min(4 * mNumberOfThreads, n / mMinPointsPerStrip);
+		if (mNumberOfThreads <= 1 || nStrips < 2)
+			return BowyerWatsonDelaunay.triangulate(x, y, n);
+
+		mXRef = x;
+		mYRef = y;
+		this.setUpStrips(n, nStrips);
+
+		ExecutorService executor = Executors.newFixedThreadPool(mNumberOfThreads);
+		try {
+			// Triangulate the strips and classify the strip triangles:
+			final boolean[] inSeam = new boolean[n];
+			List<Future<?>> tasks = new ArrayList<Future<?>>();
+			for (int s = 0; s < mNumberOfStrips; s++) {
+				final int strip = s;
+				tasks.add(executor.submit(new Runnable() {
+					public void run() {
+						processStrip(strip, inSeam);
+					}
+				}));
+			}
+			waitFor(tasks);
+
+			// Triangulate the seam points:
+			int nSeam = 0;
+			for (int i = 0; i < n; i++) {
+				if (inSeam[i]) nSeam++;
+			}
+			final int[] seamPoints = new int[nSeam];
+			double[] xs = new double[nSeam], ys = new double[nSeam];
+			for (int i = 0, k = 0; i < n; i++) {
+				if (inSeam[i]) {
+					seamPoints[k] = i;
+					xs[k] = x[i];
+					ys[k++] = y[i];
+				}
+			}
+			final int[] seamTri = BowyerWatsonDelaunay.triangulate(xs, ys, nSeam);
+
+			// Select the seam triangles not overlapping final triangles:
+			final int nSeamTri = seamTri.length / 3;
+			final boolean[] accept = new boolean[nSeamTri];
+			final double[] xx = x, yy = y;
+			int chunk = (nSeamTri + mNumberOfThreads - 1) / mNumberOfThreads;
+			tasks.clear();
+			for (int c = 0; c < nSeamTri; c += chunk) {
+				final int from = c, to = Math.min(nSeamTri, c + chunk);
+				tasks.add(executor.submit(new Runnable() {
+					public void run() {
+						for (int t = from; t < to; t++) {
+							accept[t] = !coveredByFinalTriangle(
+								xx, yy, seamPoints[seamTri[3 * t]], 
+								seamPoints[seamTri[3 * t + 1]], 
+								seamPoints[seamTri[3 * t + 2]]);
+						}
+					}
+				}));
+			}
+			waitFor(tasks);
+
+			// Assemble the result:
+			int cnt = 0;
+			for (int t = 0; t < nSeamTri; t++) {
+				if (accept[t]) cnt++;
+			}
+			for (int s = 0; s < mNumberOfStrips; s++) {
+				for (int t = 0; t < mFinal[s].length; t++) {
+					if (mFinal[s][t]) cnt++;
+				}
+			}
+			int[] res = new int[3 * cnt];
+			int k = 0;
+			for (int s = 0; s < mNumberOfStrips; s++) {
+				int[] glob = mStripPoints[s];
+				for (int t = 0; t < mFinal[s].length; t++) {
+					if (mFinal[s][t]) {
+						for (int j = 0; j < 3; j++) 
+							res[k++] = glob[mStrip[s].vertex(t, j)];
+					}
+				}
+			}
+			for (int t = 0; t < nSeamTri; t++) {
+				if (accept[t]) {
+					for (int j = 0; j < 3; j++) 
+						res[k++] = seamPoints[seamTri[3 * t + j]];
+				}
+			}
+			return res;
+		}
+		finally {
+			executor.shutdown();
+			this.releaseStrips();
+		}
+	}
+
+	// The strips' x-boundaries are quantiles of the x-coordinates; points 
+	// with equal x-coordinates will always fall into the same strip.
+	private void setUpStrips(int n, int nStrips) 
+	{
+		double[] x = mXRef;
+		double[] xSorted = new double[n];
+		System.arraycopy(x, 0, xSorted, 0, n);
+		Arrays.sort(xSorted);
+		double[] bound = new double[nStrips - 1];
+		for (int s = 1; s < nStrips; s++) bound[s - 1] = xSorted[(int) ((long) s * n / nStrips)];
+
+		mNumberOfStrips = nStrips;
+		mStripOf = new int[n];
+		mLocalIndex = new int[n];
+		int[] cnt = new int[nStrips];
+		for (int i = 0; i < n; i++) {
+			int s = upperBound(bound, x[i]);
+			mStripOf[i] = s;
+			mLocalIndex[i] = cnt[s]++;
+		}
+		mStripPoints = new int[nStrips][];
+		for (int s = 0; s < nStrips; s++) mStripPoints[s] = new int[cnt[s]];
+		for (int i = 0; i < n; i++) mStripPoints[mStripOf[i]][mLocalIndex[i]] = i;
+
+		mStripMinX = new double[nStrips];
+		mStripMaxX = new double[nStrips];
+		for (int s = 0; s < nStrips; s++) {
+			mStripMinX[s] = Double.POSITIVE_INFINITY;
+			mStripMaxX[s] = Double.NEGATIVE_INFINITY;
+		}
+		for (int i = 0; i < n; i++) {
+			int s = mStripOf[i];
+			if (x[i] < mStripMinX[s]) mStripMinX[s] = x[i];
+			if (x[i] > mStripMaxX[s]) mStripMaxX[s] = x[i];
+		}
+
+		mStrip = new BowyerWatsonDelaunay[nStrips];
+		mFinal = new boolean[nStrips][];
+		mVertexTri = new int[nStrips][];
+	}
+
+	// returns the number of bounds less than or equal to v.
+	private static int upperBound(double[] bound, double v) 
+	{
+		int lo = 0, hi = bound.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (bound[mid] <= v) 
+				lo = mid + 1;
+			else 
+				hi = mid;
+		}
+		return lo;
+	}
+
+	private void releaseStrips() {
+		mXRef = null;
+		mYRef = null;
+		mStrip = null;
+		mStripPoints = null;
+		mFinal = null;
+		mVertexTri = null;
+		mStripOf = null;
+		mLocalIndex = null;
+	}
+
+	// Triangulates a strip. Triangles with circumcircles reaching the 
+	// neighboring strips' points will not be final; their vertices, as well as
+	// the strip's hull vertices, will be marked as seam points.
+	private void processStrip(int s, boolean[] inSeam) 
+	{
+		int[] glob = mStripPoints[s];
+		int m = glob.length;
+		double[] xs = new double[m], ys = new double[m];
+		for (int i = 0; i < m; i++) {
+			xs[i] = mXRef[glob[i]];
+			ys[i] = mYRef[glob[i]];
+		}
+		BowyerWatsonDelaunay d = new BowyerWatsonDelaunay(xs, ys, m);
+		mStrip[s] = d;
+
+		double 
+			xLow = Double.NEGATIVE_INFINITY, 
+			xHigh = Double.POSITIVE_INFINITY;
+		for (int r = 0; r < s; r++) xLow = Math.max(xLow, mStripMaxX[r]);
+		for (int r = s + 1; r < mNumberOfStrips; r++) xHigh = Math.min(xHigh, mStripMinX[r]);
+
+		int nTri = d.numberOfTriangleSlots();
+		boolean[] fin = new boolean[nTri];
+		boolean hasTriangles = false;
+		for (int t = 0; t < nTri; t++) {
+			int a = d.vertex(t, 0), b = d.vertex(t, 1), c = d.vertex(t, 2);
+			if (d.isGhost(t)) {
+				inSeam[glob[a]] = true;
+				inSeam[glob[b]] = true;
+				continue;
+			}
+			hasTriangles = true;
+			fin[t] = circleInside(xs, ys, a, b, c, xLow, xHigh);
+			if (!fin[t]) {
+				inSeam[glob[a]] = true;
+				inSeam[glob[b]] = true;
+				inSeam[glob[c]] = true;
+			}
+		}
+		if (!hasTriangles) {
+			for (int i = 0; i < m; i++) inSeam[glob[i]] = true;
+		}
+		mFinal[s] = fin;
+		mVertexTri[s] = d.vertexTriangles();
+	}
+
+	// checks, if the circumcircle of the triangle (a, b, c) lies strictly 
+	// between xLow and xHigh.
+	private static boolean circleInside(
+		double[] x, double[] y, int a, int b, int c, double xLow, double xHigh) 
+	{
+		double 
+			bx = x[b] - x[a], by = y[b] - y[a],
+			cx = x[c] - x[a], cy = y[c] - y[a],
+			det = 2. * (bx * cy - by * cx);
+		if (Math.abs(det) <= 1e-12 * (Math.abs(bx * cy) + Math.abs(by * cx)))
+			return false; // (nearly) collinear, circumcenter not reliable
+		double 
+			b2 = bx * bx + by * by, 
+			c2 = cx * cx + cy * cy,
+			ux = (cy * b2 - by * c2) / det,
+			uy = (bx * c2 - cx * b2) / det,
+			r = Math.sqrt(ux * ux + uy * uy),
+			mx = x[a] + ux,
+			tol = 1e-9 * (r + Math.abs(mx));
+		return mx - r - tol > xLow && mx + r + tol < xHigh;
+	}
+
+	// checks, if the centroid of the seam triangle (a, b, c) (given by global
+	// indices) lies inside a final strip triangle.
+	private boolean coveredByFinalTriangle(
+		double[] x, double[] y, int a, int b, int c) 
+	{
+		double 
+			px = (x[a] + x[b] + x[c]) / 3., 
+			py = (y[a] + y[b] + y[c]) / 3.;
+		for (int s = 0; s < mNumberOfStrips; s++) {
+			if (px < mStripMinX[s] || px > mStripMaxX[s])
+				continue;
+			int start = -1;
+			if (mStripOf[a] == s) start = mVertexTri[s][mLocalIndex[a]];
+			if (start < 0 && mStripOf[b] == s) start = mVertexTri[s][mLocalIndex[b]];
+			if (start < 0 && mStripOf[c] == s) start = mVertexTri[s][mLocalIndex[c]];
+			int t = mStrip[s].find(px, py, start);
+			if (t >= 0 && mFinal[s][t])
+				return true;
+		}
+		return false;
+	}
+
+	private static void waitFor(List<Future<?>> tasks) throws T3dException
+	{
+		try {
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		}
+		catch (InterruptedException e) {
+			throw new T3dException("Triangulation has been interrupted.");
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof T3dException)
+				throw (T3dException) e.getCause();
+			throw new T3dException("Triangulation failed. " + e.getCause());
+		}
+	}
+}
@@ -0,0 +1,504 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.t3dutil;
+
+import java.math.BigDecimal;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Static geometry kernel for triangles given by their corner coordinates. 
+ * All methods operate on <tt>double</tt> values (or caller-supplied result 
+ * arrays); thus, these methods are suitable for hot paths such as TIN 
+ * rasterization or point queries.<br/>
+ * <br/>
+ * The orientation predicate {@link #orient2d} is robust: if the 
+ * floating-point result is too close to 0 to be trusted, the determinant 
+ * will be evaluated exactly, so that its sign is always correct. Since all 
+ * point-in-triangle tests are based on this predicate, points on common 
+ * edges of adjacent triangles will be classified consistently. The same 
+ * holds for the in-circle predicate {@link #inCircle}, which is needed for 
+ * Delaunay triangulations. Following Shewchuk (1997): Adaptive Precision 
+ * Floating-Point Arithmetic and Fast Robust Geometric Predicates, the exact 
+ * evaluation uses floating-point expansions as long as the coordinate 
+ * differences can be computed without rounding errors (which holds for 
+ * nearby points, e.g. inside regular grids); otherwise, <tt>BigDecimal</tt> 
+ * arithmetic will be used. Apart from this <tt>BigDecimal</tt> fallback, no
+ * objects will be allocated: {@link #orient2d} evaluates its expansions in 
+ * local variables, {@link #inCircle} uses scratch buffers held per thread.
+ * 
+ * @see org.n52.v3d.triturus.vgis.VgTriangle
+ * @author Benno Schmidt
+ */
+public final class TriangleKernel
+{
+	// Error bound for the floating-point evaluation of orient2d (Shewchuk):
+	private static final double cEpsilon = Math.ulp(1.) / 2.;
+	private static final double cOrientErrBound = (3. + 16. * cEpsilon) * cEpsilon;
+	private static final double cInCircleErrBound = (10. + 96. * cEpsilon) * cEpsilon;
+
+	// Constants for expansion arithmetic:
+	private static final double cSplitter = 134217729.; // 2^27 + 1
+	private static final double cExpansionMin = 1e-30, cExpansionMax = 1e30;
+
+	// Scratch buffers for the expansion arithmetic of inCircle:
+	private static final ThreadLocal<Buffers> cBuffers = new ThreadLocal<Buffers>() {
+		protected Buffers initialValue() {
+			return new Buffers();
+		}
+	};
+
+	private static final class Buffers {
+		final double[] 
+			ta = new double[32], tb = new double[32], tc = new double[32], 
+			tab = new double[64], h = new double[96],
+			p = new double[2], q = new double[2], 
+			lift = new double[4], cross = new double[4], 
+			scaled = new double[8], acc = new double[32], tmp = new double[32];
+	}
+
+	private TriangleKernel() {
+	}
+
+	/**
+	 * computes twice the signed area of the triangle <i>(a, b, c)</i> inside
+	 * the x-y plane. The result is positive, if <i>a</i>, <i>b</i>, <i>c</i> 
+	 * are given in counter-clockwise order, negative for clockwise order, and
+	 * 0 if the points are collinear. The sign of the result is exact.
+	 * 
+	 * @return Orientation determinant
+	 */
+	public static double orient2d(
+		double ax, double ay, double bx, double by, double cx, double cy)
+	{
+		double 
+			detLeft = (bx - ax) * (cy - ay),
+			detRight = (by - ay) * (cx - ax),
+			det = detLeft - detRight;
+		double detSum = Math.abs(detLeft) + Math.abs(detRight);
+		if (Math.abs(det) > cOrientErrBound * detSum)
+			return det;
+		double 
+			bax = exactDiff(bx, ax), bay = exactDiff(by, ay),
+			cax = exactDiff(cx, ax), cay = exactDiff(cy, ay);
+		if (bax == bax && bay == bay && cax == cax && cay == cay) { // no NaN
+			// (l1 + l0) - (r1 + r0) = x3 + x2 + x1 + x0 exactly (Two-Two-Diff, 
+			// see Shewchuk); the most significant non-zero component gives 
+			// the sign:
+			double 
+				l1 = bax * cay, l0 = productTail(bax, cay, l1),
+				r1 = bay * cax, r0 = productTail(bay, cax, r1);
+			double i = l0 - r0, x0 = diffTail(l0, r0, i);
+			double j = l1 + i, t = sumTail(l1, i, j);
+			double k = t - r1, x1 = diffTail(t, r1, k);
+			double x3 = j + k, x2 = sumTail(j, k, x3);
+			return x3 != 0. ? x3 : (x2 != 0. ? x2 : (x1 != 0. ? x1 : x0));
+		}
+		return orient2dExact(ax, ay, bx, by, cx, cy);
+	}
+
+	private static double orient2dExact(
+		double ax, double ay, double bx, double by, double cx, double cy)
+	{
+		BigDecimal 
+			axx = new BigDecimal(ax), ayy = new BigDecimal(ay),
+			dbx = new BigDecimal(bx).subtract(axx), dby = new BigDecimal(by).subtract(ayy),
+			dcx = new BigDecimal(cx).subtract(axx), dcy = new BigDecimal(cy).subtract(ayy);
+		BigDecimal det = dbx.multiply(dcy).subtract(dby.multiply(dcx));
+		double res = det.doubleValue();
+		if (res == 0. && det.signum() != 0)
+			res = det.signum() * Double.MIN_VALUE; // keep the sign on underflow
+		return res;
+	}
+
+	/**
+	 * checks, with respect to the x-y plane, if the point <i>d</i> lies inside
+	 * the circumcircle of the triangle <i>(a, b, c)</i>. The result is 
+	 * positive, if <i>d</i> lies inside the circle and <i>a</i>, <i>b</i>, 
+	 * <i>c</i> are given in counter-clockwise order, negative if <i>d</i> 
+	 * lies outside, and 0 if the four points are cocircular. For clockwise 
+	 * order, the sign will be reversed. As for {@link #orient2d}, the sign of
+	 * the result is exact.
+	 * 
+	 * @return In-circle determinant
+	 */
+	public static double inCircle(
+		double ax, double ay, double bx, double by, 
+		double cx, double cy, double dx, double dy)
+	{
+		double 
+			adx = ax - dx, ady = ay - dy,
+			bdx = bx - dx, bdy = by - dy,
+			cdx = cx - dx, cdy = cy - dy;
+		double 
+			bdxcdy = bdx * cdy, cdxbdy = cdx * bdy,
+			cdxady = cdx * ady, adxcdy = adx * cdy,
+			adxbdy = adx * bdy, bdxady = bdx * ady;
+		double 
+			alift = adx * adx + ady * ady,
+			blift = bdx * bdx + bdy * bdy,
+			clift = cdx * cdx + cdy * cdy;
+		double det = 
+			alift * (bdxcdy - cdxbdy) + 
+			blift * (cdxady - adxcdy) + 
+			clift * (adxbdy - bdxady);
+		double permanent = 
+			(Math.abs(bdxcdy) + Math.abs(cdxbdy)) * alift +
+			(Math.abs(cdxady) + Math.abs(adxcdy)) * blift +
+			(Math.abs(adxbdy) + Math.abs(bdxady)) * clift;
+		if (Math.abs(det) > cInCircleErrBound * permanent)
+			return det;
+		adx = exactDiff(ax, dx); ady = exactDiff(ay, dy);
+		bdx = exactDiff(bx, dx); bdy = exactDiff(by, dy);
+		cdx = exactDiff(cx, dx); cdy = exactDiff(cy, dy);
+		if (adx == adx && ady == ady && bdx == bdx && bdy == bdy && cdx == cdx && cdy == cdy) {
+			Buffers buf = cBuffers.get();
+			int 
+				na = liftTimesCross(adx, ady, bdx, bdy, cdx, cdy, buf.ta, buf),
+				nb = liftTimesCross(bdx, bdy, cdx, cdy, adx, ady, buf.tb, buf),
+				nc = liftTimesCross(cdx, cdy, adx, ady, bdx, bdy, buf.tc, buf),
+				nab = expansionSum(buf.ta, na, buf.tb, nb, buf.tab);
+			return buf.h[expansionSum(buf.tab, nab, buf.tc, nc, buf.h) - 1];
+		}
+		return inCircleExact(ax, ay, bx, by, cx, cy, dx, dy);
+	}
+
+	// computes (ux^2 + uy^2) * (vx * wy - wx * vy) as expansion; returns the
+	// number of components (at most 32).
+	private static int liftTimesCross(
+		double ux, double uy, double vx, double vy, double wx, double wy, 
+		double[] res, Buffers buf)
+	{
+		double[] 
+			p = buf.p, q = buf.q, lift = buf.lift, cross = buf.cross, 
+			scaled = buf.scaled, acc = buf.acc, tmp = buf.tmp;
+		twoProduct(ux, ux, p);
+		twoProduct(uy, uy, q);
+		int nLift = expansionSum(p, 2, q, 2, lift);
+		twoProduct(vx, wy, p);
+		twoProduct(-wx, vy, q);
+		int nCross = expansionSum(p, 2, q, 2, cross);
+		int n = 0;
+		for (int i = 0; i < nLift; i++) {
+			int ns = scaleExpansion(cross, nCross, lift[i], scaled);
+			if (n == 0) {
+				System.arraycopy(scaled, 0, acc, 0, ns);
+				n = ns;
+			} else {
+				n = expansionSum(acc, n, scaled, ns, tmp);
+				double[] h = acc; acc = tmp; tmp = h;
+			}
+		}
+		System.arraycopy(acc, 0, res, 0, n);
+		return n;
+	}
+
+	// returns a - b, or NaN if the difference can not be represented exactly
+	// or lies outside the range that is safe for expansion arithmetic.
+	private static double exactDiff(double a, double b) 
+	{
+		double x = a - b, bv = a - x, av = x + bv;
+		if ((a - av) + (bv - b) != 0.)
+			return Double.NaN;
+		double abs = Math.abs(x);
+		if (abs != 0. && (abs < cExpansionMin || abs > cExpansionMax))
+			return Double.NaN;
+		return x;
+	}
+
+	// returns the rounding error of the sum x = a + b (Knuth).
+	private static double sumTail(double a, double b, double x) {
+		double bv = x - a, av = x - bv;
+		return (a - av) + (b - bv);
+	}
+
+	// returns the rounding error of the difference x = a - b.
+	private static double diffTail(double a, double b, double x) {
+		double bv = a - x, av = x + bv;
+		return (a - av) + (bv - b);
+	}
+
+	// stores the product a * b as 2-component expansion (low part first).
+	private static void twoProduct(double a, double b, double[] h) 
+	{
+		double x = a * b;
+		h[0] = productTail(a, b, x);
+		h[1] = x;
+	}
+
+	// returns the rounding error of the product x = a * b (Dekker).
+	private static double productTail(double a, double b, double x) 
+	{
+		double 
+			c = cSplitter * a, aHi = c - (c - a), aLo = a - aHi,
+			d = cSplitter * b, bHi = d - (d - b), bLo = b - bHi;
+		double err = ((x - aHi * bHi) - aLo * bHi) - aHi * bLo;
+		return aLo * bLo - err;
+	}
+
+	// sums up two non-overlapping expansions (components in increasing order
+	// of magnitude); zero components will be eliminated. Returns the number of
+	// components of the result h.
+	private static int expansionSum(double[] e, int ne, double[] f, int nf, double[] h) 
+	{
+		int i = 0, j = 0, k = 0;
+		double q;
+		if (j < nf && (i >= ne || Math.abs(f[j]) < Math.abs(e[i]))) 
+			q = f[j++]; 
+		else 
+			q = e[i++];
+		while (i < ne || j < nf) {
+			double b;
+			if (j < nf && (i >= ne || Math.abs(f[j]) < Math.abs(e[i]))) 
+				b = f[j++]; 
+			else 
+				b = e[i++];
+			double x = q + b, bv = x - q, av = x - bv;
+			double err = (q - av) + (b - bv);
+			if (err != 0.) 
+				h[k++] = err;
+			q = x;
+		}
+		if (q != 0. || k == 0) 
+			h[k++] = q;
+		return k;
+	}
+
+	// multiplies an expansion by a floating-point value; zero components will
+	// be eliminated. Returns the number of components of the result h.
+	private static int scaleExpansion(double[] e, int ne, double b, double[] h) 
+	{
+		int k = 0;
+		double q = e[0] * b, hh = productTail(e[0], b, q);
+		if (hh != 0.) 
+			h[k++] = hh;
+		for (int i = 1; i < ne; i++) {
+			double p1 = e[i] * b, p0 = productTail(e[i], b, p1);
+			double sum = q + p0, bv = sum - q, av = sum - bv;
+			hh = (q - av) + (p0 - bv);
+			if (hh != 0.) 
+				h[k++] = hh;
+			q = p1 + sum;
+			hh = sum - (q - p1);
+			if (hh != 0.) 
+				h[k++] = hh;
+		}
+		if (q != 0. || k == 0) 
+			h[k++] = q;
+		return k;
+	}
+
+	private static double inCircleExact(
+		double ax, double ay, double bx, double by, 
+		double cx, double cy, double dx, double dy)
+	{
+		BigDecimal 
+			dxx = new BigDecimal(dx), dyy = new BigDecimal(dy),
+			adx = new BigDecimal(ax).subtract(dxx), ady = new BigDecimal(ay).subtract(dyy),
+			bdx = new BigDecimal(bx).subtract(dxx), bdy = new BigDecimal(by).subtract(dyy),
+			cdx = new BigDecimal(cx).subtract(dxx), cdy = new BigDecimal(cy).subtract(dyy);
+		BigDecimal 
+			alift = adx.multiply(adx).add(ady.multiply(ady)),
+			blift = bdx.multiply(bdx).add(bdy.multiply(bdy)),
+			clift = cdx.multiply(cdx).add(cdy.multiply(cdy));
+		BigDecimal det = 
+			alift.multiply(bdx.multiply(cdy).subtract(cdx.multiply(bdy)))
+			.add(blift.multiply(cdx.multiply(ady).subtract(adx.multiply(cdy))))
+			.add(clift.multiply(adx.multiply(bdy).subtract(bdx.multiply(ady))));
+		double res = det.doubleValue();
+		if (res == 0. && det.signum() != 0)
+			res = det.signum() * Double.MIN_VALUE; // keep the sign on underflow
+		return res;
+	}
+
+	/**
+	 * computes the barycentric coordinates of the point <i>p</i> with respect
+	 * to the triangle <i>(a, b, c)</i> inside the x-y plane. The weights 
+	 * <tt>res[0]</tt>, <tt>res[1]</tt>, <tt>res[2]</tt> refer to the corners
+	 * <i>a</i>, <i>b</i>, <i>c</i>; their sum is 1. For points outside the 
+	 * triangle, negative weights result.
+	 * 
+	 * @param res Array to store the three weights
+	 * @return <i>false</i>, if the triangle is degenerated inside the x-y 
+	 * plane (then, <tt>res</tt> remains unchanged), else <i>true</i>
+	 */
+	public static boolean barycentric(
+		double ax, double ay, double bx, double by, double cx, double cy, 
+		double px, double py, double[] res)
+	{
+		double 
+			w0 = orient2d(bx, by, cx, cy, px, py),
+			w1 = orient2d(cx, cy, ax, ay, px, py),
+			w2 = orient2d(ax, ay, bx, by, px, py),
+			sum = w0 + w1 + w2;
+		if (sum == 0. || orient2d(ax, ay, bx, by, cx, cy) == 0.)
+			return false;
+		res[0] = w0 / sum;
+		res[1] = w1 / sum;
+		res[2] = w2 / sum;
+		return true;
+	}
+
+	/**
+	 * checks, with respect to the x-y plane, if the point <i>p</i> lies 
+	 * inside the triangle <i>(a, b, c)</i>. The triangle may be oriented 
+	 * clockwise or counter-clockwise. If <tt>edge</tt> is <i>true</i>, points
+	 * on the triangle's boundary will be regarded as inside; then, for 
+	 * triangles that are degenerated inside the x-y plane, it will be checked
+	 * whether <i>p</i> lies on one of the triangle's sides. 
+	 * 
+	 * @param edge Flag directing edge check mode
+	 * @return <i>true</i>, if <i>p</i> lies inside the triangle, else <i>false</i>
+	 */
+	public static boolean isInsideXY(
+		double ax, double ay, double bx, double by, double cx, double cy, 
+		double px, double py, boolean edge)
+	{
+		double det = orient2d(ax, ay, bx, by, cx, cy);
+		if (det == 0.) {
+			if (!edge)
+				return false;
+			return 
+				onSegment(ax, ay, bx, by, px, py) || 
+				onSegment(bx, by, cx, cy, px, py) || 
+				onSegment(cx, cy, ax, ay, px, py);
+		}
+		double 
+			w0 = orient2d(bx, by, cx, cy, px, py),
+			w1 = orient2d(cx, cy, ax, ay, px, py),
+			w2 = orient2d(ax, ay, bx, by, px, py);
+		if (det < 0.) {
+			w0 = -w0; w1 = -w1; w2 = -w2;
+		}
+		if (edge)
+			return w0 >= 0. && w1 >= 0. && w2 >= 0.;
+		return w0 > 0. && w1 > 0. && w2 > 0.;
+	}
+
+	// checks if p lies on the line segment (a, b) inside the x-y plane.
+	private static boolean onSegment(
+		double ax, double ay, double bx, double by, double px, double py)
+	{
+		return 
+			orient2d(ax, ay, bx, by, px, py) == 0. &&
+			px >= Math.min(ax, bx) && px <= Math.max(ax, bx) &&
+			py >= Math.min(ay, by) && py <= Math.max(ay, by);
+	}
+
+	/**
+	 * computes the z-value of the plane through the triangle's corners at the
+	 * position <i>(px, py)</i>. The method provides a result, even if the 
+	 * given position lies outside the triangle (extrapolation).
+	 * 
+	 * @return z-value
+	 * @throws T3dException if the triangle is degenerated inside the x-y plane
+	 */
+	public static double interpolateZ(
+		double ax, double ay, double az, 
+		double bx, double by, double bz, 
+		double cx, double cy, double cz, 
+		double px, double py) throws T3dException
+	{
+		double det = orient2d(ax, ay, bx, by, cx, cy);
+		if (det == 0.)
+			throw new T3dException("Division by zero error.");
+		double 
+			w0 = orient2d(bx, by, cx, cy, px, py),
+			w1 = orient2d(cx, cy, ax, ay, px, py),
+			w2 = orient2d(ax, ay, bx, by, px, py);
+		return (w0 * az + w1 * bz + w2 * cz) / (w0 + w1 + w2);
+	}
+
+	/**
+	 * computes the triangle's normal vector of length 1. For a 
+	 * counter-clockwise sequence of the corners <i>a</i>, <i>b</i>, <i>c</i>
+	 * (seen from above), the normal vector will be directed in positive 
+	 * z-direction. For degenerated triangles, the zero vector results.
+	 * 
+	 * @param res Array to store the normal vector's x-, y-, and z-component
+	 * @return Length of the cross product, i.e. twice the triangle area
+	 */
+	public static double normal(
+		double ax, double ay, double az, 
+		double bx, double by, double bz, 
+		double cx, double cy, double cz, 
+		double[] res)
+	{
+		double 
+			ux = bx - ax, uy = by - ay, uz = bz - az,
+			vx = cx - ax, vy = cy - ay, vz = cz - az,
+			nx = uy * vz - uz * vy,
+			ny = uz * vx - ux * vz,
+			nz = ux * vy - uy * vx,
+			len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		if (len == 0.) {
+			res[0] = res[1] = res[2] = 0.;
+			return 0.;
+		}
+		res[0] = nx / len;
+		res[1] = ny / len;
+		res[2] = nz / len;
+		return len;
+	}
+
+	/**
+	 * computes the area of the triangle <i>(a, b, c)</i> in 3-D space.
+	 * 
+	 * @return Area value
+	 */
+	public static double area(
+		double ax, double ay, double az, 
+		double bx, double by, double bz, 
+		double cx, double cy, double cz)
+	{
+		double 
+			ux = bx - ax, uy = by - ay, uz = bz - az,
+			vx = cx - ax, vy = cy - ay, vz = cz - az,
+			nx = uy * vz - uz * vy,
+			ny = uz * vx - ux * vz,
+			nz = ux * vy - uy * vx;
+		return 0.5 * Math.sqrt(nx * nx + ny * ny + nz * nz);
+	}
+
+	/**
+	 * computes the area of the triangle <i>(a, b, c)</i> projected to the 
+	 * x-y plane.
+	 * 
+	 * @return Area value
+	 */
+	public static double areaXY(
+		double ax, double ay, double bx, double by, double cx, double cy) 
+	{
+		return 0.5 * Math.abs(orient2d(ax, ay, bx, by, cx, cy));
+	}
+}
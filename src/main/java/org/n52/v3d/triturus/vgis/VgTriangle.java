@@ -33,10 +33,12 @@
 package org.n52.v3d.triturus.vgis;
 
 import org.n52.v3d.triturus.t3dutil.T3dVector;
+import org.n52.v3d.triturus.t3dutil.TriangleKernel;
 import org.n52.v3d.triturus.core.T3dException;
 
 /**
  * Class to hold a triangle that might be arbitrarily oriented in 3-D space.
+ * The geometric computations are delegated to {@link TriangleKernel}.
  * 
  * @author Benno Schmidt
  */
@@ -58,6 +60,18 @@ abstract public class VgTriangle extends VgGeomObject2d
 	 */
 	abstract public VgPoint[] getCornerPoints();
 
+	/** 
+	 * returns the triangle's i-th corner-point (0 &lt;= i &lt; 3). 
+	 * Implementations should override this method, so that no array has to 
+	 * be allocated.
+	 * 
+	 * @param i Corner index
+	 * @return Corner-point
+	 */
+	public VgPoint getCornerPoint(int i) {
+		return this.getCornerPoints()[i];
+	}
+
 	/**
 	 * returns the triangle area referring to the assigned coordinate reference system.
 	 * 
@@ -66,15 +80,23 @@ abstract public class VgTriangle extends VgGeomObject2d
 	 */
 	public double area()
 	{
-		VgPoint[] p = this.getCornerPoints();
-		VgPoint p1 = p[0], p2 = p[1], p3 = p[2];
-		
-		double l12 = p2.distance(p1); // here a NullPointerException might be thrown...
-		double l13 = p3.distance(p1);
-		double l23 = p3.distance(p2);
-		
-		double s = (l12 + l13 + l23) / 2.;
-		return Math.sqrt(s * (s - l12) * (s - l13) * (s - l23)); // Heron's formula
+		VgPoint p1 = this.getCornerPoint(0), p2 = this.getCornerPoint(1), p3 = this.getCornerPoint(2);
+		return TriangleKernel.area(
+			p1.getX(), p1.getY(), p1.getZ(), 
+			p2.getX(), p2.getY(), p2.getZ(), 
+			p3.getX(), p3.getY(), p3.getZ());
+	}
+
+	/**
+	 * returns the area of the triangle projected to the x-y plane.
+	 * 
+	 * @return Area value
+	 */
+	public double areaXY()
+	{
+		VgPoint p1 = this.getCornerPoint(0), p2 = this.getCornerPoint(1), p3 = this.getCornerPoint(2);
+		return TriangleKernel.areaXY(
+			p1.getX(), p1.getY(), p2.getX(), p2.getY(), p3.getX(), p3.getY());
 	}
 
 	/**
@@ -101,7 +123,7 @@ abstract public class VgTriangle extends VgGeomObject2d
 	 * <br/> 
 	 * Notes: 1. The z-coordinate of <tt>pt</tt> will be ignored.<br/>
 	 * 2. If the area of the triangle projected to the x-y plane is 0, a 
-	 * <tt>T3dException</tt> might be thrown ("Division by zero error."). 
+	 * <tt>T3dException</tt> will be thrown ("Division by zero error."). 
 	 * 
 	 * @param pt Position
 	 * @return z-value
@@ -110,34 +132,12 @@ abstract public class VgTriangle extends VgGeomObject2d
 	 */
 	public double interpolateZ(VgPoint pt) 
 	{
-		VgPoint[] p = this.getCornerPoints();
-		
-		T3dVector dir0 = new T3dVector();
-		dir0.assignDiff(p[0], p[2]);
-		T3dVector dir1 = new T3dVector();
-		dir1.assignDiff(p[1], p[2]);
-		
-		// Solve plane equation p[2] + s0 * (p[0] - p[2]) + s1 * (p[1] - p[2]) = 0 
-		// using Cramer's rule:
-		double detNum =
-			- dir0.getX() * dir1.getY() * p[2].getZ()
-			+ dir1.getX() * (pt.getY() - p[2].getY()) * dir0.getZ()
-			+ (pt.getX() - p[2].getX()) * dir0.getY() * dir1.getZ()
-			- dir0.getZ() * dir1.getY() * (pt.getX() - p[2].getX())
-			- dir1.getZ() * (pt.getY() - p[2].getY()) * dir0.getX()
-			+ p[2].getZ() * dir0.getY() * dir1.getX();		    
-		double detDenom = -dir0.getX() * dir1.getY() + dir0.getY() * dir1.getX();
-		//System.out.println("tri = " + this);
-		//System.out.println("dir0 = " + dir0);
-		//System.out.println("dir1 = " + dir1);
-		//System.out.println("pt = " + pt);
-		//System.out.println("detNum = " + detNum);
-		//System.out.println("detDenom = " + detDenom);
-		                     
-		if (Math.abs(detDenom) < 0.000001)
-			throw new T3dException("Divison by zero error."); // should not occur
-		else
-			return detNum / detDenom;
+		VgPoint p1 = this.getCornerPoint(0), p2 = this.getCornerPoint(1), p3 = this.getCornerPoint(2);
+		return TriangleKernel.interpolateZ(
+			p1.getX(), p1.getY(), p1.getZ(), 
+			p2.getX(), p2.getY(), p2.getZ(), 
+			p3.getX(), p3.getY(), p3.getZ(), 
+			pt.getX(), pt.getY());
 	}
 
 	/**
@@ -148,8 +148,9 @@ abstract public class VgTriangle extends VgGeomObject2d
 	 * <br/>
 	 * Notes: 1. The z-coordinate of <tt>pt</tt> will be ignored, since the 
 	 * computation will be done inside the x-y plane.<br/>
-	 * 2. Make sure, your application behaves correct, if the area of the 
-	 * triangle projected to the x-y plane is 0.
+	 * 2. If the area of the triangle projected to the x-y plane is 0, the 
+	 * result will be <i>true</i> only if <tt>edge</tt> is set and <tt>pt</tt>
+	 * lies on one of the triangle's sides.
 	 * 
 	 * @param pt Point (z-coordinate will be ignored)
 	 * @param edge Flag directing edge check mode
@@ -158,58 +159,10 @@ abstract public class VgTriangle extends VgGeomObject2d
 	 */
 	public boolean isInsideXY(VgPoint pt, boolean edge)
 	{
-		VgPoint[] p = this.getCornerPoints();
-		
-		if (this.area() == 0.0) {
-			System.out.println("Warning: Area of triangle " + this + " is 0 ");
-			if (edge) {
-				if (pt.distance(p[0]) < 0.000001) // TODO introduce general eps?
-					return true;
-				else
-					return false;
-			} else
-				return false;
-		}
-		
-		if (this.areaXY() == 0.0) { // vertical triangle
-			System.out.println("Hint: Processing vertical triangle " + this + "...");
-			// TODO:
-			// Abstand pt von strecken(p[0] - p[1], p[1] - p[2] und p[2] - p[0] berechnen
-			// Wenn einer der Abstnde = 0: return true; sonst:
-			return false;
-		}
-		
-		T3dVector dir0 = new T3dVector();
-		dir0.assignDiff(p[0], p[2]);
-		T3dVector dir1 = new T3dVector();
-		dir1.assignDiff(p[1], p[2]);
-		   
-		// The equation p[2] + s0 * (p[0] - p[2]) + s1 * (p[1] - t[2]) = 0, 0 < s0, s1 < 1 
-		// gives the set of all points that lie inside the parallelogram given by 
-		// (p[0] - p[2]), (p[1] - p[2]).
-		   
-		double 
-			detNum0 = (pt.getX() - p[2].getX()) * dir1.getY() - (pt.getY() - p[2].getY()) * dir1.getX(),
-			detNum1 = dir0.getX() * (pt.getY() - p[2].getY()) - dir0.getY() * (pt.getX() - p[2].getX()),
-			detDenom = dir0.getX() * dir1.getY() - dir0.getY() * dir1.getX();
-		   
-		if (Math.abs(detDenom) < 0.000001) {
-			// System.out.println("XY: " + this.areaXY() + " - XYZ: " + this.area());
-			// if (this.area() < 0.000001) System.out.println(">" + this);
-			throw new T3dException("Divison by zero error."); // should not occur
-		}
-		
-		double s0 = detNum0 / detDenom;
-		double s1 = detNum1 / detDenom;
-		
-		// pt is inside the triangle, if 0 < s0 + s1 < 1:
-		if (s0 < 0. || s1 < 0. || s0 > 1. || s1 > 1.)
-			return false; // point outside parallelogram
-		if (s0 + s1 < 1.)
-			return true; // point completely inside triangle
-		if (s0 + s1 == 1. && edge)
-			return true; // point on boundary
-		return false; // point inside parallelogram and not inside triangle
+		VgPoint p1 = this.getCornerPoint(0), p2 = this.getCornerPoint(1), p3 = this.getCornerPoint(2);
+		return TriangleKernel.isInsideXY(
+			p1.getX(), p1.getY(), p2.getX(), p2.getY(), p3.getX(), p3.getY(), 
+			pt.getX(), pt.getY(), edge);
 	}
 	
 	/**
@@ -221,21 +174,16 @@ abstract public class VgTriangle extends VgGeomObject2d
 	 * 
 	 * @return Normal vector
 	 */
-	public T3dVector normal() {
-		VgPoint[] p = this.getCornerPoints();
-		T3dVector 
-			p0 = new T3dVector(p[0]),
-			p1 = new T3dVector(p[1]),
-			p2 = new T3dVector(p[2]);
-		T3dVector 
-			orient = new T3dVector(),
-			v1 = new T3dVector(),
-			v2 = new T3dVector();
-		v1.assignDiff(p1, p0);
-		v2.assignDiff(p2, p0);
-		orient.assignCrossProd(v1, v2);
-		orient.doNorm();
-		return orient;
+	public T3dVector normal() 
+	{
+		VgPoint p1 = this.getCornerPoint(0), p2 = this.getCornerPoint(1), p3 = this.getCornerPoint(2);
+		double[] n = new double[3];
+		TriangleKernel.normal(
+			p1.getX(), p1.getY(), p1.getZ(), 
+			p2.getX(), p2.getY(), p2.getZ(), 
+			p3.getX(), p3.getY(), p3.getZ(), 
+			n);
+		return new T3dVector(n[0], n[1], n[2]);
 	}
 	
 	public String toString() {
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.visgltf;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.core.T3dNotYetImplException;
+import org.n52.v3d.triturus.gisimplm.GmSimpleElevationGrid;
+import org.n52.v3d.triturus.gisimplm.IoGltfWriter;
+import org.n52.v3d.triturus.vgis.VgElevationGrid;
+import org.n52.v3d.triturus.vscene.MultiTerrainScene;
+import org.n52.v3d.triturus.vscene.VsScene;
+
+/**
+ * glTF scene generator. The current implementation takes 
+ * {@link MultiTerrainScene}-objects as input. The terrains will be written 
+ * to a binary glTF 2.0 file (GLB) using the scene's normalization 
+ * transformation, relief color or hypsometric color assignment and 
+ * exaggeration. Note that markers, the bounding-box, cameras and lights 
+ * will not be exported yet.
+ *
+ * @author Benno Schmidt
+ * @see MultiTerrainScene
+ * @see IoGltfWriter
+ */
+public class GltfSceneGenerator
+{
+    private String mLogString = "";
+
+    private VsScene mScene;
+    private boolean mQuantize = false;
+    private boolean mShortIndices = true;
+
+    /**
+     * Constructor.
+     *
+     * @param pScene {@link MultiTerrainScene}-object
+     */
+    public GltfSceneGenerator(VsScene pScene)
+    {
+        mLogString = this.getClass().getName();
+
+        mScene = pScene;
+
+        if (!(mScene instanceof MultiTerrainScene)) {
+            throw new T3dNotYetImplException(
+                "MultiTerrainScene expected for glTF visualization...");
+        }
+    }
+
+    public String log() {
+        return mLogString;
+    }
+
+    /**
+     * enables the quantization of vertex positions.
+     * 
+     * @param pQuantize <i>true</i>, to quantize vertex positions
+     * @see IoGltfWriter#setQuantization(boolean)
+     */
+    public void setQuantization(boolean pQuantize) {
+        mQuantize = pQuantize;
+    }
+
+    /**
+     * controls whether 16 bit indices shall be used (default).
+     * 
+     * @param pShortIndices <i>true</i>, to write 16 bit indices
+     * @see IoGltfWriter#set16BitIndices(boolean)
+     */
+    public void set16BitIndices(boolean pShortIndices) {
+        mShortIndices = pShortIndices;
+    }
+
+    /**
+     * generates a GLB file representing the content of the scene that has 
+     * been passed to the constructor.
+     *
+     * @param pFilename Output-file name (complete file path)
+     * @throws T3dException if the file can not be written
+     */
+    public void writeToFile(String pFilename) throws T3dException
+    {
+        MultiTerrainScene s = (MultiTerrainScene) mScene;
+
+        IoGltfWriter writer = new IoGltfWriter();
+        writer.setQuantization(mQuantize);
+        writer.set16BitIndices(mShortIndices);
+        writer.setNormTransformation(
+            s.getScale(), s.getOffset().getX(), s.getOffset().getY());
+        writer.setExaggeration(s.getDefaultExaggeration());
+        writer.setDefaultColor(s.getDefaultReliefColor());
+        writer.setHypsometricColorMapper(s.getHypsometricColorMapper());
+
+        for (VgElevationGrid terr : s.getTerrains()) {
+            if (!(terr instanceof GmSimpleElevationGrid)) {
+                throw new T3dNotYetImplException(
+                    "Terrain type \"" + terr.getClass().getName() + "\" is not supported yet.");
+            }
+            writer.addElevationGrid((GmSimpleElevationGrid) terr);
+        }
+        writer.writeToFile(pFilename);
+    }
+}
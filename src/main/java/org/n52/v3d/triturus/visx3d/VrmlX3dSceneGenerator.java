@@ -48,7 +48,6 @@ import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.text.DecimalFormat;
 
 /**
  * VRML/X3D scene generator. The current implementation takes 
@@ -207,10 +206,10 @@ public class VrmlX3dSceneGenerator extends IoAbstractWriter
                 wl("          height [");
 
                 // Write elevations:
-                DecimalFormat dfZ = this.getDecimalFormatZ();
                 for (int ii = terrGeom.numberOfRows() - 1; ii >= 0; ii--) {
                     for (int jj = 0; jj < terrGeom.numberOfColumns(); jj++) {
-                        w(dfZ.format(terr.getValue(ii, jj)) + ",");
+                        wZ(terr.getValue(ii, jj));
+                        w(",");
                     }
                     wl();
                 }
@@ -437,10 +436,10 @@ public class VrmlX3dSceneGenerator extends IoAbstractWriter
                         "height='");
 
                 // Write elevations:
-                DecimalFormat dfZ = this.getDecimalFormatZ();
                 for (int ii = terrGeom.numberOfRows() - 1; ii >= 0; ii--) {
                     for (int jj = 0; jj < terrGeom.numberOfColumns(); jj++) {
-                        w(dfZ.format(terr.getValue(ii, jj)) + ",");
+                        wZ(terr.getValue(ii, jj));
+                        w(",");
                     }
                     wl();
                 }
@@ -535,6 +534,15 @@ public class VrmlX3dSceneGenerator extends IoAbstractWriter
         }
     }
 
+    private void wZ(double val) {
+        try {
+            this.writeZ(mDoc, val);
+        }
+        catch (IOException e) {
+            throw new T3dException(e.getMessage());
+        }
+    }
+
     private void wl(String pLine) {
         try {
             mDoc.write(pLine);
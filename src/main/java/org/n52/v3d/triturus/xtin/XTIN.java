@@ -38,6 +38,7 @@ import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.core.T3dNotYetImplException;
 import org.n52.v3d.triturus.gisimplm.GmSimpleTINFeature;
 import org.n52.v3d.triturus.gisimplm.GmSimpleTINGeometry;
+import org.n52.v3d.triturus.gisimplm.GmTINEdgeTopology;
 import org.n52.v3d.triturus.gisimplm.GmTriangle;
 import org.n52.v3d.triturus.vgis.VgEnvelope;
 import org.n52.v3d.triturus.vgis.VgGeomObject;
@@ -228,6 +229,27 @@ public class XTIN extends VgTIN
 		return ct;
 	}
 
+	/**
+	 * computes the undirected edges of the TIN and the edge indices of each
+	 * triangle. The <i>k</i>-th edge of a triangle <i>(v1, v2, v3)</i> refers
+	 * to the <i>k</i>-th side <i>v1-v2</i>, <i>v2-v3</i>, or <i>v3-v1</i>. 
+	 * Note that the result will not be updated when adding triangles later.
+	 * 
+	 * @return Edge topology
+	 * @see GmTINEdgeTopology
+	 */
+	public GmTINEdgeTopology edgeTopology() 
+	{
+		int[] tri = new int[3 * tri_vtx.size()];
+		for (int i = 0, k = 0; i < tri_vtx.size(); i++) {
+			Vtx3 t = tri_vtx.get(i);
+			tri[k++] = t.v1;
+			tri[k++] = t.v2;
+			tri[k++] = t.v3;
+		}
+		return new GmTINEdgeTopology(tri, tri_vtx.size(), vtx_edg.size());
+	}
+
 	@Override
 	public VgPoint getPoint(int i) throws T3dException {
 		if (i < 0 || i >= vtx_loc.size())
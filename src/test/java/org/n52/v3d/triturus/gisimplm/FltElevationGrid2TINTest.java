@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for <tt>FltElevationGrid2TIN</tt>.
+ * 
+ * @author Benno Schmidt
+ */
+public class FltElevationGrid2TINTest 
+{
+    @Test
+    public void testPlane() 
+    {
+        // A plane will be represented by the grid's corner points:
+        GmSimpleElevationGrid grid = grid(200, 150, 0.);
+        GmSimpleTINFeature f = new FltElevationGrid2TIN().transform(grid);
+        GmSimpleTINGeometry tin = (GmSimpleTINGeometry) f.getGeometry();
+        assertEquals(4, tin.numberOfPoints());
+        assertEquals(2, tin.numberOfTriangles());
+    }
+
+    @Test
+    public void testMaximumError() 
+    {
+        GmSimpleElevationGrid grid = grid(120, 100, 20.);
+        FltElevationGrid2TIN flt = new FltElevationGrid2TIN();
+        flt.setMaximumError(0.5);
+        GmSimpleTINFeature f = flt.transform(grid);
+        GmSimpleTINGeometry tin = (GmSimpleTINGeometry) f.getGeometry();
+        assertTrue(tin.numberOfPoints() > 4);
+        assertTrue(tin.numberOfPoints() < 120 * 100);
+        // Every lattice point must be approximated within the given error 
+        // (the upper border rows and columns are not tested here):
+        for (int i = 0; i < 99; i++) {
+            for (int j = 0; j < 119; j++) {
+                double z = f.getValue(new GmPoint(j, i, 0.));
+                assertEquals(grid.getValue(i, j), z, 0.5 + 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testLargeGrid() 
+    {
+        // The working memory must depend on the number of inserted points, 
+        // not on the grid size (here: 9 million lattice points), even if the
+        // number of points is not limited:
+        int nCols = 3000, nRows = 3000;
+        GmSimpleElevationGrid grid = new GmSimpleElevationGrid(
+            new GmSimple2dGridGeometry(nCols, nRows, new GmPoint(0., 0., 0.), 1., 1.), 
+            new GmFloatGridStorage(nCols, nRows));
+        for (int i = 0; i < nRows; i++) {
+            for (int j = 0; j < nCols; j++) {
+                grid.setValue(i, j, height(j / 10., i / 10., 200.));
+            }
+        }
+        FltElevationGrid2TIN flt = new FltElevationGrid2TIN();
+        flt.setMaximumError(5.);
+        GmSimpleTINGeometry tin = (GmSimpleTINGeometry) flt.transform(grid).getGeometry();
+        assertTrue(tin.numberOfPoints() > 4);
+        assertTrue(tin.numberOfPoints() < 10000);
+
+        // Small point budget:
+        flt.setMaximumError(0.);
+        flt.setMaximumNumberOfPoints(100);
+        tin = (GmSimpleTINGeometry) flt.transform(grid).getGeometry();
+        assertEquals(100, tin.numberOfPoints());
+    }
+
+    private static GmSimpleElevationGrid grid(int nCols, int nRows, double amp) 
+    {
+        GmSimpleElevationGrid grid = 
+            new GmSimpleElevationGrid(nCols, nRows, new GmPoint(0., 0., 0.), 1., 1.);
+        for (int i = 0; i < nRows; i++) {
+            for (int j = 0; j < nCols; j++) {
+                grid.setValue(i, j, height(j, i, amp));
+            }
+        }
+        return grid;
+    }
+
+    private static double height(double x, double y, double amp) {
+        return 100. + 0.1 * x - 0.05 * y + amp * Math.sin(x / 17.) * Math.cos(y / 23.);
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Tests for <tt>GmTINEdgeTopology</tt>. The edge tables are compared to a 
+ * brute-force construction based on a hash map.
+ * 
+ * @author Benno Schmidt
+ */
+public class GmTINEdgeTopologyTest 
+{
+    @Test
+    public void testRandomMeshes() 
+    {
+        Random rnd = new Random(4711);
+        for (int it = 0; it < 200; it++) {
+            // Few vertices and many triangles, so that the buckets of some 
+            // vertices exceed the size for linear search:
+            int nv = 3 + rnd.nextInt(it % 2 == 0 ? 20 : 500);
+            int nt = 1 + rnd.nextInt(1000);
+            int hub = rnd.nextInt(nv);
+            int[] tri = new int[3 * nt];
+            for (int t = 0; t < nt; t++) {
+                int a = rnd.nextInt(4) == 0 ? hub : rnd.nextInt(nv), b, c;
+                do { b = rnd.nextInt(nv); } while (b == a);
+                do { c = rnd.nextInt(nv); } while (c == a || c == b);
+                tri[3 * t] = a;
+                tri[3 * t + 1] = b;
+                tri[3 * t + 2] = c;
+            }
+            assertTopology("iteration " + it, tri, nt, nv);
+        }
+    }
+
+    @Test
+    public void testGrid() 
+    {
+        // Regular grid of 20 x 10 quads, 2 triangles each:
+        int nx = 21, ny = 11, nt = 2 * (nx - 1) * (ny - 1);
+        int[] tri = new int[3 * nt];
+        int k = 0;
+        for (int i = 0; i < ny - 1; i++) {
+            for (int j = 0; j < nx - 1; j++) {
+                int v = i * nx + j;
+                tri[k++] = v; tri[k++] = v + 1; tri[k++] = v + nx + 1;
+                tri[k++] = v; tri[k++] = v + nx + 1; tri[k++] = v + nx;
+            }
+        }
+        GmTINEdgeTopology topo = assertTopology("grid", tri, nt, nx * ny);
+        // Euler: E = V + F - 1 for a triangulated disk
+        assertEquals(nx * ny + nt - 1, topo.numberOfEdges());
+    }
+
+    @Test
+    public void testSortedTriangles() 
+    {
+        double[] xyz = {0., 0., 0., 1., 0., 0., 1., 1., 0., 0., 1., 0.};
+        int[] tri = {2, 0, 1, 3, 0, 2};
+        GmTINEdgeTopology topo = 
+            GmTINEdgeTopology.fromSortedTriangles(new GmSimpleTINGeometry(xyz, tri));
+        assertEquals(5, topo.numberOfEdges());
+        assertArrayEquals(new int[] {0, 1, 1, 2, 0, 2, 2, 3, 0, 3}, topo.getEdges());
+        assertArrayEquals(new int[] {0, 1, 2, 2, 3, 4}, topo.getTriangleEdges());
+        assertArrayEquals(new int[] {2, 0, 1, 3, 0, 2}, tri); // not modified
+    }
+
+    @Test(expected = T3dException.class)
+    public void testIllegalVertexIndex() {
+        new GmTINEdgeTopology(new int[] {0, 1, 3}, 1, 3);
+    }
+
+    // Compares the edge topology to the brute-force result: edges numbered 
+    // in the order of their first occurrence, lower vertex index first.
+    private static GmTINEdgeTopology assertTopology(String msg, int[] tri, int nt, int nv) 
+    {
+        HashMap<Long, Integer> index = new HashMap<Long, Integer>();
+        List<int[]> edges = new ArrayList<int[]>();
+        int[] triEdges = new int[3 * nt];
+        for (int s = 0; s < 3 * nt; s++) {
+            int 
+                a = tri[s], b = tri[s % 3 == 2 ? s - 2 : s + 1],
+                lo = Math.min(a, b), hi = Math.max(a, b);
+            Long key = Long.valueOf(((long) lo << 32) | hi);
+            Integer e = index.get(key);
+            if (e == null) {
+                e = Integer.valueOf(edges.size());
+                index.put(key, e);
+                edges.add(new int[] {lo, hi});
+            }
+            triEdges[s] = e.intValue();
+        }
+        int[] tmp = tri.clone();
+        GmTINEdgeTopology topo = new GmTINEdgeTopology(tri, nt, nv);
+        assertArrayEquals(msg, tmp, tri);
+        assertEquals(msg, edges.size(), topo.numberOfEdges());
+        int[] res = topo.getEdges();
+        for (int e = 0; e < edges.size(); e++) {
+            assertEquals(msg + ", edge " + e, edges.get(e)[0], res[2 * e]);
+            assertEquals(msg + ", edge " + e, edges.get(e)[1], res[2 * e + 1]);
+        }
+        assertArrayEquals(msg, triEdges, topo.getTriangleEdges());
+        return topo;
+    }
+}
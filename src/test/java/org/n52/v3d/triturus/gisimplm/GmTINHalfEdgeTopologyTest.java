@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Tests for <tt>GmTINHalfEdgeTopology</tt>. Most tests refer to a regular 
+ * grid of counter-clockwise oriented triangles; vertex <i>i * nx + j</i> is
+ * located at <i>(j, i)</i>.
+ * 
+ * @author Benno Schmidt
+ */
+public class GmTINHalfEdgeTopologyTest 
+{
+    private static final int cNX = 7, cNY = 5;
+
+    @Test
+    public void testTwins() 
+    {
+        int[] tri = grid(cNX, cNY, -1);
+        GmTINHalfEdgeTopology topo = new GmTINHalfEdgeTopology(tri, tri.length / 3, cNX * cNY);
+        assertEquals(cNX * cNY, topo.numberOfVertices());
+        assertEquals(tri.length / 3, topo.numberOfTriangles());
+        assertEquals(tri.length, topo.numberOfHalfEdges());
+        assertEquals(cNX * cNY + tri.length / 3 - 1, topo.numberOfEdges()); // Euler
+
+        int nBoundary = 0;
+        for (int h = 0; h < topo.numberOfHalfEdges(); h++) {
+            int g = topo.twin(h);
+            if (g < 0) {
+                assertTrue(topo.isBoundary(h));
+                nBoundary++;
+                continue;
+            }
+            assertFalse(topo.isBoundary(h));
+            assertEquals(h, topo.twin(g));
+            assertEquals(topo.origin(h), topo.target(g));
+            assertEquals(topo.target(h), topo.origin(g));
+            assertEquals(topo.edge(h), topo.edge(g));
+            assertEquals(GmTINHalfEdgeTopology.triangle(g), 
+                topo.neighborTriangle(GmTINHalfEdgeTopology.triangle(h), h % 3));
+        }
+        assertEquals(2 * (cNX - 1) + 2 * (cNY - 1), nBoundary);
+    }
+
+    @Test
+    public void testNonManifoldEdge() 
+    {
+        // Three triangles share the edge (0, 1); the edge (1, 2) is regular:
+        int[] tri = {0, 1, 2,  1, 0, 3,  1, 0, 4,  2, 1, 5};
+        GmTINHalfEdgeTopology topo = new GmTINHalfEdgeTopology(tri, 4, 6);
+        assertTrue(topo.isBoundary(0));
+        assertTrue(topo.isBoundary(3));
+        assertTrue(topo.isBoundary(6));
+        assertEquals(9, topo.twin(1));
+        assertEquals(1, topo.twin(9));
+        assertEquals(3, topo.neighborTriangle(0, 1));
+        assertEquals(-1, topo.neighborTriangle(0, 0));
+
+        // The same, if the first two triangles are oriented inconsistently:
+        tri = new int[] {0, 1, 2,  0, 1, 3,  1, 0, 4};
+        topo = new GmTINHalfEdgeTopology(tri, 3, 5);
+        assertTrue(topo.isBoundary(0));
+        assertTrue(topo.isBoundary(3));
+        assertTrue(topo.isBoundary(6));
+    }
+
+    @Test
+    public void testInconsistentOrientation() 
+    {
+        // Both triangles contain the half-edge 0 -> 1:
+        int[] tri = {0, 1, 2,  0, 1, 3};
+        GmTINHalfEdgeTopology topo = new GmTINHalfEdgeTopology(tri, 2, 4);
+        for (int h = 0; h < 6; h++) {
+            assertTrue(topo.isBoundary(h));
+        }
+        assertEquals(topo.edge(0), topo.edge(3));
+        assertEquals(-1, topo.neighborTriangle(0, 0));
+        assertEquals(-1, topo.neighborTriangle(1, 0));
+    }
+
+    @Test
+    public void testOneRing() 
+    {
+        int[] tri = grid(cNX, cNY, -1);
+        // an additional vertex that is not referenced:
+        GmTINHalfEdgeTopology topo = new GmTINHalfEdgeTopology(tri, tri.length / 3, cNX * cNY + 1);
+        int[] res = new int[16];
+
+        // Interior vertex, neighbors in counter-clockwise order:
+        int v = 2 * cNX + 3;
+        assertFalse(topo.isBoundaryVertex(v));
+        int n = topo.oneRing(v, res);
+        assertEquals(6, n);
+        int[] ring = Arrays.copyOf(res, n), expected = {
+            v + 1, v + cNX + 1, v + cNX, v - 1, v - cNX - 1, v - cNX};
+        int k0 = 0;
+        while (ring[0] != expected[k0]) k0++;
+        for (int k = 0; k < n; k++) {
+            assertEquals(expected[(k0 + k) % n], ring[k]);
+        }
+        assertEquals(6, topo.incidentTriangles(v, res));
+        for (int k = 0; k < 6; k++) {
+            assertTrue(contains(tri, res[k], v));
+        }
+
+        // Corner vertex, the sequence starts and ends at the boundary:
+        assertTrue(topo.isBoundaryVertex(0));
+        n = topo.oneRing(0, res);
+        assertEquals(3, n);
+        assertEquals(1, res[0]);
+        assertEquals(cNX + 1, res[1]);
+        assertEquals(cNX, res[2]);
+        assertEquals(2, topo.incidentTriangles(0, res));
+
+        // Boundary vertex on the lower border:
+        v = 3;
+        assertTrue(topo.isBoundaryVertex(v));
+        n = topo.oneRing(v, res);
+        assertEquals(4, n);
+        assertEquals(v + 1, res[0]);
+        assertEquals(v - 1, res[n - 1]);
+        assertEquals(3, topo.incidentTriangles(v, res));
+
+        // Unreferenced vertex:
+        v = cNX * cNY;
+        assertEquals(-1, topo.outgoingHalfEdge(v));
+        assertFalse(topo.isBoundaryVertex(v));
+        assertEquals(0, topo.oneRing(v, res));
+        assertEquals(0, topo.incidentTriangles(v, res));
+    }
+
+    @Test
+    public void testBoundaryLoops() 
+    {
+        int[] tri = grid(cNX, cNY, -1);
+        GmTINHalfEdgeTopology topo = new GmTINHalfEdgeTopology(tri, tri.length / 3, cNX * cNY);
+        ArrayList<int[]> loops = topo.boundaryLoops();
+        assertEquals(1, loops.size());
+        assertLoop(topo, loops.get(0), 2 * (cNX - 1) + 2 * (cNY - 1), true);
+
+        // With a hole (one quad removed), the inner loop runs clockwise:
+        tri = grid(cNX, cNY, 2 * cNX + 3);
+        topo = new GmTINHalfEdgeTopology(tri, tri.length / 3, cNX * cNY);
+        loops = topo.boundaryLoops();
+        assertEquals(2, loops.size());
+        int outer = loops.get(0).length > loops.get(1).length ? 0 : 1;
+        assertLoop(topo, loops.get(outer), 2 * (cNX - 1) + 2 * (cNY - 1), true);
+        assertLoop(topo, loops.get(1 - outer), 4, false);
+    }
+
+    @Test(expected = T3dException.class)
+    public void testNextBoundaryHalfEdgeOfInteriorHalfEdge() 
+    {
+        int[] tri = grid(cNX, cNY, -1);
+        GmTINHalfEdgeTopology topo = new GmTINHalfEdgeTopology(tri, tri.length / 3, cNX * cNY);
+        int h = 0;
+        while (topo.isBoundary(h)) h++;
+        topo.nextBoundaryHalfEdge(h);
+    }
+
+    private static void assertLoop(
+        GmTINHalfEdgeTopology topo, int[] loop, int len, boolean ccw) 
+    {
+        assertEquals(len, loop.length);
+        double area = 0.;
+        for (int k = 0; k < len; k++) {
+            int h = loop[k], g = loop[(k + 1) % len];
+            assertTrue(topo.isBoundary(h));
+            assertEquals(topo.target(h), topo.origin(g));
+            assertEquals(g, topo.nextBoundaryHalfEdge(h));
+            int a = topo.origin(h), b = topo.target(h);
+            area += (double) (a % cNX) * (b / cNX) - (double) (b % cNX) * (a / cNX);
+        }
+        assertEquals(ccw, area > 0.);
+    }
+
+    // Regular grid of nx * ny vertices; the quad with lower left vertex 
+    // 'hole' will be omitted (-1 for none).
+    private static int[] grid(int nx, int ny, int hole) 
+    {
+        int[] tri = new int[6 * (nx - 1) * (ny - 1)];
+        int k = 0;
+        for (int i = 0; i < ny - 1; i++) {
+            for (int j = 0; j < nx - 1; j++) {
+                int v = i * nx + j;
+                if (v == hole)
+                    continue;
+                tri[k++] = v; tri[k++] = v + 1; tri[k++] = v + nx + 1;
+                tri[k++] = v; tri[k++] = v + nx + 1; tri[k++] = v + nx;
+            }
+        }
+        return Arrays.copyOf(tri, k);
+    }
+
+    private static boolean contains(int[] tri, int t, int v) {
+        return tri[3 * t] == v || tri[3 * t + 1] == v || tri[3 * t + 2] == v;
+    }
+}
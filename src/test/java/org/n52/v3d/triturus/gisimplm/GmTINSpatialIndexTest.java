@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.gisimplm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.n52.v3d.triturus.t3dutil.BowyerWatsonDelaunay;
+
+/**
+ * Tests for <tt>GmTINSpatialIndex</tt> and the elevation queries of 
+ * <tt>GmSimpleTINFeature</tt>. The test TINs represent a plane, so that the
+ * interpolated elevations are known at every position inside the TIN.
+ * 
+ * @author Benno Schmidt
+ */
+public class GmTINSpatialIndexTest 
+{
+    private static final double 
+        cW = 119., cH = 79., // extent of the test TINs
+        cEps = 1e-9;
+
+    @Test
+    public void testBorderPointsColdIndex() 
+    {
+        // Various numbers of triangles, so that the bucket grid's cell sizes
+        // vary (for some of these, x-max / cell-size exceeds the number of 
+        // columns due to rounding); every query is performed on a fresh index:
+        Random rnd = new Random(4711);
+        for (int n = 700; n <= 800; n++) {
+            GmSimpleTINGeometry tin = planeTIN(n, n);
+            double[][] probes = {
+                {0., 0.}, {cW, 0.}, {0., cH}, {cW, cH}, 
+                {cW * rnd.nextDouble(), cH}, {cW, cH * rnd.nextDouble()},
+                {cW * rnd.nextDouble(), 0.}, {0., cH * rnd.nextDouble()}
+            };
+            for (double[] p : probes) {
+                GmTINSpatialIndex index = new GmTINSpatialIndex(tin);
+                String msg = "n = " + n + ", (" + p[0] + ", " + p[1] + ")";
+                assertTrue(msg, index.locate(p[0], p[1]) >= 0);
+                assertEquals(msg, plane(p[0], p[1]), index.getValue(p[0], p[1]), cEps);
+            }
+        }
+    }
+
+    @Test
+    public void testOutside() 
+    {
+        GmTINSpatialIndex index = new GmTINSpatialIndex(planeTIN(200, 1));
+        double[][] probes = {
+            {-0.001, 10.}, {10., -0.001}, {cW + 0.001, 10.}, {10., cH + 0.001}, 
+            {Double.NaN, 10.}, {-1e10, 1e10}
+        };
+        for (double[] p : probes) {
+            assertEquals(-1, index.locate(p[0], p[1]));
+            assertTrue(Double.isNaN(index.getValue(p[0], p[1])));
+        }
+    }
+
+    @Test
+    public void testGetValues() 
+    {
+        // Batches with at least 1024 positions will be sorted by buckets:
+        GmSimpleTINGeometry tin = planeTIN(1000, 2);
+        GmTINSpatialIndex index = new GmTINSpatialIndex(tin);
+        Random rnd = new Random(42);
+        for (int n : new int[] {100, 5000}) {
+            double[] xy = new double[2 * n];
+            for (int i = 0; i < n; i++) {
+                xy[2 * i] = (cW + 20.) * rnd.nextDouble() - 10.;
+                xy[2 * i + 1] = (cH + 20.) * rnd.nextDouble() - 10.;
+            }
+            double[] z = index.getValues(xy);
+            assertEquals(n, z.length);
+            for (int i = 0; i < n; i++) {
+                double x = xy[2 * i], y = xy[2 * i + 1];
+                if (x < 0. || y < 0. || x > cW || y > cH)
+                    assertTrue(Double.isNaN(z[i]));
+                else
+                    assertEquals(plane(x, y), z[i], cEps);
+            }
+        }
+    }
+
+    @Test
+    public void testFeatureGetValue() 
+    {
+        GmSimpleTINFeature f = new GmSimpleTINFeature();
+        f.setGeometry(planeTIN(300, 3));
+        assertEquals(plane(12.5, 33.3), f.getValue(new GmPoint(12.5, 33.3, 0.)), cEps);
+        assertEquals(plane(cW, cH), f.getValue(new GmPoint(cW, cH, 0.)), cEps);
+        assertNull(f.getValue(new GmPoint(cW + 1., cH, 0.)));
+        assertNull(f.getValue(null));
+
+        double[] z = f.getValues(new double[] {1., 2., -1., 2., cW, 0.});
+        assertEquals(plane(1., 2.), z[0], cEps);
+        assertTrue(Double.isNaN(z[1]));
+        assertEquals(plane(cW, 0.), z[2], cEps);
+    }
+
+    private static double plane(double x, double y) {
+        return 100. + 0.25 * x - 0.5 * y;
+    }
+
+    // Delaunay triangulation of the extent's corners and n random points
+    private static GmSimpleTINGeometry planeTIN(int n, long seed) 
+    {
+        Random rnd = new Random(seed);
+        int nPts = n + 4;
+        double[] x = new double[nPts], y = new double[nPts];
+        x[1] = cW; x[2] = cW; y[2] = cH; y[3] = cH;
+        for (int i = 4; i < nPts; i++) {
+            x[i] = cW * rnd.nextDouble();
+            y[i] = cH * rnd.nextDouble();
+        }
+        double[] xyz = new double[3 * nPts];
+        for (int i = 0; i < nPts; i++) {
+            xyz[3 * i] = x[i];
+            xyz[3 * i + 1] = y[i];
+            xyz[3 * i + 2] = plane(x[i], y[i]);
+        }
+        return new GmSimpleTINGeometry(xyz, BowyerWatsonDelaunay.triangulate(x, y, nPts));
+    }
+}
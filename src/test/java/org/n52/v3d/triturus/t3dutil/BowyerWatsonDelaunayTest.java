@@ -0,0 +1,220 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.t3dutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for <tt>BowyerWatsonDelaunay</tt>. The triangulations are checked 
+ * for completeness (every input point is a vertex), orientation and the 
+ * Delaunay property of all interior edges.
+ * 
+ * @author Benno Schmidt
+ */
+public class BowyerWatsonDelaunayTest 
+{
+	@Test
+	public void testRandomPoints() 
+	{
+		// Several seeds, so that clockwise seed triangles will occur, too:
+		for (int seed = 0; seed < 10; seed++) {
+			for (int n : new int[] {10, 1000, 5000}) {
+				double[] x = new double[n], y = new double[n];
+				randomPoints(seed, x, y, n);
+				int[] tri = BowyerWatsonDelaunay.triangulate(x, y, n);
+				assertDelaunay("seed " + seed + ", n = " + n, x, y, n, tri);
+			}
+		}
+	}
+
+	@Test
+	public void testLattice() 
+	{
+		int cols = 150, rows = 130, n = cols * rows;
+		for (double d : new double[] {1., 0.1, 0.7, 10.3}) {
+			double[] x = new double[n], y = new double[n];
+			lattice(cols, rows, 3500000., 5700000., d, x, y);
+			int[] tri = BowyerWatsonDelaunay.triangulate(x, y, n);
+			assertEquals("d = " + d, 2 * (cols - 1) * (rows - 1), tri.length / 3);
+			assertDelaunay("d = " + d, x, y, n, tri);
+		}
+	}
+
+	@Test
+	public void testIncrementalMode() 
+	{
+		for (int seed = 0; seed < 5; seed++) {
+			int n = 1000;
+			double[] x = new double[n], y = new double[n];
+			randomPoints(seed, x, y, n);
+			BowyerWatsonDelaunay d = new BowyerWatsonDelaunay(n);
+			for (int i = 0; i < n; i++) {
+				d.addPoint(x[i], y[i]);
+			}
+			assertDelaunay("seed " + seed, x, y, n, d.getIndices());
+		}
+	}
+
+	@Test
+	public void testIncrementalModeUnlimited() 
+	{
+		// The arrays must grow with the number of added points, not with the 
+		// given maximal number of points:
+		int n = 5000;
+		double[] x = new double[n], y = new double[n];
+		randomPoints(4711, x, y, n);
+		BowyerWatsonDelaunay d = new BowyerWatsonDelaunay(Integer.MAX_VALUE);
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, d.addPoint(x[i], y[i]));
+		}
+		assertDelaunay("unlimited", x, y, n, d.getIndices());
+	}
+
+	@Test
+	public void testDuplicatePoints() 
+	{
+		double[] 
+			x = {0., 10., 0., 10., 5., 10.}, 
+			y = {0., 0., 10., 10., 5., 0.};
+		BowyerWatsonDelaunay d = new BowyerWatsonDelaunay(x, y, x.length);
+		assertEquals(1, d.numberOfDuplicates());
+		assertEquals(4, d.numberOfFaces());
+		int[] tri = d.getIndices();
+		for (int i = 0; i < tri.length; i++) {
+			assertTrue(tri[i] != 5);
+		}
+	}
+
+	@Test
+	public void testInsertionOrder() 
+	{
+		// Integer coordinates spanning 0 .. 65535, so that the coordinates 
+		// give the Hilbert curve cells directly:
+		int n = 5000;
+		Random rnd = new Random(4711);
+		double[] x = new double[n], y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = rnd.nextInt(65536);
+			y[i] = rnd.nextInt(65536);
+		}
+		x[0] = y[0] = 0.;
+		x[1] = y[1] = 65535.;
+		int[] order = new BowyerWatsonDelaunay(x, y, n).insertionOrder();
+
+		// Inside each round, the Hilbert indices must ascend (including the
+		// indices >= 2^31):
+		boolean[] seen = new boolean[n];
+		int end = n;
+		while (end > 0) {
+			int start = end < 64 ? 0 : end / 2;
+			for (int k = start; k < end; k++) {
+				assertTrue(!seen[order[k]]);
+				seen[order[k]] = true;
+				if (k > start) {
+					assertTrue("position " + k, 
+						BowyerWatsonDelaunay.hilbertIndex((int) x[order[k - 1]], (int) y[order[k - 1]]) <=
+						BowyerWatsonDelaunay.hilbertIndex((int) x[order[k]], (int) y[order[k]]));
+				}
+			}
+			end = start;
+		}
+	}
+
+	static void randomPoints(long seed, double[] x, double[] y, int n) 
+	{
+		Random rnd = new Random(seed);
+		for (int i = 0; i < n; i++) {
+			x[i] = 1000. * rnd.nextDouble();
+			y[i] = 1000. * rnd.nextDouble();
+		}
+	}
+
+	static void lattice(
+		int cols, int rows, double x0, double y0, double d, double[] x, double[] y)
+	{
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < cols; j++) {
+				x[i * cols + j] = x0 + j * d;
+				y[i * cols + j] = y0 + i * d;
+			}
+		}
+	}
+
+	/**
+	 * asserts that the given triangulation of pairwise distinct points uses 
+	 * every point, consists of counter-clockwise triangles only, is 
+	 * edge-manifold and fulfills the Delaunay criterion for every interior 
+	 * edge (which implies the global Delaunay property).
+	 */
+	static void assertDelaunay(String msg, double[] x, double[] y, int n, int[] tri) 
+	{
+		int nTri = tri.length / 3;
+		boolean[] used = new boolean[n];
+		HashMap<Long, Integer> edges = new HashMap<Long, Integer>();
+		for (int t = 0; t < nTri; t++) {
+			int a = tri[3 * t], b = tri[3 * t + 1], c = tri[3 * t + 2];
+			used[a] = used[b] = used[c] = true;
+			assertTrue(msg + ": triangle " + t + " not counter-clockwise", 
+				TriangleKernel.orient2d(x[a], y[a], x[b], y[b], x[c], y[c]) > 0.);
+			for (int k = 0; k < 3; k++) {
+				long key = edgeKey(tri[3 * t + k], tri[3 * t + (k + 1) % 3]);
+				assertTrue(msg + ": non-manifold edge", edges.put(key, t) == null);
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			assertTrue(msg + ": point " + i + " not used", used[i]);
+		}
+		for (int t = 0; t < nTri; t++) {
+			int a = tri[3 * t], b = tri[3 * t + 1], c = tri[3 * t + 2];
+			for (int k = 0; k < 3; k++) {
+				Integer u = edges.get(edgeKey(tri[3 * t + (k + 1) % 3], tri[3 * t + k]));
+				if (u == null)
+					continue; // hull edge
+				int r = tri[3 * u] + tri[3 * u + 1] + tri[3 * u + 2] 
+					- tri[3 * t + k] - tri[3 * t + (k + 1) % 3];
+				assertTrue(msg + ": triangle " + t + " is not Delaunay", 
+					TriangleKernel.inCircle(x[a], y[a], x[b], y[b], x[c], y[c], x[r], y[r]) <= 0.);
+			}
+		}
+	}
+
+	private static long edgeKey(int from, int to) {
+		return ((long) from << 32) | to;
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2021 52North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52North Initiative for Geospatial 
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, 
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.t3dutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for <tt>ParallelDelaunay</tt>. For points in general position, the 
+ * result has to match the serial <tt>BowyerWatsonDelaunay</tt> result 
+ * (apart from the order of the triangles), no matter how many strips are 
+ * used.
+ * 
+ * @author Benno Schmidt
+ */
+public class ParallelDelaunayTest 
+{
+	private static final int cN = 40000;
+
+	@Test
+	public void testOneStrip() {
+		this.compareRandom(1, cN);
+	}
+
+	@Test
+	public void testTwoStrips() {
+		this.compareRandom(4, cN / 2);
+	}
+
+	@Test
+	public void testManyStrips() {
+		this.compareRandom(4, 1000); // 16 strips
+	}
+
+	@Test
+	public void testLattice() 
+	{
+		int cols = 150, rows = 130, n = cols * rows;
+		double[] x = new double[n], y = new double[n];
+		BowyerWatsonDelaunayTest.lattice(cols, rows, 3500000., 5700000., 0.1, x, y);
+		for (int minPointsPerStrip : new int[] {n, n / 2, 500}) {
+			ParallelDelaunay pd = new ParallelDelaunay();
+			pd.setNumberOfThreads(4);
+			pd.setMinPointsPerStrip(minPointsPerStrip);
+			int[] tri = pd.triangulate(x, y, n);
+			String msg = "min. " + minPointsPerStrip + " points per strip";
+			assertEquals(msg, 2 * (cols - 1) * (rows - 1), tri.length / 3);
+			BowyerWatsonDelaunayTest.assertDelaunay(msg, x, y, n, tri);
+		}
+	}
+
+	private void compareRandom(int numberOfThreads, int minPointsPerStrip) 
+	{
+		for (int seed = 0; seed < 3; seed++) {
+			double[] x = new double[cN], y = new double[cN];
+			BowyerWatsonDelaunayTest.randomPoints(seed, x, y, cN);
+			ParallelDelaunay pd = new ParallelDelaunay();
+			pd.setNumberOfThreads(numberOfThreads);
+			pd.setMinPointsPerStrip(minPointsPerStrip);
+			int[] par = pd.triangulate(x, y, cN);
+			int[] ser = BowyerWatsonDelaunay.triangulate(x, y, cN);
+			String msg = "seed " + seed + ", min. " + minPointsPerStrip + " points per strip";
+			BowyerWatsonDelaunayTest.assertDelaunay(msg, x, y, cN, par);
+			assertEquals(msg, ser.length, par.length);
+			assertTrue(msg, Arrays.equals(normalize(ser), normalize(par)));
+		}
+	}
+
+	// Rotates each triangle so that its smallest vertex index comes first 
+	// (keeping the orientation) and sorts the triangles.
+	private static long[] normalize(int[] tri) 
+	{
+		int nTri = tri.length / 3;
+		long[] res = new long[nTri];
+		for (int t = 0; t < nTri; t++) {
+			int a = tri[3 * t], b = tri[3 * t + 1], c = tri[3 * t + 2];
+			while (a > b || a > c) {
+				int h = a; a = b; b = c; c = h;
+			}
+			res[t] = ((long) a << 42) | ((long) b << 21) | c;
+		}
+		Arrays.sort(res);
+		return res;
+	}
+}